@@ -1,14 +1,130 @@
+import cluster.ClusterNode;
+import menu.BatchCommandRunner;
 import menu.MainMenu;
+import replication.ReplicationFollower;
+import replication.ReplicationLeader;
+import service.ReservationService;
+import service.RoomInventoryWatcher;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class HotelApplication {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args));
+        }
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("Welcome to the Hotel Reservation Application");
         System.out.println("--------------------------------------------");
+        if (args.length > 0 && args[0].equals("--cluster-node")) {
+            runClusterNode(args);
+            return;
+        }
+        if (!startReplication(args)) {
+            return;
+        }
         MainMenu.displayMenu(scanner);
 
     }
+
+    /**
+     * Starts replication and the inventory watcher when requested on the command line:
+     * "--leader PORT" streams this process's mutations to followers,
+     * "--follower HOST:PORT" turns this process into a read replica of the leader at that address, and
+     * "--inventory FILE" keeps the rooms in sync with a CSV file that is reloaded whenever it changes.
+     *
+     * @param args the command line arguments
+     * @return true if the application should continue, false if the arguments were invalid
+     */
+    private static boolean startReplication(String[] args) {
+        String inventoryFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--inventory") && i + 1 < args.length) {
+                    inventoryFile = args[++i];
+                } else if (args[i].equals("--leader") && i + 1 < args.length) {
+                    ReplicationLeader leader = new ReplicationLeader(Integer.parseInt(args[++i]));
+                    System.out.println("Replication leader listening on port " + leader.getPort());
+                } else if (args[i].equals("--follower") && i + 1 < args.length) {
+                    String[] address = args[++i].split(":");
+                    new ReplicationFollower(address[0], Integer.parseInt(address[1]));
+                    System.out.println("Running as a read-only replica of " + args[i]);
+                } else {
+                    System.out.println("Usage: HotelApplication [--leader PORT | --follower HOST:PORT]"
+                            + " [--inventory FILE]");
+                    return false;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not start replication: " + e.getMessage());
+            return false;
+        }
+        if (inventoryFile != null) {
+            if (ReplicationFollower.isActive()) {
+                System.out.println("A read-only replica takes its rooms from the leader; --inventory is not allowed.");
+                return false;
+            }
+            try {
+                new RoomInventoryWatcher(Paths.get(inventoryFile), ReservationService.getInstance());
+                System.out.println("Watching room inventory " + inventoryFile);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Could not watch room inventory: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs commands from a file, or from standard input when the file is "-" or missing:
+     * "--batch [FILE]". Prints one JSON result line per command; see BatchCommandRunner for the commands.
+     *
+     * @param args the command line arguments
+     * @return the process exit code: 0 if every command succeeded, 1 if some failed, 2 if the input could not be read
+     */
+    private static int runBatch(String[] args) {
+        boolean fromStdin = args.length < 2 || args[1].equals("-");
+        BufferedWriter output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (InputStream in = fromStdin ? System.in : new FileInputStream(args[1]);
+             BufferedReader input = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            int failed = new BatchCommandRunner(output).run(input);
+            return failed == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("Could not run batch: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Runs this process as a headless cluster node: "--cluster-node PORT [--join HOST:PORT]".
+     * The node serves its share of the rooms until the process is stopped, and hands its rooms to the
+     * remaining nodes on shutdown.
+     *
+     * @param args the command line arguments
+     */
+    private static void runClusterNode(String[] args) {
+        try {
+            ClusterNode node = new ClusterNode(Integer.parseInt(args[1]));
+            if (args.length >= 4 && args[2].equals("--join")) {
+                node.join(args[3]);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(node::leave, "cluster-node-leave"));
+            System.out.println("Cluster node " + node.getNodeId() + " running with members " + node.getMembers());
+            Thread.currentThread().join();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not start cluster node: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
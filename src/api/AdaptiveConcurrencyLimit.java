@@ -0,0 +1,152 @@
+package api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A concurrency limit that adapts to observed latency with additive increase, multiplicative decrease (AIMD).
+ * While requests finish within the latency target and the limit is actually in use, the limit grows by about
+ * one per limit's worth of completions; a completion slower than the target cuts it by a constant factor.
+ * The limit is cut at most once per window: requests that started before the last cut ran under the old
+ * limit, so their being slow says nothing about the new one. The limit therefore settles near the
+ * concurrency the service can handle without queueing, instead of collapsing when a burst of requests that
+ * were all admitted together finish late one after another.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    // Factor applied to the limit when a request exceeds the latency target
+    private static final double BACKOFF_RATIO = 0.9;
+
+    // Weight of the newest sample in the smoothed latency
+    private static final double SMOOTHING = 0.1;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private double limit;
+    private int inFlight;
+    private double smoothedLatencyNanos;
+    private long rejectedCount;
+
+    // System.nanoTime() of the last cut; only requests started after it can cut again
+    private long lastCutNanos;
+
+    /**
+     * Creates a limit.
+     * @param name the operation the limit applies to, used in messages
+     * @param initialLimit the starting limit
+     * @param minLimit the limit never drops below this, so the operation is never shut out completely
+     * @param maxLimit the limit never grows above this
+     * @param latencyTargetMillis completions slower than this reduce the limit
+     */
+    AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit, long latencyTargetMillis) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.limit = initialLimit;
+        this.lastCutNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a slot if one is free.
+     * @return true if the caller may proceed and must call release, false if the limit is reached
+     */
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejectedCount++;
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Takes a slot, waiting up to the given time for one to be released.
+     * @param timeoutNanos the longest time to wait
+     * @return true if the caller may proceed and must call release, false if no slot freed up in time
+     */
+    synchronized boolean acquire(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                rejectedCount++;
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Returns a slot and adjusts the limit to the latency of the finished request.
+     * @param latencyNanos how long the request took
+     * @return true if the request missed the latency target
+     */
+    synchronized boolean release(long latencyNanos) {
+        inFlight--;
+        smoothedLatencyNanos = smoothedLatencyNanos == 0 ? latencyNanos
+                : smoothedLatencyNanos + SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+        boolean missedTarget = latencyNanos > latencyTargetNanos;
+        if (missedTarget) {
+            long now = System.nanoTime();
+            if (now - latencyNanos - lastCutNanos >= 0) {
+                cut(now);
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            // Only grow while the limit is actually being used; an idle limit says nothing about capacity
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notify();
+        return missedTarget;
+    }
+
+    /**
+     * Cuts the limit, e.g. because a higher-priority operation is missing its latency target. Calls within
+     * one smoothed request latency of the last cut are ignored, so that the requests admitted under the old
+     * limit have time to finish before the limit is cut again.
+     */
+    synchronized void backOff() {
+        long now = System.nanoTime();
+        if (now - lastCutNanos >= smoothedLatencyNanos) {
+            cut(now);
+        }
+    }
+
+    private void cut(long now) {
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastCutNanos = now;
+    }
+
+    /**
+     * Returns how long a rejected caller should wait before retrying: roughly the time it takes for the
+     * requests in flight to finish.
+     * @return the suggested delay in milliseconds, at least 1
+     */
+    synchronized long getRetryAfterMillis() {
+        double drainNanos = smoothedLatencyNanos * Math.max(1, inFlight / Math.max(1, limit));
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) drainNanos));
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + "{limit=" + (int) limit + ", inFlight=" + inFlight
+                + ", latency=" + String.format("%.2f", smoothedLatencyNanos / 1e6) + " ms"
+                + ", rejected=" + rejectedCount + '}';
+    }
+}
@@ -2,12 +2,27 @@ package api;
 
 import model.Customer;
 import model.IRoom;
+import model.Reservation;
+import model.RoomType;
+import model.RoomTypeBooking;
+import replication.ReplicationFollower;
+import service.BookingSequencer;
 import service.CustomerService;
+import service.ExportService;
+import service.PricingService;
 import service.ReservationService;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public class AdminResource {
 
@@ -27,7 +42,7 @@ public class AdminResource {
         this.reservationService = reservationService;
     }
 
-    public static AdminResource getInstance(CustomerService customerService, ReservationService reservationService) {
+    public static synchronized AdminResource getInstance(CustomerService customerService, ReservationService reservationService) {
         if (instance == null) {
             instance = new AdminResource(customerService, reservationService);
         }
@@ -44,17 +59,35 @@ public class AdminResource {
     }
 
 
+    /**
+     * Finds customers by the beginning of their last name, first name or email address.
+     * @param query the prefix or prefixes to search for, e.g. "smi" or "ann smi"
+     * @param limit the largest number of customers to return
+     * @return up to limit matching customers
+     */
+    public List<Customer> searchCustomers(String query, int limit) {
+        return customerService.searchCustomers(query, limit);
+    }
+
     /**
      * Adds rooms from a List into the data store. If a room with the same room number already exists,
-     * it will be skipped and the user will be informed about the conflict.
+     * it will be skipped and the user will be informed about the conflict. The new rooms are stored in one batch.
      *
      * @param rooms List of IRoom objects to be added
      */
     public void addRooms(List<IRoom> rooms) {
+        if (ReplicationFollower.isActive()) {
+            throw new IllegalArgumentException("This is a read-only replica. Add rooms on the leader.");
+        }
+        // Compared by identity, so a room number listed twice is reported once as added and once as skipped
+        Set<IRoom> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (BookingSequencer.isEnabled()) {
+            added.addAll(BookingSequencer.await(BookingSequencer.getInstance().addRooms(rooms)));
+        } else {
+            added.addAll(reservationService.addRooms(rooms));
+        }
         for (IRoom room : rooms) {
-            IRoom existingRoom = reservationService.getARoom(room.getRoomNumber());
-            if (existingRoom == null) {
-                reservationService.addRoom(room);
+            if (added.contains(room)) {
                 System.out.println("Added room: " + room.getRoomNumber());
             } else {
                 System.out.println("Room with number " + room.getRoomNumber() + " already exists. Skipping...");
@@ -63,6 +96,25 @@ public class AdminResource {
     }
 
 
+    /**
+     * Adds a single room into the data store without printing anything.
+     * @param room the room to add
+     * @return true if the room was added, false if a room with the same number already exists
+     */
+    public boolean addRoom(IRoom room) {
+        if (ReplicationFollower.isActive()) {
+            throw new IllegalArgumentException("This is a read-only replica. Add rooms on the leader.");
+        }
+        if (BookingSequencer.isEnabled()) {
+            return BookingSequencer.await(BookingSequencer.getInstance().addRoom(room));
+        }
+        if (reservationService.getARoom(room.getRoomNumber()) != null) {
+            return false;
+        }
+        reservationService.addRoom(room);
+        return true;
+    }
+
     /**
      * Returns a collection of all rooms in the data store.
      * @return a collection of all rooms
@@ -79,6 +131,50 @@ public class AdminResource {
         return customerService.getAllCustomers();
     }
 
+    /**
+     * Returns all existing reservations in booking order.
+     * @return a collection of all reservations
+     */
+    public Collection<Reservation> getAllReservations(){
+        return reservationService.getAllReservations();
+    }
+
+    /**
+     * Returns the reservations that check in on a day.
+     * @param day the day
+     * @return the arrivals, ordered by room number
+     */
+    public List<Reservation> getArrivals(Date day){
+        return reservationService.findArrivals(day);
+    }
+
+    /**
+     * Returns the reservations that check out on a day.
+     * @param day the day
+     * @return the departures, ordered by room number
+     */
+    public List<Reservation> getDepartures(Date day){
+        return reservationService.findDepartures(day);
+    }
+
+    /**
+     * Returns the reservations whose stay overlaps a date range, both ends inclusive.
+     * @param from the first date of the range
+     * @param to the last date of the range
+     * @return the overlapping reservations, ordered by check-in date
+     */
+    public List<Reservation> getReservationsOverlapping(Date from, Date to){
+        return reservationService.findOverlappingReservations(from, to);
+    }
+
+    /**
+     * Returns the bookings of a room type that have not been assigned a room yet.
+     * @return the bookings, oldest first
+     */
+    public List<RoomTypeBooking> getRoomTypeBookings(){
+        return reservationService.getRoomTypeBookings();
+    }
+
     /**
      * Displays all existing reservations
      */
@@ -86,6 +182,36 @@ public class AdminResource {
         reservationService.printAllReservations();
     }
 
+    /**
+     * Exports all rooms and customers, and the reservations that check in within a date range, to a directory
+     * with one file per table.
+     * @param directory the directory to write to; created if it does not exist
+     * @param format CSV or the compressed columnar format
+     * @param fromCheckIn the earliest check-in date of the exported reservations, or null for no lower bound
+     * @param toCheckIn the latest check-in date of the exported reservations, or null for no upper bound
+     * @return the number of reservations exported
+     * @throws IOException if a file cannot be written
+     */
+    public long exportData(String directory, ExportService.Format format, Date fromCheckIn, Date toCheckIn)
+            throws IOException {
+        return ExportService.getInstance().export(Paths.get(directory), format, fromCheckIn, toCheckIn);
+    }
+
+    /**
+     * Sets the nightly rate adjustment of a room type for a range of nights, e.g. a weekend surcharge or a
+     * low-season discount. The adjustment is added to the base price of every paid room of that type.
+     * @param roomType the room type
+     * @param firstNight the first night of the range
+     * @param lastNight the last night of the range, inclusive
+     * @param amount the adjustment per night in dollars; negative for a discount
+     * @param weekendsOnly true to adjust only Friday and Saturday nights
+     */
+    public void setNightlyRateAdjustment(RoomType roomType, Date firstNight, Date lastNight, double amount,
+                                         boolean weekendsOnly){
+        PricingService.getInstance().setNightlyAdjustment(roomType, firstNight, lastNight, amount,
+                weekendsOnly ? PricingService.WEEKEND_NIGHTS : EnumSet.allOf(DayOfWeek.class));
+    }
+
 
 
 }
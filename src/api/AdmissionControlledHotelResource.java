@@ -0,0 +1,212 @@
+package api;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomQuote;
+import model.RoomSearchType;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * An admission-control layer in front of HotelResource for high-traffic callers, e.g. during flash sales.
+ *
+ * Searches and lookups share one adaptive concurrency limit, bookings and other changes have their own.
+ * Both limits follow observed latency (see AdaptiveConcurrencyLimit). Bookings come first:
+ * <ul>
+ *     <li>a booking that finds its limit reached waits briefly for a slot, a search is rejected at once;</li>
+ *     <li>searches are shed while bookings use their whole limit;</li>
+ *     <li>every booking that misses its latency target also cuts the search limit, so search traffic gives up
+ *     CPU before bookings lose their latency budget.</li>
+ * </ul>
+ * Rejected requests fail fast with a ServiceOverloadedException that carries a retry hint; they were not
+ * started and can be retried safely.
+ */
+public class AdmissionControlledHotelResource {
+
+    // How long a booking may wait for a free slot before it is rejected
+    private static final long BOOKING_WAIT_MILLIS = 100;
+
+    private final HotelResource hotelResource;
+    private final AdaptiveConcurrencyLimit readLimit;
+    private final AdaptiveConcurrencyLimit bookingLimit;
+
+    // The singleton instance of the AdmissionControlledHotelResource class
+    private static AdmissionControlledHotelResource instance;
+
+    /**
+     * Private constructor prevents external instantiation of more than one instance of
+     * AdmissionControlledHotelResource
+     * @param hotelResource the singleton object of HotelResource class
+     */
+    private AdmissionControlledHotelResource(HotelResource hotelResource) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.hotelResource = hotelResource;
+        this.readLimit = new AdaptiveConcurrencyLimit("search", 2 * cores, 1, 8 * cores, 50);
+        this.bookingLimit = new AdaptiveConcurrencyLimit("booking", 8, 2, 64, 20);
+    }
+
+    public static synchronized AdmissionControlledHotelResource getInstance(HotelResource hotelResource) {
+        if (instance == null) {
+            instance = new AdmissionControlledHotelResource(hotelResource);
+        }
+        return instance;
+    }
+
+    /**
+     * Retrieves the customer with the given email address.
+     * @param email the email address of the customer to retrieve
+     * @return the customer with the given email address, or null if no such customer exists
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public Customer getCustomer(String email){
+        return admitRead(() -> hotelResource.getCustomer(email));
+    }
+
+    /**
+     * Creates a new customer with the given email, first name, and last name.
+     * @param email the email address of the new customer
+     * @param firstName the first name of the new customer
+     * @param lastName the last name of the new customer
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public void createACustomer(String email, String firstName, String lastName){
+        admitBooking(() -> {
+            hotelResource.createACustomer(email, firstName, lastName);
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves the room with the given room number.
+     * @param roomNumber the room number of the room to retrieve
+     * @return the room with the given room number, or null if no such room exists
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public IRoom getRoom(String roomNumber){
+        return admitRead(() -> hotelResource.getRoom(roomNumber));
+    }
+
+    /**
+     * Creates a new reservation for the given customer, room, check-in date, and check-out date.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @return the new reservation
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate){
+        return admitBooking(() -> hotelResource.bookARoom(customerEmail, room, checkInDate, checkOutDate));
+    }
+
+    /**
+     * Creates a new reservation at most once per request key; a retry with the same key returns the original
+     * reservation (see HotelResource).
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @param idempotencyKey a key generated once per booking and sent with every retry
+     * @return the new reservation, or the original one if the request is a repeat
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate,
+                                 String idempotencyKey){
+        return admitBooking(() -> hotelResource.bookARoom(customerEmail, room, checkInDate, checkOutDate, null,
+                idempotencyKey));
+    }
+
+    /**
+     * Cancels a reservation.
+     * @param reservation the reservation to cancel
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public void cancelReservation(Reservation reservation){
+        admitBooking(() -> {
+            hotelResource.cancelReservation(reservation);
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves all reservations for the customer with the given email address.
+     * @param customerEmail the email address of the customer whose reservations to retrieve
+     * @return the customer's reservations
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public Collection<Reservation> getCustomerReservations(String customerEmail){
+        return admitRead(() -> hotelResource.getCustomerReservations(customerEmail));
+    }
+
+    /**
+     * Retrieves all available rooms for the given check-in date and check-out date.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @return the available rooms
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public Collection<IRoom> findARoom(Date checkIn, Date checkOut, RoomSearchType roomSearchType){
+        return admitRead(() -> hotelResource.findARoom(checkIn, checkOut, roomSearchType));
+    }
+
+    /**
+     * Retrieves the available rooms for the given dates with the total price of the stay, cheapest first.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param maxTotalPrice the highest acceptable total price of the stay, or null for no limit
+     * @return the quotes within the limit, sorted by total price
+     * @throws ServiceOverloadedException if the request was shed
+     */
+    public List<RoomQuote> findARoomByPrice(Date checkIn, Date checkOut, RoomSearchType roomSearchType,
+                                            Double maxTotalPrice){
+        return admitRead(() -> hotelResource.findARoomByPrice(checkIn, checkOut, roomSearchType, maxTotalPrice));
+    }
+
+    /**
+     * Returns the current limits, requests in flight, latencies and rejection counts.
+     * @return a one-line status for monitoring
+     */
+    public String getStatus(){
+        return bookingLimit + " " + readLimit;
+    }
+
+    private <T> T admitRead(Supplier<T> request) {
+        if (bookingLimit.getInFlight() >= bookingLimit.getLimit() || !readLimit.tryAcquire()) {
+            throw new ServiceOverloadedException("search", readLimit.getRetryAfterMillis());
+        }
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            readLimit.release(System.nanoTime() - start);
+        }
+    }
+
+    private <T> T admitBooking(Supplier<T> request) {
+        try {
+            if (!bookingLimit.acquire(TimeUnit.MILLISECONDS.toNanos(BOOKING_WAIT_MILLIS))) {
+                readLimit.backOff();
+                throw new ServiceOverloadedException("booking", bookingLimit.getRetryAfterMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("booking", bookingLimit.getRetryAfterMillis());
+        }
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            if (bookingLimit.release(System.nanoTime() - start)) {
+                // Bookings are missing their latency target; make room for them by shedding searches
+                readLimit.backOff();
+            }
+        }
+    }
+}
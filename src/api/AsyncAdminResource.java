@@ -0,0 +1,72 @@
+package api;
+
+import model.Customer;
+import model.IRoom;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A non-blocking variant of AdminResource. It shares the bounded read and write executors of
+ * AsyncHotelResource, so admin changes queue with bookings and admin listings queue with searches.
+ */
+public class AsyncAdminResource {
+
+    private final AdminResource adminResource;
+
+    // The singleton instance of the AsyncAdminResource class
+    private static AsyncAdminResource instance;
+
+    /**
+     * Private constructor prevents external instantiation of more than one instance of AsyncAdminResource
+     * @param adminResource the singleton object of AdminResource class
+     */
+    private AsyncAdminResource(AdminResource adminResource) {
+        this.adminResource = adminResource;
+    }
+
+    public static synchronized AsyncAdminResource getInstance(AdminResource adminResource) {
+        if (instance == null) {
+            instance = new AsyncAdminResource(adminResource);
+        }
+        return instance;
+    }
+
+    /**
+     * Retrieves the customer with the given email address.
+     * @param email the email address of the customer to retrieve
+     * @return a future of the customer, or of null if no such customer exists
+     */
+    public CompletableFuture<Customer> getCustomer(String email){
+        return BoundedAsyncExecutor.READS.submit(() -> adminResource.getCustomer(email));
+    }
+
+    /**
+     * Adds rooms into the data store, skipping room numbers that already exist.
+     * @param rooms the rooms to add
+     * @return a future completed when the rooms have been added
+     */
+    public CompletableFuture<Void> addRooms(List<IRoom> rooms){
+        return BoundedAsyncExecutor.WRITES.submit(() -> {
+            adminResource.addRooms(rooms);
+            return null;
+        });
+    }
+
+    /**
+     * Returns all rooms in the data store.
+     * @return a future of all rooms
+     */
+    public CompletableFuture<Collection<IRoom>> getAllRooms(){
+        return BoundedAsyncExecutor.READS.submit(adminResource::getAllRooms);
+    }
+
+    /**
+     * Returns all customers in the data store.
+     * @return a future of all customers
+     */
+    public CompletableFuture<Collection<Customer>> getAllCustomers(){
+        return BoundedAsyncExecutor.READS.submit(adminResource::getAllCustomers);
+    }
+}
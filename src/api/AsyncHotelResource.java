@@ -0,0 +1,232 @@
+package api;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomQuote;
+import model.RoomSearchType;
+import service.BookingSequencer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A non-blocking variant of HotelResource. Every method returns at once with a CompletableFuture and the work
+ * runs on bounded executors: one pool for reads and a separate one for writes, so bookings never wait behind
+ * a backlog of searches. When a pool's queue is full, callers are held back briefly and then the future
+ * fails with a RejectedExecutionException.
+ *
+ * Searches for the same dates and room preference that are still queued are batched: later callers join the
+ * queued search and all of them are completed from a single run.
+ */
+public class AsyncHotelResource {
+
+    private final HotelResource hotelResource;
+
+    // Searches that are queued but not started yet, by their parameters
+    private final Map<SearchKey, CompletableFuture<Collection<IRoom>>> queuedSearches = new ConcurrentHashMap<>();
+
+    // The singleton instance of the AsyncHotelResource class
+    private static AsyncHotelResource instance;
+
+    /**
+     * The parameters of a room search; searches with equal keys return the same rooms.
+     */
+    private static final class SearchKey {
+        private final long checkIn;
+        private final long checkOut;
+        private final RoomSearchType roomSearchType;
+
+        SearchKey(Date checkIn, Date checkOut, RoomSearchType roomSearchType) {
+            this.checkIn = checkIn.getTime();
+            this.checkOut = checkOut.getTime();
+            this.roomSearchType = roomSearchType;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            SearchKey other = (SearchKey) obj;
+            return checkIn == other.checkIn && checkOut == other.checkOut && roomSearchType == other.roomSearchType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(checkIn, checkOut, roomSearchType);
+        }
+    }
+
+    /**
+     * Private constructor prevents external instantiation of more than one instance of AsyncHotelResource
+     * @param hotelResource the singleton object of HotelResource class
+     */
+    private AsyncHotelResource(HotelResource hotelResource) {
+        this.hotelResource = hotelResource;
+    }
+
+    public static synchronized AsyncHotelResource getInstance(HotelResource hotelResource) {
+        if (instance == null) {
+            instance = new AsyncHotelResource(hotelResource);
+        }
+        return instance;
+    }
+
+    /**
+     * Retrieves the customer with the given email address.
+     * @param email the email address of the customer to retrieve
+     * @return a future of the customer, or of null if no such customer exists
+     */
+    public CompletableFuture<Customer> getCustomer(String email){
+        return BoundedAsyncExecutor.READS.submit(() -> hotelResource.getCustomer(email));
+    }
+
+    /**
+     * Creates a new customer with the given email, first name, and last name.
+     * @param email the email address of the new customer
+     * @param firstName the first name of the new customer
+     * @param lastName the last name of the new customer
+     * @return a future completed when the customer has been created
+     */
+    public CompletableFuture<Void> createACustomer(String email, String firstName, String lastName){
+        if (BookingSequencer.isEnabled()) {
+            return submitToSequencer(() -> hotelResource.submitCustomer(email, firstName, lastName));
+        }
+        return BoundedAsyncExecutor.WRITES.submit(() -> {
+            hotelResource.createACustomer(email, firstName, lastName);
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves the room with the given room number.
+     * @param roomNumber the room number of the room to retrieve
+     * @return a future of the room, or of null if no such room exists
+     */
+    public CompletableFuture<IRoom> getRoom(String roomNumber){
+        return BoundedAsyncExecutor.READS.submit(() -> hotelResource.getRoom(roomNumber));
+    }
+
+    /**
+     * Creates a new reservation for the given customer, room, check-in date, and check-out date.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @return a future of the new reservation
+     */
+    public CompletableFuture<Reservation> bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate){
+        if (BookingSequencer.isEnabled()) {
+            return submitToSequencer(() -> hotelResource.submitBooking(customerEmail, room, checkInDate, checkOutDate,
+                    null, null));
+        }
+        return BoundedAsyncExecutor.WRITES.submit(() -> hotelResource.bookARoom(customerEmail, room, checkInDate, checkOutDate));
+    }
+
+    /**
+     * Creates a new reservation at most once per request key. A caller whose future timed out can submit the
+     * booking again with the same key and gets the original reservation if the first attempt went through.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @param idempotencyKey a key generated once per booking and sent with every retry
+     * @return a future of the new reservation, or of the original one if the request is a repeat
+     */
+    public CompletableFuture<Reservation> bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate,
+                                                    String idempotencyKey){
+        if (BookingSequencer.isEnabled()) {
+            return submitToSequencer(() -> hotelResource.submitBooking(customerEmail, room, checkInDate, checkOutDate,
+                    null, idempotencyKey));
+        }
+        return BoundedAsyncExecutor.WRITES.submit(() -> hotelResource.bookARoom(customerEmail, room, checkInDate,
+                checkOutDate, null, idempotencyKey));
+    }
+
+    /**
+     * Cancels a reservation.
+     * @param reservation the reservation to cancel
+     * @return a future completed when the reservation has been cancelled
+     */
+    public CompletableFuture<Void> cancelReservation(Reservation reservation){
+        return BoundedAsyncExecutor.WRITES.submit(() -> {
+            hotelResource.cancelReservation(reservation);
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves all reservations for the customer with the given email address.
+     * @param customerEmail the email address of the customer whose reservations to retrieve
+     * @return a future of the customer's reservations
+     */
+    public CompletableFuture<Collection<Reservation>> getCustomerReservations(String customerEmail){
+        return BoundedAsyncExecutor.READS.submit(() -> hotelResource.getCustomerReservations(customerEmail));
+    }
+
+    /**
+     * Retrieves all available rooms for the given check-in date and check-out date. If a search with the same
+     * parameters is still queued, this call joins it instead of queueing another one.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @return a future of the available rooms; every caller gets its own collection
+     */
+    public CompletableFuture<Collection<IRoom>> findARoom(Date checkIn, Date checkOut, RoomSearchType roomSearchType){
+        SearchKey key = new SearchKey(checkIn, checkOut, roomSearchType);
+        CompletableFuture<Collection<IRoom>> batch = new CompletableFuture<>();
+        CompletableFuture<Collection<IRoom>> search = queuedSearches.putIfAbsent(key, batch);
+        if (search == null) {
+            search = batch;
+            BoundedAsyncExecutor.READS.submit(() -> {
+                // Once the search runs, later callers must start a new one to see changes made meanwhile
+                queuedSearches.remove(key, batch);
+                return hotelResource.findARoom(checkIn, checkOut, roomSearchType);
+            }).whenComplete((rooms, error) -> {
+                // A rejected search never runs, so it is removed here as well
+                queuedSearches.remove(key, batch);
+                if (error != null) {
+                    batch.completeExceptionally(error);
+                } else {
+                    batch.complete(rooms);
+                }
+            });
+        }
+        return search.thenApply(ArrayList::new);
+    }
+
+    /**
+     * Retrieves the available rooms for the given dates with the total price of the stay, cheapest first.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param maxTotalPrice the highest acceptable total price of the stay, or null for no limit
+     * @return a future of the quotes within the limit, sorted by total price
+     */
+    public CompletableFuture<List<RoomQuote>> findARoomByPrice(Date checkIn, Date checkOut, RoomSearchType roomSearchType,
+                                                               Double maxTotalPrice){
+        return BoundedAsyncExecutor.READS.submit(() ->
+                hotelResource.findARoomByPrice(checkIn, checkOut, roomSearchType, maxTotalPrice));
+    }
+
+    /**
+     * Hands a write to the BookingSequencer instead of the write pool; its queue needs no thread per request.
+     * A request that fails before it is queued, e.g. for an unknown customer, fails the future.
+     */
+    private static <T> CompletableFuture<T> submitToSequencer(Supplier<CompletableFuture<T>> submission){
+        try {
+            return submission.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A fixed pool of daemon threads with a bounded number of waiting tasks, used by the async resources.
+ *
+ * Every task needs a permit, and there are only as many permits as threads plus queue slots. When the queue
+ * is full, submitters wait up to a short deadline for a permit, which slows producers down to the rate the
+ * pool can serve; if none frees up in time the returned future fails with a RejectedExecutionException
+ * instead of letting the backlog grow without bound.
+ */
+final class BoundedAsyncExecutor {
+
+    // Searches and lookups; they only take the service locks briefly, so one thread per core keeps up
+    static final BoundedAsyncExecutor READS = new BoundedAsyncExecutor("hotel-async-read",
+            Runtime.getRuntime().availableProcessors(), 1024, 50);
+
+    // Bookings, cancellations and other changes, kept apart so a burst of searches cannot queue ahead of them
+    static final BoundedAsyncExecutor WRITES = new BoundedAsyncExecutor("hotel-async-write", 2, 256, 50);
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final long submitTimeoutMillis;
+
+    /**
+     * Creates an executor. Threads are started on demand.
+     * @param name the prefix of the thread names
+     * @param threads the number of threads
+     * @param queueCapacity the largest number of tasks waiting for a thread
+     * @param submitTimeoutMillis how long a submitter waits for a queue slot before the task is rejected
+     */
+    BoundedAsyncExecutor(String name, int threads, int queueCapacity, long submitTimeoutMillis) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.permits = new Semaphore(threads + queueCapacity);
+        this.submitTimeoutMillis = submitTimeoutMillis;
+    }
+
+    /**
+     * Runs a task on the pool.
+     * @param task the task
+     * @param <T> the type of the task result
+     * @return a future completed with the result of the task, or exceptionally with what the task threw;
+     *         it fails with a RejectedExecutionException if the queue stayed full
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            if (!permits.tryAcquire(submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                future.completeExceptionally(new RejectedExecutionException("Too many queued requests. Try again later."));
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        executor.execute(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread.
+     * @return the queue length
+     */
+    int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+}
@@ -1,17 +1,38 @@
 package api;
 
 import model.Customer;
+import model.GroupAvailability;
 import model.IRoom;
 import model.Reservation;
+import model.RoomAttribute;
+import model.RoomQuote;
 import model.RoomSearchType;
+import model.RoomType;
+import model.RoomTypeBooking;
+import model.WaitlistEntry;
+import replication.ReplicationFollower;
+import service.BookingSequencer;
 import service.CustomerService;
+import service.PricingService;
 import service.ReservationService;
+import service.WaitlistService;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class HotelResource {
 
+    // How long rooms found by a guest's search stay held for that guest
+    public static final long ROOM_HOLD_MILLIS = 2 * 60 * 1000;
+
+    // Largest number of rooms one search holds, so a single guest cannot hold the whole hotel
+    public static final int MAX_HOLDS_PER_SEARCH = 50;
+
     private final CustomerService customerService;
     private final ReservationService reservationService;
 
@@ -28,7 +49,7 @@ public class HotelResource {
         this.reservationService = reservationService;
     }
 
-    public static HotelResource getInstance(CustomerService customerService, ReservationService reservationService) {
+    public static synchronized HotelResource getInstance(CustomerService customerService, ReservationService reservationService) {
         if (instance == null) {
             instance = new HotelResource(customerService, reservationService);
         }
@@ -51,6 +72,11 @@ public class HotelResource {
      * @param lastName the last name of the new customer
      */
     public void createACustomer(String email, String firstName, String lastName){
+        requireWritableNode();
+        if (BookingSequencer.isEnabled()) {
+            BookingSequencer.await(BookingSequencer.getInstance().addCustomer(email, firstName, lastName));
+            return;
+        }
         customerService.addCustomer(email, firstName, lastName);
     }
 
@@ -72,13 +98,150 @@ public class HotelResource {
      * @return the new reservation
      */
     public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate){
+        requireWritableNode();
         Customer customer = this.getCustomer(customerEmail);
         if (customer == null) {
             throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
         }
+        if (BookingSequencer.isEnabled()) {
+            return BookingSequencer.await(BookingSequencer.getInstance().reserveARoom(customer, room, checkInDate,
+                    checkOutDate, null, null));
+        }
         return reservationService.reserveARoom(customer, room, checkInDate, checkOutDate);
     }
 
+    /**
+     * Creates a new reservation on behalf of a search that holds rooms. The holder's own holds do not block
+     * the booking, and its hold on the booked room is consumed.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @param holderId the ID passed to findAndHoldRooms
+     * @return the new reservation
+     */
+    public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate, String holderId){
+        requireWritableNode();
+        Customer customer = this.getCustomer(customerEmail);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
+        }
+        if (BookingSequencer.isEnabled()) {
+            return BookingSequencer.await(BookingSequencer.getInstance().reserveARoom(customer, room, checkInDate,
+                    checkOutDate, holderId, null));
+        }
+        return reservationService.reserveARoom(customer, room, checkInDate, checkOutDate, holderId);
+    }
+
+    /**
+     * Creates a new reservation at most once per request key. Clients that retry a booking after a timeout
+     * send the same key with every attempt: the first attempt books the room, and any repeat within 24 hours
+     * returns that same reservation instead of failing because the room is now taken.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @param holderId the ID passed to findAndHoldRooms, or null if the caller holds nothing
+     * @param idempotencyKey a key generated once per booking, e.g. a random UUID
+     * @return the new reservation, or the original one if the request is a repeat
+     */
+    public Reservation bookARoom(String customerEmail, IRoom room, Date checkInDate, Date checkOutDate, String holderId,
+                                 String idempotencyKey){
+        requireWritableNode();
+        Customer customer = this.getCustomer(customerEmail);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
+        }
+        if (BookingSequencer.isEnabled()) {
+            return BookingSequencer.await(BookingSequencer.getInstance().reserveARoom(customer, room, checkInDate,
+                    checkOutDate, holderId, idempotencyKey));
+        }
+        return reservationService.reserveARoom(customer, room, checkInDate, checkOutDate, holderId, idempotencyKey);
+    }
+
+    /**
+     * Queues a booking on the BookingSequencer and returns without waiting for it to be applied.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param room the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @param holderId the ID passed to findAndHoldRooms, or null if the caller holds nothing
+     * @param idempotencyKey a key generated once per booking, or null to book without one
+     * @return a future of the new reservation
+     */
+    public CompletableFuture<Reservation> submitBooking(String customerEmail, IRoom room, Date checkInDate,
+                                                        Date checkOutDate, String holderId, String idempotencyKey){
+        requireWritableNode();
+        Customer customer = this.getCustomer(customerEmail);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
+        }
+        return BookingSequencer.getInstance().reserveARoom(customer, room, checkInDate, checkOutDate, holderId,
+                idempotencyKey);
+    }
+
+    /**
+     * Queues a new customer on the BookingSequencer and returns without waiting for it to be added.
+     * @param email the email address of the new customer
+     * @param firstName the first name of the new customer
+     * @param lastName the last name of the new customer
+     * @return a future completed when the customer has been created
+     */
+    public CompletableFuture<Void> submitCustomer(String email, String firstName, String lastName){
+        requireWritableNode();
+        return BookingSequencer.getInstance().addCustomer(email, firstName, lastName);
+    }
+
+    /**
+     * Returns how many rooms of a type are left for every night of a stay, e.g. to offer "a DOUBLE room"
+     * without listing the rooms. Fast whatever the size of the hotel.
+     * @param roomType the room type
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @return the number of rooms of the type left on the busiest day of the stay; 0 or less if none
+     */
+    public int getFreeRoomCount(RoomType roomType, Date checkIn, Date checkOut){
+        return reservationService.getFreeRoomCount(roomType, checkIn, checkOut);
+    }
+
+    /**
+     * Books any room of a type for a customer. The room is chosen later with assignRoom, e.g. at check-in. The
+     * booking is only accepted if a room of the type is free for the whole stay.
+     * @param customerEmail the email address of the customer making the booking
+     * @param roomType the room type
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @return the booking, without a room yet
+     */
+    public RoomTypeBooking bookARoomOfType(String customerEmail, RoomType roomType, Date checkInDate, Date checkOutDate){
+        requireWritableNode();
+        Customer customer = this.getCustomer(customerEmail);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
+        }
+        return reservationService.reserveRoomOfType(customer, roomType, checkInDate, checkOutDate);
+    }
+
+    /**
+     * Assigns a concrete room to a booking by room type. If the free rooms of the type change during the stay,
+     * so that no single room is free for all of it, the booking stays without a room and the message says so.
+     * @param booking the booking returned by bookARoomOfType
+     * @return the reservation of the assigned room
+     */
+    public Reservation assignRoom(RoomTypeBooking booking){
+        requireWritableNode();
+        return reservationService.assignRoom(booking);
+    }
+
+    /**
+     * Cancels a booking by room type that has no room yet.
+     * @param booking the booking to cancel
+     */
+    public void cancelRoomTypeBooking(RoomTypeBooking booking){
+        requireWritableNode();
+        reservationService.cancelRoomTypeBooking(booking);
+    }
+
     /**
      * Retrieves all reservations for the customer with the given email address.
      * @param customerEmail the email address of the customer whose reservations to retrieve
@@ -98,5 +261,206 @@ public class HotelResource {
         return reservationService.findRooms(checkIn, checkOut, roomSearchType);
     }
 
+    /**
+     * Retrieves the available rooms for the given dates that have every one of the given attributes.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param requiredAttributes the attributes every room must have, e.g. floor=3 and view=sea
+     * @return the available rooms with the attributes, ordered by room number
+     */
+    public Collection<IRoom> findARoom(Date checkIn, Date checkOut, RoomSearchType roomSearchType,
+                                       Collection<RoomAttribute> requiredAttributes){
+        return reservationService.findRooms(checkIn, checkOut, roomSearchType, requiredAttributes);
+    }
+
+    /**
+     * Returns every attribute at least one room has, for offering filters to guests.
+     * @return the attributes, sorted by name and value
+     */
+    public Set<RoomAttribute> getRoomAttributes(){
+        return reservationService.getRoomAttributes();
+    }
+
+    /**
+     * Checks whether a group of rooms, e.g. 8 double and 4 single rooms, is free for the given dates and
+     * returns a set of rooms that satisfies it.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomsPerType the number of rooms wanted of each room type
+     * @param maxTotalPrice the highest acceptable total price of the stay per room, or null for no limit
+     * @return whether the mix fits, with the rooms found for each type and what is missing
+     */
+    public GroupAvailability findRoomGroup(Date checkIn, Date checkOut, Map<RoomType, Integer> roomsPerType,
+                                           Double maxTotalPrice){
+        return reservationService.findRoomGroup(checkIn, checkOut, roomsPerType, maxTotalPrice);
+    }
+
+    /**
+     * Retrieves the available rooms for the given dates with the total price of the stay, cheapest first.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param maxTotalPrice the highest acceptable total price of the stay, or null for no limit
+     * @return the quotes of the available rooms within the limit, sorted by total price
+     */
+    public List<RoomQuote> findARoomByPrice(Date checkIn, Date checkOut, RoomSearchType roomSearchType, Double maxTotalPrice){
+        return PricingService.getInstance().quoteRooms(findARoom(checkIn, checkOut, roomSearchType),
+                checkIn, checkOut, maxTotalPrice);
+    }
+
+    /**
+     * Prices a stay in each of the given rooms, e.g. the rooms returned by findAndHoldRooms.
+     * @param rooms the rooms to price
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @return the quotes sorted by total price, cheapest first
+     */
+    public List<RoomQuote> quoteStays(Collection<IRoom> rooms, Date checkIn, Date checkOut){
+        return PricingService.getInstance().quoteRooms(rooms, checkIn, checkOut, null);
+    }
+
+    /**
+     * Prices a stay in a room, night by night, including weekend and seasonal rates.
+     * @param room the room
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @return the quote for the stay
+     */
+    public RoomQuote quoteStay(IRoom room, Date checkIn, Date checkOut){
+        return PricingService.getInstance().quote(room, checkIn, checkOut);
+    }
+
+    /**
+     * Finds available rooms and holds them for the caller for ROOM_HOLD_MILLIS, so that the rooms shown to a
+     * guest are not booked by someone else while the guest decides. At most MAX_HOLDS_PER_SEARCH rooms are
+     * held. A read replica cannot place holds and returns the plain search result.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param holderId an ID identifying the caller, for example one per search session
+     * @return the rooms held for the caller
+     */
+    public Collection<IRoom> findAndHoldRooms(Date checkIn, Date checkOut, RoomSearchType roomSearchType, String holderId){
+        return findAndHoldRooms(checkIn, checkOut, roomSearchType, Collections.emptySet(), holderId);
+    }
+
+    /**
+     * Finds available rooms with every one of the given attributes and holds them for the caller, like
+     * findAndHoldRooms without attributes.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param requiredAttributes the attributes every room must have; none for any room
+     * @param holderId an ID identifying the caller, for example one per search session
+     * @return the rooms held for the caller
+     */
+    public Collection<IRoom> findAndHoldRooms(Date checkIn, Date checkOut, RoomSearchType roomSearchType,
+                                              Collection<RoomAttribute> requiredAttributes, String holderId){
+        if (isReadOnlyReplica()) {
+            return findARoom(checkIn, checkOut, roomSearchType, requiredAttributes);
+        }
+        return reservationService.findAndHoldRooms(checkIn, checkOut, roomSearchType, requiredAttributes, holderId,
+                ROOM_HOLD_MILLIS, MAX_HOLDS_PER_SEARCH);
+    }
+
+    /**
+     * Holds one room for the caller for ROOM_HOLD_MILLIS, e.g. the room a guest picked from a search, so that
+     * nobody else books it while the guest enters their details. A read replica cannot place holds and
+     * reports the room as held; the booking is refused there anyway.
+     * @param room the room to hold
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param holderId an ID identifying the caller, for example one per search session
+     * @return true if the room is now held for the caller, false if it was booked or held by someone else
+     */
+    public boolean holdRoom(IRoom room, Date checkIn, Date checkOut, String holderId){
+        if (isReadOnlyReplica()) {
+            return true;
+        }
+        return reservationService.holdRoom(room, checkIn, checkOut, holderId, ROOM_HOLD_MILLIS);
+    }
+
+    /**
+     * Releases the rooms held for the caller before their holds expire.
+     * @param holderId the ID passed to findAndHoldRooms or holdRoom
+     */
+    public void releaseHolds(String holderId){
+        if (!isReadOnlyReplica()) {
+            reservationService.releaseHolds(holderId);
+        }
+    }
+
+    /**
+     * Cancels a reservation. The released dates are offered to waiting guests.
+     * @param reservation the reservation to cancel
+     */
+    public void cancelReservation(Reservation reservation){
+        requireWritableNode();
+        reservationService.cancelReservation(reservation);
+    }
+
+    /**
+     * Puts the customer on the waitlist. The customer is booked automatically, first come first served,
+     * as soon as a matching room becomes available for the whole stay.
+     * @param customerEmail the email address of the waiting customer
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param roomType the requested room type, or null for any type
+     * @param maxPrice the highest acceptable room price, or null for no limit
+     * @return the new waitlist entry
+     */
+    public WaitlistEntry joinWaitlist(String customerEmail, Date checkIn, Date checkOut, RoomSearchType roomSearchType,
+                                      RoomType roomType, Double maxPrice){
+        requireWritableNode();
+        Customer customer = this.getCustomer(customerEmail);
+        if (customer == null) {
+            throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
+        }
+        return WaitlistService.getInstance().addToWaitlist(customer, checkIn, checkOut, roomSearchType, roomType, maxPrice);
+    }
+
+    /**
+     * Retrieves the waitlist entries of the customer with the given email address that have not been booked yet.
+     * @param customerEmail the email address of the customer
+     * @return the customer's waiting entries
+     */
+    public Collection<WaitlistEntry> getCustomerWaitlist(String customerEmail){
+        Customer customer = this.getCustomer(customerEmail);
+        // Replicas apply the leader's bookings and never run waitlist matching themselves
+        if (customer == null || isReadOnlyReplica()) {
+            return Collections.emptyList();
+        }
+        return WaitlistService.getInstance().getCustomerWaitlist(customer);
+    }
+
+    /**
+     * Returns how stale the results of reads may be. Only a read replica serves stale data.
+     * @return the staleness bound in milliseconds: 0 on the leader, -1 if a replica has not caught up yet
+     */
+    public long getReadStalenessMillis(){
+        ReplicationFollower follower = ReplicationFollower.getActiveFollower();
+        return follower == null ? 0 : follower.getStalenessMillis();
+    }
+
+    /**
+     * Returns whether this process runs as a read replica, which serves searches and lookups only.
+     * @return true if this process is a read replica, false otherwise
+     */
+    public boolean isReadOnlyReplica(){
+        return ReplicationFollower.isActive();
+    }
+
+    /**
+     * Rejects writes when this process runs as a read replica.
+     * @throws IllegalArgumentException if this process is a read replica
+     */
+    private void requireWritableNode(){
+        if (isReadOnlyReplica()) {
+            throw new IllegalArgumentException("This is a read-only replica. Create accounts and book rooms on the leader.");
+        }
+    }
+
 
 }
@@ -0,0 +1,31 @@
+package api;
+
+/**
+ * Thrown when admission control turns a request away because the service is overloaded. The request was not
+ * started, so it is safe to retry it after the suggested delay.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    /**
+     * Creates a new ServiceOverloadedException.
+     * @param operation the operation that was rejected
+     * @param retryAfterMillis how long the caller should wait before retrying
+     */
+    public ServiceOverloadedException(String operation, long retryAfterMillis) {
+        super("The service is busy and cannot take more " + operation + " requests. Retry in "
+                + retryAfterMillis + " ms.");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns how long the caller should wait before retrying.
+     * @return the suggested delay in milliseconds
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,319 @@
+package cluster;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomSearchType;
+import replication.MutationCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes hotel operations to a room ownership cluster. Room operations go to the node the consistent hash
+ * ring assigns the room to; searches and reservation lookups are scattered to every node and gathered.
+ * When a node reports that it does not hold a room, the client refreshes the membership and retries, which
+ * covers rooms that are moving between nodes.
+ */
+public class ClusterClient {
+
+    // How many times a misrouted room operation is retried
+    private static final int MAX_ROUTING_ATTEMPTS = 10;
+
+    // Pause between routing attempts while a room is moving
+    private static final long ROUTING_RETRY_MILLIS = 50;
+
+    private final Map<String, ClusterConnection> connections = new ConcurrentHashMap<>();
+    private final ExecutorService scatterExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-client-scatter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Creates a client that learns the cluster membership from the given node.
+     * @param seedNodeId the address of any member of the cluster
+     * @throws IOException if the seed cannot be reached
+     */
+    public ClusterClient(String seedNodeId) throws IOException {
+        List<String> members = connection(seedNodeId).call(ClusterProtocol.GET_MEMBERS, out -> { },
+                ClusterProtocol::readStrings);
+        this.ring = new ConsistentHashRing(members);
+    }
+
+    /**
+     * Returns the cluster members this client currently routes to.
+     * @return the member node IDs
+     */
+    public Collection<String> getMembers() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Creates a new customer on every node, so any node can book rooms for them.
+     * @param email the email address of the new customer
+     * @param firstName the first name of the new customer
+     * @param lastName the last name of the new customer
+     * @throws IOException if a node cannot be reached
+     */
+    public void createACustomer(String email, String firstName, String lastName) throws IOException {
+        Customer customer = new Customer(firstName, lastName, email);
+        if (getCustomer(email) != null) {
+            throw new IllegalArgumentException("A customer with the same email address already exists.");
+        }
+        for (String node : ring.getNodes()) {
+            connection(node).call(ClusterProtocol.ADD_CUSTOMER,
+                    out -> MutationCodec.writeCustomer(out, customer), in -> null);
+        }
+    }
+
+    /**
+     * Retrieves the customer with the given email address.
+     * @param email the email address of the customer to retrieve
+     * @return the customer, or null if no such customer exists
+     * @throws IOException if the cluster cannot be reached
+     */
+    public Customer getCustomer(String email) throws IOException {
+        return callAnyNode(ClusterProtocol.GET_CUSTOMER, out -> out.writeUTF(email),
+                in -> in.readBoolean() ? MutationCodec.readCustomer(in) : null);
+    }
+
+    /**
+     * Adds a room on the node that owns it.
+     * @param room the room to add
+     * @throws IOException if the owning node cannot be reached
+     */
+    public void addRoom(IRoom room) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                connection(ring.getOwner(room.getRoomNumber())).call(ClusterProtocol.ADD_ROOM,
+                        out -> MutationCodec.writeRoom(out, room), in -> null);
+                return;
+            } catch (ClusterConnection.MisroutedException e) {
+                awaitRouting(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the room with the given room number from whichever node holds it.
+     * @param roomNumber the room number of the room to retrieve
+     * @return the room, or null if no such room exists
+     * @throws IOException if the cluster cannot be reached
+     */
+    public IRoom getRoom(String roomNumber) throws IOException {
+        try {
+            return connection(ring.getOwner(roomNumber)).call(ClusterProtocol.GET_ROOM,
+                    out -> out.writeUTF(roomNumber), MutationCodec::readRoom);
+        } catch (ClusterConnection.MisroutedException e) {
+            // The room may be moving, or may not exist at all
+            String holder = locateRoom(roomNumber);
+            if (holder == null) {
+                return null;
+            }
+            try {
+                return connection(holder).call(ClusterProtocol.GET_ROOM,
+                        out -> out.writeUTF(roomNumber), MutationCodec::readRoom);
+            } catch (ClusterConnection.MisroutedException moved) {
+                return getRoom(roomNumber);
+            }
+        }
+    }
+
+    /**
+     * Books a room on the node that owns it.
+     * @param customerEmail the email address of the customer making the reservation
+     * @param roomNumber the number of the room to reserve
+     * @param checkInDate the check-in date of the reservation
+     * @param checkOutDate the check-out date of the reservation
+     * @return the new reservation
+     * @throws IllegalArgumentException if the customer or room does not exist, or the room is not available
+     * @throws IOException if the owning node cannot be reached
+     */
+    public Reservation bookARoom(String customerEmail, String roomNumber, Date checkInDate, Date checkOutDate)
+            throws IOException {
+        String node = ring.getOwner(roomNumber);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return connection(node).call(ClusterProtocol.RESERVE, out -> {
+                    out.writeUTF(customerEmail);
+                    out.writeUTF(roomNumber);
+                    out.writeLong(checkInDate.getTime());
+                    out.writeLong(checkOutDate.getTime());
+                }, ClusterProtocol::readReservation);
+            } catch (ClusterConnection.MisroutedException e) {
+                if (attempt >= MAX_ROUTING_ATTEMPTS) {
+                    throw new IllegalArgumentException("Room " + roomNumber + " does not exist.");
+                }
+                awaitRouting(attempt, e);
+                String holder = locateRoom(roomNumber);
+                node = holder != null ? holder : ring.getOwner(roomNumber);
+            }
+        }
+    }
+
+    /**
+     * Finds available rooms on every node and merges the results.
+     * @param checkIn the check-in date
+     * @param checkOut the check-out date
+     * @param roomSearchType the type of rooms to search for
+     * @return the available rooms, ordered by room number
+     * @throws IOException if a node cannot be reached
+     */
+    public Collection<IRoom> findARoom(Date checkIn, Date checkOut, RoomSearchType roomSearchType)
+            throws IOException {
+        Map<String, IRoom> rooms = new LinkedHashMap<>();
+        for (List<IRoom> nodeRooms : scatter(node -> connection(node).call(ClusterProtocol.FIND_ROOMS,
+                out -> ClusterProtocol.writeSearch(out, checkIn, checkOut, roomSearchType),
+                ClusterProtocol::readRooms))) {
+            // A room that is moving can briefly be reported by both nodes
+            for (IRoom room : nodeRooms) {
+                rooms.putIfAbsent(room.getRoomNumber(), room);
+            }
+        }
+        List<IRoom> result = new ArrayList<>(rooms.values());
+        result.sort(Comparator.comparing((IRoom room) -> Integer.parseInt(room.getRoomNumber())));
+        return result;
+    }
+
+    /**
+     * Retrieves the reservations of a customer from every node.
+     * @param customerEmail the email address of the customer
+     * @return the customer's reservations
+     * @throws IOException if a node cannot be reached
+     */
+    public Collection<Reservation> getCustomerReservations(String customerEmail) throws IOException {
+        Map<String, Reservation> reservations = new LinkedHashMap<>();
+        for (List<Reservation> nodeReservations : scatter(node -> connection(node).call(
+                ClusterProtocol.GET_CUSTOMER_RESERVATIONS, out -> out.writeUTF(customerEmail),
+                ClusterProtocol::readReservations))) {
+            for (Reservation reservation : nodeReservations) {
+                String key = reservation.getRoom().getRoomNumber() + "/" + reservation.getCheckinDate().getTime();
+                reservations.putIfAbsent(key, reservation);
+            }
+        }
+        return new ArrayList<>(reservations.values());
+    }
+
+    /**
+     * Closes all connections held by this client.
+     */
+    public void close() {
+        scatterExecutor.shutdownNow();
+        for (ClusterConnection connection : connections.values()) {
+            connection.close();
+        }
+    }
+
+    /**
+     * A call made against a single node.
+     */
+    private interface NodeCall<T> {
+        T call(String node) throws IOException;
+    }
+
+    /**
+     * Runs a call on every node in parallel and collects the results.
+     */
+    private <T> List<T> scatter(NodeCall<T> call) throws IOException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (String node : ring.getNodes()) {
+            futures.add(scatterExecutor.submit(() -> {
+                try {
+                    return call.call(node);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                if (e.getCause() instanceof IllegalArgumentException) {
+                    throw (IllegalArgumentException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for cluster nodes", e);
+            }
+        }
+        return results;
+    }
+
+    private void awaitRouting(int attempt, ClusterConnection.MisroutedException cause) throws IOException {
+        if (attempt >= MAX_ROUTING_ATTEMPTS) {
+            throw cause;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ROUTING_RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+        refreshMembership();
+    }
+
+    private void refreshMembership() throws IOException {
+        ring = new ConsistentHashRing(callAnyNode(ClusterProtocol.GET_MEMBERS, out -> { },
+                ClusterProtocol::readStrings));
+    }
+
+    /**
+     * Asks every node whether it currently holds the given room.
+     * @return the node holding the room, or null if no node holds it
+     */
+    private String locateRoom(String roomNumber) throws IOException {
+        for (String node : ring.getNodes()) {
+            try {
+                connection(node).call(ClusterProtocol.GET_ROOM, out -> out.writeUTF(roomNumber),
+                        MutationCodec::readRoom);
+                return node;
+            } catch (ClusterConnection.MisroutedException notHere) {
+                // Try the next node
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a request to the first reachable member.
+     */
+    private <T> T callAnyNode(byte command, ClusterConnection.RequestWriter writer,
+                              ClusterConnection.ResponseReader<T> reader) throws IOException {
+        IOException failure = null;
+        for (String node : ring.getNodes()) {
+            try {
+                return connection(node).call(command, writer, reader);
+            } catch (ClusterConnection.MisroutedException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure != null ? failure : new IOException("The cluster has no nodes.");
+    }
+
+    private ClusterConnection connection(String node) {
+        return connections.computeIfAbsent(node, ClusterConnection::new);
+    }
+}
@@ -0,0 +1,130 @@
+package cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * A reusable request/response connection to one cluster node. Calls are serialized per connection;
+ * a broken connection is reopened once before the call fails.
+ */
+class ClusterConnection {
+
+    /**
+     * Writes the arguments of a request.
+     */
+    interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the payload of a successful response.
+     */
+    interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Thrown when a node answers that it does not hold, or does not own, the requested room.
+     */
+    static class MisroutedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final byte status;
+
+        MisroutedException(byte status) {
+            super(status == ClusterProtocol.WRONG_NODE ? "Room is owned by another node" : "Room is not on this node");
+            this.status = status;
+        }
+
+        byte getStatus() {
+            return status;
+        }
+    }
+
+    private final String nodeId;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    /**
+     * Creates a connection that is opened on first use.
+     * @param nodeId the node address as host:port
+     */
+    ClusterConnection(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Sends a request and reads its response.
+     * @param command the command byte
+     * @param writer writes the command arguments
+     * @param reader reads the payload of an OK response
+     * @return the decoded payload
+     * @throws IllegalArgumentException if the node rejected the request, with the node's message
+     * @throws MisroutedException if the node does not hold the requested room
+     * @throws IOException if the node cannot be reached
+     */
+    synchronized <T> T call(byte command, RequestWriter writer, ResponseReader<T> reader) throws IOException {
+        try {
+            return send(command, writer, reader);
+        } catch (MisroutedException e) {
+            throw e;
+        } catch (IOException e) {
+            // The node may have restarted or closed an idle connection; retry once on a fresh one
+            close();
+            return send(command, writer, reader);
+        }
+    }
+
+    private <T> T send(byte command, RequestWriter writer, ResponseReader<T> reader) throws IOException {
+        if (socket == null) {
+            open();
+        }
+        out.writeByte(command);
+        writer.write(out);
+        out.flush();
+        byte status = in.readByte();
+        switch (status) {
+            case ClusterProtocol.OK:
+                return reader.read(in);
+            case ClusterProtocol.ERROR:
+                throw new IllegalArgumentException(in.readUTF());
+            case ClusterProtocol.ROOM_NOT_HERE:
+            case ClusterProtocol.WRONG_NODE:
+                throw new MisroutedException(status);
+            default:
+                close();
+                throw new IOException("Unknown response status from " + nodeId + ": " + status);
+        }
+    }
+
+    private void open() throws IOException {
+        String[] address = nodeId.split(":");
+        socket = new Socket(address[0], Integer.parseInt(address[1]));
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Closes the underlying socket; the next call reopens it.
+     */
+    synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+            socket = null;
+        }
+    }
+}
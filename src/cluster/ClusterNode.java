@@ -0,0 +1,432 @@
+package cluster;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomSearchType;
+import replication.MutationCodec;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One process of a room ownership cluster. The node holds the authoritative ReservationService state for
+ * the rooms the consistent hash ring assigns to it, and a copy of every customer so it can book its rooms
+ * without asking other nodes.
+ *
+ * When membership changes, each node hands the rooms it no longer owns, together with their reservations,
+ * to the new owner. A room is installed on the new owner before it is removed here, so it is always held
+ * by at least one node and searches keep working during the move; bookings for a room that is moving are
+ * briefly refused and retried by the client on the new owner.
+ */
+public class ClusterNode {
+
+    // How long to wait before retrying a room hand-over that failed
+    private static final long REBALANCE_RETRY_MILLIS = 1000;
+
+    // How many hand-over rounds a leaving node attempts before it gives up on unreachable owners
+    private static final int MAX_LEAVE_ATTEMPTS = 5;
+
+    private final String nodeId;
+    private final ServerSocket serverSocket;
+    private final Map<String, ClusterConnection> peers = new ConcurrentHashMap<>();
+    private final ExecutorService rebalancer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-rebalancer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guards bookings against room hand-overs, so no booking is lost while a room moves
+    private final Object ownershipLock = new Object();
+
+    // Rooms currently being handed over; bookings for them are retried by the client on the new owner
+    private final Set<String> movingRooms = new HashSet<>();
+
+    // Serializes membership changes coordinated by this node
+    private final Object membershipLock = new Object();
+
+    private volatile ConsistentHashRing ring;
+    private volatile boolean running = true;
+
+    /**
+     * Starts a node listening on the given local port. The node forms a cluster of its own until it joins
+     * another one.
+     * @param port the port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public ClusterNode(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.nodeId = "localhost:" + serverSocket.getLocalPort();
+        this.ring = new ConsistentHashRing(Collections.singleton(nodeId));
+        Thread acceptor = new Thread(this::acceptConnections, "cluster-node-" + nodeId);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the address other nodes and clients use for this node.
+     * @return the node ID as host:port
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns the nodes this node currently considers members of the cluster.
+     * @return the member node IDs
+     */
+    public Collection<String> getMembers() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Joins the cluster that the given seed node belongs to and copies its customers. Rooms that the new
+     * ring assigns to this node are handed over by their previous owners in the background.
+     * @param seedNodeId the address of any member of the cluster
+     * @throws IOException if the seed cannot be reached
+     */
+    public void join(String seedNodeId) throws IOException {
+        ClusterConnection seed = peer(seedNodeId);
+        List<String> members = seed.call(ClusterProtocol.JOIN, out -> out.writeUTF(nodeId),
+                ClusterProtocol::readStrings);
+        setMembers(members);
+        for (Customer customer : seed.call(ClusterProtocol.GET_ALL_CUSTOMERS, out -> { },
+                ClusterProtocol::readCustomers)) {
+            addCustomerIfAbsent(customer);
+        }
+    }
+
+    /**
+     * Leaves the cluster: tells the other members to route around this node, hands every local room to its
+     * new owner and stops serving requests. Rooms whose new owner stays unreachable are lost with this node.
+     */
+    public void leave() {
+        TreeSet<String> remaining = new TreeSet<>(ring.getNodes());
+        remaining.remove(nodeId);
+        if (!remaining.isEmpty()) {
+            broadcastMembers(remaining);
+            ring = new ConsistentHashRing(remaining);
+            for (int attempt = 1; !handOverForeignRooms() && attempt < MAX_LEAVE_ATTEMPTS; attempt++) {
+                sleepQuietly(REBALANCE_RETRY_MILLIS);
+            }
+        }
+        running = false;
+        rebalancer.shutdownNow();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+        for (ClusterConnection connection : peers.values()) {
+            connection.close();
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serve(socket), "cluster-handler-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Cluster: failed to accept a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            while (running) {
+                byte command = in.readByte();
+                try {
+                    handle(command, in, out);
+                } catch (IllegalArgumentException e) {
+                    out.writeByte(ClusterProtocol.ERROR);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // The peer closed the connection
+        } catch (IOException e) {
+            if (running) {
+                System.out.println("Cluster: connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Executes one command and writes its response. Arguments are always read completely before anything
+     * is written, so a rejected request leaves the connection usable.
+     */
+    private void handle(byte command, DataInputStream in, DataOutputStream out) throws IOException {
+        CustomerService customerService = CustomerService.getInstance();
+        ReservationService reservationService = ReservationService.getInstance();
+        switch (command) {
+            case ClusterProtocol.GET_MEMBERS:
+                out.writeByte(ClusterProtocol.OK);
+                ClusterProtocol.writeStrings(out, ring.getNodes());
+                break;
+            case ClusterProtocol.JOIN: {
+                String joiningNode = in.readUTF();
+                TreeSet<String> members;
+                synchronized (membershipLock) {
+                    members = new TreeSet<>(ring.getNodes());
+                    members.add(joiningNode);
+                    broadcastMembers(members);
+                    setMembers(members);
+                }
+                out.writeByte(ClusterProtocol.OK);
+                ClusterProtocol.writeStrings(out, members);
+                break;
+            }
+            case ClusterProtocol.SET_MEMBERS:
+                setMembers(ClusterProtocol.readStrings(in));
+                out.writeByte(ClusterProtocol.OK);
+                break;
+            case ClusterProtocol.ADD_CUSTOMER: {
+                Customer customer = MutationCodec.readCustomer(in);
+                addCustomerIfAbsent(customer);
+                out.writeByte(ClusterProtocol.OK);
+                break;
+            }
+            case ClusterProtocol.GET_CUSTOMER: {
+                Customer customer = customerService.getCustomer(in.readUTF());
+                out.writeByte(ClusterProtocol.OK);
+                out.writeBoolean(customer != null);
+                if (customer != null) {
+                    MutationCodec.writeCustomer(out, customer);
+                }
+                break;
+            }
+            case ClusterProtocol.GET_ALL_CUSTOMERS:
+                out.writeByte(ClusterProtocol.OK);
+                ClusterProtocol.writeCustomers(out, customerService.getAllCustomers());
+                break;
+            case ClusterProtocol.ADD_ROOM: {
+                IRoom room = MutationCodec.readRoom(in);
+                if (!ring.getOwner(room.getRoomNumber()).equals(nodeId)) {
+                    out.writeByte(ClusterProtocol.WRONG_NODE);
+                    break;
+                }
+                if (reservationService.getARoom(room.getRoomNumber()) != null) {
+                    throw new IllegalArgumentException("Room with number " + room.getRoomNumber() + " already exists.");
+                }
+                reservationService.addRoom(room);
+                out.writeByte(ClusterProtocol.OK);
+                break;
+            }
+            case ClusterProtocol.GET_ROOM: {
+                IRoom room = reservationService.getARoom(in.readUTF());
+                if (room == null) {
+                    out.writeByte(ClusterProtocol.ROOM_NOT_HERE);
+                    break;
+                }
+                out.writeByte(ClusterProtocol.OK);
+                MutationCodec.writeRoom(out, room);
+                break;
+            }
+            case ClusterProtocol.RESERVE: {
+                String email = in.readUTF();
+                String roomNumber = in.readUTF();
+                Date checkIn = new Date(in.readLong());
+                Date checkOut = new Date(in.readLong());
+                Reservation reservation;
+                synchronized (ownershipLock) {
+                    IRoom room = reservationService.getARoom(roomNumber);
+                    if (room == null || movingRooms.contains(roomNumber)) {
+                        out.writeByte(ClusterProtocol.ROOM_NOT_HERE);
+                        break;
+                    }
+                    Customer customer = customerService.getCustomer(email);
+                    if (customer == null) {
+                        throw new IllegalArgumentException("Customer with given email is not in the system. Create an account first");
+                    }
+                    reservation = reservationService.reserveARoom(customer, room, checkIn, checkOut);
+                }
+                out.writeByte(ClusterProtocol.OK);
+                ClusterProtocol.writeReservation(out, reservation);
+                break;
+            }
+            case ClusterProtocol.FIND_ROOMS: {
+                Date checkIn = new Date(in.readLong());
+                Date checkOut = new Date(in.readLong());
+                RoomSearchType roomSearchType = RoomSearchType.values()[in.readByte()];
+                Collection<IRoom> rooms = reservationService.findRooms(checkIn, checkOut, roomSearchType);
+                out.writeByte(ClusterProtocol.OK);
+                ClusterProtocol.writeRooms(out, rooms);
+                break;
+            }
+            case ClusterProtocol.GET_CUSTOMER_RESERVATIONS: {
+                Customer customer = customerService.getCustomer(in.readUTF());
+                Collection<Reservation> reservations = customer == null
+                        ? Collections.<Reservation>emptyList()
+                        : reservationService.getCustomerReservations(customer);
+                out.writeByte(ClusterProtocol.OK);
+                ClusterProtocol.writeReservations(out, reservations);
+                break;
+            }
+            case ClusterProtocol.MIGRATE_ROOM: {
+                IRoom room = MutationCodec.readRoom(in);
+                List<Reservation> reservations = ClusterProtocol.readReservations(in);
+                installRoom(room, reservations);
+                out.writeByte(ClusterProtocol.OK);
+                break;
+            }
+            default:
+                throw new IOException("Unknown cluster command: " + command);
+        }
+    }
+
+    /**
+     * Installs a room handed over by its previous owner. Installing is idempotent, so a hand-over that is
+     * retried after a lost acknowledgement does not duplicate reservations.
+     */
+    private void installRoom(IRoom room, List<Reservation> reservations) {
+        ReservationService reservationService = ReservationService.getInstance();
+        synchronized (ownershipLock) {
+            if (reservationService.getARoom(room.getRoomNumber()) == null) {
+                reservationService.addRoom(room);
+            }
+            IRoom localRoom = reservationService.getARoom(room.getRoomNumber());
+            Collection<Reservation> existing = reservationService.getRoomReservations(localRoom);
+            for (Reservation reservation : reservations) {
+                if (!containsStay(existing, reservation)) {
+                    Customer customer = addCustomerIfAbsent(reservation.getCustomer());
+                    reservationService.reserveARoom(customer, localRoom,
+                            reservation.getCheckinDate(), reservation.getCheckoutDate());
+                }
+            }
+        }
+    }
+
+    private boolean containsStay(Collection<Reservation> reservations, Reservation candidate) {
+        for (Reservation reservation : reservations) {
+            if (reservation.getCustomer().equals(candidate.getCustomer())
+                    && reservation.getCheckinDate().equals(candidate.getCheckinDate())
+                    && reservation.getCheckoutDate().equals(candidate.getCheckoutDate())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Customer addCustomerIfAbsent(Customer customer) {
+        CustomerService customerService = CustomerService.getInstance();
+        synchronized (customerService) {
+            Customer existing = customerService.getCustomer(customer.getEmail());
+            if (existing != null) {
+                return existing;
+            }
+            customerService.addCustomer(customer.getEmail(), customer.getFirstName(), customer.getLastName());
+            return customerService.getCustomer(customer.getEmail());
+        }
+    }
+
+    /**
+     * Adopts a new membership and starts handing over the rooms this node no longer owns.
+     */
+    private void setMembers(Collection<String> members) {
+        ring = new ConsistentHashRing(members);
+        rebalancer.submit(this::rebalance);
+    }
+
+    private void rebalance() {
+        while (running && !handOverForeignRooms()) {
+            sleepQuietly(REBALANCE_RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * Moves every local room whose owner under the current ring is another node.
+     * @return true if all such rooms were moved, false if some owner could not be reached
+     */
+    private boolean handOverForeignRooms() {
+        ReservationService reservationService = ReservationService.getInstance();
+        boolean complete = true;
+        for (IRoom room : reservationService.getAllRooms()) {
+            String owner = ring.getOwner(room.getRoomNumber());
+            if (owner.equals(nodeId)) {
+                continue;
+            }
+            // Freeze bookings for the room, but do not hold the lock across the network call: the new owner
+            // may be handing rooms to this node at the same time
+            Collection<Reservation> reservations;
+            synchronized (ownershipLock) {
+                movingRooms.add(room.getRoomNumber());
+                reservations = reservationService.getRoomReservations(room);
+            }
+            try {
+                peer(owner).call(ClusterProtocol.MIGRATE_ROOM, out -> {
+                    MutationCodec.writeRoom(out, room);
+                    ClusterProtocol.writeReservations(out, reservations);
+                }, in -> null);
+                synchronized (ownershipLock) {
+                    reservationService.removeRoom(room);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Cluster: could not hand room " + room.getRoomNumber() + " to " + owner
+                        + ": " + e.getMessage());
+                complete = false;
+            } finally {
+                synchronized (ownershipLock) {
+                    movingRooms.remove(room.getRoomNumber());
+                }
+            }
+        }
+        return complete;
+    }
+
+    private void broadcastMembers(Collection<String> members) {
+        for (String member : members) {
+            if (member.equals(nodeId)) {
+                continue;
+            }
+            try {
+                peer(member).call(ClusterProtocol.SET_MEMBERS,
+                        out -> ClusterProtocol.writeStrings(out, members), in -> null);
+            } catch (IOException e) {
+                System.out.println("Cluster: could not reach " + member + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private ClusterConnection peer(String peerId) {
+        return peers.computeIfAbsent(peerId, ClusterConnection::new);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
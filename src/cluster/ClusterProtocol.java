@@ -0,0 +1,140 @@
+package cluster;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomSearchType;
+import replication.MutationCodec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Commands, status codes and value encodings shared by cluster nodes and the cluster client.
+ * Every request is a command byte followed by its arguments; every response starts with a status byte.
+ */
+public class ClusterProtocol {
+
+    // Commands
+    public static final byte GET_MEMBERS = 1;
+    public static final byte JOIN = 2;
+    public static final byte SET_MEMBERS = 3;
+    public static final byte ADD_CUSTOMER = 4;
+    public static final byte GET_CUSTOMER = 5;
+    public static final byte GET_ALL_CUSTOMERS = 6;
+    public static final byte ADD_ROOM = 7;
+    public static final byte GET_ROOM = 8;
+    public static final byte RESERVE = 9;
+    public static final byte FIND_ROOMS = 10;
+    public static final byte GET_CUSTOMER_RESERVATIONS = 11;
+    public static final byte MIGRATE_ROOM = 12;
+
+    // Response status codes
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+    // The node does not hold the requested room (it may never have existed or may be moving)
+    public static final byte ROOM_NOT_HERE = 2;
+    // The node's ring assigns the room to another node
+    public static final byte WRONG_NODE = 3;
+
+    /**
+     * Private constructor prevents instantiation of this utility class.
+     */
+    private ClusterProtocol() {}
+
+    public static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    public static void writeRooms(DataOutputStream out, Collection<IRoom> rooms) throws IOException {
+        out.writeInt(rooms.size());
+        for (IRoom room : rooms) {
+            MutationCodec.writeRoom(out, room);
+        }
+    }
+
+    public static List<IRoom> readRooms(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<IRoom> rooms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rooms.add(MutationCodec.readRoom(in));
+        }
+        return rooms;
+    }
+
+    public static void writeCustomers(DataOutputStream out, Collection<Customer> customers) throws IOException {
+        out.writeInt(customers.size());
+        for (Customer customer : customers) {
+            MutationCodec.writeCustomer(out, customer);
+        }
+    }
+
+    public static List<Customer> readCustomers(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Customer> customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            customers.add(MutationCodec.readCustomer(in));
+        }
+        return customers;
+    }
+
+    /**
+     * Writes a self-contained reservation, including the full customer and room, so it can be decoded on
+     * a node or client that does not hold either of them.
+     */
+    public static void writeReservation(DataOutputStream out, Reservation reservation) throws IOException {
+        MutationCodec.writeCustomer(out, reservation.getCustomer());
+        MutationCodec.writeRoom(out, reservation.getRoom());
+        out.writeLong(reservation.getCheckinDate().getTime());
+        out.writeLong(reservation.getCheckoutDate().getTime());
+    }
+
+    public static Reservation readReservation(DataInputStream in) throws IOException {
+        Customer customer = MutationCodec.readCustomer(in);
+        IRoom room = MutationCodec.readRoom(in);
+        Date checkinDate = new Date(in.readLong());
+        Date checkoutDate = new Date(in.readLong());
+        return new Reservation(customer, room, checkinDate, checkoutDate);
+    }
+
+    public static void writeReservations(DataOutputStream out, Collection<Reservation> reservations)
+            throws IOException {
+        out.writeInt(reservations.size());
+        for (Reservation reservation : reservations) {
+            writeReservation(out, reservation);
+        }
+    }
+
+    public static List<Reservation> readReservations(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<Reservation> reservations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            reservations.add(readReservation(in));
+        }
+        return reservations;
+    }
+
+    public static void writeSearch(DataOutputStream out, Date checkIn, Date checkOut, RoomSearchType roomSearchType)
+            throws IOException {
+        out.writeLong(checkIn.getTime());
+        out.writeLong(checkOut.getTime());
+        out.writeByte(roomSearchType.ordinal());
+    }
+}
@@ -0,0 +1,76 @@
+package cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An immutable consistent hash ring mapping room numbers to the cluster node that owns them.
+ * Every node is placed on the ring at many virtual positions, so adding or removing a node only moves
+ * about 1/N of the rooms and spreads them evenly over the remaining nodes.
+ */
+public class ConsistentHashRing {
+
+    // Number of positions each node occupies on the ring
+    private static final int VIRTUAL_NODES = 128;
+
+    private final SortedSet<String> nodes;
+    private final TreeMap<Long, String> positions = new TreeMap<>();
+
+    /**
+     * Creates a ring for the given nodes.
+     * @param nodes the node IDs (host:port) that share the rooms
+     */
+    public ConsistentHashRing(Collection<String> nodes) {
+        this.nodes = Collections.unmodifiableSortedSet(new TreeSet<>(nodes));
+        for (String node : this.nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                positions.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node that owns the given room.
+     * @param roomNumber the room number
+     * @return the owning node ID
+     * @throws IllegalArgumentException if the ring has no nodes
+     */
+    public String getOwner(String roomNumber) {
+        if (positions.isEmpty()) {
+            throw new IllegalArgumentException("The cluster has no nodes.");
+        }
+        Map.Entry<Long, String> entry = positions.ceilingEntry(hash(roomNumber));
+        return entry != null ? entry.getValue() : positions.firstEntry().getValue();
+    }
+
+    /**
+     * Returns the nodes on the ring.
+     * @return the node IDs in sorted order
+     */
+    public SortedSet<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Hashes a key with 64-bit FNV-1a followed by a bit mixer, so that similar room numbers spread
+     * over the whole ring.
+     * @param key the key to hash
+     * @return the ring position
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -4,11 +4,14 @@ import api.AdminResource;
 import api.HotelResource;
 import model.*;
 import service.CustomerService;
+import service.ExportService;
 import service.ReservationService;
+import service.RoomInventoryWatcher;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -23,7 +26,14 @@ public class AdminMenu extends Menu{
     public static final int SEE_ALL_RESERVATIONS = 3;
     public static final int ADD_ROOM = 4;
     public static final int LOAD_ROOMS_FROM_CSV = 5;
-    public static final int BACK_TO_MAIN_MENU = 6;
+    public static final int SET_NIGHTLY_RATES = 6;
+    public static final int EXPORT_DATA = 7;
+    public static final int SEARCH_CUSTOMERS = 8;
+    public static final int ARRIVALS_AND_DEPARTURES = 9;
+    public static final int BACK_TO_MAIN_MENU = 10;
+
+    // Most customers a search shows
+    private static final int CUSTOMER_SEARCH_LIMIT = 20;
 
     /**
      * Displays the admin menu and processes user input.
@@ -39,7 +49,11 @@ public class AdminMenu extends Menu{
                     "3. See all reservations\n" +
                     "4. Add a room\n" +
                     "5. Load rooms from CSV file\n" +
-                    "6. Back to Main Menu\n");
+                    "6. Set weekend or seasonal rates\n" +
+                    "7. Export data to files\n" +
+                    "8. Search customers\n" +
+                    "9. Arrivals, departures and stays\n" +
+                    "10. Back to Main Menu\n");
 
             int choice = getUserChoice(scanner);
 
@@ -60,11 +74,23 @@ public class AdminMenu extends Menu{
                 case LOAD_ROOMS_FROM_CSV:
                     loadRoomsFromCsv(scanner);
                     break;
+                case SET_NIGHTLY_RATES:
+                    setNightlyRates(scanner);
+                    break;
+                case EXPORT_DATA:
+                    exportData(scanner);
+                    break;
+                case SEARCH_CUSTOMERS:
+                    searchCustomers(scanner);
+                    break;
+                case ARRIVALS_AND_DEPARTURES:
+                    displayArrivalsAndDepartures(scanner);
+                    break;
                 case BACK_TO_MAIN_MENU:
                     quit = true;
                     break;
                 default:
-                    System.out.println("Invalid choice. Please enter a number between 1 and 6.");
+                    System.out.println("Invalid choice. Please enter a number between 1 and 10.");
                     break;
             }
         }
@@ -86,6 +112,32 @@ public class AdminMenu extends Menu{
         }
     }
 
+    /**
+     * Prompts for a name or email prefix and displays the matching customers.
+     *
+     * @param scanner the Scanner object for reading user input
+     */
+    private static void searchCustomers(Scanner scanner) {
+        System.out.println("\n*** Search Customers ***");
+        System.out.print("Enter the beginning of a last name, first name or email: ");
+        String query = scanner.nextLine().trim();
+        if (query.isEmpty()) {
+            System.out.println("Please enter at least one character.");
+            return;
+        }
+        List<Customer> customers = adminResource.searchCustomers(query, CUSTOMER_SEARCH_LIMIT);
+        if (customers.isEmpty()) {
+            System.out.println("No customers match " + query);
+            return;
+        }
+        for (Customer customer : customers) {
+            System.out.println(customer);
+        }
+        if (customers.size() == CUSTOMER_SEARCH_LIMIT) {
+            System.out.println("Showing the first " + CUSTOMER_SEARCH_LIMIT + " matches. Type more to narrow the search.");
+        }
+    }
+
     /**
      * Displays all rooms in the system.
      */
@@ -191,14 +243,26 @@ public class AdminMenu extends Menu{
                 }
             }
 
+            // Get the optional attributes guests can filter on
+            Set<RoomAttribute> attributes;
+            while (true) {
+                System.out.print("Enter room attributes, e.g. floor=3 view=sea accessible=yes (or press Enter for none): ");
+                try {
+                    attributes = RoomAttribute.parseAll(scanner.nextLine());
+                    break;
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+
             // Create a room object based on the entered information
 
             try {
                 IRoom room;
                 if (roomPrice == 0.0) {
-                    room = new FreeRoom(roomNumber, roomType);
+                    room = new FreeRoom(roomNumber, roomType, attributes);
                 } else {
-                    room = new Room(roomNumber, roomPrice, roomType);
+                    room = new Room(roomNumber, roomPrice, roomType, attributes);
                 }
                 // Add the room to the set of rooms
                 rooms.add(room);
@@ -216,10 +280,136 @@ public class AdminMenu extends Menu{
         } while (addAnotherRoom);
 
         // Add the rooms to the hotel system
-        adminResource.addRooms(new ArrayList<>(rooms));
-        System.out.println("Rooms added successfully!");
+        try {
+            adminResource.addRooms(new ArrayList<>(rooms));
+            System.out.println("Rooms added successfully!");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+
+    /**
+     * Prompts for a nightly rate adjustment of a room type over a range of nights, e.g. a weekend surcharge
+     * or a low-season discount, and applies it.
+     *
+     * @param scanner the Scanner object for reading user input
+     */
+    private static void setNightlyRates(Scanner scanner) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+
+        System.out.println("\n*** Set Weekend or Seasonal Rates ***");
+        try {
+            System.out.print("Enter room type (1 for Single, 2 for Double): ");
+            String roomTypeChoice = scanner.nextLine().trim();
+            RoomType roomType;
+            if (roomTypeChoice.equals("1")) {
+                roomType = RoomType.SINGLE;
+            } else if (roomTypeChoice.equals("2")) {
+                roomType = RoomType.DOUBLE;
+            } else {
+                System.out.println("Invalid choice. Please enter 1 for Single or 2 for Double.");
+                return;
+            }
+            System.out.print("Enter the first night (YYYY-MM-DD): ");
+            Date firstNight = dateFormat.parse(scanner.nextLine().trim());
+            System.out.print("Enter the last night (YYYY-MM-DD): ");
+            Date lastNight = dateFormat.parse(scanner.nextLine().trim());
+            System.out.print("Enter the adjustment per night (negative for a discount): ");
+            double amount = Double.parseDouble(scanner.nextLine().trim());
+            System.out.print("Apply to Friday and Saturday nights only? Y/N: ");
+            boolean weekendsOnly = scanner.nextLine().trim().equalsIgnoreCase("Y");
+
+            adminResource.setNightlyRateAdjustment(roomType, firstNight, lastNight, amount, weekendsOnly);
+            System.out.println("Rates updated successfully!");
+        } catch (ParseException e) {
+            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please enter the adjustment in numeric format.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
     }
 
+    /**
+     * Prompts for a day and displays who checks in and out that day, or, if a last date is entered as well,
+     * every reservation that overlaps the range.
+     *
+     * @param scanner the Scanner object for reading user input
+     */
+    private static void displayArrivalsAndDepartures(Scanner scanner) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+
+        System.out.println("\n*** Arrivals, Departures and Stays ***");
+        try {
+            System.out.print("Enter a date (YYYY-MM-DD): ");
+            Date from = dateFormat.parse(scanner.nextLine().trim());
+            System.out.print("Enter the last date of a range (YYYY-MM-DD), or press Enter for that day only: ");
+            String to = scanner.nextLine().trim();
+            if (to.isEmpty()) {
+                displayReservations("Arrivals", adminResource.getArrivals(from));
+                displayReservations("Departures", adminResource.getDepartures(from));
+            } else {
+                displayReservations("Stays", adminResource.getReservationsOverlapping(from, dateFormat.parse(to)));
+            }
+        } catch (ParseException e) {
+            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static void displayReservations(String title, List<Reservation> reservations) {
+        System.out.println(title + ": " + reservations.size());
+        for (Reservation reservation : reservations) {
+            System.out.println(reservation);
+        }
+    }
+
+    /**
+     * Prompts for a directory, a file format and an optional check-in date range, and exports rooms,
+     * customers and reservations there.
+     *
+     * @param scanner the Scanner object for reading user input
+     */
+    private static void exportData(Scanner scanner) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        dateFormat.setLenient(false);
+
+        System.out.println("\n*** Export Data ***");
+        try {
+            System.out.print("Enter the directory to export to: ");
+            String directory = scanner.nextLine().trim();
+            System.out.print("Enter the format (1 for CSV, 2 for compressed columnar): ");
+            String formatChoice = scanner.nextLine().trim();
+            ExportService.Format format;
+            if (formatChoice.equals("1")) {
+                format = ExportService.Format.CSV;
+            } else if (formatChoice.equals("2")) {
+                format = ExportService.Format.COLUMNAR;
+            } else {
+                System.out.println("Invalid choice. Please enter 1 for CSV or 2 for compressed columnar.");
+                return;
+            }
+            System.out.print("Enter the first check-in date to export (YYYY-MM-DD), or press Enter for all: ");
+            String from = scanner.nextLine().trim();
+            Date fromCheckIn = from.isEmpty() ? null : dateFormat.parse(from);
+            System.out.print("Enter the last check-in date to export (YYYY-MM-DD), or press Enter for all: ");
+            String to = scanner.nextLine().trim();
+            Date toCheckIn = to.isEmpty() ? null : dateFormat.parse(to);
+
+            long exported = adminResource.exportData(directory, format, fromCheckIn, toCheckIn);
+            System.out.println("Exported " + exported + " reservations with all rooms and customers to " + directory);
+        } catch (ParseException e) {
+            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+        } catch (IOException e) {
+            System.out.println("Error writing export files: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
     /**
      * Loads rooms from a CSV file and adds them to the system.
@@ -250,31 +440,7 @@ public class AdminMenu extends Menu{
      * @throws IOException If there's an error reading the file.
      */
     private static List<IRoom> readRoomsFromCsv(String filePath) throws IOException, IllegalArgumentException {
-        List<IRoom> rooms = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(",");
-                if (values.length < 3) {
-                    throw new IllegalArgumentException("Each line must have 3 values separated by commas:" +
-                            " roomNumber, price, roomType");
-                }
-
-                String roomNumber = values[0];
-                double roomPrice = Double.parseDouble(values[1]);
-                RoomType roomType = RoomType.valueOf(values[2].toUpperCase());
-
-                IRoom room;
-                if (roomPrice == 0.0) {
-                    room = new FreeRoom(roomNumber, roomType);
-                } else {
-                    room = new Room(roomNumber, roomPrice, roomType);
-                }
-
-                rooms.add(room);
-            }
-        }
-        return rooms;
+        return RoomInventoryWatcher.readRooms(Paths.get(filePath));
     }
 
 
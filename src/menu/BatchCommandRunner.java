@@ -0,0 +1,412 @@
+package menu;
+
+import api.AdminResource;
+import api.HotelResource;
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomAttribute;
+import model.RoomSearchType;
+import model.RoomType;
+import model.RoomTypeBooking;
+import service.CustomerService;
+import service.ExportService;
+import service.ReservationService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Runs hotel commands without the interactive menus, for scripts and bulk operations.
+ *
+ * Input has one command per line; blank lines and lines starting with # are skipped. Arguments are separated
+ * by whitespace, dates use YYYY-MM-DD and room attributes are name=value pairs joined by semicolons, e.g.
+ * floor=3;view=sea:
+ * <pre>
+ * create-customer EMAIL FIRST_NAME LAST_NAME
+ * add-room NUMBER PRICE SINGLE|DOUBLE [ATTRIBUTES]
+ * search CHECK_IN CHECK_OUT [FREE|PAID|BOTH [ATTRIBUTES]]
+ * book EMAIL ROOM_NUMBER CHECK_IN CHECK_OUT [REQUEST_KEY]
+ * cancel EMAIL ROOM_NUMBER CHECK_IN
+ * list-rooms
+ * list-customers
+ * list-reservations [EMAIL]
+ * arrivals DAY
+ * departures DAY
+ * stays FROM TO
+ * export DIRECTORY CSV|COLUMNAR [FROM_CHECK_IN TO_CHECK_IN]
+ * </pre>
+ * Every command produces exactly one line of JSON on the output, e.g.
+ * {"line":3,"command":"book","status":"ok","result":{...}} or
+ * {"line":4,"command":"book","status":"error","message":"..."}. A failing command does not stop the batch.
+ */
+public class BatchCommandRunner {
+
+    private static final HotelResource hotelResource = HotelResource.getInstance(
+            CustomerService.getInstance(), ReservationService.getInstance());
+    private static final AdminResource adminResource = AdminResource.getInstance(
+            CustomerService.getInstance(), ReservationService.getInstance());
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private final Writer output;
+    private int failedCount;
+
+    /**
+     * Creates a runner that writes its results to the given output. The output should be buffered; it is
+     * flushed once at the end of the batch.
+     * @param output where the result lines go
+     */
+    public BatchCommandRunner(Writer output) {
+        this.output = output;
+        this.dateFormat.setLenient(false);
+    }
+
+    /**
+     * Executes every command of the input in order.
+     * @param input the commands
+     * @return the number of commands that failed
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public int run(BufferedReader input) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = input.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            execute(lineNumber, line.split("\\s+"));
+        }
+        output.flush();
+        return failedCount;
+    }
+
+    private void execute(int lineNumber, String[] args) throws IOException {
+        StringBuilder result = new StringBuilder();
+        String status = "ok";
+        try {
+            switch (args[0]) {
+                case "create-customer":
+                    requireArguments(args, 4);
+                    hotelResource.createACustomer(args[1], args[2], args[3]);
+                    appendCustomer(result, hotelResource.getCustomer(args[1]));
+                    break;
+                case "add-room":
+                    if (args.length != 4 && args.length != 5) {
+                        throw new IllegalArgumentException("Command add-room takes 3 or 4 arguments, got "
+                                + (args.length - 1));
+                    }
+                    addRoom(result, args);
+                    break;
+                case "search":
+                    if (args.length < 3 || args.length > 5) {
+                        throw new IllegalArgumentException("Command search takes 2 to 4 arguments, got "
+                                + (args.length - 1));
+                    }
+                    RoomSearchType roomSearchType = args.length >= 4
+                            ? parseSearchType(args[3]) : RoomSearchType.BOTH;
+                    Set<RoomAttribute> requiredAttributes = args.length == 5
+                            ? RoomAttribute.parseAll(args[4]) : Collections.<RoomAttribute>emptySet();
+                    appendRooms(result, hotelResource.findARoom(parseDate(args[1]), parseDate(args[2]), roomSearchType,
+                            requiredAttributes));
+                    break;
+                case "book":
+                    if (args.length != 5 && args.length != 6) {
+                        throw new IllegalArgumentException("Command book takes 4 or 5 arguments, got "
+                                + (args.length - 1));
+                    }
+                    // With a request key, running the same script again does not book twice
+                    appendReservation(result, args.length == 6
+                            ? hotelResource.bookARoom(args[1], requireRoom(args[2]), parseDate(args[3]),
+                                    parseDate(args[4]), null, args[5])
+                            : hotelResource.bookARoom(args[1], requireRoom(args[2]), parseDate(args[3]),
+                                    parseDate(args[4])));
+                    break;
+                case "free-rooms":
+                    requireArguments(args, 4);
+                    result.append("{\"roomType\":\"").append(parseRoomType(args[1]).name()).append("\",\"free\":")
+                            .append(Math.max(0, hotelResource.getFreeRoomCount(parseRoomType(args[1]),
+                                    parseDate(args[2]), parseDate(args[3])))).append('}');
+                    break;
+                case "book-type":
+                    requireArguments(args, 5);
+                    appendRoomTypeBooking(result, hotelResource.bookARoomOfType(args[1], parseRoomType(args[2]),
+                            parseDate(args[3]), parseDate(args[4])));
+                    break;
+                case "assign":
+                    requireArguments(args, 2);
+                    appendReservation(result, hotelResource.assignRoom(findRoomTypeBooking(args[1])));
+                    break;
+                case "cancel":
+                    requireArguments(args, 4);
+                    Reservation reservation = findReservation(args[1], args[2], parseDate(args[3]));
+                    hotelResource.cancelReservation(reservation);
+                    appendReservation(result, reservation);
+                    break;
+                case "list-rooms":
+                    appendRooms(result, adminResource.getAllRooms());
+                    break;
+                case "list-customers":
+                    result.append('[');
+                    for (Customer customer : adminResource.getAllCustomers()) {
+                        if (result.length() > 1) {
+                            result.append(',');
+                        }
+                        appendCustomer(result, customer);
+                    }
+                    result.append(']');
+                    break;
+                case "list-reservations":
+                    appendReservations(result, args.length > 1
+                            ? hotelResource.getCustomerReservations(args[1]) : adminResource.getAllReservations());
+                    break;
+                case "arrivals":
+                    requireArguments(args, 2);
+                    appendReservations(result, adminResource.getArrivals(parseDate(args[1])));
+                    break;
+                case "departures":
+                    requireArguments(args, 2);
+                    appendReservations(result, adminResource.getDepartures(parseDate(args[1])));
+                    break;
+                case "stays":
+                    requireArguments(args, 3);
+                    appendReservations(result, adminResource.getReservationsOverlapping(parseDate(args[1]),
+                            parseDate(args[2])));
+                    break;
+                case "export":
+                    if (args.length != 3 && args.length != 5) {
+                        throw new IllegalArgumentException("Command export takes 2 or 4 arguments, got "
+                                + (args.length - 1));
+                    }
+                    export(result, args);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            status = "error";
+            failedCount++;
+            result.setLength(0);
+            appendString(result, e.getMessage());
+        }
+
+        StringBuilder line = new StringBuilder(64 + result.length());
+        line.append("{\"line\":").append(lineNumber).append(",\"command\":");
+        appendString(line, args[0]);
+        line.append(",\"status\":\"").append(status).append('"');
+        line.append(status.equals("ok") ? ",\"result\":" : ",\"message\":");
+        line.append(result.length() == 0 ? "null" : result);
+        line.append("}\n");
+        output.write(line.toString());
+    }
+
+    private void addRoom(StringBuilder result, String[] args) {
+        double price;
+        try {
+            price = Double.parseDouble(args[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid room price: " + args[2]);
+        }
+        RoomType roomType = parseRoomType(args[3]);
+        Set<RoomAttribute> attributes = args.length == 5
+                ? RoomAttribute.parseAll(args[4]) : Collections.<RoomAttribute>emptySet();
+        IRoom room = price == 0.0 ? new FreeRoom(args[1], roomType, attributes)
+                : new Room(args[1], price, roomType, attributes);
+        if (!adminResource.addRoom(room)) {
+            throw new IllegalArgumentException("Room with number " + args[1] + " already exists.");
+        }
+        appendRoom(result, room);
+    }
+
+    private void export(StringBuilder result, String[] args) {
+        ExportService.Format format;
+        try {
+            format = ExportService.Format.valueOf(args[2].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid export format: " + args[2] + ". Use CSV or COLUMNAR.");
+        }
+        Date fromCheckIn = args.length == 5 ? parseDate(args[3]) : null;
+        Date toCheckIn = args.length == 5 ? parseDate(args[4]) : null;
+        long exported;
+        try {
+            exported = adminResource.exportData(args[1], format, fromCheckIn, toCheckIn);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot write export files: " + e.getMessage());
+        }
+        result.append("{\"directory\":");
+        appendString(result, args[1]);
+        result.append(",\"reservations\":").append(exported).append('}');
+    }
+
+    private IRoom requireRoom(String roomNumber) {
+        IRoom room = hotelResource.getRoom(roomNumber);
+        if (room == null) {
+            throw new IllegalArgumentException("Invalid room number: " + roomNumber);
+        }
+        return room;
+    }
+
+    private Reservation findReservation(String email, String roomNumber, Date checkInDate) {
+        for (Reservation reservation : hotelResource.getCustomerReservations(email)) {
+            if (reservation.getRoom().getRoomNumber().equals(roomNumber)
+                    && reservation.getCheckinDate().equals(checkInDate)) {
+                return reservation;
+            }
+        }
+        throw new IllegalArgumentException("The reservation does not exist.");
+    }
+
+    private Date parseDate(String value) {
+        try {
+            return dateFormat.parse(value);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid date format: " + value + ". Please use YYYY-MM-DD.");
+        }
+    }
+
+    private static RoomSearchType parseSearchType(String value) {
+        switch (value.toUpperCase()) {
+            case "FREE":
+                return RoomSearchType.FREE_ROOMS;
+            case "PAID":
+                return RoomSearchType.PAID_ROOMS;
+            case "BOTH":
+                return RoomSearchType.BOTH;
+            default:
+                throw new IllegalArgumentException("Invalid room preference: " + value + ". Use FREE, PAID or BOTH.");
+        }
+    }
+
+    private static RoomType parseRoomType(String value) {
+        try {
+            return RoomType.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid room type: " + value + ". Use SINGLE or DOUBLE.");
+        }
+    }
+
+    private RoomTypeBooking findRoomTypeBooking(String id) {
+        for (RoomTypeBooking booking : adminResource.getRoomTypeBookings()) {
+            if (String.valueOf(booking.getId()).equals(id)) {
+                return booking;
+            }
+        }
+        throw new IllegalArgumentException("No booking by room type has the ID " + id + ".");
+    }
+
+    private static void requireArguments(String[] args, int count) {
+        if (args.length != count) {
+            throw new IllegalArgumentException("Command " + args[0] + " takes " + (count - 1) + " arguments, got "
+                    + (args.length - 1));
+        }
+    }
+
+    private void appendReservations(StringBuilder builder, Collection<Reservation> reservations) {
+        builder.append('[');
+        boolean first = true;
+        for (Reservation reservation : reservations) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            appendReservation(builder, reservation);
+        }
+        builder.append(']');
+    }
+
+    private void appendReservation(StringBuilder builder, Reservation reservation) {
+        builder.append("{\"email\":");
+        appendString(builder, reservation.getCustomer().getEmail());
+        builder.append(",\"room\":");
+        appendString(builder, reservation.getRoom().getRoomNumber());
+        builder.append(",\"checkIn\":\"").append(dateFormat.format(reservation.getCheckinDate()));
+        builder.append("\",\"checkOut\":\"").append(dateFormat.format(reservation.getCheckoutDate())).append("\"}");
+    }
+
+    private void appendRoomTypeBooking(StringBuilder builder, RoomTypeBooking booking) {
+        builder.append("{\"id\":").append(booking.getId()).append(",\"email\":");
+        appendString(builder, booking.getCustomer().getEmail());
+        builder.append(",\"roomType\":\"").append(booking.getRoomType().name());
+        builder.append("\",\"checkIn\":\"").append(dateFormat.format(booking.getCheckinDate()));
+        builder.append("\",\"checkOut\":\"").append(dateFormat.format(booking.getCheckoutDate())).append("\"}");
+    }
+
+    private static void appendRooms(StringBuilder builder, Collection<IRoom> rooms) {
+        builder.append('[');
+        boolean first = true;
+        for (IRoom room : rooms) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            appendRoom(builder, room);
+        }
+        builder.append(']');
+    }
+
+    private static void appendRoom(StringBuilder builder, IRoom room) {
+        builder.append("{\"number\":");
+        appendString(builder, room.getRoomNumber());
+        builder.append(",\"type\":\"").append(room.getRoomType().name());
+        builder.append("\",\"price\":").append(String.format(Locale.ROOT, "%.2f", room.getRoomPrice()));
+        builder.append(",\"attributes\":[");
+        boolean first = true;
+        for (RoomAttribute attribute : room.getAttributes()) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            appendString(builder, attribute.toString());
+        }
+        builder.append("]}");
+    }
+
+    private static void appendCustomer(StringBuilder builder, Customer customer) {
+        builder.append("{\"email\":");
+        appendString(builder, customer.getEmail());
+        builder.append(",\"firstName\":");
+        appendString(builder, customer.getFirstName());
+        builder.append(",\"lastName\":");
+        appendString(builder, customer.getLastName());
+        builder.append('}');
+    }
+
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append('"');
+    }
+}
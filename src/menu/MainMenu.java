@@ -3,7 +3,10 @@ package menu;
 import api.HotelResource;
 import model.IRoom;
 import model.Reservation;
+import model.RoomAttribute;
+import model.RoomQuote;
 import model.RoomSearchType;
+import model.WaitlistEntry;
 import service.CustomerService;
 import service.ReservationService;
 
@@ -74,6 +77,10 @@ public class MainMenu extends Menu{
      * Allow the user to create a new account.Handle exceptions when entering name (no empty strings) and email
      */
     private static void createAnAccount(Scanner scanner) {
+        if (hotelResource.isReadOnlyReplica()) {
+            System.out.println("This is a read-only replica. Please create your account on the main system.");
+            return;
+        }
         boolean accountCreated = false;
         while (!accountCreated) {
             try {
@@ -112,6 +119,30 @@ public class MainMenu extends Menu{
                 System.out.println(reservation);
             }
         }
+
+        Collection<WaitlistEntry> waitlist = hotelResource.getCustomerWaitlist(email);
+        if (!waitlist.isEmpty()) {
+            System.out.println("Still waiting for:");
+            for (WaitlistEntry entry : waitlist) {
+                System.out.println(entry);
+            }
+        }
+        displayReadStaleness();
+    }
+
+    /**
+     * Tells the user how current the displayed data is when this process runs as a read replica.
+     */
+    private static void displayReadStaleness() {
+        if (!hotelResource.isReadOnlyReplica()) {
+            return;
+        }
+        long staleness = hotelResource.getReadStalenessMillis();
+        if (staleness < 0) {
+            System.out.println("(Read replica: still catching up with the main system)");
+        } else {
+            System.out.println("(Read replica: data is at most " + staleness + " ms behind the main system)");
+        }
     }
 
 
@@ -141,6 +172,24 @@ public class MainMenu extends Menu{
     }
 
 
+    /**
+     * Offers the room attributes the hotel has and reads the ones the user wants, e.g. view=sea floor=3.
+     * @param scanner The Scanner object used for reading user input.
+     * @return The chosen attributes; empty if the user wants any room or no room has attributes.
+     * @throws IllegalArgumentException if an attribute is not written name=value.
+     */
+    private static Set<RoomAttribute> getUserRoomAttributes(Scanner scanner) {
+        Set<RoomAttribute> available = hotelResource.getRoomAttributes();
+        if (available.isEmpty()) {
+            return Collections.emptySet();
+        }
+        System.out.println("Rooms can be filtered by: " + RoomAttribute.formatAll(available).replace(";", ", "));
+        System.out.print("Enter the attributes you want, e.g. " + available.iterator().next()
+                + " (or press Enter for any room): ");
+        return RoomAttribute.parseAll(scanner.nextLine());
+    }
+
+
     /**
      * Find available rooms and allow the user to book a room.
      *
@@ -159,6 +208,7 @@ public class MainMenu extends Menu{
             Date checkInDate = dateFormat.parse(checkInDateString);
             Date checkOutDate = dateFormat.parse(checkOutDateString);
             RoomSearchType roomSearchType = getUserRoomPreference(scanner);
+            Set<RoomAttribute> requiredAttributes = getUserRoomAttributes(scanner);
 
             // Check if the check-in or check-out date is in the past
             Date currentDate = new Date();
@@ -166,40 +216,91 @@ public class MainMenu extends Menu{
                 System.out.println("Check-in and check-out dates must not be in the past");
                 return;
             }
-            Collection<IRoom> availableRooms = hotelResource.findARoom(checkInDate, checkOutDate, roomSearchType);
+            searchAndReserve(scanner, checkInDate, checkOutDate, roomSearchType, requiredAttributes);
+        } catch (ParseException e) {
+            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Searches rooms and lets the user book one of them. Every available room is shown; only the room the
+     * user picks is held for this search, so another guest cannot book it while the user enters their email.
+     * The hold is released when the search is over.
+     *
+     * @param scanner        Scanner object for user input.
+     * @param checkInDate    The requested check-in date
+     * @param checkOutDate   The requested check-out date
+     * @param roomSearchType The requested room preference
+     * @param requiredAttributes The attributes the rooms must have; none for any room
+     */
+    private static void searchAndReserve(Scanner scanner, Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType,
+                                         Set<RoomAttribute> requiredAttributes) {
+        String holderId = UUID.randomUUID().toString();
+        try {
+            Collection<IRoom> availableRooms = hotelResource.findARoom(checkInDate, checkOutDate, roomSearchType,
+                    requiredAttributes);
 
             if (availableRooms.isEmpty()) {
                 System.out.println("No rooms available for the given dates.");
                 // Adding 7 days to check in and check-out dates
                 Date[] recommendedDates = addDaysToDates(7, checkInDate, checkOutDate);
-                Collection<IRoom> recommendedRooms = hotelResource.findARoom(recommendedDates[0], recommendedDates[1],
-                        roomSearchType);
+                Collection<IRoom> recommendedRooms = hotelResource.findARoom(recommendedDates[0],
+                        recommendedDates[1], roomSearchType, requiredAttributes);
 
                 if (!recommendedRooms.isEmpty()) {
                     displayRecommendedRooms(recommendedRooms, recommendedDates);
-                    reserveSelectedRoom(scanner, recommendedDates[0], recommendedDates[1]);
+                    reserveSelectedRoom(scanner, recommendedDates[0], recommendedDates[1], holderId);
+                } else if (requiredAttributes.isEmpty()) {
+                    // The waitlist books any free room, so it is only offered to guests without attribute wishes
+                    offerWaitlist(scanner, checkInDate, checkOutDate, roomSearchType);
                 }
             } else {
-                displayAvailableRooms(availableRooms);
-                reserveSelectedRoom(scanner, checkInDate, checkOutDate);
+                displayAvailableRooms(availableRooms, checkInDate, checkOutDate);
+                reserveSelectedRoom(scanner, checkInDate, checkOutDate, holderId);
             }
-        } catch (ParseException e) {
-            System.out.println("Invalid date format. Please use YYYY-MM-DD.");
-        } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
+        } finally {
+            hotelResource.releaseHolds(holderId);
+        }
+    }
+
+    /**
+     * Offers to put the user on the waitlist for the requested dates.
+     *
+     * @param scanner        A Scanner object to read user input
+     * @param checkInDate    The requested check-in date
+     * @param checkOutDate   The requested check-out date
+     * @param roomSearchType The requested room preference
+     */
+    private static void offerWaitlist(Scanner scanner, Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType) {
+        if (hotelResource.isReadOnlyReplica()) {
+            return;
         }
+        System.out.print("Would you like to join the waitlist for these dates? Y/N: ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("Y")) {
+            return;
+        }
+        System.out.print("Enter your email: ");
+        String email = scanner.nextLine().trim();
+        hotelResource.joinWaitlist(email, checkInDate, checkOutDate, roomSearchType, null, null);
+        System.out.println("You are on the waitlist. A room will be booked for you as soon as one becomes available.");
     }
 
     /**
-     * Displays the available rooms from the provided collection.
+     * Displays the available rooms from the provided collection with the total price of the stay,
+     * cheapest first.
      *
      * @param availableRooms A collection of available IRoom objects
+     * @param checkInDate    The check-in date of the stay
+     * @param checkOutDate   The check-out date of the stay
      */
-    private static void displayAvailableRooms(Collection<IRoom> availableRooms) {
+    private static void displayAvailableRooms(Collection<IRoom> availableRooms, Date checkInDate, Date checkOutDate) {
         System.out.println("Available rooms:");
-        for (IRoom room : availableRooms) {
-            System.out.println(room);
+        for (RoomQuote quote : hotelResource.quoteStays(availableRooms, checkInDate, checkOutDate)) {
+            System.out.println(quote);
         }
+        displayReadStaleness();
     }
 
 
@@ -215,30 +316,34 @@ public class MainMenu extends Menu{
         String checkoutDateString = dateFormat.format(recommendedDates[1]);
         System.out.println("But the following rooms are available for dates between " +
                 checkinDateString + " and " + checkoutDateString+ ":");
-        for (IRoom room : recommendedRooms) {
-            System.out.println(room);
+        for (RoomQuote quote : hotelResource.quoteStays(recommendedRooms, recommendedDates[0], recommendedDates[1])) {
+            System.out.println(quote);
         }
     }
 
     /**
-     * Reserves the selected room for the customer using the provided check-in and check-out dates.
+     * Reserves the selected room for the customer using the provided check-in and check-out dates. The room
+     * is held for the search before the email is asked for.
      *
      * @param scanner     A Scanner object to read user input
      * @param checkInDate The check-in date for the reservation
      * @param checkOutDate The check-out date for the reservation
+     * @param holderId    The ID the room is held with
      */
-    private static void reserveSelectedRoom(Scanner scanner, Date checkInDate, Date checkOutDate) {
+    private static void reserveSelectedRoom(Scanner scanner, Date checkInDate, Date checkOutDate, String holderId) {
         System.out.print("Enter the room number you want to reserve: ");
         String roomNumber = scanner.nextLine();
         IRoom selectedRoom = hotelResource.getRoom(roomNumber);
 
         if (selectedRoom == null) {
             System.out.println("Invalid room number.");
+        } else if (!hotelResource.holdRoom(selectedRoom, checkInDate, checkOutDate, holderId)) {
+            System.out.println("Room " + roomNumber + " is no longer available for these dates. Please search again.");
         } else {
             System.out.print("Enter your email: ");
             String email = scanner.nextLine();
 
-            Reservation reservation = hotelResource.bookARoom(email, selectedRoom, checkInDate, checkOutDate);
+            Reservation reservation = hotelResource.bookARoom(email, selectedRoom, checkInDate, checkOutDate, holderId);
             System.out.println("Reservation successfully created!");
             System.out.println(reservation);
         }
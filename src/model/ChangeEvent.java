@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * An immutable record of a single change published to the change feed.
+ * The payload is the customer, room, reservation or booking by room type the change refers to.
+ */
+public class ChangeEvent {
+
+    /**
+     * The kinds of changes published by the services.
+     */
+    public enum Type {
+        CUSTOMER_ADDED,
+        ROOM_ADDED,
+        ROOM_REMOVED,
+        RESERVATION_ADDED,
+        RESERVATION_CANCELLED,
+        ROOM_UPDATED,
+        ROOM_TYPE_BOOKING_CANCELLED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Object payload;
+
+    /**
+     * Creates a new ChangeEvent.
+     * @param sequence the position of the event in the feed
+     * @param type the kind of change
+     * @param payload the customer, room, reservation or booking by room type the change refers to
+     */
+    public ChangeEvent(long sequence, Type type, Object payload) {
+        this.sequence = sequence;
+        this.type = type;
+        this.payload = payload;
+    }
+
+    public final long getSequence() {
+        return sequence;
+    }
+
+    public final Type getType() {
+        return type;
+    }
+
+    public final Object getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", payload=" + payload +
+                '}';
+    }
+}
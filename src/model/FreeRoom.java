@@ -1,5 +1,7 @@
 package model;
 
+import java.util.Collection;
+
 /**
  * A class representing a free hotel room.
  */
@@ -14,8 +16,18 @@ public class FreeRoom extends Room{
         super(roomNumber, 0.0, enumeration);
     }
 
+    /**
+     * Creates a new FreeRoom object with the given room number, room type and attributes, and price of 0.0.
+     * @param roomNumber the room number
+     * @param enumeration the room type
+     * @param attributes the attributes guests can filter on, e.g. floor=3 or view=sea
+     */
+    public FreeRoom(String roomNumber, RoomType enumeration, Collection<RoomAttribute> attributes) {
+        super(roomNumber, 0.0, enumeration, attributes);
+    }
+
     @Override
     public String toString() { return "Room number: " + getRoomNumber() + ", Room type: "
-            + getRoomType() + ", Price: (Free)";}
+            + getRoomType() + ", Price: (Free)" + attributesToString();}
 
 }
@@ -0,0 +1,54 @@
+package model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to a group search: whether a requested mix of room types is free for the whole stay, and a set
+ * of rooms that satisfies it.
+ */
+public class GroupAvailability {
+    private final Map<RoomType, List<IRoom>> rooms;
+    private final Map<RoomType, Integer> shortfall;
+
+    /**
+     * Creates a new GroupAvailability.
+     * @param rooms the rooms found for each requested type; at most the requested number per type
+     * @param shortfall the number of rooms still missing for each type that could not be filled
+     */
+    public GroupAvailability(Map<RoomType, List<IRoom>> rooms, Map<RoomType, Integer> shortfall) {
+        this.rooms = Collections.unmodifiableMap(new EnumMap<>(rooms));
+        this.shortfall = Collections.unmodifiableMap(new EnumMap<>(shortfall));
+    }
+
+    /**
+     * Returns whether every quota of the requested mix was filled.
+     * @return true if the group fits, false otherwise
+     */
+    public final boolean isSatisfied() {
+        return shortfall.isEmpty();
+    }
+
+    public final Map<RoomType, List<IRoom>> getRooms() {
+        return rooms;
+    }
+
+    public final Map<RoomType, Integer> getShortfall() {
+        return shortfall;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(isSatisfied() ? "Group fits:" : "Group does not fit:");
+        for (Map.Entry<RoomType, List<IRoom>> entry : rooms.entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue().size()).append(" found");
+            Integer missing = shortfall.get(entry.getKey());
+            if (missing != null) {
+                builder.append(", ").append(missing).append(" missing");
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package model;
 
+import java.util.Set;
+
 /**
  * An interface representing a hotel room.
  */
@@ -27,4 +29,10 @@ public interface IRoom {
      * @return true if the room is free, false otherwise
      */
     public boolean isFree();
+
+    /**
+     * Returns the attributes guests can filter on, e.g. floor=3 or view=sea.
+     * @return the attributes, sorted; empty if the room has none
+     */
+    public Set<RoomAttribute> getAttributes();
 }
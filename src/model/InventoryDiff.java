@@ -0,0 +1,64 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * The result of reloading the room inventory: which rooms were added, removed or changed, and which rooms
+ * missing from the new inventory were kept because they still have reservations.
+ */
+public class InventoryDiff {
+    private final Collection<IRoom> added;
+    private final Collection<IRoom> removed;
+    private final Collection<IRoom> updated;
+    private final Collection<IRoom> retained;
+
+    /**
+     * Creates a new InventoryDiff.
+     * @param added the rooms that are new
+     * @param removed the rooms that were removed
+     * @param updated the rooms whose price or type changed, as they are now
+     * @param retained the rooms missing from the inventory that were kept because they have reservations
+     */
+    public InventoryDiff(Collection<IRoom> added, Collection<IRoom> removed, Collection<IRoom> updated,
+                         Collection<IRoom> retained) {
+        this.added = Collections.unmodifiableCollection(new ArrayList<>(added));
+        this.removed = Collections.unmodifiableCollection(new ArrayList<>(removed));
+        this.updated = Collections.unmodifiableCollection(new ArrayList<>(updated));
+        this.retained = Collections.unmodifiableCollection(new ArrayList<>(retained));
+    }
+
+    /**
+     * Returns whether the reload changed anything.
+     * @return true if no room was added, removed or updated
+     */
+    public final boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+    }
+
+    public final Collection<IRoom> getAdded() {
+        return added;
+    }
+
+    public final Collection<IRoom> getRemoved() {
+        return removed;
+    }
+
+    public final Collection<IRoom> getUpdated() {
+        return updated;
+    }
+
+    public final Collection<IRoom> getRetained() {
+        return retained;
+    }
+
+    @Override
+    public String toString() {
+        String summary = added.size() + " added, " + removed.size() + " removed, " + updated.size() + " updated";
+        if (!retained.isEmpty()) {
+            summary += ", " + retained.size() + " kept because they have reservations";
+        }
+        return summary;
+    }
+}
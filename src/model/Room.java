@@ -1,6 +1,9 @@
 package model;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * A class representing a hotel room.
@@ -9,6 +12,7 @@ public class Room implements IRoom{
     private final String roomNumber;
     private final Double price;
     private final RoomType enumeration;
+    private final Set<RoomAttribute> attributes;
 
     /**
      * Creates a new Room object with the given room number, price, and room type.
@@ -17,6 +21,17 @@ public class Room implements IRoom{
      * @param enumeration the room type
      */
     public Room(String roomNumber, Double price, RoomType enumeration) {
+        this(roomNumber, price, enumeration, Collections.<RoomAttribute>emptySet());
+    }
+
+    /**
+     * Creates a new Room object with the given room number, price, room type and attributes.
+     * @param roomNumber the room number
+     * @param price the room price
+     * @param enumeration the room type
+     * @param attributes the attributes guests can filter on, e.g. floor=3 or view=sea
+     */
+    public Room(String roomNumber, Double price, RoomType enumeration, Collection<RoomAttribute> attributes) {
         if (!(isConvertibleToInt(roomNumber) && Integer.parseInt(roomNumber) > 0)) {
             throw new IllegalArgumentException("Room number must be a positive integer number");
         }
@@ -26,6 +41,7 @@ public class Room implements IRoom{
         this.roomNumber = roomNumber;
         this.price = price;
         this.enumeration = enumeration;
+        this.attributes = RoomAttribute.copyOf(attributes);
     }
 
     private boolean isConvertibleToInt(String value) {
@@ -53,7 +69,16 @@ public class Room implements IRoom{
 
     @Override
     public String toString() {
-        return "Room number: " + roomNumber + ", Room type: " + enumeration + ", Price: $" + String.format("%.2f", price);
+        return "Room number: " + roomNumber + ", Room type: " + enumeration + ", Price: $" + String.format("%.2f", price)
+                + attributesToString();
+    }
+
+    /**
+     * Formats the attributes for toString.
+     * @return ", Attributes: ..." or an empty string if the room has none
+     */
+    protected final String attributesToString() {
+        return attributes.isEmpty() ? "" : ", Attributes: " + RoomAttribute.formatAll(attributes);
     }
 
 
@@ -75,6 +100,12 @@ public class Room implements IRoom{
     }
 
 
+    @Override
+    public final Set<RoomAttribute> getAttributes() {
+        return attributes;
+    }
+
+
     @Override
     public final boolean isFree() {
         if(price==0) {
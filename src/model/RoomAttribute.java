@@ -0,0 +1,141 @@
+package model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * One attribute of a room that guests can filter on, written name=value, e.g. floor=3, view=sea or
+ * accessible=yes. Names and values are free text, so new attributes need no code change; both are stored
+ * in lower case so that "View=Sea" and "view=sea" are the same attribute.
+ */
+public final class RoomAttribute implements Comparable<RoomAttribute> {
+
+    // Names of the attributes the hotel uses today; any other name works as well
+    public static final String FLOOR = "floor";
+    public static final String VIEW = "view";
+    public static final String ACCESSIBLE = "accessible";
+    public static final String SMOKING = "smoking";
+    public static final String CAPACITY = "capacity";
+
+    private final String name;
+    private final String value;
+
+    /**
+     * Creates a new RoomAttribute.
+     * @param name the attribute name, e.g. view
+     * @param value the attribute value, e.g. sea
+     */
+    public RoomAttribute(String name, String value) {
+        this.name = normalize(name, "name");
+        this.value = normalize(value, "value");
+    }
+
+    private static String normalize(String text, String part) {
+        String normalized = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("A room attribute " + part + " cannot be empty");
+        }
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c == '=' || c == ';' || c == ',' || Character.isWhitespace(c)) {
+                throw new IllegalArgumentException("Invalid room attribute " + part + ": " + text
+                        + ". Use letters, digits, - or _.");
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Parses an attribute written name=value.
+     * @param text the attribute, e.g. view=sea
+     * @return the attribute
+     * @throws IllegalArgumentException if the text is not name=value
+     */
+    public static RoomAttribute parse(String text) {
+        int separator = text.indexOf('=');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid room attribute: " + text + ". Use name=value, e.g. view=sea.");
+        }
+        return new RoomAttribute(text.substring(0, separator), text.substring(separator + 1));
+    }
+
+    /**
+     * Parses a list of attributes separated by semicolons or whitespace, e.g. "floor=3; view=sea".
+     * @param text the attributes; may be empty
+     * @return the attributes, sorted
+     * @throws IllegalArgumentException if an attribute is not name=value
+     */
+    public static Set<RoomAttribute> parseAll(String text) {
+        Set<RoomAttribute> attributes = new TreeSet<>();
+        for (String part : text.trim().split("[;\\s]+")) {
+            if (!part.isEmpty()) {
+                attributes.add(parse(part));
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Returns an unmodifiable, sorted copy of a collection of attributes.
+     * @param attributes the attributes
+     * @return the copy; empty if attributes is null
+     */
+    public static Set<RoomAttribute> copyOf(Collection<RoomAttribute> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new TreeSet<>(attributes));
+    }
+
+    /**
+     * Formats attributes the way parseAll reads them.
+     * @param attributes the attributes
+     * @return the attributes separated by semicolons, or an empty string
+     */
+    public static String formatAll(Collection<RoomAttribute> attributes) {
+        StringBuilder builder = new StringBuilder();
+        for (RoomAttribute attribute : attributes) {
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(attribute);
+        }
+        return builder.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public int compareTo(RoomAttribute other) {
+        int byName = name.compareTo(other.name);
+        return byName != 0 ? byName : value.compareTo(other.value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        RoomAttribute attribute = (RoomAttribute) obj;
+        return name.equals(attribute.name) && value.equals(attribute.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, value);
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + value;
+    }
+}
@@ -0,0 +1,56 @@
+package model;
+
+import java.util.Date;
+
+/**
+ * The total price of a stay in one room.
+ */
+public class RoomQuote {
+    private final IRoom room;
+    private final Date checkinDate;
+    private final Date checkoutDate;
+    private final long totalCents;
+
+    /**
+     * Creates a new RoomQuote.
+     * @param room the quoted room
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @param totalCents the total price of the stay in cents
+     */
+    public RoomQuote(IRoom room, Date checkinDate, Date checkoutDate, long totalCents) {
+        this.room = room;
+        this.checkinDate = checkinDate;
+        this.checkoutDate = checkoutDate;
+        this.totalCents = totalCents;
+    }
+
+    public final IRoom getRoom() {
+        return room;
+    }
+
+    public final Date getCheckinDate() {
+        return checkinDate;
+    }
+
+    public final Date getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    public final long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Returns the total price of the stay.
+     * @return the total price in dollars
+     */
+    public final double getTotalPrice() {
+        return totalCents / 100.0;
+    }
+
+    @Override
+    public String toString() {
+        return room + ", Total for stay: $" + String.format("%.2f", getTotalPrice());
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * A booking of any room of a type, e.g. "a DOUBLE room", that has not been assigned a concrete room yet.
+ */
+public class RoomTypeBooking {
+    private final long id;
+    private final Customer customer;
+    private final RoomType roomType;
+    private final Date checkinDate;
+    private final Date checkoutDate;
+
+    /**
+     * Creates a new RoomTypeBooking.
+     * @param id the booking number; bookings made later have higher numbers
+     * @param customer the customer who booked
+     * @param roomType the booked room type
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     */
+    public RoomTypeBooking(long id, Customer customer, RoomType roomType, Date checkinDate, Date checkoutDate) {
+        if (checkinDate.after(checkoutDate) || checkinDate.equals(checkoutDate)) {
+            throw new IllegalArgumentException("Check-in date must be before the check-out date.");
+        }
+        this.id = id;
+        this.customer = customer;
+        this.roomType = roomType;
+        this.checkinDate = checkinDate;
+        this.checkoutDate = checkoutDate;
+    }
+
+    public final long getId() {
+        return id;
+    }
+
+    public final Customer getCustomer() {
+        return customer;
+    }
+
+    public final RoomType getRoomType() {
+        return roomType;
+    }
+
+    public final Date getCheckinDate() {
+        return checkinDate;
+    }
+
+    public final Date getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    @Override
+    public String toString() {
+        DateFormat dateFormat = new SimpleDateFormat("EEEE MMMM dd yyyy");
+        return "RoomTypeBooking{" +
+                "id=" + id +
+                ", customer=" + customer.getFirstName() + " " + customer.getLastName() +
+                ", roomType=" + roomType +
+                ", checkinDate=" + dateFormat.format(checkinDate) +
+                ", checkoutDate=" + dateFormat.format(checkoutDate) +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package model;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * A guest's request to be booked automatically once a matching room becomes available.
+ */
+public class WaitlistEntry {
+    private final long position;
+    private final Customer customer;
+    private final Date checkinDate;
+    private final Date checkoutDate;
+    private final RoomSearchType roomSearchType;
+    private final RoomType roomType;
+    private final Double maxPrice;
+
+    /**
+     * Creates a new WaitlistEntry.
+     * @param position the position in the waitlist; lower positions are served first
+     * @param customer the waiting customer
+     * @param checkinDate the requested check-in date
+     * @param checkoutDate the requested check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param roomType the requested room type, or null for any type
+     * @param maxPrice the highest acceptable room price, or null for no limit
+     */
+    public WaitlistEntry(long position, Customer customer, Date checkinDate, Date checkoutDate,
+                         RoomSearchType roomSearchType, RoomType roomType, Double maxPrice) {
+        if (checkinDate.after(checkoutDate) || checkinDate.equals(checkoutDate)) {
+            throw new IllegalArgumentException("Check-in date must be before the check-out date.");
+        }
+        if (maxPrice != null && maxPrice < 0) {
+            throw new IllegalArgumentException("Maximum price must be 0 or a positive value");
+        }
+        this.position = position;
+        this.customer = customer;
+        this.checkinDate = checkinDate;
+        this.checkoutDate = checkoutDate;
+        this.roomSearchType = roomSearchType;
+        this.roomType = roomType;
+        this.maxPrice = maxPrice;
+    }
+
+    public final long getPosition() {
+        return position;
+    }
+
+    public final Customer getCustomer() {
+        return customer;
+    }
+
+    public final Date getCheckinDate() {
+        return checkinDate;
+    }
+
+    public final Date getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    public final RoomSearchType getRoomSearchType() {
+        return roomSearchType;
+    }
+
+    public final RoomType getRoomType() {
+        return roomType;
+    }
+
+    public final Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    @Override
+    public String toString() {
+        DateFormat dateFormat = new SimpleDateFormat("EEEE MMMM dd yyyy");
+        return "WaitlistEntry{" +
+                "customer=" + customer.getFirstName() + " " + customer.getLastName() +
+                ", checkinDate=" + dateFormat.format(checkinDate) +
+                ", checkoutDate=" + dateFormat.format(checkoutDate) +
+                ", rooms=" + roomSearchType +
+                ", roomType=" + (roomType == null ? "any" : roomType) +
+                ", maxPrice=" + (maxPrice == null ? "none" : "$" + String.format("%.2f", maxPrice)) +
+                '}';
+    }
+}
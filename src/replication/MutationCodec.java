@@ -0,0 +1,270 @@
+package replication;
+
+import model.*;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Encodes and decodes the records exchanged between a replication leader and its followers.
+ * Mutations carry only keys and values (emails, room numbers, dates); reservations are resolved against
+ * the customers and rooms already applied on the receiving side.
+ */
+public class MutationCodec {
+
+    public static final byte EVENT = 1;
+    public static final byte SNAPSHOT_ENTRY = 2;
+    public static final byte SNAPSHOT_END = 3;
+    public static final byte HEARTBEAT = 4;
+
+    /**
+     * A decoded record. Depending on the tag, only some of the fields are set.
+     */
+    public static class Record {
+        private final byte tag;
+        private final long sequence;
+        private final long timestamp;
+        private final ChangeEvent.Type type;
+        private final Object payload;
+
+        Record(byte tag, long sequence, long timestamp, ChangeEvent.Type type, Object payload) {
+            this.tag = tag;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public final byte getTag() {
+            return tag;
+        }
+
+        public final long getSequence() {
+            return sequence;
+        }
+
+        public final long getTimestamp() {
+            return timestamp;
+        }
+
+        public final ChangeEvent.Type getType() {
+            return type;
+        }
+
+        public final Object getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * Private constructor prevents instantiation of this utility class.
+     */
+    private MutationCodec() {}
+
+    /**
+     * Writes a change feed event.
+     * @param out the stream to write to
+     * @param event the event to write
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeEvent(DataOutputStream out, ChangeEvent event) throws IOException {
+        out.writeByte(EVENT);
+        out.writeLong(event.getSequence());
+        writePayload(out, event.getType(), event.getPayload());
+    }
+
+    /**
+     * Writes one entry of a full state snapshot.
+     * @param out the stream to write to
+     * @param type the kind of entry
+     * @param payload the customer, room or reservation
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeSnapshotEntry(DataOutputStream out, ChangeEvent.Type type, Object payload)
+            throws IOException {
+        out.writeByte(SNAPSHOT_ENTRY);
+        writePayload(out, type, payload);
+    }
+
+    /**
+     * Writes the end of a snapshot, carrying the last sequence the snapshot covers.
+     * @param out the stream to write to
+     * @param sequence the sequence the follower continues after
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeSnapshotEnd(DataOutputStream out, long sequence) throws IOException {
+        out.writeByte(SNAPSHOT_END);
+        out.writeLong(sequence);
+    }
+
+    /**
+     * Writes a heartbeat carrying the leader's published sequence and clock.
+     * @param out the stream to write to
+     * @param publishedSequence the last sequence published on the leader
+     * @param timestamp the leader time in milliseconds when the heartbeat was sent
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeHeartbeat(DataOutputStream out, long publishedSequence, long timestamp)
+            throws IOException {
+        out.writeByte(HEARTBEAT);
+        out.writeLong(publishedSequence);
+        out.writeLong(timestamp);
+    }
+
+    /**
+     * Reads the next record. Reservations are resolved against the local services, so the customer and
+     * room they refer to must have been applied before.
+     * @param in the stream to read from
+     * @return the decoded record
+     * @throws IOException if the stream cannot be read or contains an unknown record
+     */
+    public static Record readRecord(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case EVENT: {
+                long sequence = in.readLong();
+                ChangeEvent.Type type = ChangeEvent.Type.values()[in.readByte()];
+                return new Record(tag, sequence, 0, type, readPayload(in, type));
+            }
+            case SNAPSHOT_ENTRY: {
+                ChangeEvent.Type type = ChangeEvent.Type.values()[in.readByte()];
+                return new Record(tag, -1, 0, type, readPayload(in, type));
+            }
+            case SNAPSHOT_END:
+                return new Record(tag, in.readLong(), 0, null, null);
+            case HEARTBEAT: {
+                long sequence = in.readLong();
+                return new Record(tag, sequence, in.readLong(), null, null);
+            }
+            default:
+                throw new IOException("Unknown replication record: " + tag);
+        }
+    }
+
+    /**
+     * Writes a customer.
+     * @param out the stream to write to
+     * @param customer the customer to write
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeCustomer(DataOutputStream out, Customer customer) throws IOException {
+        out.writeUTF(customer.getEmail());
+        out.writeUTF(customer.getFirstName());
+        out.writeUTF(customer.getLastName());
+    }
+
+    /**
+     * Reads a customer written by {@link #writeCustomer}.
+     * @param in the stream to read from
+     * @return the customer
+     * @throws IOException if the stream cannot be read
+     */
+    public static Customer readCustomer(DataInputStream in) throws IOException {
+        String email = in.readUTF();
+        String firstName = in.readUTF();
+        String lastName = in.readUTF();
+        return new Customer(firstName, lastName, email);
+    }
+
+    /**
+     * Writes a room.
+     * @param out the stream to write to
+     * @param room the room to write
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeRoom(DataOutputStream out, IRoom room) throws IOException {
+        out.writeUTF(room.getRoomNumber());
+        out.writeDouble(room.getRoomPrice());
+        out.writeByte(room.getRoomType().ordinal());
+        out.writeShort(room.getAttributes().size());
+        for (RoomAttribute attribute : room.getAttributes()) {
+            out.writeUTF(attribute.getName());
+            out.writeUTF(attribute.getValue());
+        }
+    }
+
+    /**
+     * Reads a room written by {@link #writeRoom}.
+     * @param in the stream to read from
+     * @return the room, a FreeRoom if its price is 0
+     * @throws IOException if the stream cannot be read
+     */
+    public static IRoom readRoom(DataInputStream in) throws IOException {
+        String roomNumber = in.readUTF();
+        double price = in.readDouble();
+        RoomType roomType = RoomType.values()[in.readByte()];
+        int attributeCount = in.readUnsignedShort();
+        List<RoomAttribute> attributes = new ArrayList<>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.add(new RoomAttribute(in.readUTF(), in.readUTF()));
+        }
+        if (price == 0.0) {
+            return new FreeRoom(roomNumber, roomType, attributes);
+        }
+        return new Room(roomNumber, price, roomType, attributes);
+    }
+
+    private static void writePayload(DataOutputStream out, ChangeEvent.Type type, Object payload)
+            throws IOException {
+        out.writeByte(type.ordinal());
+        switch (type) {
+            case CUSTOMER_ADDED:
+                writeCustomer(out, (Customer) payload);
+                break;
+            case ROOM_ADDED:
+            case ROOM_REMOVED:
+            case ROOM_UPDATED:
+                writeRoom(out, (IRoom) payload);
+                break;
+            case RESERVATION_ADDED:
+            case RESERVATION_CANCELLED: {
+                Reservation reservation = (Reservation) payload;
+                out.writeUTF(reservation.getCustomer().getEmail());
+                out.writeUTF(reservation.getRoom().getRoomNumber());
+                out.writeLong(reservation.getCheckinDate().getTime());
+                out.writeLong(reservation.getCheckoutDate().getTime());
+                break;
+            }
+            case ROOM_TYPE_BOOKING_CANCELLED:
+                // Bookings by room type are not replicated; the event only carries its sequence
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid change type: " + type);
+        }
+    }
+
+    private static Object readPayload(DataInputStream in, ChangeEvent.Type type) throws IOException {
+        switch (type) {
+            case CUSTOMER_ADDED:
+                return readCustomer(in);
+            case ROOM_ADDED:
+            case ROOM_REMOVED:
+            case ROOM_UPDATED:
+                return readRoom(in);
+            case RESERVATION_ADDED:
+            case RESERVATION_CANCELLED: {
+                String email = in.readUTF();
+                String roomNumber = in.readUTF();
+                Date checkinDate = new Date(in.readLong());
+                Date checkoutDate = new Date(in.readLong());
+                Customer customer = CustomerService.getInstance().getCustomer(email);
+                IRoom room = ReservationService.getInstance().getARoom(roomNumber);
+                if (customer == null || room == null) {
+                    throw new IOException("Reservation refers to an unknown customer or room: "
+                            + email + ", " + roomNumber);
+                }
+                return new Reservation(customer, room, checkinDate, checkoutDate);
+            }
+            case ROOM_TYPE_BOOKING_CANCELLED:
+                return null;
+            default:
+                throw new IOException("Invalid change type: " + type);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package replication;
+
+import model.ChangeEvent;
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the local services in sync with a replication leader so this process can serve searches and
+ * reservation lookups. Mutations are applied in leader order on a single background thread; the follower
+ * reconnects automatically and resumes after the last sequence it applied.
+ * A follower that fell too far behind gets a snapshot of the leader's state instead. Once the snapshot is
+ * complete it is reconciled with the local state: reservations and rooms the leader no longer has are
+ * removed, changed rooms are updated and missing entries are added, so nothing cancelled or removed on the
+ * leader during the gap survives on the replica.
+ * While a follower is running, the API layer rejects local writes.
+ */
+public class ReplicationFollower {
+
+    // How long to wait before reconnecting to an unreachable leader
+    private static final long RECONNECT_DELAY_MILLIS = 500;
+
+    // The follower of this process, null unless it runs as a read replica
+    private static volatile ReplicationFollower activeFollower;
+
+    private final String host;
+    private final int port;
+
+    // Last leader sequence applied locally, -1 before anything was applied
+    private volatile long appliedSequence = -1;
+
+    // Last sequence the leader reported as published
+    private volatile long leaderSequence = -1;
+
+    // Leader time of the most recent heartbeat at which this follower had applied everything
+    private volatile long caughtUpAt;
+
+    private volatile boolean connected;
+
+    // Rooms and reservations of the snapshot being received; only used by the replication thread
+    private final List<IRoom> snapshotRooms = new ArrayList<>();
+    private final List<Reservation> snapshotReservations = new ArrayList<>();
+
+    /**
+     * Starts replicating from the leader at the given address.
+     * @param host the leader host, normally localhost
+     * @param port the leader replication port
+     */
+    public ReplicationFollower(String host, int port) {
+        this.host = host;
+        this.port = port;
+        activeFollower = this;
+        Thread replicator = new Thread(this::replicate, "replication-follower");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    /**
+     * Returns whether this process is running as a read replica.
+     * @return true if a follower has been started, false otherwise
+     */
+    public static boolean isActive() {
+        return activeFollower != null;
+    }
+
+    /**
+     * Returns the follower of this process.
+     * @return the running follower, or null if this process is not a read replica
+     */
+    public static ReplicationFollower getActiveFollower() {
+        return activeFollower;
+    }
+
+    /**
+     * Returns the last leader sequence applied locally.
+     * @return the applied sequence, or -1 if nothing has been applied yet
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns the last sequence the leader reported as published.
+     * @return the leader sequence, or -1 if the leader has not been heard from yet
+     */
+    public long getLeaderSequence() {
+        return leaderSequence;
+    }
+
+    /**
+     * Returns the staleness bound of local reads: every write the leader had published this many
+     * milliseconds ago is visible here.
+     * @return the staleness in milliseconds, or -1 if the follower has never caught up with the leader
+     */
+    public long getStalenessMillis() {
+        if (caughtUpAt == 0) {
+            return -1;
+        }
+        return Math.max(0, System.currentTimeMillis() - caughtUpAt);
+    }
+
+    /**
+     * Returns whether the follower is currently connected to the leader.
+     * @return true if connected, false otherwise
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public String toString() {
+        return "Replica of " + host + ":" + port +
+                (connected ? " (connected)" : " (disconnected)") +
+                ", applied sequence: " + appliedSequence +
+                ", leader sequence: " + leaderSequence +
+                ", staleness: " + (getStalenessMillis() < 0 ? "unknown" : getStalenessMillis() + " ms");
+    }
+
+    private void replicate() {
+        while (true) {
+            try (Socket socket = new Socket(host, port);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                socket.setTcpNoDelay(true);
+                out.writeLong(appliedSequence + 1);
+                out.flush();
+                connected = true;
+                // A snapshot cut short by the last disconnect is sent again in full
+                snapshotRooms.clear();
+                snapshotReservations.clear();
+                while (true) {
+                    applyRecord(MutationCodec.readRecord(in));
+                }
+            } catch (IOException e) {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void applyRecord(MutationCodec.Record record) {
+        switch (record.getTag()) {
+            case MutationCodec.EVENT:
+                apply(record.getType(), record.getPayload());
+                appliedSequence = record.getSequence();
+                break;
+            case MutationCodec.SNAPSHOT_ENTRY:
+                collectSnapshotEntry(record.getType(), record.getPayload());
+                break;
+            case MutationCodec.SNAPSHOT_END:
+                applySnapshot();
+                snapshotRooms.clear();
+                snapshotReservations.clear();
+                appliedSequence = record.getSequence();
+                break;
+            case MutationCodec.HEARTBEAT:
+                leaderSequence = record.getSequence();
+                if (appliedSequence >= leaderSequence) {
+                    caughtUpAt = record.getTimestamp();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid replication record: " + record.getTag());
+        }
+    }
+
+    /**
+     * Applies one mutation to the local services. Applying is idempotent, because a snapshot may overlap
+     * with the events streamed right after it.
+     * @param type the kind of mutation
+     * @param payload the decoded customer, room or reservation
+     */
+    private void apply(ChangeEvent.Type type, Object payload) {
+        CustomerService customerService = CustomerService.getInstance();
+        ReservationService reservationService = ReservationService.getInstance();
+        switch (type) {
+            case CUSTOMER_ADDED: {
+                Customer customer = (Customer) payload;
+                if (customerService.getCustomer(customer.getEmail()) == null) {
+                    customerService.addCustomer(customer.getEmail(), customer.getFirstName(), customer.getLastName());
+                }
+                break;
+            }
+            case ROOM_ADDED: {
+                IRoom room = (IRoom) payload;
+                if (reservationService.getARoom(room.getRoomNumber()) == null) {
+                    reservationService.addRoom(room);
+                }
+                break;
+            }
+            case ROOM_REMOVED: {
+                IRoom room = reservationService.getARoom(((IRoom) payload).getRoomNumber());
+                if (room != null) {
+                    reservationService.removeRoom(room);
+                }
+                break;
+            }
+            case ROOM_UPDATED: {
+                IRoom room = (IRoom) payload;
+                if (reservationService.getARoom(room.getRoomNumber()) != null) {
+                    reservationService.updateRoom(room);
+                }
+                break;
+            }
+            case RESERVATION_ADDED: {
+                Reservation reservation = (Reservation) payload;
+                if (!isAlreadyApplied(reservation)) {
+                    try {
+                        reservationService.reserveARoom(reservation.getCustomer(), reservation.getRoom(),
+                                reservation.getCheckinDate(), reservation.getCheckoutDate());
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Replication: replica diverged from leader: " + e.getMessage());
+                    }
+                }
+                break;
+            }
+            case RESERVATION_CANCELLED: {
+                Reservation reservation = findApplied((Reservation) payload);
+                if (reservation != null) {
+                    reservationService.cancelReservation(reservation);
+                }
+                break;
+            }
+            case ROOM_TYPE_BOOKING_CANCELLED:
+                // Bookings by room type stay on the leader
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid change type: " + type);
+        }
+    }
+
+    /**
+     * Records one snapshot entry. Customers and missing rooms are added right away, because the reservations
+     * later in the snapshot are decoded against them; everything else waits for the end of the snapshot.
+     * @param type the kind of entry
+     * @param payload the decoded customer, room or reservation
+     */
+    private void collectSnapshotEntry(ChangeEvent.Type type, Object payload) {
+        switch (type) {
+            case CUSTOMER_ADDED:
+                apply(type, payload);
+                break;
+            case ROOM_ADDED:
+                apply(type, payload);
+                snapshotRooms.add((IRoom) payload);
+                break;
+            case RESERVATION_ADDED:
+                snapshotReservations.add((Reservation) payload);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid snapshot entry: " + type);
+        }
+    }
+
+    /**
+     * Makes the local state match the snapshot just received. Stale reservations are cancelled before anything
+     * is added, so that a room the leader booked again for the same dates is free for the snapshot's booking.
+     * Customers are never removed: the leader never removes them either.
+     */
+    private void applySnapshot() {
+        ReservationService reservationService = ReservationService.getInstance();
+        Set<String> reservationKeys = new HashSet<>();
+        for (Reservation reservation : snapshotReservations) {
+            reservationKeys.add(keyOf(reservation));
+        }
+        for (Reservation local : reservationService.getAllReservations()) {
+            if (!reservationKeys.contains(keyOf(local))) {
+                reservationService.cancelReservation(local);
+            }
+        }
+        // Updates changed rooms and removes the rooms the leader no longer has
+        reservationService.reloadInventory(snapshotRooms);
+        for (Reservation reservation : snapshotReservations) {
+            apply(ChangeEvent.Type.RESERVATION_ADDED, reservation);
+        }
+    }
+
+    /**
+     * Identifies a reservation by its room, customer and dates, like the stores do.
+     */
+    private static String keyOf(Reservation reservation) {
+        return reservation.getRoom().getRoomNumber() + " " + reservation.getCustomer().getEmail() + " "
+                + reservation.getCheckinDate().getTime() + " " + reservation.getCheckoutDate().getTime();
+    }
+
+    private boolean isAlreadyApplied(Reservation reservation) {
+        return findApplied(reservation) != null;
+    }
+
+    /**
+     * Returns the local reservation for the same customer, room and dates as the given one.
+     */
+    private Reservation findApplied(Reservation reservation) {
+        for (Reservation existing : ReservationService.getInstance().getCustomerReservations(reservation.getCustomer())) {
+            if (existing.getRoom().equals(reservation.getRoom())
+                    && existing.getCheckinDate().equals(reservation.getCheckinDate())
+                    && existing.getCheckoutDate().equals(reservation.getCheckoutDate())) {
+                return existing;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,162 @@
+package replication;
+
+import model.ChangeEvent;
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import service.ChangeFeed;
+import service.ChangeFeedSubscription;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the ordered mutation log of this process to follower processes over TCP.
+ * Each follower is served by its own thread reading an independent change feed subscription, so a slow
+ * follower never delays bookings. A follower that asks for a sequence the feed no longer retains, or that
+ * falls too far behind, is sent a full snapshot before the stream resumes.
+ */
+public class ReplicationLeader {
+
+    // Largest number of events written between two flushes
+    private static final int BATCH_SIZE = 512;
+
+    // How often an idle connection is sent a heartbeat
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+
+    private final ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    /**
+     * Starts accepting followers on the given local port.
+     * @param port the port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public ReplicationLeader(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptFollowers, "replication-leader");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port followers connect to.
+     * @return the local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting followers and closes the listening socket.
+     */
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private void acceptFollowers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread sender = new Thread(() -> serveFollower(socket),
+                        "replication-sender-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Replication: failed to accept a follower: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a follower everything it has not applied yet and then keeps streaming new events.
+     * @param socket the follower connection
+     */
+    private void serveFollower(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            ChangeFeed feed = ChangeFeed.getInstance();
+            long requestedSequence = in.readLong();
+
+            ChangeFeedSubscription subscription;
+            if (requestedSequence < feed.getOldestRetainedSequence()
+                    || requestedSequence > feed.getPublishedSequence() + 1) {
+                subscription = writeSnapshot(out);
+            } else {
+                subscription = feed.subscribe(requestedSequence);
+            }
+
+            while (running) {
+                List<ChangeEvent> batch = subscription.poll(BATCH_SIZE, HEARTBEAT_INTERVAL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (subscription.getMissedEvents() > 0) {
+                    // The follower fell out of the retained window; make it reconnect and resync
+                    return;
+                }
+                for (ChangeEvent event : batch) {
+                    MutationCodec.writeEvent(out, event);
+                }
+                MutationCodec.writeHeartbeat(out, feed.getPublishedSequence(), System.currentTimeMillis());
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The follower disconnected; it resumes from its last applied sequence when it reconnects
+        }
+    }
+
+    /**
+     * Writes the full current state and subscribes to everything published after it. Rooms and reservations
+     * are read together with the subscription under the reservation service lock, which every room and
+     * reservation change holds while it publishes, so the snapshot is exactly the state at the sequence it
+     * covers and never holds a reservation without its room. Customers are read afterwards: they are never
+     * removed and a customer is added before any reservation of theirs, so all of them are included; a
+     * customer added in between is sent twice, which the follower ignores.
+     * @param out the follower stream
+     * @return the subscription continuing right after the snapshot
+     * @throws IOException if the stream cannot be written
+     */
+    private ChangeFeedSubscription writeSnapshot(DataOutputStream out) throws IOException {
+        ReservationService reservationService = ReservationService.getInstance();
+        ChangeFeedSubscription subscription;
+        Collection<Reservation> reservations;
+        Collection<IRoom> rooms;
+        synchronized (reservationService) {
+            subscription = ChangeFeed.getInstance().subscribe();
+            reservations = reservationService.getAllReservations();
+            rooms = reservationService.getAllRooms();
+        }
+        Collection<Customer> customers = CustomerService.getInstance().getAllCustomers();
+
+        for (Customer customer : customers) {
+            MutationCodec.writeSnapshotEntry(out, ChangeEvent.Type.CUSTOMER_ADDED, customer);
+        }
+        for (IRoom room : rooms) {
+            MutationCodec.writeSnapshotEntry(out, ChangeEvent.Type.ROOM_ADDED, room);
+        }
+        for (Reservation reservation : reservations) {
+            MutationCodec.writeSnapshotEntry(out, ChangeEvent.Type.RESERVATION_ADDED, reservation);
+        }
+        MutationCodec.writeSnapshotEnd(out, subscription.getNextSequence() - 1);
+        return subscription;
+    }
+}
@@ -0,0 +1,203 @@
+package service;
+
+import model.RoomType;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * One immutable, consistent version of every room with its reservations.
+ *
+ * Rooms are spread over a fixed number of partitions by room number. A change copies only the partition of
+ * the room it touches and the small array of partition references; every other partition, and every room
+ * state in it, is shared with the previous version. Readers pin a version by reading the current reference
+ * once and can then iterate it without locks while writers publish newer versions.
+ */
+final class AvailabilitySnapshot implements Iterable<RoomState> {
+
+    // Number of partitions; a change copies about 1/PARTITIONS of the rooms
+    static final int PARTITIONS = 64;
+
+    static final AvailabilitySnapshot EMPTY =
+            new AvailabilitySnapshot(0, emptyPartitions(), 0, new int[RoomType.values().length]);
+
+    private final long version;
+
+    // Room states by room number, one map per partition; the maps are never modified once published
+    private final Map<String, RoomState>[] partitions;
+
+    private final int roomCount;
+
+    // Number of rooms of each type, indexed by RoomType ordinal
+    private final int[] roomCountByType;
+
+    private AvailabilitySnapshot(long version, Map<String, RoomState>[] partitions, int roomCount,
+                                 int[] roomCountByType) {
+        this.version = version;
+        this.partitions = partitions;
+        this.roomCount = roomCount;
+        this.roomCountByType = roomCountByType;
+    }
+
+    private static Map<String, RoomState>[] emptyPartitions() {
+        // Java cannot create an array of a generic type; the cast is safe because the array only holds such maps
+        @SuppressWarnings("unchecked")
+        Map<String, RoomState>[] partitions = (Map<String, RoomState>[]) new Map<?, ?>[PARTITIONS];
+        Arrays.fill(partitions, new HashMap<String, RoomState>());
+        return partitions;
+    }
+
+    /**
+     * Returns the version number; every published change increases it by one.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    int getRoomCount() {
+        return roomCount;
+    }
+
+    /**
+     * Returns the number of rooms of the given type, booked or not.
+     */
+    int getRoomCount(RoomType roomType) {
+        return roomCountByType[roomType.ordinal()];
+    }
+
+    /**
+     * Returns the state of the room with the given number, or null if there is no such room.
+     */
+    RoomState getRoomState(String roomNumber) {
+        return partitions[partitionOf(roomNumber)].get(roomNumber);
+    }
+
+    /**
+     * Returns the next version, in which the room of the given state has that state.
+     */
+    AvailabilitySnapshot with(RoomState state) {
+        String roomNumber = state.room.getRoomNumber();
+        int partition = partitionOf(roomNumber);
+        Map<String, RoomState> updated = new LinkedHashMap<>(partitions[partition]);
+        RoomState previous = updated.put(roomNumber, state);
+        Map<String, RoomState>[] updatedPartitions = partitions.clone();
+        updatedPartitions[partition] = updated;
+        int[] updatedCounts = roomCountByType;
+        if (previous == null || previous.room.getRoomType() != state.room.getRoomType()) {
+            updatedCounts = roomCountByType.clone();
+            updatedCounts[state.room.getRoomType().ordinal()]++;
+            if (previous != null) {
+                updatedCounts[previous.room.getRoomType().ordinal()]--;
+            }
+        }
+        return new AvailabilitySnapshot(version + 1, updatedPartitions, previous == null ? roomCount + 1 : roomCount,
+                updatedCounts);
+    }
+
+    /**
+     * Returns the next version with many changes applied at once: the given states replace or add their rooms
+     * and the given room numbers are removed. Each touched partition is copied once, however many of its rooms
+     * change, and readers see either none or all of the changes.
+     */
+    AvailabilitySnapshot withChanges(Collection<RoomState> states, Collection<String> removedRoomNumbers) {
+        Map<String, RoomState>[] updatedPartitions = partitions.clone();
+        boolean[] copied = new boolean[PARTITIONS];
+        int[] updatedCounts = roomCountByType.clone();
+        int updatedRoomCount = roomCount;
+        for (RoomState state : states) {
+            String roomNumber = state.room.getRoomNumber();
+            Map<String, RoomState> partition = writablePartition(updatedPartitions, copied, partitionOf(roomNumber));
+            RoomState previous = partition.put(roomNumber, state);
+            if (previous == null) {
+                updatedRoomCount++;
+            } else {
+                updatedCounts[previous.room.getRoomType().ordinal()]--;
+            }
+            updatedCounts[state.room.getRoomType().ordinal()]++;
+        }
+        for (String roomNumber : removedRoomNumbers) {
+            Map<String, RoomState> partition = writablePartition(updatedPartitions, copied, partitionOf(roomNumber));
+            RoomState removed = partition.remove(roomNumber);
+            if (removed != null) {
+                updatedRoomCount--;
+                updatedCounts[removed.room.getRoomType().ordinal()]--;
+            }
+        }
+        return new AvailabilitySnapshot(version + 1, updatedPartitions, updatedRoomCount, updatedCounts);
+    }
+
+    private static Map<String, RoomState> writablePartition(Map<String, RoomState>[] partitions, boolean[] copied,
+                                                            int partition) {
+        if (!copied[partition]) {
+            partitions[partition] = new LinkedHashMap<>(partitions[partition]);
+            copied[partition] = true;
+        }
+        return partitions[partition];
+    }
+
+    /**
+     * Returns the next version, without the room with the given number.
+     */
+    AvailabilitySnapshot without(String roomNumber) {
+        int partition = partitionOf(roomNumber);
+        RoomState removed = partitions[partition].get(roomNumber);
+        if (removed == null) {
+            return this;
+        }
+        Map<String, RoomState> updated = new LinkedHashMap<>(partitions[partition]);
+        updated.remove(roomNumber);
+        Map<String, RoomState>[] updatedPartitions = partitions.clone();
+        updatedPartitions[partition] = updated;
+        int[] updatedCounts = roomCountByType.clone();
+        updatedCounts[removed.room.getRoomType().ordinal()]--;
+        return new AvailabilitySnapshot(version + 1, updatedPartitions, roomCount - 1, updatedCounts);
+    }
+
+    /**
+     * Returns the room states of one partition, for scanning the partitions separately.
+     * @param partition the partition, from 0 to PARTITIONS - 1
+     */
+    Collection<RoomState> getPartition(int partition) {
+        return partitions[partition].values();
+    }
+
+    /**
+     * Iterates the room states of this version, partition by partition.
+     */
+    @Override
+    public Iterator<RoomState> iterator() {
+        return new Iterator<RoomState>() {
+            private int partition;
+            private Iterator<RoomState> current = partitions[0].values().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (partition == PARTITIONS - 1) {
+                        return false;
+                    }
+                    current = partitions[++partition].values().iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public RoomState next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private static int partitionOf(String roomNumber) {
+        int hash = roomNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (PARTITIONS - 1);
+    }
+}
@@ -0,0 +1,286 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An alternative write path: bookings, new rooms and new customers are queued as commands and applied, one
+ * after another, by a single writer thread.
+ *
+ * Callers put their command into a lock-free queue and get a future at once; they never wait for each other.
+ * The writer drains the queue in batches of up to MAX_BATCH commands, applies each batch in queue order
+ * taking the ReservationService lock once per run of room commands instead of once per command, and then
+ * completes the futures of the batch. When all writes come through here the lock is never contended, and the
+ * order in which the bookings were applied is the order of the queue.
+ *
+ * The direct path, calling ReservationService and CustomerService from the request threads, keeps working
+ * alongside; the resources use the sequencer when the application is started with -Dhotel.writes=sequencer.
+ */
+public class BookingSequencer {
+
+    // The most commands the writer applies before completing their futures
+    static final int MAX_BATCH = 256;
+
+    private final ReservationService reservationService;
+    private final CustomerService customerService;
+
+    private final MpscQueue<Command<?>> queue = new MpscQueue<>();
+    private final Thread writer;
+
+    // Set by the writer before it parks, so that producers know to wake it
+    private volatile boolean writerParked;
+
+    // Written only by the writer
+    private volatile long appliedCommands;
+    private volatile long appliedBatches;
+
+    // The singleton instance of the BookingSequencer class
+    private static BookingSequencer instance;
+
+    /**
+     * A queued change and the future of its caller.
+     */
+    private abstract static class Command<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Throwable error;
+
+        /**
+         * Whether the command changes rooms or reservations, and so runs under the ReservationService lock.
+         */
+        abstract boolean changesRooms();
+
+        abstract T apply();
+
+        void run() {
+            try {
+                result = apply();
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Private constructor prevents external instantiation; starts the writer thread.
+     * @param reservationService the singleton object of ReservationService class
+     * @param customerService the singleton object of CustomerService class
+     */
+    private BookingSequencer(ReservationService reservationService, CustomerService customerService) {
+        this.reservationService = reservationService;
+        this.customerService = customerService;
+        this.writer = new Thread(this::run, "booking-sequencer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized BookingSequencer getInstance() {
+        if (instance == null) {
+            instance = new BookingSequencer(ReservationService.getInstance(), CustomerService.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether the application was started with -Dhotel.writes=sequencer, so that the resources send
+     * their writes through the sequencer.
+     */
+    public static boolean isEnabled() {
+        return "sequencer".equals(System.getProperty("hotel.writes", "direct"));
+    }
+
+    /**
+     * Queues a booking. It is checked and made like ReservationService.reserveARoom, on the writer thread.
+     * @param customer the customer making the reservation
+     * @param room the room to reserve
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @param holderId the ID the holds were placed with, or null if the caller holds nothing
+     * @param idempotencyKey the request key of the booking, or null to book without one
+     * @return a future of the new reservation; it fails with the IllegalArgumentException of a rejected booking
+     */
+    public CompletableFuture<Reservation> reserveARoom(Customer customer, IRoom room, Date checkinDate,
+                                                       Date checkoutDate, String holderId, String idempotencyKey) {
+        return submit(new Command<Reservation>() {
+            @Override
+            boolean changesRooms() {
+                return true;
+            }
+
+            @Override
+            Reservation apply() {
+                return idempotencyKey == null
+                        ? reservationService.reserveARoom(customer, room, checkinDate, checkoutDate, holderId)
+                        : reservationService.reserveARoom(customer, room, checkinDate, checkoutDate, holderId,
+                        idempotencyKey);
+            }
+        });
+    }
+
+    /**
+     * Queues a new room.
+     * @param room the room to add
+     * @return a future of true if the room was added, false if a room with the same number already exists
+     */
+    public CompletableFuture<Boolean> addRoom(IRoom room) {
+        return submit(new Command<Boolean>() {
+            @Override
+            boolean changesRooms() {
+                return true;
+            }
+
+            @Override
+            Boolean apply() {
+                if (reservationService.getARoom(room.getRoomNumber()) != null) {
+                    return false;
+                }
+                reservationService.addRoom(room);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Queues several new rooms, stored in one batch like ReservationService.addRooms.
+     * @param rooms the rooms to add
+     * @return a future of the rooms that were added; rooms whose number is already taken are skipped
+     */
+    public CompletableFuture<Collection<IRoom>> addRooms(Collection<IRoom> rooms) {
+        return submit(new Command<Collection<IRoom>>() {
+            @Override
+            boolean changesRooms() {
+                return true;
+            }
+
+            @Override
+            Collection<IRoom> apply() {
+                return reservationService.addRooms(rooms);
+            }
+        });
+    }
+
+    /**
+     * Queues a new customer.
+     * @param email the customer email address
+     * @param firstName the customer first name
+     * @param lastName the customer last name
+     * @return a future completed when the customer has been added; it fails if the email is invalid or taken
+     */
+    public CompletableFuture<Void> addCustomer(String email, String firstName, String lastName) {
+        return submit(new Command<Void>() {
+            @Override
+            boolean changesRooms() {
+                return false;
+            }
+
+            @Override
+            Void apply() {
+                customerService.addCustomer(email, firstName, lastName);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Waits for a queued command, for callers that need its result before they go on.
+     * @param future the future returned by the sequencer
+     * @param <T> the type of the result
+     * @return the result
+     * @throws IllegalArgumentException if the command was rejected, as the direct call would have thrown
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the average number of commands the writer applied per batch, 0 if it applied none.
+     */
+    public double getAverageBatchSize() {
+        long batches = appliedBatches;
+        return batches == 0 ? 0 : (double) appliedCommands / batches;
+    }
+
+    private <T> CompletableFuture<T> submit(Command<T> command) {
+        queue.offer(command);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return command.future;
+    }
+
+    private void run() {
+        List<Command<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            Command<?> command;
+            while (batch.size() < MAX_BATCH && (command = queue.poll()) != null) {
+                batch.add(command);
+            }
+            if (batch.isEmpty()) {
+                if (queue.isEmpty()) {
+                    writerParked = true;
+                    // A producer that missed the flag has already made the queue non-empty
+                    if (queue.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    writerParked = false;
+                } else {
+                    // A producer is between swapping in its node and linking it
+                    Thread.yield();
+                }
+                continue;
+            }
+            applyBatch(batch);
+            for (Command<?> applied : batch) {
+                applied.complete();
+            }
+            appliedCommands += batch.size();
+            appliedBatches++;
+            batch.clear();
+        }
+    }
+
+    /**
+     * Applies the commands in order; each run of room commands takes the ReservationService lock once.
+     */
+    private void applyBatch(List<Command<?>> batch) {
+        int i = 0;
+        while (i < batch.size()) {
+            if (!batch.get(i).changesRooms()) {
+                batch.get(i++).run();
+                continue;
+            }
+            synchronized (reservationService) {
+                while (i < batch.size() && batch.get(i).changesRooms()) {
+                    batch.get(i++).run();
+                }
+            }
+        }
+    }
+}
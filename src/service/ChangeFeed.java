@@ -0,0 +1,143 @@
+package service;
+
+import model.ChangeEvent;
+
+/**
+ * An in-process feed of every new customer, room and reservation.
+ * Events are written into a preallocated ring buffer and numbered with a monotonically increasing sequence.
+ * Subscribers read at their own pace through a {@link ChangeFeedSubscription}; the publisher never waits for them.
+ * A subscriber that falls more than one buffer length behind loses the overwritten events and is told how many.
+ */
+public class ChangeFeed {
+
+    // Number of slots in the ring buffer, must be a power of two
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final Slot[] slots;
+    private final int mask;
+
+    // Sequence of the last fully written event, -1 while the feed is empty
+    private volatile long publishedSequence = -1;
+
+    // The singleton instance of the ChangeFeed class
+    private static ChangeFeed instance;
+
+    /**
+     * A reusable ring buffer entry. The sequence is written last, so a reader that sees the expected
+     * sequence before and after reading the other fields knows it read a consistent event.
+     */
+    private static final class Slot {
+        volatile long sequence = -1;
+        volatile ChangeEvent.Type type;
+        volatile Object payload;
+    }
+
+    /**
+     * Private constructor prevents external instantiation.
+     * @param capacity the number of slots, must be a power of two
+     */
+    private ChangeFeed(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Change feed capacity must be a positive power of two");
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the singleton instance of the ChangeFeed class: new one, if instance does not exist,
+     * otherwise existing one
+     * @return the singleton instance
+     */
+    public static synchronized ChangeFeed getInstance() {
+        if (instance == null) {
+            instance = new ChangeFeed(DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    /**
+     * Appends a change to the feed. Only the services call this; publishing is serialized, so the buffer
+     * always has a single writer, and it never blocks on subscribers.
+     * @param type the kind of change
+     * @param payload the customer, room, reservation or booking by room type the change refers to
+     * @return the sequence number assigned to the event
+     */
+    synchronized long publish(ChangeEvent.Type type, Object payload) {
+        long sequence = publishedSequence + 1;
+        Slot slot = slots[(int) (sequence & mask)];
+        // Invalidate the slot first so a lagging reader cannot mix the old and the new event
+        slot.sequence = -1;
+        slot.type = type;
+        slot.payload = payload;
+        slot.sequence = sequence;
+        publishedSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Creates a subscription that starts with the next event to be published.
+     * @return a new subscription
+     */
+    public ChangeFeedSubscription subscribe() {
+        return new ChangeFeedSubscription(this, publishedSequence + 1);
+    }
+
+    /**
+     * Creates a subscription that replays the feed starting at the given sequence. If that sequence is no
+     * longer held in the buffer, the subscription starts at the oldest retained event and reports the gap.
+     * @param fromSequence the first sequence to deliver
+     * @return a new subscription
+     */
+    public ChangeFeedSubscription subscribe(long fromSequence) {
+        if (fromSequence < 0) {
+            throw new IllegalArgumentException("Sequence must be 0 or a positive value");
+        }
+        return new ChangeFeedSubscription(this, fromSequence);
+    }
+
+    /**
+     * Returns the sequence of the last published event.
+     * @return the last published sequence, or -1 if nothing has been published yet
+     */
+    public long getPublishedSequence() {
+        return publishedSequence;
+    }
+
+    /**
+     * Returns the oldest sequence that can still be read from the buffer.
+     * @return the oldest retained sequence
+     */
+    public long getOldestRetainedSequence() {
+        return Math.max(0, publishedSequence - slots.length + 1);
+    }
+
+    /**
+     * Returns the number of events the buffer retains.
+     * @return the buffer capacity
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Reads the event with the given sequence.
+     * @param sequence the sequence to read, must not be greater than the published sequence
+     * @return the event, or null if it has already been overwritten
+     */
+    ChangeEvent read(long sequence) {
+        Slot slot = slots[(int) (sequence & mask)];
+        if (slot.sequence != sequence) {
+            return null;
+        }
+        ChangeEvent.Type type = slot.type;
+        Object payload = slot.payload;
+        if (slot.sequence != sequence) {
+            return null;
+        }
+        return new ChangeEvent(sequence, type, payload);
+    }
+}
@@ -0,0 +1,121 @@
+package service;
+
+import model.ChangeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An independent reader of the {@link ChangeFeed}. Each subscription keeps its own cursor, so consumers
+ * progress at their own pace and apply backpressure simply by polling less often or in smaller batches.
+ * A subscription is meant to be used by a single consumer thread.
+ */
+public class ChangeFeedSubscription {
+
+    // How long a waiting poll parks between checks for new events
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ChangeFeed feed;
+
+    // Sequence of the next event this subscription will deliver
+    private long nextSequence;
+
+    // Number of events that were overwritten before this subscription could read them
+    private long missedEvents;
+
+    /**
+     * Creates a new subscription positioned at the given sequence.
+     * @param feed the feed to read from
+     * @param nextSequence the first sequence to deliver
+     */
+    ChangeFeedSubscription(ChangeFeed feed, long nextSequence) {
+        this.feed = feed;
+        this.nextSequence = nextSequence;
+    }
+
+    /**
+     * Returns up to maxBatchSize events that have been published since the last poll, without waiting.
+     * @param maxBatchSize the largest number of events to return
+     * @return the next events in sequence order, possibly empty
+     */
+    public List<ChangeEvent> poll(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be a positive value");
+        }
+        List<ChangeEvent> batch = new ArrayList<>();
+        while (batch.size() < maxBatchSize && nextSequence <= feed.getPublishedSequence()) {
+            skipOverwrittenEvents();
+            ChangeEvent event = feed.read(nextSequence);
+            if (event == null) {
+                // The producer lapped us while reading; skip ahead on the next iteration
+                continue;
+            }
+            batch.add(event);
+            nextSequence++;
+        }
+        return batch;
+    }
+
+    /**
+     * Returns up to maxBatchSize events, waiting at most the given time for at least one to be published.
+     * @param maxBatchSize the largest number of events to return
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return the next events in sequence order, empty if the wait timed out
+     */
+    public List<ChangeEvent> poll(int maxBatchSize, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (nextSequence > feed.getPublishedSequence() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return poll(maxBatchSize);
+    }
+
+    /**
+     * Moves the cursor so that the next poll starts at the given sequence.
+     * @param sequence the sequence to replay from
+     */
+    public void seek(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Sequence must be 0 or a positive value");
+        }
+        nextSequence = sequence;
+    }
+
+    /**
+     * Returns the sequence of the next event this subscription will deliver.
+     * @return the next sequence
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Returns how many published events this subscription has not read yet.
+     * @return the number of pending events
+     */
+    public long getLag() {
+        return Math.max(0, feed.getPublishedSequence() + 1 - nextSequence);
+    }
+
+    /**
+     * Returns how many events were overwritten before this subscription could read them.
+     * @return the number of missed events
+     */
+    public long getMissedEvents() {
+        return missedEvents;
+    }
+
+    /**
+     * Jumps over events the producer has already overwritten and records how many were lost.
+     */
+    private void skipOverwrittenEvents() {
+        long oldest = feed.getOldestRetainedSequence();
+        if (nextSequence < oldest) {
+            missedEvents += oldest - nextSequence;
+            nextSequence = oldest;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a table in a compressed columnar binary format. Rows are collected into batches ("row groups");
+ * each batch stores every column as one contiguous, separately compressed chunk, so a reader can load only
+ * the columns it needs and similar values compress well together.
+ *
+ * <pre>
+ * file      := magic "HCOL" | version:int32 (1) | columnCount:int32 | column* | batch* | 0:int32
+ * column    := name:UTF | type:int8 (0 STRING, 1 INT64, 2 FLOAT64, 3 DATE as day number)
+ * batch     := rowCount:int32 | chunk{columnCount}
+ * chunk     := rawLength:int32 | compressedLength:int32 | DEFLATE(values)
+ * values    := STRING: varint length + UTF-8 bytes; FLOAT64: IEEE 754, big-endian;
+ *              INT64 and DATE: zigzag varint of the difference to the previous value of the batch
+ * </pre>
+ * All integers are big-endian. The format is written in the same way DataOutputStream writes its types.
+ */
+final class ColumnarTableWriter implements TableWriter {
+
+    static final byte[] MAGIC = {'H', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+
+    private final DataOutputStream output;
+    private final ColumnType[] types;
+    private final int batchSize;
+    private final ByteArrayOutputStream[] chunks;
+    private final long[] previousValues;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private byte[] compressed = new byte[8192];
+    private int batchRows;
+    private long rowCount;
+
+    /**
+     * Creates the file and writes the header.
+     * @param file the file to create or replace
+     * @param names the column names
+     * @param types the column types
+     * @param batchSize the number of rows per batch
+     */
+    ColumnarTableWriter(Path file, String[] names, ColumnType[] types, int batchSize) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        this.types = types;
+        this.batchSize = batchSize;
+        this.chunks = new ByteArrayOutputStream[types.length];
+        this.previousValues = new long[types.length];
+        for (int i = 0; i < types.length; i++) {
+            chunks[i] = new ByteArrayOutputStream();
+        }
+        output.write(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(names.length);
+        for (int i = 0; i < names.length; i++) {
+            output.writeUTF(names[i]);
+            output.writeByte(types[i].ordinal());
+        }
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream chunk = chunks[i];
+            switch (types[i]) {
+                case STRING:
+                    byte[] bytes = ((String) values[i]).getBytes(StandardCharsets.UTF_8);
+                    writeVarint(chunk, bytes.length);
+                    chunk.write(bytes, 0, bytes.length);
+                    break;
+                case INT64:
+                case DATE:
+                    long value = ((Number) values[i]).longValue();
+                    long delta = value - previousValues[i];
+                    writeVarint(chunk, (delta << 1) ^ (delta >> 63));
+                    previousValues[i] = value;
+                    break;
+                case FLOAT64:
+                    long bits = Double.doubleToLongBits(((Number) values[i]).doubleValue());
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        chunk.write((int) (bits >>> shift));
+                    }
+                    break;
+            }
+        }
+        rowCount++;
+        if (++batchRows == batchSize) {
+            flushBatch();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBatch();
+            output.writeInt(0);
+        } finally {
+            deflater.end();
+            output.close();
+        }
+    }
+
+    private void flushBatch() throws IOException {
+        if (batchRows == 0) {
+            return;
+        }
+        output.writeInt(batchRows);
+        for (int i = 0; i < chunks.length; i++) {
+            byte[] raw = chunks[i].toByteArray();
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            output.writeInt(raw.length);
+            output.writeInt(length);
+            output.write(compressed, 0, length);
+            chunks[i].reset();
+            previousValues[i] = 0;
+        }
+        batchRows = 0;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream chunk, long value) {
+        while ((value & ~0x7FL) != 0) {
+            chunk.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        chunk.write((int) value);
+    }
+}
@@ -0,0 +1,424 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.RoomType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A heap backend for hotels with a long reservation history. Reservations are kept as rows of primitive
+ * columns (see ReservationColumns) that refer to rooms and customers by index, and Reservation objects are
+ * created only when a reservation is read. The rooms and the reservations are stored together, so the store
+ * provides both repositories: rooms() and reservations().
+ *
+ * Dates are kept with day precision. Stays that start and end on the same day cannot be stored, and a
+ * reservation read back has its dates at midnight, like the dates the menus parse.
+ *
+ * Writes are serialized by the store lock. Readers take no lock: they read a row count first and then the
+ * room and customer tables, which are published before any row that refers to them.
+ */
+public class CompactReservationStore {
+
+    /**
+     * The rooms with their indexes. Never modified once published; a room change publishes a new table.
+     */
+    private static final class RoomTable {
+        final Map<String, Integer> indexByNumber;
+        // Rooms by index; null for a removed room
+        final IRoom[] rooms;
+        // Rows of each room, by room index
+        final ReservationColumns.RowList[] rowsByRoom;
+        final int[] countByType;
+
+        RoomTable(Map<String, Integer> indexByNumber, IRoom[] rooms, ReservationColumns.RowList[] rowsByRoom,
+                  int[] countByType) {
+            this.indexByNumber = indexByNumber;
+            this.rooms = rooms;
+            this.rowsByRoom = rowsByRoom;
+            this.countByType = countByType;
+        }
+    }
+
+    private final ReservationColumns columns = new ReservationColumns();
+
+    private volatile RoomTable roomTable = new RoomTable(new HashMap<>(), new IRoom[0],
+            new ReservationColumns.RowList[0], new int[RoomType.values().length]);
+
+    // Customers by index, and the rows of each customer; grown by copying, published before the rows
+    private final Map<String, Integer> customerIndex = new ConcurrentHashMap<>();
+    private volatile Customer[] customers = new Customer[16];
+    private volatile ReservationColumns.RowList[] rowsByCustomer = new ReservationColumns.RowList[16];
+    private int customerCount;
+
+    private final RoomRepository roomRepository = new Rooms();
+    private final ReservationRepository reservationRepository = new Reservations();
+
+    public RoomRepository rooms() {
+        return roomRepository;
+    }
+
+    public ReservationRepository reservations() {
+        return reservationRepository;
+    }
+
+    /**
+     * Returns the bytes used by the reservation rows and the per-room and per-customer row lists, without
+     * the rooms and customers themselves.
+     * @return the approximate footprint of the reservations
+     */
+    public long getReservationFootprintBytes() {
+        long bytes = columns.footprintBytes();
+        for (ReservationColumns.RowList rows : roomTable.rowsByRoom) {
+            bytes += rows.footprintBytes();
+        }
+        ReservationColumns.RowList[] customerRows = rowsByCustomer;
+        for (ReservationColumns.RowList rows : customerRows) {
+            if (rows != null) {
+                bytes += rows.footprintBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private synchronized boolean addRooms(Collection<IRoom> newRooms, Collection<IRoom> added) {
+        RoomTable table = roomTable;
+        Map<String, Integer> indexByNumber = new HashMap<>(table.indexByNumber);
+        IRoom[] rooms = Arrays.copyOf(table.rooms, table.rooms.length + newRooms.size());
+        ReservationColumns.RowList[] rowsByRoom = Arrays.copyOf(table.rowsByRoom, rooms.length);
+        int[] countByType = table.countByType.clone();
+        int next = table.rooms.length;
+        for (IRoom room : newRooms) {
+            if (indexByNumber.putIfAbsent(room.getRoomNumber(), next) == null) {
+                rooms[next] = room;
+                rowsByRoom[next] = new ReservationColumns.RowList();
+                countByType[room.getRoomType().ordinal()]++;
+                added.add(room);
+                next++;
+            }
+        }
+        if (added.isEmpty()) {
+            return false;
+        }
+        roomTable = new RoomTable(indexByNumber, Arrays.copyOf(rooms, next), Arrays.copyOf(rowsByRoom, next),
+                countByType);
+        return true;
+    }
+
+    private synchronized void changeRooms(Collection<IRoom> upserts, Collection<String> removedRoomNumbers) {
+        RoomTable table = roomTable;
+        Map<String, Integer> indexByNumber = new HashMap<>(table.indexByNumber);
+        IRoom[] rooms = Arrays.copyOf(table.rooms, table.rooms.length + upserts.size());
+        ReservationColumns.RowList[] rowsByRoom = Arrays.copyOf(table.rowsByRoom, rooms.length);
+        int[] countByType = table.countByType.clone();
+        int next = table.rooms.length;
+        for (IRoom room : upserts) {
+            Integer index = indexByNumber.get(room.getRoomNumber());
+            if (index == null) {
+                index = next++;
+                indexByNumber.put(room.getRoomNumber(), index);
+                rowsByRoom[index] = new ReservationColumns.RowList();
+            } else {
+                countByType[rooms[index].getRoomType().ordinal()]--;
+            }
+            rooms[index] = room;
+            countByType[room.getRoomType().ordinal()]++;
+        }
+        for (String roomNumber : removedRoomNumbers) {
+            Integer index = indexByNumber.remove(roomNumber);
+            if (index != null) {
+                countByType[rooms[index].getRoomType().ordinal()]--;
+                removeRows(rowsByRoom[index]);
+                rooms[index] = null;
+            }
+        }
+        roomTable = new RoomTable(indexByNumber, Arrays.copyOf(rooms, next), Arrays.copyOf(rowsByRoom, next),
+                countByType);
+    }
+
+    private void removeRows(ReservationColumns.RowList rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            if (!columns.isRemoved(row)) {
+                columns.remove(row);
+            }
+        }
+    }
+
+    private synchronized void addReservation(Reservation reservation) {
+        Integer room = roomTable.indexByNumber.get(reservation.getRoom().getRoomNumber());
+        if (room == null) {
+            throw new IllegalArgumentException("The room does not exist.");
+        }
+        long checkInDay = EpochDays.of(reservation.getCheckinDate());
+        long checkOutDay = EpochDays.of(reservation.getCheckoutDate());
+        if (checkInDay >= checkOutDay) {
+            throw new IllegalArgumentException("Check-in and check-out must be on different days.");
+        }
+        int customer = customerIndexOf(reservation.getCustomer());
+        int row = columns.append(room, customer, (int) checkInDay, (int) checkOutDay);
+        roomTable.rowsByRoom[room].add(row);
+        rowsByCustomer[customer].add(row);
+    }
+
+    private int customerIndexOf(Customer customer) {
+        Integer index = customerIndex.get(customer.getEmail());
+        if (index != null) {
+            return index;
+        }
+        Customer[] customerTable = customers;
+        ReservationColumns.RowList[] rowTable = rowsByCustomer;
+        if (customerCount == customerTable.length) {
+            customerTable = Arrays.copyOf(customerTable, customerCount * 2);
+            rowTable = Arrays.copyOf(rowTable, customerCount * 2);
+        }
+        int added = customerCount++;
+        customerTable[added] = customer;
+        rowTable[added] = new ReservationColumns.RowList();
+        // Publish the arrays with the new entry before any row refers to it
+        customers = customerTable;
+        rowsByCustomer = rowTable;
+        customerIndex.put(customer.getEmail(), added);
+        return added;
+    }
+
+    private synchronized boolean removeReservation(Reservation reservation) {
+        Integer room = roomTable.indexByNumber.get(reservation.getRoom().getRoomNumber());
+        Integer customer = customerIndex.get(reservation.getCustomer().getEmail());
+        if (room == null || customer == null) {
+            return false;
+        }
+        int row = findRow(roomTable.rowsByRoom[room], customer, EpochDays.of(reservation.getCheckinDate()),
+                EpochDays.of(reservation.getCheckoutDate()));
+        if (row < 0) {
+            return false;
+        }
+        columns.remove(row);
+        return true;
+    }
+
+    private int findRow(ReservationColumns.RowList rows, int customer, long checkInDay, long checkOutDay) {
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            if (columns.customer(row) == customer && columns.checkInDay(row) == checkInDay
+                    && columns.checkOutDay(row) == checkOutDay) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the inclusive overlap rule against the live rows of a room.
+     */
+    private boolean isFree(ReservationColumns.RowList rows, long checkInDay, long checkOutDay) {
+        int count = rows.size();
+        for (int i = 0; i < count; i++) {
+            int row = rows.get(i);
+            if (!columns.isRemoved(row) && checkInDay <= columns.checkOutDay(row)
+                    && checkOutDay >= columns.checkInDay(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the Reservation view of a row, or returns null if the row is removed. The customer column is read
+     * once: a cancellation can mark the row removed at any time while a reader looks at it.
+     */
+    private Reservation view(RoomTable table, Customer[] customerTable, int row) {
+        int customer = columns.customer(row);
+        if (customer == ReservationColumns.REMOVED) {
+            return null;
+        }
+        return new Reservation(customerTable[customer], table.rooms[columns.room(row)],
+                EpochDays.toDate(columns.checkInDay(row)), EpochDays.toDate(columns.checkOutDay(row)));
+    }
+
+    private Collection<Reservation> views(ReservationColumns.RowList rows) {
+        // The count first: the tables read after it cover every room and customer its rows refer to
+        int count = rows.size();
+        RoomTable table = roomTable;
+        Customer[] customerTable = customers;
+        Collection<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Reservation reservation = view(table, customerTable, rows.get(i));
+            if (reservation != null) {
+                reservations.add(reservation);
+            }
+        }
+        return reservations;
+    }
+
+    private final class Rooms implements RoomRepository {
+
+        @Override
+        public boolean add(IRoom room) {
+            return addRooms(Collections.singletonList(room), new ArrayList<>());
+        }
+
+        @Override
+        public Collection<IRoom> addAll(Collection<IRoom> rooms) {
+            Collection<IRoom> added = new ArrayList<>();
+            addRooms(rooms, added);
+            return added;
+        }
+
+        @Override
+        public boolean remove(String roomNumber) {
+            synchronized (CompactReservationStore.this) {
+                if (!roomTable.indexByNumber.containsKey(roomNumber)) {
+                    return false;
+                }
+                changeRooms(Collections.emptyList(), Collections.singletonList(roomNumber));
+                return true;
+            }
+        }
+
+        @Override
+        public void applyChanges(Collection<IRoom> upserts, Collection<String> removedRoomNumbers) {
+            changeRooms(upserts, removedRoomNumbers);
+        }
+
+        @Override
+        public IRoom findByNumber(String roomNumber) {
+            RoomTable table = roomTable;
+            Integer index = table.indexByNumber.get(roomNumber);
+            return index == null ? null : table.rooms[index];
+        }
+
+        @Override
+        public Collection<IRoom> findAll() {
+            RoomTable table = roomTable;
+            Collection<IRoom> allRooms = new ArrayList<>(table.indexByNumber.size());
+            for (IRoom room : table.rooms) {
+                if (room != null) {
+                    allRooms.add(room);
+                }
+            }
+            return allRooms;
+        }
+
+        @Override
+        public int countByType(RoomType roomType) {
+            return roomTable.countByType[roomType.ordinal()];
+        }
+
+        @Override
+        public void scanAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> visitor) {
+            RoomTable table = roomTable;
+            long checkInDay = EpochDays.of(checkInDate);
+            long checkOutDay = EpochDays.of(checkOutDate);
+            for (int i = 0; i < table.rooms.length; i++) {
+                if (table.rooms[i] != null && isFree(table.rowsByRoom[i], checkInDay, checkOutDay)
+                        && !visitor.test(table.rooms[i])) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public List<IRoom> findAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> filter,
+                                         ForkJoinPool pool) {
+            RoomTable table = roomTable;
+            long checkInDay = EpochDays.of(checkInDate);
+            long checkOutDay = EpochDays.of(checkOutDate);
+            ParallelRoomScan.Slots roomIndexes = (first, last, matches) -> {
+                for (int i = first; i < last; i++) {
+                    if (table.rooms[i] != null && isFree(table.rowsByRoom[i], checkInDay, checkOutDay)
+                            && filter.test(table.rooms[i])) {
+                        matches.add(table.rooms[i]);
+                    }
+                }
+            };
+            if (table.rooms.length < ParallelRoomScan.SEQUENTIAL_THRESHOLD) {
+                List<IRoom> matches = new ArrayList<>();
+                roomIndexes.scan(0, table.rooms.length, matches);
+                return matches;
+            }
+            return pool.invoke(new ParallelRoomScan(roomIndexes, 0, table.rooms.length,
+                    ParallelRoomScan.ROOMS_PER_TASK));
+        }
+    }
+
+    private final class Reservations implements ReservationRepository {
+
+        @Override
+        public void add(Reservation reservation) {
+            addReservation(reservation);
+        }
+
+        @Override
+        public void addAll(Collection<Reservation> reservations) {
+            synchronized (CompactReservationStore.this) {
+                for (Reservation reservation : reservations) {
+                    addReservation(reservation);
+                }
+            }
+        }
+
+        @Override
+        public boolean remove(Reservation reservation) {
+            return removeReservation(reservation);
+        }
+
+        @Override
+        public boolean isAvailable(String roomNumber, Date checkInDate, Date checkOutDate) {
+            RoomTable table = roomTable;
+            Integer index = table.indexByNumber.get(roomNumber);
+            return index != null
+                    && isFree(table.rowsByRoom[index], EpochDays.of(checkInDate), EpochDays.of(checkOutDate));
+        }
+
+        @Override
+        public Collection<Reservation> findByRoom(String roomNumber) {
+            RoomTable table = roomTable;
+            Integer index = table.indexByNumber.get(roomNumber);
+            return index == null ? new ArrayList<>() : views(table.rowsByRoom[index]);
+        }
+
+        @Override
+        public Collection<Reservation> findByCustomer(String email) {
+            Integer index = customerIndex.get(email);
+            return index == null ? new ArrayList<>() : views(rowsByCustomer[index]);
+        }
+
+        @Override
+        public void scanByCheckIn(Date fromCheckIn, Date toCheckIn, Consumer<Reservation> visitor) {
+            long fromDay = fromCheckIn == null ? Long.MIN_VALUE : EpochDays.of(fromCheckIn);
+            long toDay = toCheckIn == null ? Long.MAX_VALUE : EpochDays.of(toCheckIn);
+            int count = columns.size();
+            RoomTable table = roomTable;
+            Customer[] customerTable = customers;
+            for (int row = 0; row < count; row++) {
+                int checkInDay = columns.checkInDay(row);
+                if (checkInDay >= fromDay && checkInDay <= toDay) {
+                    Reservation reservation = view(table, customerTable, row);
+                    if (reservation != null) {
+                        visitor.accept(reservation);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Collection<Reservation> findAll() {
+            Collection<Reservation> reservations = new ArrayList<>();
+            scanByCheckIn(null, null, reservations::add);
+            return reservations;
+        }
+    }
+}
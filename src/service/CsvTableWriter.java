@@ -0,0 +1,112 @@
+package service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Writes a table as RFC 4180 CSV with a header line. Dates are written as YYYY-MM-DD and prices with two
+ * decimals; values that contain a comma, a quote or a line break are quoted.
+ */
+final class CsvTableWriter implements TableWriter {
+
+    private final Writer output;
+    private final ColumnType[] types;
+    private final int batchSize;
+    private final StringBuilder batch = new StringBuilder();
+    private int batchRows;
+    private long rowCount;
+
+    /**
+     * Creates the file and writes the header line.
+     * @param file the file to create or replace
+     * @param names the column names
+     * @param types the column types
+     * @param batchSize the number of rows buffered before they are written
+     */
+    CsvTableWriter(Path file, String[] names, ColumnType[] types, int batchSize) throws IOException {
+        this.output = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.types = types;
+        this.batchSize = batchSize;
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                batch.append(',');
+            }
+            appendField(names[i]);
+        }
+        batch.append("\r\n");
+    }
+
+    @Override
+    public void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                batch.append(',');
+            }
+            switch (types[i]) {
+                case STRING:
+                    appendField((String) values[i]);
+                    break;
+                case INT64:
+                    batch.append(((Number) values[i]).longValue());
+                    break;
+                case FLOAT64:
+                    batch.append(String.format(Locale.ROOT, "%.2f", ((Number) values[i]).doubleValue()));
+                    break;
+                case DATE:
+                    batch.append(LocalDate.ofEpochDay(((Number) values[i]).longValue()));
+                    break;
+            }
+        }
+        batch.append("\r\n");
+        rowCount++;
+        if (++batchRows == batchSize) {
+            flushBatch();
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBatch();
+        } finally {
+            output.close();
+        }
+    }
+
+    private void flushBatch() throws IOException {
+        output.write(batch.toString());
+        batch.setLength(0);
+        batchRows = 0;
+    }
+
+    private void appendField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            batch.append(value);
+            return;
+        }
+        batch.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                batch.append('"');
+            }
+            batch.append(c);
+        }
+        batch.append('"');
+    }
+}
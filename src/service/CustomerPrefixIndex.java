@@ -0,0 +1,105 @@
+package service;
+
+import model.Customer;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * A sorted index of customers by the prefixes of their last name, first name and email address.
+ *
+ * Every customer has one key per field: the normalized field value (lower case, accents removed), a separator
+ * and the email address, which keeps keys unique. A prefix search is a range scan of the keys that start with
+ * the prefix, so it costs a logarithmic seek plus the matches it returns, whatever the number of customers.
+ * The index is a concurrent skip list: additions do not block searches.
+ */
+final class CustomerPrefixIndex {
+
+    // Sorts below every character a normalized value can contain, so "ann" + SEPARATOR comes before "anna"
+    private static final char SEPARATOR = '\u0000';
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ConcurrentSkipListMap<String, Customer> keys = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds a customer under its last name, first name and email address.
+     */
+    void add(Customer customer) {
+        for (String field : fieldsOf(customer)) {
+            keys.put(field + SEPARATOR + customer.getEmail(), customer);
+        }
+    }
+
+    /**
+     * Finds customers whose last name, first name or email address starts with the query. A query of several
+     * words matches customers with a field starting with each word, e.g. "ann sm" finds Ann Smith.
+     * @param query the prefix or prefixes to search for
+     * @param limit the largest number of customers to return
+     * @return the matching customers, ordered by the value that matched
+     */
+    List<Customer> search(String query, int limit) {
+        String[] words = WHITESPACE.split(normalize(query));
+        Set<Customer> matches = new LinkedHashSet<>();
+        if (words.length == 0 || words[0].isEmpty() || limit <= 0) {
+            return new ArrayList<>(matches);
+        }
+        // Scan the range of the longest word, the most selective one, and check the other words per customer
+        String longest = words[0];
+        for (String word : words) {
+            if (word.length() > longest.length()) {
+                longest = word;
+            }
+        }
+        NavigableMap<String, Customer> range = keys.subMap(longest, true, longest + Character.MAX_VALUE, true);
+        for (Map.Entry<String, Customer> entry : range.entrySet()) {
+            Customer customer = entry.getValue();
+            if (matchesAll(customer, words)) {
+                matches.add(customer);
+                if (matches.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(matches);
+    }
+
+    private static boolean matchesAll(Customer customer, String[] words) {
+        String[] fields = fieldsOf(customer);
+        for (String word : words) {
+            boolean matched = false;
+            for (String field : fields) {
+                if (field.startsWith(word)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] fieldsOf(Customer customer) {
+        return new String[]{normalize(customer.getLastName()), normalize(customer.getFirstName()),
+                normalize(customer.getEmail())};
+    }
+
+    /**
+     * Lower-cases a value and strips accents, so an accented "e" matches a plain one.
+     */
+    static String normalize(String value) {
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
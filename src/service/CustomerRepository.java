@@ -0,0 +1,32 @@
+package service;
+
+import model.Customer;
+
+import java.util.Collection;
+
+/**
+ * Storage for customers. CustomerService serializes all writes; implementations must allow reads to run
+ * concurrently with a write.
+ */
+public interface CustomerRepository {
+
+    /**
+     * Stores a new customer.
+     * @param customer the customer to store
+     * @return true if the customer was stored, false if a customer with the same email already exists
+     */
+    boolean add(Customer customer);
+
+    /**
+     * Returns the customer with the given email.
+     * @param email the email address of the customer
+     * @return the customer, or null if there is no such customer
+     */
+    Customer findByEmail(String email);
+
+    /**
+     * Returns all customers.
+     * @return a collection of all customers that the caller may modify
+     */
+    Collection<Customer> findAll();
+}
@@ -1,34 +1,46 @@
 package service;
 
+import model.ChangeEvent;
 import model.Customer;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
- * A service class that provides methods to add and retrieve customers.
+ * A service class that provides methods to add and retrieve customers. Customers are kept in the
+ * CustomerRepository chosen by Repositories.
  */
 public class CustomerService {
-    // A hashmap which stores  customer email addresses and associated customer objects
-    private Map<String, Customer> customers = new HashMap<>();
+    // Stores customers by email address
+    private final CustomerRepository customers;
+
+    // Customers by name and email prefix, for searches
+    private final CustomerPrefixIndex prefixIndex = new CustomerPrefixIndex();
 
     // The singleton instance of the CustomerService class
     private static CustomerService instance;
 
     /**
      * Private constructor prevents external instantiation.
+     * @param customers the storage of the customers
      */
-    private CustomerService() {}
+    private CustomerService(CustomerRepository customers) {
+        this.customers = customers;
+        // A persistent backend may already hold customers
+        for (Customer customer : customers.findAll()) {
+            prefixIndex.add(customer);
+        }
+    }
 
     /**
      * Returns the singleton instance of the CustomerService class: new one, if instance does not exist,
      * otherwise existing one
      * @return the singleton instance
      */
-    public static CustomerService getInstance() {
+    public static synchronized CustomerService getInstance() {
         if (instance == null){
-            instance = new CustomerService();
+            instance = new CustomerService(Repositories.getInstance().customers());
         }
         return instance;
     }
@@ -40,12 +52,13 @@ public class CustomerService {
      * @param lastName the customer last name
      * @throws IllegalArgumentException if the email is invalid
      */
-    public void addCustomer(String email, String firstName, String lastName){
-        if (customers.containsKey(email)) {
+    public synchronized void addCustomer(String email, String firstName, String lastName){
+        Customer customer = new Customer(firstName, lastName, email);
+        if (!customers.add(customer)) {
             throw new IllegalArgumentException("A customer with the same email address already exists.");
         }
-        Customer customer = new Customer(firstName, lastName, email);
-        customers.put(email, customer);
+        prefixIndex.add(customer);
+        ChangeFeed.getInstance().publish(ChangeEvent.Type.CUSTOMER_ADDED, customer);
     }
 
     /**
@@ -54,7 +67,18 @@ public class CustomerService {
      * @return the customer with the given email, or null if no such customer exists
      */
     public Customer getCustomer(String customerEmail){
-        return customers.get(customerEmail);
+        return customers.findByEmail(customerEmail);
+    }
+
+    /**
+     * Finds customers by the beginning of their last name, first name or email address, ignoring case and
+     * accents. Several words narrow the search, e.g. "ann smi" finds Ann Smith.
+     * @param query the prefix or prefixes to search for
+     * @param limit the largest number of customers to return
+     * @return up to limit matching customers, ordered by the value that matched
+     */
+    public List<Customer> searchCustomers(String query, int limit){
+        return prefixIndex.search(query, limit);
     }
 
     /**
@@ -62,7 +86,7 @@ public class CustomerService {
      * @return a collection of all customers in the service
      */
     public Collection<Customer> getAllCustomers(){
-        return customers.values();
+        return new ArrayList<>(customers.findAll());
     }
 
 
@@ -0,0 +1,35 @@
+package service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Converts between the Date values used by the API and day numbers (days since 1970-01-01) used by
+ * the date-based indexes. Dates are interpreted in the system time zone, like the menus parse them.
+ */
+public final class EpochDays {
+
+    /**
+     * Private constructor prevents instantiation of this utility class.
+     */
+    private EpochDays() {}
+
+    /**
+     * Returns the day number of the given date.
+     * @param date the date
+     * @return the number of days since 1970-01-01
+     */
+    public static long of(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * Returns the start of the given day as a Date.
+     * @param epochDay the number of days since 1970-01-01
+     * @return the date at midnight of that day
+     */
+    public static Date toDate(long epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
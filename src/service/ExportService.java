@@ -0,0 +1,143 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.RoomAttribute;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+/**
+ * Exports rooms, customers and reservations to files for reporting and analytics, one file per table:
+ * rooms, customers and reservations, with the extension .csv or .hcol (see ColumnarTableWriter).
+ *
+ * Reservations are streamed from the storage backend straight into the writers, which flush every
+ * BATCH_SIZE rows, so an export never holds a second copy of the reservations in memory.
+ */
+public class ExportService {
+
+    /**
+     * The file format of an export.
+     */
+    public enum Format {
+        CSV(".csv"), COLUMNAR(".hcol");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    // Rows buffered per table before they are written to disk
+    static final int BATCH_SIZE = 4096;
+
+    private static final String[] ROOM_COLUMNS = {"room_number", "room_type", "price", "attributes"};
+    private static final TableWriter.ColumnType[] ROOM_TYPES = {
+            TableWriter.ColumnType.STRING, TableWriter.ColumnType.STRING, TableWriter.ColumnType.FLOAT64,
+            TableWriter.ColumnType.STRING};
+
+    private static final String[] CUSTOMER_COLUMNS = {"email", "first_name", "last_name"};
+    private static final TableWriter.ColumnType[] CUSTOMER_TYPES = {
+            TableWriter.ColumnType.STRING, TableWriter.ColumnType.STRING, TableWriter.ColumnType.STRING};
+
+    private static final String[] RESERVATION_COLUMNS = {
+            "room_number", "email", "checkin_date", "checkout_date", "nights", "total_price"};
+    private static final TableWriter.ColumnType[] RESERVATION_TYPES = {
+            TableWriter.ColumnType.STRING, TableWriter.ColumnType.STRING, TableWriter.ColumnType.DATE,
+            TableWriter.ColumnType.DATE, TableWriter.ColumnType.INT64, TableWriter.ColumnType.FLOAT64};
+
+    private final CustomerService customerService;
+    private final ReservationService reservationService;
+
+    // The singleton instance of the ExportService class
+    private static ExportService instance;
+
+    /**
+     * Private constructor prevents external instantiation.
+     */
+    private ExportService(CustomerService customerService, ReservationService reservationService) {
+        this.customerService = customerService;
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * Returns the singleton instance of the ExportService class: new one, if instance does not exist,
+     * otherwise existing one
+     * @return the singleton instance
+     */
+    public static synchronized ExportService getInstance() {
+        if (instance == null) {
+            instance = new ExportService(CustomerService.getInstance(), ReservationService.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Writes every room and customer, and the reservations that check in within a date range, to a directory.
+     * Existing export files in the directory are replaced.
+     * @param directory the directory to write to; created if it does not exist
+     * @param format the file format
+     * @param fromCheckIn the earliest check-in date of the exported reservations, or null for no lower bound
+     * @param toCheckIn the latest check-in date of the exported reservations, or null for no upper bound
+     * @return the number of reservations written
+     * @throws IOException if a file cannot be written
+     */
+    public long export(Path directory, Format format, Date fromCheckIn, Date toCheckIn) throws IOException {
+        if (fromCheckIn != null && toCheckIn != null && fromCheckIn.after(toCheckIn)) {
+            throw new IllegalArgumentException("The start of the check-in range must not be after its end");
+        }
+        Files.createDirectories(directory);
+
+        try (TableWriter rooms = open(directory.resolve("rooms" + format.extension), format,
+                ROOM_COLUMNS, ROOM_TYPES)) {
+            for (IRoom room : reservationService.getAllRooms()) {
+                rooms.writeRow(room.getRoomNumber(), room.getRoomType().name(), room.getRoomPrice(),
+                        RoomAttribute.formatAll(room.getAttributes()));
+            }
+        }
+        try (TableWriter customers = open(directory.resolve("customers" + format.extension), format,
+                CUSTOMER_COLUMNS, CUSTOMER_TYPES)) {
+            for (Customer customer : customerService.getAllCustomers()) {
+                customers.writeRow(customer.getEmail(), customer.getFirstName(), customer.getLastName());
+            }
+        }
+        PricingService pricingService = PricingService.getInstance();
+        try (TableWriter reservations = open(directory.resolve("reservations" + format.extension), format,
+                RESERVATION_COLUMNS, RESERVATION_TYPES)) {
+            try {
+                reservationService.forEachReservation(fromCheckIn, toCheckIn, reservation -> {
+                    long checkIn = EpochDays.of(reservation.getCheckinDate());
+                    long checkOut = EpochDays.of(reservation.getCheckoutDate());
+                    long totalCents = pricingService.quoteCents(reservation.getRoom(),
+                            reservation.getCheckinDate(), reservation.getCheckoutDate());
+                    try {
+                        reservations.writeRow(reservation.getRoom().getRoomNumber(),
+                                reservation.getCustomer().getEmail(), checkIn, checkOut, checkOut - checkIn,
+                                totalCents / 100.0);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return reservations.getRowCount();
+        }
+    }
+
+    private static TableWriter open(Path file, Format format, String[] names, TableWriter.ColumnType[] types)
+            throws IOException {
+        switch (format) {
+            case CSV:
+                return new CsvTableWriter(file, names, types, BATCH_SIZE);
+            case COLUMNAR:
+                return new ColumnarTableWriter(file, names, types, BATCH_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
+}
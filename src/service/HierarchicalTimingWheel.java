@@ -0,0 +1,226 @@
+package service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hierarchical timing wheel that runs actions after a delay. Scheduling and cancelling are O(1), and a
+ * single thread drives every timeout, so hundreds of thousands of pending timeouts cost one small node each
+ * instead of one timer or thread each.
+ *
+ * Level 0 has one slot per tick. Every higher level has slots that span a whole turn of the level below it;
+ * when a lower wheel completes a turn, the matching slot of the level above is cascaded down.
+ */
+public class HierarchicalTimingWheel {
+
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * A scheduled action. Cancelling it before it expires prevents the action from running.
+     */
+    public static final class Timeout {
+        private final Runnable action;
+        private final long deadlineTick;
+        private Timeout previous;
+        private Timeout next;
+        private Bucket bucket;
+
+        private Timeout(Runnable action, long deadlineTick) {
+            this.action = action;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, so that a timeout can be unlinked in O(1) when it is cancelled.
+     */
+    private static final class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        Timeout takeAll() {
+            Timeout all = head;
+            for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+                timeout.bucket = null;
+            }
+            head = null;
+            return all;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    private final long startNanos = System.nanoTime();
+    private long currentTick;
+    private int pending;
+
+    /**
+     * Creates a timing wheel and starts the thread that drives it.
+     * @param tickDuration the resolution of the wheel
+     * @param unit the unit of the tick duration
+     * @param threadName the name of the driving thread
+     */
+    public HierarchicalTimingWheel(long tickDuration, TimeUnit unit, String threadName) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be a positive value");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        Thread ticker = new Thread(this::run, threadName);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Schedules an action. Actions run on the wheel thread and should be short.
+     * @param delay how long to wait before running the action
+     * @param unit the unit of the delay
+     * @param action the action to run
+     * @return a handle that can cancel the action
+     */
+    public synchronized Timeout schedule(long delay, TimeUnit unit, Runnable action) {
+        long ticks = (unit.toNanos(delay) + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(action, currentTick + Math.max(1, ticks));
+        place(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a scheduled action.
+     * @param timeout the handle returned by schedule
+     * @return true if the action was still pending, false if it already ran or was cancelled
+     */
+    public synchronized boolean cancel(Timeout timeout) {
+        if (timeout.bucket == null) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        pending--;
+        return true;
+    }
+
+    /**
+     * Returns the number of scheduled actions that have neither run nor been cancelled.
+     * @return the number of pending timeouts
+     */
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Puts a timeout into the lowest level whose range covers its remaining delay.
+     */
+    private void place(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        if (delta < 0) {
+            delta = 0;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (WHEEL_BITS * (level + 1)) || level == LEVELS - 1) {
+                long deadline = Math.max(timeout.deadlineTick, currentTick);
+                int slot = (int) ((deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                wheels[level][slot].add(timeout);
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+            Timeout expired = null;
+            synchronized (this) {
+                while (currentTick < targetTick) {
+                    currentTick++;
+                    cascade();
+                    expired = collectExpired(expired);
+                }
+            }
+            for (Timeout timeout = expired; timeout != null; ) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                try {
+                    timeout.action.run();
+                } catch (RuntimeException e) {
+                    System.out.println("Timing wheel: timeout action failed: " + e.getMessage());
+                }
+                timeout = next;
+            }
+            long sleepNanos = startNanos + (targetTick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the timeouts of the higher-level slots that now fall within the next turn of the level below.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            Timeout timeout = wheels[level][slot].takeAll();
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                place(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Unlinks the timeouts due at the current tick and chains them in front of the given list.
+     */
+    private Timeout collectExpired(Timeout expired) {
+        Timeout timeout = wheels[0][(int) (currentTick & WHEEL_MASK)].takeAll();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadlineTick <= currentTick) {
+                timeout.next = expired;
+                expired = timeout;
+                pending--;
+            } else {
+                place(timeout);
+            }
+            timeout = next;
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,78 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the results of requests by the key the client sent with them, so that a retried request can be
+ * answered with the original result instead of being executed again.
+ *
+ * Entries live for a fixed time and the table holds at most a fixed number of them; when it is full, the
+ * oldest entry goes first. Because every entry lives equally long, the order of insertion is also the order
+ * of expiry, and a plain queue finds the entries to drop without a timer per entry. Lookups are lock-free;
+ * additions must come from one writer at a time.
+ *
+ * @param <V> the type of the remembered results
+ */
+final class IdempotencyTable<V> {
+
+    private static final class Entry<V> {
+        final String key;
+        final V value;
+        final long expiresAtMillis;
+
+        Entry(String key, V value, long expiresAtMillis) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlMillis;
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    // The entries in insertion order, oldest first; only used by the writer
+    private final ArrayDeque<Entry<V>> insertionOrder = new ArrayDeque<>();
+
+    /**
+     * Creates an empty table.
+     * @param capacity the largest number of results remembered at once
+     * @param ttlMillis how long a result is remembered, in milliseconds
+     */
+    IdempotencyTable(int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the result remembered for a key.
+     * @param key the key the request was sent with
+     * @param nowMillis the current time
+     * @return the result, or null if the key is unknown or its result has expired
+     */
+    V get(String key, long nowMillis) {
+        Entry<V> entry = entries.get(key);
+        return entry == null || entry.expiresAtMillis <= nowMillis ? null : entry.value;
+    }
+
+    /**
+     * Remembers the result of a request and forgets expired results, and the oldest ones if the table is full.
+     * @param key the key the request was sent with; must not be in the table
+     * @param value the result
+     * @param nowMillis the current time
+     */
+    void put(String key, V value, long nowMillis) {
+        Entry<V> entry = new Entry<>(key, value, nowMillis + ttlMillis);
+        entries.put(key, entry);
+        insertionOrder.addLast(entry);
+        while (!insertionOrder.isEmpty()
+                && (insertionOrder.size() > capacity || insertionOrder.peekFirst().expiresAtMillis <= nowMillis)) {
+            Entry<V> oldest = insertionOrder.pollFirst();
+            // An expired key may have been used again; only its latest entry is in the map
+            entries.remove(oldest.key, oldest);
+        }
+    }
+}
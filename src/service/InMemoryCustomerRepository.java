@@ -0,0 +1,32 @@
+package service;
+
+import model.Customer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps customers on the heap, in a map by email address.
+ */
+public class InMemoryCustomerRepository implements CustomerRepository {
+
+    // A map which stores customer email addresses and associated customer objects
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean add(Customer customer) {
+        return customers.putIfAbsent(customer.getEmail(), customer) == null;
+    }
+
+    @Override
+    public Customer findByEmail(String email) {
+        return email == null ? null : customers.get(email);
+    }
+
+    @Override
+    public Collection<Customer> findAll() {
+        return new ArrayList<>(customers.values());
+    }
+}
@@ -0,0 +1,129 @@
+package service;
+
+import model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps reservations on the heap, inside the room states of an InMemoryRoomRepository, so that a search sees
+ * rooms and their reservations in one consistent snapshot. Writes lock the room repository.
+ */
+public class InMemoryReservationRepository implements ReservationRepository {
+
+    private final InMemoryRoomRepository rooms;
+
+    // Position of the next reservation in the booking order
+    private long nextBookingSequence;
+
+    /**
+     * Creates a repository that stores its reservations in the given room repository.
+     * @param rooms the room repository
+     */
+    public InMemoryReservationRepository(InMemoryRoomRepository rooms) {
+        this.rooms = rooms;
+    }
+
+    @Override
+    public void add(Reservation reservation) {
+        synchronized (rooms) {
+            AvailabilitySnapshot snapshot = rooms.snapshot();
+            RoomState state = snapshot.getRoomState(reservation.getRoom().getRoomNumber());
+            if (state == null) {
+                throw new IllegalArgumentException("The room does not exist.");
+            }
+            rooms.publish(snapshot.with(state.withBooking(new RoomState.Booking(nextBookingSequence++, reservation))));
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Reservation> reservations) {
+        synchronized (rooms) {
+            for (Reservation reservation : reservations) {
+                add(reservation);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Reservation reservation) {
+        synchronized (rooms) {
+            AvailabilitySnapshot snapshot = rooms.snapshot();
+            RoomState state = snapshot.getRoomState(reservation.getRoom().getRoomNumber());
+            RoomState updated = state == null ? null : state.withoutReservation(reservation);
+            if (updated == null) {
+                return false;
+            }
+            rooms.publish(snapshot.with(updated));
+            return true;
+        }
+    }
+
+    @Override
+    public boolean isAvailable(String roomNumber, Date checkInDate, Date checkOutDate) {
+        RoomState state = rooms.snapshot().getRoomState(roomNumber);
+        return state != null && state.isAvailable(checkInDate, checkOutDate);
+    }
+
+    @Override
+    public Collection<Reservation> findByRoom(String roomNumber) {
+        RoomState state = rooms.snapshot().getRoomState(roomNumber);
+        if (state == null) {
+            return new ArrayList<>();
+        }
+        Collection<Reservation> roomReservations = new ArrayList<>(state.bookings.length);
+        for (RoomState.Booking booking : state.bookings) {
+            roomReservations.add(booking.reservation);
+        }
+        return roomReservations;
+    }
+
+    @Override
+    public Collection<Reservation> findByCustomer(String email) {
+        List<RoomState.Booking> customerBookings = new ArrayList<>();
+        for (RoomState state : rooms.snapshot()) {
+            for (RoomState.Booking booking : state.bookings) {
+                if (booking.reservation.getCustomer().getEmail().equals(email)) {
+                    customerBookings.add(booking);
+                }
+            }
+        }
+        return inBookingOrder(customerBookings);
+    }
+
+    @Override
+    public void scanByCheckIn(Date fromCheckIn, Date toCheckIn, Consumer<Reservation> visitor) {
+        for (RoomState state : rooms.snapshot()) {
+            for (RoomState.Booking booking : state.bookings) {
+                Date checkIn = booking.reservation.getCheckinDate();
+                if ((fromCheckIn == null || !checkIn.before(fromCheckIn))
+                        && (toCheckIn == null || !checkIn.after(toCheckIn))) {
+                    visitor.accept(booking.reservation);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collection<Reservation> findAll() {
+        List<RoomState.Booking> bookings = new ArrayList<>();
+        for (RoomState state : rooms.snapshot()) {
+            Collections.addAll(bookings, state.bookings);
+        }
+        return inBookingOrder(bookings);
+    }
+
+    private static Collection<Reservation> inBookingOrder(List<RoomState.Booking> bookings) {
+        bookings.sort(Comparator.comparingLong(booking -> booking.sequence));
+        Collection<Reservation> reservations = new ArrayList<>(bookings.size());
+        for (RoomState.Booking booking : bookings) {
+            reservations.add(booking.reservation);
+        }
+        return reservations;
+    }
+}
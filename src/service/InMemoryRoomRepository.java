@@ -0,0 +1,133 @@
+package service;
+
+import model.IRoom;
+import model.RoomType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Keeps rooms, together with their reservations, on the heap in immutable AvailabilitySnapshot versions.
+ *
+ * Writers, which ReservationService serializes, publish a new version that shares everything but the changed
+ * partition with the previous one. Readers take the current version once and run on it without locks, so
+ * they never wait for bookings and always see a consistent point in time. The reservations of the snapshot
+ * are managed by an InMemoryReservationRepository created for this repository.
+ */
+public class InMemoryRoomRepository implements RoomRepository {
+
+    // The current version of all rooms and reservations; replaced, never modified, by writers
+    private volatile AvailabilitySnapshot snapshot = AvailabilitySnapshot.EMPTY;
+
+    /**
+     * Returns the current version. Readers that need several consistent reads take it once.
+     */
+    AvailabilitySnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Makes a new version current. Callers hold the lock of this repository.
+     */
+    void publish(AvailabilitySnapshot updated) {
+        snapshot = updated;
+    }
+
+    @Override
+    public synchronized boolean add(IRoom room) {
+        if (snapshot.getRoomState(room.getRoomNumber()) != null) {
+            return false;
+        }
+        snapshot = snapshot.with(RoomState.of(room));
+        return true;
+    }
+
+    @Override
+    public synchronized Collection<IRoom> addAll(Collection<IRoom> rooms) {
+        Collection<IRoom> added = new ArrayList<>();
+        for (IRoom room : rooms) {
+            if (add(room)) {
+                added.add(room);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public synchronized boolean remove(String roomNumber) {
+        AvailabilitySnapshot updated = snapshot.without(roomNumber);
+        if (updated == snapshot) {
+            return false;
+        }
+        snapshot = updated;
+        return true;
+    }
+
+    @Override
+    public synchronized void applyChanges(Collection<IRoom> upserts, Collection<String> removedRoomNumbers) {
+        Collection<RoomState> states = new ArrayList<>(upserts.size());
+        for (IRoom room : upserts) {
+            RoomState previous = snapshot.getRoomState(room.getRoomNumber());
+            states.add(previous == null ? RoomState.of(room) : previous.withRoom(room));
+        }
+        snapshot = snapshot.withChanges(states, removedRoomNumbers);
+    }
+
+    @Override
+    public IRoom findByNumber(String roomNumber) {
+        RoomState state = snapshot.getRoomState(roomNumber);
+        return state == null ? null : state.room;
+    }
+
+    @Override
+    public Collection<IRoom> findAll() {
+        AvailabilitySnapshot pinned = snapshot;
+        Collection<IRoom> allRooms = new ArrayList<>(pinned.getRoomCount());
+        for (RoomState state : pinned) {
+            allRooms.add(state.room);
+        }
+        return allRooms;
+    }
+
+    @Override
+    public int countByType(RoomType roomType) {
+        return snapshot.getRoomCount(roomType);
+    }
+
+    @Override
+    public void scanAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> visitor) {
+        for (RoomState state : snapshot) {
+            if (state.isAvailable(checkInDate, checkOutDate) && !visitor.test(state.room)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<IRoom> findAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> filter,
+                                     ForkJoinPool pool) {
+        AvailabilitySnapshot pinned = snapshot;
+        ParallelRoomScan.Slots partitions = (first, last, matches) -> {
+            for (int partition = first; partition < last; partition++) {
+                for (RoomState state : pinned.getPartition(partition)) {
+                    if (state.isAvailable(checkInDate, checkOutDate) && filter.test(state.room)) {
+                        matches.add(state.room);
+                    }
+                }
+            }
+        };
+        int roomCount = pinned.getRoomCount();
+        if (roomCount < ParallelRoomScan.SEQUENTIAL_THRESHOLD) {
+            List<IRoom> matches = new ArrayList<>();
+            partitions.scan(0, AvailabilitySnapshot.PARTITIONS, matches);
+            return matches;
+        }
+        int partitionsPerTask = Math.max(1,
+                AvailabilitySnapshot.PARTITIONS * ParallelRoomScan.ROOMS_PER_TASK / roomCount);
+        return pool.invoke(new ParallelRoomScan(partitions, 0, AvailabilitySnapshot.PARTITIONS, partitionsPerTask));
+    }
+}
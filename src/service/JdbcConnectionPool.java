@@ -0,0 +1,116 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-size pool of JDBC connections to one database. Connections are opened up front and handed out
+ * to one caller at a time; a connection that is no longer valid is replaced when it is returned.
+ */
+public class JdbcConnectionPool implements AutoCloseable {
+
+    // How long a caller waits for a free connection before giving up
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Work to run on a pooled connection.
+     * @param <T> the type of the result
+     */
+    public interface ConnectionCallback<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final BlockingQueue<Connection> idle;
+
+    /**
+     * Opens the connections of a pool.
+     * @param url the JDBC URL of the database, e.g. jdbc:h2:./hotel or jdbc:sqlite:hotel.db
+     * @param size the number of connections
+     * @throws SQLException if a connection cannot be opened
+     */
+    public JdbcConnectionPool(String url, int size) throws SQLException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be a positive value");
+        }
+        this.url = url;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(DriverManager.getConnection(url));
+        }
+    }
+
+    /**
+     * Runs work on a connection from the pool and returns the connection afterwards. The connection is in
+     * auto-commit mode when the work starts; work that turns auto-commit off must commit or roll back.
+     * @param callback the work
+     * @param <T> the type of the result
+     * @return the result of the work
+     * @throws IllegalStateException if the database fails or no connection becomes free in time
+     */
+    public <T> T withConnection(ConnectionCallback<T> callback) {
+        Connection connection;
+        try {
+            connection = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database connection");
+        }
+        if (connection == null) {
+            throw new IllegalStateException("No database connection became free within " + BORROW_TIMEOUT_SECONDS + " s");
+        }
+        try {
+            return callback.apply(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Database error: " + e.getMessage(), e);
+        } finally {
+            idle.add(restore(connection));
+        }
+    }
+
+    /**
+     * Returns the connection in a clean state, or a fresh connection if it can no longer be used.
+     */
+    private Connection restore(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (connection.isValid(1)) {
+                return connection;
+            }
+        } catch (SQLException e) {
+            // Fall through and replace the connection
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // The connection is discarded anyway
+        }
+        try {
+            return DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not reopen a database connection: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes all idle connections.
+     */
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Closing anyway
+            }
+        }
+    }
+}
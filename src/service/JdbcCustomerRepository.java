@@ -0,0 +1,88 @@
+package service;
+
+import model.Customer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Stores customers in an embedded SQL database (e.g. H2 or SQLite) through a connection pool.
+ */
+public class JdbcCustomerRepository implements CustomerRepository {
+
+    private final JdbcConnectionPool pool;
+
+    /**
+     * Creates the customer table if it does not exist yet.
+     * @param pool the connections to the database
+     */
+    public JdbcCustomerRepository(JdbcConnectionPool pool) {
+        this.pool = pool;
+        pool.withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS customer ("
+                        + "email VARCHAR(320) PRIMARY KEY, "
+                        + "first_name VARCHAR(255) NOT NULL, "
+                        + "last_name VARCHAR(255) NOT NULL)");
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean add(Customer customer) {
+        if (findByEmail(customer.getEmail()) != null) {
+            return false;
+        }
+        return pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO customer (email, first_name, last_name) VALUES (?, ?, ?)")) {
+                statement.setString(1, customer.getEmail());
+                statement.setString(2, customer.getFirstName());
+                statement.setString(3, customer.getLastName());
+                return statement.executeUpdate() == 1;
+            }
+        });
+    }
+
+    @Override
+    public Customer findByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT email, first_name, last_name FROM customer WHERE email = ?")) {
+                statement.setString(1, email);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next() ? readCustomer(rows, 1) : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Collection<Customer> findAll() {
+        return pool.withConnection(connection -> {
+            Collection<Customer> customers = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT email, first_name, last_name FROM customer")) {
+                while (rows.next()) {
+                    customers.add(readCustomer(rows, 1));
+                }
+            }
+            return customers;
+        });
+    }
+
+    /**
+     * Reads a customer from the email, first name and last name columns starting at the given column.
+     */
+    static Customer readCustomer(ResultSet rows, int firstColumn) throws SQLException {
+        return new Customer(rows.getString(firstColumn + 1), rows.getString(firstColumn + 2), rows.getString(firstColumn));
+    }
+}
@@ -0,0 +1,177 @@
+package service;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Stores reservations in an embedded SQL database (e.g. H2 or SQLite) through a connection pool. Uses the
+ * tables created by JdbcRoomRepository and JdbcCustomerRepository, which must use the same database.
+ *
+ * Stay boundaries are stored as epoch milliseconds. The index on (room_number, checkin_at) serves the overlap
+ * check of one room, the index on email a customer's reservations and the index on checkin_at exports of a
+ * date range.
+ */
+public class JdbcReservationRepository implements ReservationRepository {
+
+    // Rows the driver fetches per round trip when a scan streams a large result
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private static final String SELECT_RESERVATIONS = "SELECT x.checkin_at, x.checkout_at, "
+            + "r.room_number, r.price, r.room_type, r.attributes, c.email, c.first_name, c.last_name "
+            + "FROM reservation x "
+            + "JOIN room r ON r.room_number = x.room_number "
+            + "JOIN customer c ON c.email = x.email ";
+
+    private final JdbcConnectionPool pool;
+
+    // Position of the next reservation in the booking order
+    private long nextBookingSequence;
+
+    /**
+     * Creates a repository over the tables of the given database and continues its booking order.
+     * @param pool the connections to the database
+     */
+    public JdbcReservationRepository(JdbcConnectionPool pool) {
+        this.pool = pool;
+        this.nextBookingSequence = pool.withConnection(connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT MAX(sequence) FROM reservation")) {
+                return rows.next() ? rows.getLong(1) + 1 : 0L;
+            }
+        });
+    }
+
+    @Override
+    public void add(Reservation reservation) {
+        addAll(Collections.singletonList(reservation));
+    }
+
+    @Override
+    public synchronized void addAll(Collection<Reservation> reservations) {
+        if (reservations.isEmpty()) {
+            return;
+        }
+        pool.withConnection(connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO reservation "
+                    + "(sequence, room_number, email, checkin_at, checkout_at) VALUES (?, ?, ?, ?, ?)")) {
+                long sequence = nextBookingSequence;
+                for (Reservation reservation : reservations) {
+                    statement.setLong(1, sequence++);
+                    statement.setString(2, reservation.getRoom().getRoomNumber());
+                    statement.setString(3, reservation.getCustomer().getEmail());
+                    statement.setLong(4, reservation.getCheckinDate().getTime());
+                    statement.setLong(5, reservation.getCheckoutDate().getTime());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+                nextBookingSequence = sequence;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean remove(Reservation reservation) {
+        return pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM reservation "
+                    + "WHERE room_number = ? AND email = ? AND checkin_at = ? AND checkout_at = ?")) {
+                statement.setString(1, reservation.getRoom().getRoomNumber());
+                statement.setString(2, reservation.getCustomer().getEmail());
+                statement.setLong(3, reservation.getCheckinDate().getTime());
+                statement.setLong(4, reservation.getCheckoutDate().getTime());
+                return statement.executeUpdate() > 0;
+            }
+        });
+    }
+
+    @Override
+    public boolean isAvailable(String roomNumber, Date checkInDate, Date checkOutDate) {
+        return pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT "
+                    + "(SELECT COUNT(*) FROM room WHERE room_number = ?), "
+                    + "(SELECT COUNT(*) FROM reservation WHERE room_number = ? AND checkin_at <= ? AND checkout_at >= ?)")) {
+                statement.setString(1, roomNumber);
+                statement.setString(2, roomNumber);
+                statement.setLong(3, checkOutDate.getTime());
+                statement.setLong(4, checkInDate.getTime());
+                try (ResultSet rows = statement.executeQuery()) {
+                    rows.next();
+                    return rows.getInt(1) == 1 && rows.getInt(2) == 0;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Collection<Reservation> findByRoom(String roomNumber) {
+        return query(SELECT_RESERVATIONS + "WHERE x.room_number = ? ORDER BY x.sequence", roomNumber);
+    }
+
+    @Override
+    public Collection<Reservation> findByCustomer(String email) {
+        return query(SELECT_RESERVATIONS + "WHERE x.email = ? ORDER BY x.sequence", email);
+    }
+
+    /**
+     * Streams the rows to the visitor while their connection is borrowed, so the visitor must not query the
+     * database itself; exports only write the reservations out.
+     */
+    @Override
+    public void scanByCheckIn(Date fromCheckIn, Date toCheckIn, Consumer<Reservation> visitor) {
+        pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    SELECT_RESERVATIONS + "WHERE x.checkin_at >= ? AND x.checkin_at <= ?")) {
+                statement.setLong(1, fromCheckIn == null ? Long.MIN_VALUE : fromCheckIn.getTime());
+                statement.setLong(2, toCheckIn == null ? Long.MAX_VALUE : toCheckIn.getTime());
+                statement.setFetchSize(SCAN_FETCH_SIZE);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        visitor.accept(readReservation(rows));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Collection<Reservation> findAll() {
+        return query(SELECT_RESERVATIONS + "ORDER BY x.sequence", null);
+    }
+
+    private Collection<Reservation> query(String sql, String parameter) {
+        return pool.withConnection(connection -> {
+            Collection<Reservation> reservations = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                if (parameter != null) {
+                    statement.setString(1, parameter);
+                }
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        reservations.add(readReservation(rows));
+                    }
+                }
+            }
+            return reservations;
+        });
+    }
+
+    private static Reservation readReservation(ResultSet rows) throws SQLException {
+        IRoom room = JdbcRoomRepository.readRoom(rows, 3);
+        Customer customer = JdbcCustomerRepository.readCustomer(rows, 7);
+        return new Reservation(customer, room, new Date(rows.getLong(1)), new Date(rows.getLong(2)));
+    }
+}
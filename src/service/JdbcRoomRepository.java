@@ -0,0 +1,273 @@
+package service;
+
+import model.FreeRoom;
+import model.IRoom;
+import model.Room;
+import model.RoomAttribute;
+import model.RoomType;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Stores rooms in an embedded SQL database (e.g. H2 or SQLite) through a connection pool. The room table is
+ * shared with JdbcReservationRepository, which must use the same database.
+ *
+ * Searches query every room for which no reservation matches the indexed overlap condition, a page at a
+ * time. Bulk inserts are sent as a single prepared-statement batch in one transaction.
+ */
+public class JdbcRoomRepository implements RoomRepository {
+
+    private static final String ROOM_COLUMNS = "room_number, price, room_type, attributes";
+
+    // Free rooms read per query of scanAvailable
+    private static final int SCAN_PAGE_SIZE = 256;
+
+    private final JdbcConnectionPool pool;
+
+    /**
+     * Creates the room and reservation tables and their indexes if they do not exist yet.
+     * @param pool the connections to the database
+     */
+    public JdbcRoomRepository(JdbcConnectionPool pool) {
+        this.pool = pool;
+        pool.withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS room ("
+                        + "room_number VARCHAR(16) PRIMARY KEY, "
+                        + "price DOUBLE PRECISION NOT NULL, "
+                        + "room_type VARCHAR(16) NOT NULL, "
+                        + "attributes VARCHAR(1024) NOT NULL)");
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS room_by_type ON room (room_type)");
+                // Stay boundaries are epoch milliseconds, so the overlap rule compares plain numbers
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS reservation ("
+                        + "sequence BIGINT PRIMARY KEY, "
+                        + "room_number VARCHAR(16) NOT NULL, "
+                        + "email VARCHAR(320) NOT NULL, "
+                        + "checkin_at BIGINT NOT NULL, "
+                        + "checkout_at BIGINT NOT NULL)");
+                // Overlap queries for one room scan only the reservations that start before the stay ends
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS reservation_by_room_checkin "
+                        + "ON reservation (room_number, checkin_at)");
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS reservation_by_email ON reservation (email)");
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS reservation_by_checkin ON reservation (checkin_at)");
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean add(IRoom room) {
+        return !addAll(Collections.singletonList(room)).isEmpty();
+    }
+
+    @Override
+    public Collection<IRoom> addAll(Collection<IRoom> rooms) {
+        Collection<IRoom> added = new ArrayList<>();
+        Set<String> addedNumbers = new HashSet<>();
+        for (IRoom room : rooms) {
+            if (addedNumbers.add(room.getRoomNumber()) && findByNumber(room.getRoomNumber()) == null) {
+                added.add(room);
+            }
+        }
+        if (added.isEmpty()) {
+            return added;
+        }
+        return pool.withConnection(connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO room (" + ROOM_COLUMNS + ") VALUES (?, ?, ?, ?)")) {
+                for (IRoom room : added) {
+                    statement.setString(1, room.getRoomNumber());
+                    statement.setDouble(2, room.getRoomPrice());
+                    statement.setString(3, room.getRoomType().name());
+                    statement.setString(4, RoomAttribute.formatAll(room.getAttributes()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+            return added;
+        });
+    }
+
+    @Override
+    public boolean remove(String roomNumber) {
+        return pool.withConnection(connection -> {
+            connection.setAutoCommit(false);
+            int removed;
+            try (PreparedStatement reservations = connection.prepareStatement(
+                    "DELETE FROM reservation WHERE room_number = ?");
+                 PreparedStatement room = connection.prepareStatement("DELETE FROM room WHERE room_number = ?")) {
+                reservations.setString(1, roomNumber);
+                reservations.executeUpdate();
+                room.setString(1, roomNumber);
+                removed = room.executeUpdate();
+            }
+            connection.commit();
+            return removed == 1;
+        });
+    }
+
+    @Override
+    public void applyChanges(Collection<IRoom> upserts, Collection<String> removedRoomNumbers) {
+        pool.withConnection(connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE room SET price = ?, room_type = ?, attributes = ? WHERE room_number = ?");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO room (" + ROOM_COLUMNS + ") VALUES (?, ?, ?, ?)");
+                 PreparedStatement deleteReservations = connection.prepareStatement(
+                         "DELETE FROM reservation WHERE room_number = ?");
+                 PreparedStatement delete = connection.prepareStatement("DELETE FROM room WHERE room_number = ?")) {
+                for (IRoom room : upserts) {
+                    update.setDouble(1, room.getRoomPrice());
+                    update.setString(2, room.getRoomType().name());
+                    update.setString(3, RoomAttribute.formatAll(room.getAttributes()));
+                    update.setString(4, room.getRoomNumber());
+                    if (update.executeUpdate() == 0) {
+                        insert.setString(1, room.getRoomNumber());
+                        insert.setDouble(2, room.getRoomPrice());
+                        insert.setString(3, room.getRoomType().name());
+                        insert.setString(4, RoomAttribute.formatAll(room.getAttributes()));
+                        insert.executeUpdate();
+                    }
+                }
+                for (String roomNumber : removedRoomNumbers) {
+                    deleteReservations.setString(1, roomNumber);
+                    deleteReservations.executeUpdate();
+                    delete.setString(1, roomNumber);
+                    delete.executeUpdate();
+                }
+            }
+            connection.commit();
+            return null;
+        });
+    }
+
+    @Override
+    public IRoom findByNumber(String roomNumber) {
+        return pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + ROOM_COLUMNS + " FROM room WHERE room_number = ?")) {
+                statement.setString(1, roomNumber);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next() ? readRoom(rows, 1) : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Collection<IRoom> findAll() {
+        return pool.withConnection(connection -> {
+            Collection<IRoom> rooms = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT " + ROOM_COLUMNS + " FROM room")) {
+                while (rows.next()) {
+                    rooms.add(readRoom(rows, 1));
+                }
+            }
+            return rooms;
+        });
+    }
+
+    @Override
+    public int countByType(RoomType roomType) {
+        return pool.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM room WHERE room_type = ?")) {
+                statement.setString(1, roomType.name());
+                try (ResultSet rows = statement.executeQuery()) {
+                    rows.next();
+                    return rows.getInt(1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the free rooms a page at a time, in room number order, and passes each page to the visitor only
+     * after its connection is back in the pool: the visitor may query the database itself, e.g. to check a
+     * room before holding it, and would otherwise wait for a second connection while keeping the first.
+     */
+    @Override
+    public void scanAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> visitor) {
+        String lastRoomNumber = "";
+        while (true) {
+            List<IRoom> page = findAvailablePage(checkInDate, checkOutDate, lastRoomNumber);
+            for (IRoom room : page) {
+                if (!visitor.test(room)) {
+                    return;
+                }
+            }
+            if (page.size() < SCAN_PAGE_SIZE) {
+                return;
+            }
+            lastRoomNumber = page.get(page.size() - 1).getRoomNumber();
+        }
+    }
+
+    /**
+     * Returns up to SCAN_PAGE_SIZE free rooms numbered after the given room number, in room number order.
+     */
+    private List<IRoom> findAvailablePage(Date checkInDate, Date checkOutDate, String afterRoomNumber) {
+        return pool.withConnection(connection -> {
+            List<IRoom> page = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + ROOM_COLUMNS + " FROM room r WHERE r.room_number > ? AND NOT EXISTS ("
+                            + "SELECT 1 FROM reservation x WHERE x.room_number = r.room_number "
+                            + "AND x.checkin_at <= ? AND x.checkout_at >= ?) "
+                            + "ORDER BY r.room_number LIMIT " + SCAN_PAGE_SIZE)) {
+                statement.setString(1, afterRoomNumber);
+                statement.setLong(2, checkOutDate.getTime());
+                statement.setLong(3, checkInDate.getTime());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        page.add(readRoom(rows, 1));
+                    }
+                }
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Returns the free rooms that pass the filter. The database checks the rooms; the pool is not used.
+     */
+    @Override
+    public List<IRoom> findAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> filter,
+                                     ForkJoinPool pool) {
+        List<IRoom> matches = new ArrayList<>();
+        scanAvailable(checkInDate, checkOutDate, room -> {
+            if (filter.test(room)) {
+                matches.add(room);
+            }
+            return true;
+        });
+        return matches;
+    }
+
+    /**
+     * Reads a room from the room number, price, type and attributes columns starting at the given column.
+     */
+    static IRoom readRoom(ResultSet rows, int firstColumn) throws SQLException {
+        String roomNumber = rows.getString(firstColumn);
+        double price = rows.getDouble(firstColumn + 1);
+        RoomType roomType = RoomType.valueOf(rows.getString(firstColumn + 2));
+        Set<RoomAttribute> attributes = RoomAttribute.parseAll(rows.getString(firstColumn + 3));
+        return price == 0.0 ? new FreeRoom(roomNumber, roomType, attributes)
+                : new Room(roomNumber, price, roomType, attributes);
+    }
+}
@@ -0,0 +1,71 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded queue for many producers and one consumer, without locks.
+ *
+ * The queue is a linked list with a stub node at its head. A producer swaps its node into the tail with one
+ * atomic exchange and then links the previous tail to it, so offers never retry and never wait for each
+ * other. Only the consumer moves the head. Between the exchange and the link an element is in the queue but
+ * not yet reachable; poll then returns null although isEmpty is false, and the consumer simply tries again.
+ *
+ * @param <E> the type of the elements
+ */
+final class MpscQueue<E> {
+
+    private static final class Node<E> {
+        E value;
+        volatile Node<E> next;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+
+    // The last node; producers swap themselves in
+    private final AtomicReference<Node<E>> tail;
+
+    // The stub before the first element; only the consumer reads and moves it
+    private Node<E> head;
+
+    MpscQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Adds an element at the tail. Safe to call from any thread.
+     * @param value the element, not null
+     */
+    void offer(E value) {
+        Node<E> node = new Node<>(value);
+        Node<E> previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Removes the element at the head. Only the consumer thread may call this.
+     * @return the element, or null if there is none or the next one is still being linked
+     */
+    E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        E value = next.value;
+        // The node becomes the new stub; dropping its value lets the element be collected
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    /**
+     * Checks whether no element has been offered that the consumer has not taken yet. Only the consumer
+     * thread may call this.
+     */
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+}
@@ -0,0 +1,71 @@
+package service;
+
+import model.IRoom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Checks a range of rooms on a ForkJoin pool. The range is halved until a part is small enough to scan on one
+ * thread; idle threads steal the halves that are not yet scanned. The results of the halves are joined left
+ * before right, so the rooms come out in the order of a scan from the first slot to the last, whatever thread
+ * checked them.
+ *
+ * What a slot is depends on the store: a partition of an AvailabilitySnapshot or a room index of the compact
+ * store.
+ */
+final class ParallelRoomScan extends RecursiveTask<List<IRoom>> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Below this many rooms a search stays on the calling thread; splitting would cost more than it saves
+    static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    // About how many rooms one task checks before it stops splitting
+    static final int ROOMS_PER_TASK = 1024;
+
+    /**
+     * Scans the slots of a store.
+     */
+    interface Slots {
+        /**
+         * Adds the matching rooms of the slots from first to last, exclusive, to a list, in slot order.
+         */
+        void scan(int first, int last, List<IRoom> matches);
+    }
+
+    private final Slots slots;
+    private final int first;
+    private final int last;
+    private final int slotsPerTask;
+
+    /**
+     * @param slots the slots to scan
+     * @param first the first slot
+     * @param last the end of the range, exclusive
+     * @param slotsPerTask the number of slots a task scans without splitting, at least 1
+     */
+    ParallelRoomScan(Slots slots, int first, int last, int slotsPerTask) {
+        this.slots = slots;
+        this.first = first;
+        this.last = last;
+        this.slotsPerTask = slotsPerTask;
+    }
+
+    @Override
+    protected List<IRoom> compute() {
+        if (last - first <= slotsPerTask) {
+            List<IRoom> matches = new ArrayList<>();
+            slots.scan(first, last, matches);
+            return matches;
+        }
+        int middle = (first + last) >>> 1;
+        ParallelRoomScan left = new ParallelRoomScan(slots, first, middle, slotsPerTask);
+        left.fork();
+        List<IRoom> right = new ParallelRoomScan(slots, middle, last, slotsPerTask).compute();
+        List<IRoom> matches = left.join();
+        matches.addAll(right);
+        return matches;
+    }
+}
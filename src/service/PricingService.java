@@ -0,0 +1,140 @@
+package service;
+
+import model.IRoom;
+import model.RoomQuote;
+import model.RoomType;
+
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * A service class that prices stays night by night. The nightly price of a paid room is its base rate
+ * (getRoomPrice) plus the adjustment of its room type for that night, which expresses weekend or seasonal
+ * rates; free rooms stay free.
+ *
+ * Amounts are kept as fixed-point cents. Each room type has a RateCalendar with prefix sums, so a stay of
+ * any length is priced in O(1) and search results can be sorted or filtered by total price cheaply.
+ */
+public class PricingService {
+
+    // Nights that count as the weekend: Friday and Saturday nights
+    public static final Set<DayOfWeek> WEEKEND_NIGHTS =
+            Collections.unmodifiableSet(EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY));
+
+    // The rate calendars by room type; replaced as a whole on every change so readers need no lock
+    private volatile Map<RoomType, RateCalendar> calendars = new EnumMap<>(RoomType.class);
+
+    // The singleton instance of the PricingService class
+    private static PricingService instance;
+
+    /**
+     * Private constructor prevents external instantiation.
+     */
+    private PricingService() {}
+
+    /**
+     * Returns the singleton instance of the PricingService class: new one, if instance does not exist,
+     * otherwise existing one
+     * @return the singleton instance
+     */
+    public static synchronized PricingService getInstance() {
+        if (instance == null) {
+            instance = new PricingService();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the nightly adjustment of a room type for a range of nights. Positive amounts are surcharges,
+     * negative amounts are discounts; the new amount replaces any earlier adjustment of those nights.
+     * @param roomType the room type
+     * @param firstNight the first night of the range
+     * @param lastNight the last night of the range, inclusive
+     * @param amount the adjustment per night in dollars
+     * @param daysOfWeek the nights of the week in the range to adjust, e.g. WEEKEND_NIGHTS
+     */
+    public synchronized void setNightlyAdjustment(RoomType roomType, Date firstNight, Date lastNight, double amount,
+                                                  Set<DayOfWeek> daysOfWeek) {
+        long fromDay = EpochDays.of(firstNight);
+        long toDay = EpochDays.of(lastNight);
+        if (toDay < fromDay) {
+            throw new IllegalArgumentException("The last night must not be before the first night.");
+        }
+        Map<RoomType, RateCalendar> updated = new EnumMap<>(RoomType.class);
+        updated.putAll(calendars);
+        updated.put(roomType, calendarOf(roomType).withNightlyCents(fromDay, toDay, toCents(amount), daysOfWeek));
+        calendars = updated;
+    }
+
+    /**
+     * Returns the adjustment of a room type for a single night.
+     * @param roomType the room type
+     * @param night the night
+     * @return the adjustment in dollars
+     */
+    public double getNightlyAdjustment(RoomType roomType, Date night) {
+        return calendarOf(roomType).nightlyCents(EpochDays.of(night)) / 100.0;
+    }
+
+    /**
+     * Returns the total price of a stay in cents. The total is never negative, however large the discounts.
+     * @param room the room
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @return the total price of all nights of the stay in cents
+     */
+    public long quoteCents(IRoom room, Date checkinDate, Date checkoutDate) {
+        if (room.isFree()) {
+            return 0;
+        }
+        long checkinDay = EpochDays.of(checkinDate);
+        long checkoutDay = EpochDays.of(checkoutDate);
+        long nights = Math.max(0, checkoutDay - checkinDay);
+        long total = toCents(room.getRoomPrice()) * nights
+                + calendarOf(room.getRoomType()).sumCents(checkinDay, checkoutDay);
+        return Math.max(0, total);
+    }
+
+    /**
+     * Returns the total price of a stay.
+     * @param room the room
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @return the quote for the stay
+     */
+    public RoomQuote quote(IRoom room, Date checkinDate, Date checkoutDate) {
+        return new RoomQuote(room, checkinDate, checkoutDate, quoteCents(room, checkinDate, checkoutDate));
+    }
+
+    /**
+     * Prices a stay in each of the given rooms and returns the quotes from the cheapest to the most expensive.
+     * Rooms with the same total are ordered by room number.
+     * @param rooms the rooms to price, for example a search result
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @param maxTotalPrice the highest acceptable total price, or null for no limit
+     * @return the quotes within the limit, sorted by total price
+     */
+    public List<RoomQuote> quoteRooms(Collection<IRoom> rooms, Date checkinDate, Date checkoutDate,
+                                      Double maxTotalPrice) {
+        long maxTotalCents = maxTotalPrice == null ? Long.MAX_VALUE : toCents(maxTotalPrice);
+        List<RoomQuote> quotes = new ArrayList<>(rooms.size());
+        for (IRoom room : rooms) {
+            RoomQuote quote = quote(room, checkinDate, checkoutDate);
+            if (quote.getTotalCents() <= maxTotalCents) {
+                quotes.add(quote);
+            }
+        }
+        quotes.sort(Comparator.comparingLong(RoomQuote::getTotalCents)
+                .thenComparingInt(quote -> Integer.parseInt(quote.getRoom().getRoomNumber())));
+        return quotes;
+    }
+
+    private RateCalendar calendarOf(RoomType roomType) {
+        return calendars.getOrDefault(roomType, RateCalendar.EMPTY);
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
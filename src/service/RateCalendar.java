@@ -0,0 +1,88 @@
+package service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The nightly rate adjustments of one room type, in cents. A calendar covers a window of consecutive days;
+ * nights outside the window have no adjustment.
+ *
+ * Next to the nightly values the calendar keeps their prefix sums, so the adjustment for a whole stay is the
+ * difference of two array entries, whatever the length of the stay. Calendars are immutable: a change builds
+ * a new calendar, which keeps quoting lock-free.
+ */
+final class RateCalendar {
+
+    // Longest window a calendar may cover, which bounds its arrays to a few hundred kilobytes
+    static final int MAX_DAYS = 20 * 366;
+
+    static final RateCalendar EMPTY = new RateCalendar(0, new long[0]);
+
+    // Epoch day of the first night in the window
+    private final long firstDay;
+
+    // Adjustment of each night in the window, in cents
+    private final long[] nightlyCents;
+
+    // prefixCents[i] is the sum of the first i nights, so a range sum is one subtraction
+    private final long[] prefixCents;
+
+    private RateCalendar(long firstDay, long[] nightlyCents) {
+        this.firstDay = firstDay;
+        this.nightlyCents = nightlyCents;
+        this.prefixCents = new long[nightlyCents.length + 1];
+        for (int i = 0; i < nightlyCents.length; i++) {
+            prefixCents[i + 1] = prefixCents[i] + nightlyCents[i];
+        }
+    }
+
+    /**
+     * Returns the sum of the adjustments of the nights from fromDay up to, but not including, toDay.
+     */
+    long sumCents(long fromDay, long toDay) {
+        int from = clampToWindow(fromDay);
+        int to = clampToWindow(toDay);
+        return to > from ? prefixCents[to] - prefixCents[from] : 0;
+    }
+
+    /**
+     * Returns the adjustment of a single night.
+     */
+    long nightlyCents(long day) {
+        long index = day - firstDay;
+        return index >= 0 && index < nightlyCents.length ? nightlyCents[(int) index] : 0;
+    }
+
+    /**
+     * Returns a calendar in which the nights from fromDay to toDay (both inclusive) that fall on one of the
+     * given days of the week have the given adjustment. The window grows to cover those nights if needed.
+     */
+    RateCalendar withNightlyCents(long fromDay, long toDay, long cents, Set<DayOfWeek> daysOfWeek) {
+        long newFirstDay = nightlyCents.length == 0 ? fromDay : Math.min(firstDay, fromDay);
+        long newEndDay = nightlyCents.length == 0 ? toDay + 1 : Math.max(firstDay + nightlyCents.length, toDay + 1);
+        if (newEndDay - newFirstDay > MAX_DAYS) {
+            throw new IllegalArgumentException("Rates can be set for at most " + MAX_DAYS + " consecutive days");
+        }
+        long[] nights = new long[(int) (newEndDay - newFirstDay)];
+        if (nightlyCents.length > 0) {
+            System.arraycopy(nightlyCents, 0, nights, (int) (firstDay - newFirstDay), nightlyCents.length);
+        }
+        for (long day = fromDay; day <= toDay; day++) {
+            if (daysOfWeek.contains(LocalDate.ofEpochDay(day).getDayOfWeek())) {
+                nights[(int) (day - newFirstDay)] = cents;
+            }
+        }
+        return new RateCalendar(newFirstDay, nights);
+    }
+
+    private int clampToWindow(long day) {
+        return (int) Math.max(0, Math.min(nightlyCents.length, day - firstDay));
+    }
+
+    @Override
+    public String toString() {
+        return "RateCalendar{firstDay=" + firstDay + ", nights=" + Arrays.toString(nightlyCents) + '}';
+    }
+}
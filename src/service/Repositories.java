@@ -0,0 +1,87 @@
+package service;
+
+import java.sql.SQLException;
+
+/**
+ * Chooses the storage backend of the services. The backend is selected with system properties, read once
+ * when the services start:
+ * <ul>
+ *     <li>hotel.storage: memory (the default), compact (in memory, with reservations in primitive columns for
+ *     a long history; see CompactReservationStore) or jdbc;</li>
+ *     <li>hotel.jdbc.url: the JDBC URL of an embedded database, e.g. jdbc:h2:./hotel or jdbc:sqlite:hotel.db;
+ *     the driver must be on the classpath;</li>
+ *     <li>hotel.jdbc.poolSize: the number of pooled connections, 4 by default.</li>
+ * </ul>
+ */
+public class Repositories {
+
+    private final CustomerRepository customers;
+    private final RoomRepository rooms;
+    private final ReservationRepository reservations;
+
+    // The singleton instance of the Repositories class
+    private static Repositories instance;
+
+    /**
+     * Private constructor prevents external instantiation.
+     */
+    private Repositories(CustomerRepository customers, RoomRepository rooms, ReservationRepository reservations) {
+        this.customers = customers;
+        this.rooms = rooms;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Returns the singleton instance of the Repositories class, creating the configured backend on first use.
+     * @return the singleton instance
+     * @throws IllegalStateException if the configured database cannot be opened
+     */
+    public static synchronized Repositories getInstance() {
+        if (instance == null) {
+            String storage = System.getProperty("hotel.storage", "memory");
+            switch (storage) {
+                case "memory":
+                    InMemoryRoomRepository rooms = new InMemoryRoomRepository();
+                    instance = new Repositories(new InMemoryCustomerRepository(), rooms,
+                            new InMemoryReservationRepository(rooms));
+                    break;
+                case "compact":
+                    CompactReservationStore store = new CompactReservationStore();
+                    instance = new Repositories(new InMemoryCustomerRepository(), store.rooms(), store.reservations());
+                    break;
+                case "jdbc":
+                    instance = openJdbc(System.getProperty("hotel.jdbc.url", "jdbc:h2:./hotel"),
+                            Integer.getInteger("hotel.jdbc.poolSize", 4));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown storage backend: " + storage + ". Use memory, compact or jdbc.");
+            }
+        }
+        return instance;
+    }
+
+    private static Repositories openJdbc(String url, int poolSize) {
+        JdbcConnectionPool pool;
+        try {
+            pool = new JdbcConnectionPool(url, poolSize);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open database " + url + ": " + e.getMessage(), e);
+        }
+        // Customers and rooms first: the reservation repository reads the tables they create
+        CustomerRepository customers = new JdbcCustomerRepository(pool);
+        RoomRepository rooms = new JdbcRoomRepository(pool);
+        return new Repositories(customers, rooms, new JdbcReservationRepository(pool));
+    }
+
+    public CustomerRepository customers() {
+        return customers;
+    }
+
+    public RoomRepository rooms() {
+        return rooms;
+    }
+
+    public ReservationRepository reservations() {
+        return reservations;
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Reservations as four parallel columns of ints: room index, customer index, check-in day and check-out day
+ * (see EpochDays). A row costs 16 bytes in the columns, against well over 100 bytes for a Reservation with
+ * its two Date objects and the references that hold it.
+ *
+ * Columns grow in fixed-size chunks, so growing never copies rows. Rows are only appended, by one writer at
+ * a time; a cancelled row is marked removed and keeps its slot. Readers run concurrently with the writer:
+ * the row count is published after the row, so every row below the count a reader sees is complete.
+ */
+final class ReservationColumns {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Customer index of a removed row
+    static final int REMOVED = -1;
+
+    // Chunk tables, one per column; replaced by a longer copy when a chunk is added
+    private volatile int[][] rooms = new int[0][];
+    private volatile int[][] customers = new int[0][];
+    private volatile int[][] checkIns = new int[0][];
+    private volatile int[][] checkOuts = new int[0][];
+
+    // Number of rows; written after every change, so a reader that reads it first sees the rows and removal
+    // marks written before
+    private volatile int size;
+
+    /**
+     * Appends a row. Callers serialize writes.
+     * @return the row number
+     */
+    int append(int room, int customer, int checkInDay, int checkOutDay) {
+        int row = size;
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk == rooms.length) {
+            rooms = addChunk(rooms);
+            customers = addChunk(customers);
+            checkIns = addChunk(checkIns);
+            checkOuts = addChunk(checkOuts);
+        }
+        int offset = row & CHUNK_MASK;
+        rooms[chunk][offset] = room;
+        customers[chunk][offset] = customer;
+        checkIns[chunk][offset] = checkInDay;
+        checkOuts[chunk][offset] = checkOutDay;
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * Marks a row as removed. Callers serialize writes.
+     */
+    void remove(int row) {
+        customers[row >>> CHUNK_BITS][row & CHUNK_MASK] = REMOVED;
+        // Republish the rows with the mark
+        size = size;
+    }
+
+    /**
+     * Returns the number of rows, removed ones included. Readers take it once, before reading rows.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isRemoved(int row) {
+        return customer(row) == REMOVED;
+    }
+
+    int room(int row) {
+        return rooms[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    int customer(int row) {
+        return customers[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    int checkInDay(int row) {
+        return checkIns[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    int checkOutDay(int row) {
+        return checkOuts[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the bytes allocated by the columns, including the unused part of the last chunk.
+     */
+    long footprintBytes() {
+        int columns = 4;
+        return (long) columns * rooms.length * CHUNK_SIZE * Integer.BYTES;
+    }
+
+    private static int[][] addChunk(int[][] chunks) {
+        int[][] updated = Arrays.copyOf(chunks, chunks.length + 1);
+        updated[chunks.length] = new int[CHUNK_SIZE];
+        return updated;
+    }
+
+    /**
+     * A growable list of row numbers, e.g. the rows of one room, with the same publication rule: one writer
+     * appends, any number of readers read the rows below the size they saw.
+     */
+    static final class RowList {
+        private volatile int[] rows = new int[4];
+        private volatile int size;
+
+        void add(int row) {
+            int[] current = rows;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                rows = current;
+            }
+            current[size] = row;
+            size = size + 1;
+        }
+
+        /**
+         * Returns the number of rows. Readers take it before get.
+         */
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return rows[index];
+        }
+
+        long footprintBytes() {
+            return 16 + 4L * rows.length;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package service;
+
+import model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Every current reservation ordered by check-in and, separately, by check-out, for the front desk's daily
+ * questions: who arrives today, who leaves tomorrow, who stays next week.
+ *
+ * Both orders are concurrent skip lists keyed by the date and the room number, which is unique because stays
+ * in one room never overlap. Looking up a day costs a logarithmic seek plus the reservations of that day,
+ * however long the hotel's history is. The number of reservations per stay length bounds range queries by
+ * the longest current stay. Changes come from the ReservationService lock; queries run without it.
+ */
+final class ReservationDateIndex {
+
+    /**
+     * A position in one of the orders: a date, then the room number.
+     */
+    private static final class Key implements Comparable<Key> {
+        final long millis;
+        final String roomNumber;
+
+        Key(long millis, String roomNumber) {
+            this.millis = millis;
+            this.roomNumber = roomNumber;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byDate = Long.compare(millis, other.millis);
+            if (byDate != 0) {
+                return byDate;
+            }
+            // Room numbers are positive integers; compare them as numbers so that 9 comes before 10
+            int byLength = Integer.compare(roomNumber.length(), other.roomNumber.length());
+            return byLength != 0 ? byLength : roomNumber.compareTo(other.roomNumber);
+        }
+    }
+
+    // Sorts before every room number, so (date, LOWEST) is the first possible key of a date
+    private static final String LOWEST = "";
+
+    private final ConcurrentSkipListMap<Key, Reservation> byCheckIn = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Key, Reservation> byCheckOut = new ConcurrentSkipListMap<>();
+
+    // Number of current reservations by stay length in milliseconds; the last key is the longest stay
+    private final ConcurrentSkipListMap<Long, Integer> stayLengths = new ConcurrentSkipListMap<>();
+
+    void add(Reservation reservation) {
+        String roomNumber = reservation.getRoom().getRoomNumber();
+        long checkIn = reservation.getCheckinDate().getTime();
+        long checkOut = reservation.getCheckoutDate().getTime();
+        // Counted before the stay is visible, so a query never finds a stay longer than the longest it knows
+        stayLengths.merge(checkOut - checkIn, 1, Integer::sum);
+        byCheckIn.put(new Key(checkIn, roomNumber), reservation);
+        byCheckOut.put(new Key(checkOut, roomNumber), reservation);
+    }
+
+    void addAll(Collection<Reservation> reservations) {
+        for (Reservation reservation : reservations) {
+            add(reservation);
+        }
+    }
+
+    void remove(Reservation reservation) {
+        String roomNumber = reservation.getRoom().getRoomNumber();
+        byCheckIn.remove(new Key(reservation.getCheckinDate().getTime(), roomNumber));
+        if (byCheckOut.remove(new Key(reservation.getCheckoutDate().getTime(), roomNumber)) != null) {
+            stayLengths.computeIfPresent(reservation.getCheckoutDate().getTime()
+                    - reservation.getCheckinDate().getTime(), (length, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * Returns the reservations that check in on a day, ordered by room number.
+     */
+    List<Reservation> findArrivals(Date day) {
+        return onDay(byCheckIn, day);
+    }
+
+    /**
+     * Returns the reservations that check out on a day, ordered by room number.
+     */
+    List<Reservation> findDepartures(Date day) {
+        return onDay(byCheckOut, day);
+    }
+
+    private static List<Reservation> onDay(ConcurrentSkipListMap<Key, Reservation> order, Date day) {
+        long epochDay = EpochDays.of(day);
+        long start = EpochDays.toDate(epochDay).getTime();
+        long end = EpochDays.toDate(epochDay + 1).getTime();
+        return new ArrayList<>(order.subMap(new Key(start, LOWEST), new Key(end, LOWEST)).values());
+    }
+
+    /**
+     * Returns the reservations that overlap a range by the inclusive overlap rule, ordered by check-in date.
+     * A stay that checks out on or after from checks in no earlier than from minus the longest current stay,
+     * so only the check-ins between that point and to are looked at: the cost follows the bookings around the
+     * range, not the whole history before it or the future after it.
+     * @param from the start of the range
+     * @param to the end of the range, inclusive
+     * @return the reservations with a check-in on or before to and a check-out on or after from
+     */
+    List<Reservation> findOverlapping(Date from, Date to) {
+        List<Reservation> overlapping = new ArrayList<>();
+        Map.Entry<Long, Integer> longestStay = stayLengths.lastEntry();
+        if (longestStay == null) {
+            return overlapping;
+        }
+        long fromMillis = from.getTime();
+        long earliestCheckIn = fromMillis - longestStay.getKey();
+        for (Reservation reservation : byCheckIn.subMap(new Key(earliestCheckIn, LOWEST), true,
+                new Key(to.getTime() + 1, LOWEST), false).values()) {
+            if (reservation.getCheckoutDate().getTime() >= fromMillis) {
+                overlapping.add(reservation);
+            }
+        }
+        return overlapping;
+    }
+}
@@ -0,0 +1,74 @@
+package service;
+
+import model.Reservation;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Storage for reservations. ReservationService serializes all writes and checks availability before it adds
+ * a reservation; implementations must allow reads to run concurrently with a write.
+ *
+ * A reservation is identified by its room, customer and dates, which are unique because stays in a room never
+ * overlap. Reservations are returned in booking order.
+ */
+public interface ReservationRepository {
+
+    /**
+     * Stores a new reservation for a stored room.
+     * @param reservation the reservation to store
+     */
+    void add(Reservation reservation);
+
+    /**
+     * Stores several new reservations at once.
+     * @param reservations the reservations to store, in booking order
+     */
+    void addAll(Collection<Reservation> reservations);
+
+    /**
+     * Removes a reservation.
+     * @param reservation the reservation to remove
+     * @return true if the reservation existed, false otherwise
+     */
+    boolean remove(Reservation reservation);
+
+    /**
+     * Checks whether no reservation of a room collides with a stay, by the inclusive overlap rule.
+     * @param roomNumber the room number
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @return true if the room exists and is free for the stay, false otherwise
+     */
+    boolean isAvailable(String roomNumber, Date checkInDate, Date checkOutDate);
+
+    /**
+     * Returns the reservations of a room.
+     * @param roomNumber the room number
+     * @return the room's reservations
+     */
+    Collection<Reservation> findByRoom(String roomNumber);
+
+    /**
+     * Returns the reservations of a customer.
+     * @param email the email address of the customer
+     * @return the customer's reservations
+     */
+    Collection<Reservation> findByCustomer(String email);
+
+    /**
+     * Passes every reservation whose check-in date lies in a range to the visitor, one at a time and in no
+     * particular order, without collecting them first.
+     * @param fromCheckIn the earliest check-in date, inclusive, or null for no lower bound
+     * @param toCheckIn the latest check-in date, inclusive, or null for no upper bound
+     * @param visitor receives the reservations
+     */
+    void scanByCheckIn(Date fromCheckIn, Date toCheckIn, Consumer<Reservation> visitor);
+
+    /**
+     * Returns all reservations, as of one point in time.
+     * @return all reservations
+     */
+    Collection<Reservation> findAll();
+}
@@ -1,39 +1,108 @@
 package service;
 
+import model.ChangeEvent;
 import model.Customer;
+import model.GroupAvailability;
+import model.InventoryDiff;
 import model.IRoom;
 import model.Reservation;
+import model.RoomAttribute;
 import model.RoomSearchType;
+import model.RoomType;
+import model.RoomTypeBooking;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * A service class that provides methods to manage reservations: add, find, retrieve rooms, get existing reservations
+ *
+ * Rooms and reservations are kept in a RoomRepository and a ReservationRepository, chosen by Repositories.
+ * Changes are serialized by the service lock, which makes the availability check and the insert of a booking
+ * atomic for every backend. Searches and reports do not take the lock; with the in-memory backend they run on
+ * one consistent snapshot and never wait for bookings.
+ *
+ * Holds are temporary and never stored: they are kept per room in copy-on-write arrays, replaced by writers
+ * under the service lock and read by searches without it.
  */
 public class ReservationService {
 
-    // A hashset to store room objects
-    private Set<IRoom> rooms = new HashSet<>();
+    private static final RoomHold[] NO_HOLDS = new RoomHold[0];
 
-    // A list to store all existing reservations
-    private List<Reservation> reservations = new ArrayList<>();
+    // How long, and for how many bookings at most, a retried booking request is answered from memory
+    private static final long BOOKING_KEY_TTL_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final int BOOKING_KEY_CAPACITY = 100_000;
+
+    private final RoomRepository rooms;
+    private final ReservationRepository reservations;
+
+    // Bookings by customer email and idempotency key, so that a retried request returns the first result
+    private final IdempotencyTable<Reservation> bookingsByRequest =
+            new IdempotencyTable<>(BOOKING_KEY_CAPACITY, BOOKING_KEY_TTL_MILLIS);
+
+    // Reservations by check-in and check-out date, for arrivals, departures and occupancy reports
+    private final ReservationDateIndex dateIndex = new ReservationDateIndex();
+
+    // Rooms by attribute, for searches that filter on floor, view and the like
+    private final RoomAttributeIndex attributeIndex = new RoomAttributeIndex();
+
+    // Odd while a room change is being published to the room store and the attribute index, which are
+    // updated one after the other; attribute searches that overlap a change fall back to the room store
+    private volatile long inventoryVersion;
+
+    // Rooms taken per room type and day, by reservations and by bookings of a room type. Writers update it
+    // under the service lock; reads go through typeInventory(), which replaces it as the days pass
+    private volatile RoomTypeInventory typeInventory;
+
+    // Bookings of a room type that have no room yet, by ID; kept in memory only, like holds
+    private final Map<Long, RoomTypeBooking> typeBookings = new ConcurrentSkipListMap<>();
+    private long nextTypeBookingId = 1;
+
+    // Holds by room number; the arrays are never modified once published
+    private final Map<String, RoomHold[]> holdsByRoom = new ConcurrentHashMap<>();
+
+    // Holds by the holder that placed them; only used by writers, under the service lock
+    private final Map<String, List<RoomHold>> holdsByHolder = new HashMap<>();
+
+    // Expires holds; one wheel drives every hold instead of a timer per hold
+    private final HierarchicalTimingWheel holdExpiry =
+            new HierarchicalTimingWheel(100, TimeUnit.MILLISECONDS, "room-hold-expiry");
+
+    // Checks rooms for parallel searches; findRooms uses it by default when -Dhotel.search.threads is set
+    private final ForkJoinPool searchPool;
+    private final boolean parallelSearch;
 
     // The singleton instance of the ReservationService class
     private static ReservationService instance;
 
     /**
      * Private constructor prevents external instantiation.
+     * @param repositories the storage backend
      */
-    private ReservationService() {}
+    private ReservationService(Repositories repositories) {
+        this.rooms = repositories.rooms();
+        this.reservations = repositories.reservations();
+        int searchThreads = Integer.getInteger("hotel.search.threads", 0);
+        this.parallelSearch = searchThreads > 0;
+        this.searchPool = parallelSearch ? new ForkJoinPool(searchThreads) : ForkJoinPool.commonPool();
+        // A persistent backend may already hold rooms
+        attributeIndex.update(rooms.findAll(), Collections.emptyList());
+        dateIndex.addAll(reservations.findAll());
+        this.typeInventory = countRoomsTaken(EpochDays.of(new Date()));
+    }
 
     /**
      * Returns the singleton instance of the CustomerService class:  new one, if instance does not exist,
      * otherwise existing one
      * @return the singleton instance
      */
-    public static ReservationService getInstance() {
+    public static synchronized ReservationService getInstance() {
         if (instance == null){
-            instance = new ReservationService();
+            instance = new ReservationService(Repositories.getInstance());
         }
         return instance;
     }
@@ -42,7 +111,162 @@ public class ReservationService {
      * Adds a new room to the service.
      * @param room the room to add
      */
-    public void addRoom(IRoom room) {rooms.add(room);
+    public synchronized void addRoom(IRoom room) {
+        boolean added;
+        inventoryVersion++;
+        try {
+            added = rooms.add(room);
+            if (added) {
+                attributeIndex.update(Collections.singletonList(room), Collections.emptyList());
+            }
+        } finally {
+            inventoryVersion++;
+        }
+        if (added) {
+            ChangeFeed.getInstance().publish(ChangeEvent.Type.ROOM_ADDED, room);
+        }
+    }
+
+    /**
+     * Adds several rooms at once, in one batch for the storage backend. Rooms whose number is already taken
+     * are skipped.
+     * @param newRooms the rooms to add
+     * @return the rooms that were added
+     */
+    public synchronized Collection<IRoom> addRooms(Collection<IRoom> newRooms) {
+        Collection<IRoom> added;
+        inventoryVersion++;
+        try {
+            added = rooms.addAll(newRooms);
+            attributeIndex.update(added, Collections.emptyList());
+        } finally {
+            inventoryVersion++;
+        }
+        for (IRoom room : added) {
+            ChangeFeed.getInstance().publish(ChangeEvent.Type.ROOM_ADDED, room);
+        }
+        return added;
+    }
+
+    /**
+     * Removes a room and all of its reservations from the service.
+     * @param room the room to remove
+     * @return the reservations that were held for the room
+     */
+    public synchronized Collection<Reservation> removeRoom(IRoom room) {
+        Collection<Reservation> removedReservations = reservations.findByRoom(room.getRoomNumber());
+        IRoom storedRoom = rooms.findByNumber(room.getRoomNumber());
+        inventoryVersion++;
+        try {
+            if (!rooms.remove(room.getRoomNumber())) {
+                return new ArrayList<>();
+            }
+            attributeIndex.update(Collections.emptyList(), Collections.singletonList(room.getRoomNumber()));
+        } finally {
+            inventoryVersion++;
+        }
+        for (Reservation reservation : removedReservations) {
+            dateIndex.remove(reservation);
+            typeInventory.take(storedRoom.getRoomType(), reservation.getCheckinDate(), reservation.getCheckoutDate(),
+                    -1);
+        }
+        dropHolds(room.getRoomNumber());
+        ChangeFeed.getInstance().publish(ChangeEvent.Type.ROOM_REMOVED, room);
+        return removedReservations;
+    }
+
+    /**
+     * Makes the hotel's rooms match a new inventory in one atomic step. Rooms that are new are added, rooms
+     * whose price, type or attributes changed are replaced and keep their reservations, and rooms missing from the
+     * inventory are removed unless they have reservations. Only the changed rooms are re-indexed; searches
+     * and bookings keep running and see either the old or the new inventory, never a mix.
+     * @param inventory every room the hotel should have; room numbers must be unique
+     * @return what changed
+     */
+    public synchronized InventoryDiff reloadInventory(Collection<IRoom> inventory) {
+        Map<String, IRoom> current = new HashMap<>();
+        for (IRoom room : rooms.findAll()) {
+            current.put(room.getRoomNumber(), room);
+        }
+        List<IRoom> added = new ArrayList<>();
+        List<IRoom> updated = new ArrayList<>();
+        Map<String, RoomType> previousTypes = new HashMap<>();
+        for (IRoom room : inventory) {
+            IRoom existing = current.remove(room.getRoomNumber());
+            if (existing == null) {
+                added.add(room);
+            } else if (!existing.getRoomPrice().equals(room.getRoomPrice()) || existing.getRoomType() != room.getRoomType()
+                    || !existing.getAttributes().equals(room.getAttributes())) {
+                updated.add(room);
+                previousTypes.put(room.getRoomNumber(), existing.getRoomType());
+            }
+        }
+        List<IRoom> removed = new ArrayList<>();
+        List<IRoom> retained = new ArrayList<>();
+        for (IRoom room : current.values()) {
+            if (reservations.findByRoom(room.getRoomNumber()).isEmpty()) {
+                removed.add(room);
+            } else {
+                retained.add(room);
+            }
+        }
+        InventoryDiff diff = new InventoryDiff(added, removed, updated, retained);
+        if (diff.isEmpty()) {
+            return diff;
+        }
+
+        List<IRoom> upserts = new ArrayList<>(added);
+        upserts.addAll(updated);
+        List<String> removedRoomNumbers = new ArrayList<>(removed.size());
+        for (IRoom room : removed) {
+            removedRoomNumbers.add(room.getRoomNumber());
+        }
+        inventoryVersion++;
+        try {
+            rooms.applyChanges(upserts, removedRoomNumbers);
+            attributeIndex.update(upserts, removedRoomNumbers);
+        } finally {
+            inventoryVersion++;
+        }
+        for (IRoom room : updated) {
+            moveReservations(room, previousTypes.get(room.getRoomNumber()));
+        }
+        for (IRoom room : removed) {
+            dropHolds(room.getRoomNumber());
+        }
+
+        ChangeFeed changeFeed = ChangeFeed.getInstance();
+        for (IRoom room : added) {
+            changeFeed.publish(ChangeEvent.Type.ROOM_ADDED, room);
+        }
+        for (IRoom room : updated) {
+            changeFeed.publish(ChangeEvent.Type.ROOM_UPDATED, room);
+        }
+        for (IRoom room : removed) {
+            changeFeed.publish(ChangeEvent.Type.ROOM_REMOVED, room);
+        }
+        return diff;
+    }
+
+    /**
+     * Replaces the price, type and attributes of an existing room. The room keeps its reservations and holds.
+     * @param room the room as it should be now
+     * @throws IllegalArgumentException if there is no room with that number
+     */
+    public synchronized void updateRoom(IRoom room) {
+        IRoom previous = rooms.findByNumber(room.getRoomNumber());
+        if (previous == null) {
+            throw new IllegalArgumentException("The room does not exist.");
+        }
+        inventoryVersion++;
+        try {
+            rooms.applyChanges(Collections.singletonList(room), Collections.emptyList());
+            attributeIndex.update(Collections.singletonList(room), Collections.emptyList());
+        } finally {
+            inventoryVersion++;
+        }
+        moveReservations(room, previous.getRoomType());
+        ChangeFeed.getInstance().publish(ChangeEvent.Type.ROOM_UPDATED, room);
     }
 
     /**
@@ -51,12 +275,7 @@ public class ReservationService {
      * @return the room with the given ID, or null if no such room exists
      */
     public IRoom getARoom(String roomId){
-        for (IRoom room : rooms) {
-            if (room.getRoomNumber().equals(roomId)) {
-                return room;
-            }
-        }
-        return null;
+        return rooms.findByNumber(roomId);
     }
 
     /**
@@ -67,33 +286,551 @@ public class ReservationService {
      * @param checkoutDate the check-out date
      * @return the new reservation object
      */
-    public Reservation reserveARoom(Customer customer, IRoom room, Date checkinDate, Date checkoutDate) {
-        if (!isRoomAvailable(room, checkinDate, checkoutDate)) {
+    public synchronized Reservation reserveARoom(Customer customer, IRoom room, Date checkinDate, Date checkoutDate) {
+        return reserveARoom(customer, room, checkinDate, checkoutDate, null);
+    }
+
+    /**
+     * Makes a new reservation on behalf of a holder. Holds placed by that holder do not block the booking,
+     * and the holder's hold on the booked room is consumed.
+     * @param customer the customer making the reservation
+     * @param room the room to reserve
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @param holderId the ID the holds were placed with, or null if the caller holds nothing
+     * @return the new reservation object
+     */
+    public synchronized Reservation reserveARoom(Customer customer, IRoom room, Date checkinDate, Date checkoutDate,
+                                                 String holderId) {
+        IRoom storedRoom = rooms.findByNumber(room.getRoomNumber());
+        if (storedRoom == null) {
+            throw new IllegalArgumentException("The room does not exist.");
+        }
+        if (!isRoomAvailable(storedRoom, checkinDate, checkoutDate, holderId)) {
             throw new IllegalArgumentException("The room is not available for the specified dates.");
         }
-        Reservation reservation = new Reservation(customer, room, checkinDate, checkoutDate);
+        Reservation reservation = new Reservation(customer, storedRoom, checkinDate, checkoutDate);
+        if (holderId != null) {
+            releaseHold(storedRoom.getRoomNumber(), holderId);
+        }
         reservations.add(reservation);
+        dateIndex.add(reservation);
+        typeInventory.take(storedRoom.getRoomType(), checkinDate, checkoutDate, 1);
+        ChangeFeed.getInstance().publish(ChangeEvent.Type.RESERVATION_ADDED, reservation);
         return  reservation;
     }
 
+    /**
+     * Makes a new reservation at most once per idempotency key, for clients that retry requests whose answer
+     * they did not receive. The first request with a key books the room as reserveARoom does; a repeated
+     * request with the same key and customer within 24 hours gets the original reservation back without any
+     * availability check, even if it was cancelled since. Only successful bookings are remembered: a request
+     * that failed did not book anything and is simply executed again.
+     * @param customer the customer making the reservation
+     * @param room the room to reserve
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @param holderId the ID the holds were placed with, or null if the caller holds nothing
+     * @param idempotencyKey a key the client generates once per booking and sends with every retry of it
+     * @return the new reservation, or the original one if the request is a repeat
+     * @throws IllegalArgumentException if the key was already used for a different room or stay
+     */
+    public Reservation reserveARoom(Customer customer, IRoom room, Date checkinDate, Date checkoutDate,
+                                    String holderId, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            throw new IllegalArgumentException("An idempotent booking needs a non-empty request key");
+        }
+        String key = customer.getEmail() + '\u0000' + idempotencyKey;
+        // Repeats are answered without the service lock
+        Reservation original = bookingsByRequest.get(key, System.currentTimeMillis());
+        if (original == null) {
+            synchronized (this) {
+                original = bookingsByRequest.get(key, System.currentTimeMillis());
+                if (original == null) {
+                    Reservation reservation = reserveARoom(customer, room, checkinDate, checkoutDate, holderId);
+                    bookingsByRequest.put(key, reservation, System.currentTimeMillis());
+                    return reservation;
+                }
+            }
+        }
+        if (!original.getRoom().getRoomNumber().equals(room.getRoomNumber())
+                || !original.getCheckinDate().equals(checkinDate) || !original.getCheckoutDate().equals(checkoutDate)) {
+            throw new IllegalArgumentException("The request key was already used for a different booking.");
+        }
+        return original;
+    }
+
+    /**
+     * Cancels an existing reservation, releasing the room for its dates.
+     * @param reservation the reservation to cancel
+     * @throws IllegalArgumentException if the reservation does not exist
+     */
+    public synchronized void cancelReservation(Reservation reservation) {
+        if (!reservations.remove(reservation)) {
+            throw new IllegalArgumentException("The reservation does not exist.");
+        }
+        dateIndex.remove(reservation);
+        typeInventory.take(roomTypeOf(reservation), reservation.getCheckinDate(), reservation.getCheckoutDate(), -1);
+        ChangeFeed.getInstance().publish(ChangeEvent.Type.RESERVATION_CANCELLED, reservation);
+    }
+
+    /**
+     * Places a temporary hold on a room for the given dates. Until the hold expires or is released, other
+     * callers see the room as occupied for those dates.
+     * @param room the room to hold
+     * @param checkinDate the check-in date
+     * @param checkoutDate the check-out date
+     * @param holderId an ID identifying the holder, for example one guest's search session
+     * @param ttlMillis how long the hold lasts, in milliseconds
+     * @return true if the hold was placed, false if the room is not available
+     */
+    public synchronized boolean holdRoom(IRoom room, Date checkinDate, Date checkoutDate, String holderId, long ttlMillis) {
+        if (holderId == null || ttlMillis <= 0) {
+            throw new IllegalArgumentException("A hold needs a holder ID and a positive duration");
+        }
+        if (!isRoomAvailable(room, checkinDate, checkoutDate, holderId)) {
+            return false;
+        }
+        RoomHold hold = new RoomHold(holderId, room, checkinDate, checkoutDate);
+        hold.expiry = holdExpiry.schedule(ttlMillis, TimeUnit.MILLISECONDS, () -> expireHold(hold));
+        holdsByHolder.computeIfAbsent(holderId, key -> new ArrayList<>()).add(hold);
+        RoomHold[] holds = holdsByRoom.getOrDefault(room.getRoomNumber(), NO_HOLDS);
+        RoomHold[] updated = Arrays.copyOf(holds, holds.length + 1);
+        updated[holds.length] = hold;
+        holdsByRoom.put(room.getRoomNumber(), updated);
+        return true;
+    }
+
+    /**
+     * Finds available rooms like findRooms and holds up to maxHolds of them for the holder.
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param roomSearchType the type of rooms to search for (FREE_ROOMS, PAID_ROOMS, or BOTH)
+     * @param holderId an ID identifying the holder
+     * @param ttlMillis how long the holds last, in milliseconds
+     * @param maxHolds the largest number of rooms to hold
+     * @return the rooms that are now held for the holder
+     */
+    public synchronized Collection<IRoom> findAndHoldRooms(Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType,
+                                                           String holderId, long ttlMillis, int maxHolds) {
+        return findAndHoldRooms(checkInDate, checkOutDate, roomSearchType, Collections.emptySet(), holderId,
+                ttlMillis, maxHolds);
+    }
+
+    /**
+     * Finds available rooms with every one of the given attributes, like findRooms, and holds up to maxHolds
+     * of them for the holder.
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param roomSearchType the type of rooms to search for (FREE_ROOMS, PAID_ROOMS, or BOTH)
+     * @param requiredAttributes the attributes every room must have; none to search all rooms
+     * @param holderId an ID identifying the holder
+     * @param ttlMillis how long the holds last, in milliseconds
+     * @param maxHolds the largest number of rooms to hold
+     * @return the rooms that are now held for the holder
+     */
+    public synchronized Collection<IRoom> findAndHoldRooms(Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType,
+                                                           Collection<RoomAttribute> requiredAttributes,
+                                                           String holderId, long ttlMillis, int maxHolds) {
+        Collection<IRoom> heldRooms = new ArrayList<>();
+        if (maxHolds <= 0) {
+            return heldRooms;
+        }
+        if (!requiredAttributes.isEmpty()) {
+            for (IRoom room : findRooms(checkInDate, checkOutDate, roomSearchType, requiredAttributes)) {
+                if (heldRooms.size() == maxHolds) {
+                    break;
+                }
+                if (holdRoom(room, checkInDate, checkOutDate, holderId, ttlMillis)) {
+                    heldRooms.add(room);
+                }
+            }
+            return heldRooms;
+        }
+        rooms.scanAvailable(checkInDate, checkOutDate, room -> {
+            if (matchesSearchType(room, roomSearchType)
+                    && holdRoom(room, checkInDate, checkOutDate, holderId, ttlMillis)) {
+                heldRooms.add(room);
+            }
+            return heldRooms.size() < maxHolds;
+        });
+        return heldRooms;
+    }
+
+    /**
+     * Releases every hold placed by the given holder.
+     * @param holderId the ID the holds were placed with
+     */
+    public synchronized void releaseHolds(String holderId) {
+        List<RoomHold> holds = holdsByHolder.remove(holderId);
+        if (holds == null) {
+            return;
+        }
+        for (RoomHold hold : holds) {
+            holdExpiry.cancel(hold.expiry);
+            removeFromRoom(hold);
+        }
+    }
+
+    /**
+     * Returns the number of holds that are currently in place.
+     * @return the number of active holds
+     */
+    public synchronized int getActiveHoldCount() {
+        int count = 0;
+        for (List<RoomHold> holds : holdsByHolder.values()) {
+            count += holds.size();
+        }
+        return count;
+    }
+
+    /**
+     * Removes the holder's holds on the room with the given number.
+     */
+    private void releaseHold(String roomNumber, String holderId) {
+        for (RoomHold hold : holdsByRoom.getOrDefault(roomNumber, NO_HOLDS)) {
+            if (hold.holderId.equals(holderId)) {
+                holdExpiry.cancel(hold.expiry);
+                forgetHolder(hold);
+                removeFromRoom(hold);
+            }
+        }
+    }
+
+    /**
+     * Cancels every hold on a room that no longer exists.
+     */
+    private void dropHolds(String roomNumber) {
+        RoomHold[] holds = holdsByRoom.remove(roomNumber);
+        if (holds != null) {
+            for (RoomHold hold : holds) {
+                holdExpiry.cancel(hold.expiry);
+                forgetHolder(hold);
+            }
+        }
+    }
+
+    private synchronized void expireHold(RoomHold hold) {
+        forgetHolder(hold);
+        removeFromRoom(hold);
+    }
+
+    private void forgetHolder(RoomHold hold) {
+        List<RoomHold> holds = holdsByHolder.get(hold.holderId);
+        if (holds != null && holds.remove(hold) && holds.isEmpty()) {
+            holdsByHolder.remove(hold.holderId);
+        }
+    }
+
+    private void removeFromRoom(RoomHold hold) {
+        String roomNumber = hold.room.getRoomNumber();
+        RoomHold[] holds = holdsByRoom.get(roomNumber);
+        if (holds == null) {
+            return;
+        }
+        for (int i = 0; i < holds.length; i++) {
+            if (holds[i] == hold) {
+                if (holds.length == 1) {
+                    holdsByRoom.remove(roomNumber);
+                } else {
+                    RoomHold[] updated = Arrays.copyOf(holds, holds.length - 1);
+                    System.arraycopy(holds, i + 1, updated, i, holds.length - i - 1);
+                    holdsByRoom.put(roomNumber, updated);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a hold placed by someone other than the given holder collides with a stay in a room.
+     */
+    private boolean isHeldByOther(String roomNumber, Date checkInDate, Date checkOutDate, String holderId) {
+        RoomHold[] holds = holdsByRoom.get(roomNumber);
+        if (holds == null) {
+            return false;
+        }
+        for (RoomHold hold : holds) {
+            if (!hold.holderId.equals(holderId)
+                    && RoomState.overlaps(checkInDate, checkOutDate, hold.checkinDate, hold.checkoutDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Finds and returns a collection of available rooms matching the specified search type between the given check-in
-     * and check-out dates.
+     * and check-out dates. The search does not wait for bookings in progress.
      * @param checkInDate The check-in date.
      * @param checkOutDate The check-out date.
      * @param roomSearchType The type of rooms to search for (FREE_ROOMS, PAID_ROOMS, or BOTH).
      * @return A collection of available rooms matching the specified search type.
      */
     public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType) {
+        if (parallelSearch) {
+            return findRoomsInParallel(checkInDate, checkOutDate, roomSearchType);
+        }
         Collection<IRoom> availableRooms = new ArrayList<>();
-        for (IRoom room : rooms) {
-            if (isRoomAvailable(room, checkInDate, checkOutDate) && matchesSearchType(room, roomSearchType)) {
+        boolean[] typesWithRoomLeft = findTypesWithRoomLeft(checkInDate, checkOutDate);
+        rooms.scanAvailable(checkInDate, checkOutDate, room -> {
+            if (matchesSearchType(room, roomSearchType)
+                    && !isHeldByOther(room.getRoomNumber(), checkInDate, checkOutDate, null)
+                    && leavesRoomForTypeBookings(room, typesWithRoomLeft)) {
                 availableRooms.add(room);
             }
+            return true;
+        });
+        return availableRooms;
+    }
+
+    /**
+     * Finds available rooms like findRooms, but checks them on several threads. The rooms are split into chunks
+     * that the threads of a ForkJoin pool take and steal from each other; an inventory smaller than a few
+     * thousand rooms is checked on the calling thread. The result has the same rooms in the same order as
+     * findRooms on the same data. Only the in-memory and compact backends split the rooms.
+     * @param checkInDate The check-in date.
+     * @param checkOutDate The check-out date.
+     * @param roomSearchType The type of rooms to search for (FREE_ROOMS, PAID_ROOMS, or BOTH).
+     * @return A collection of available rooms matching the specified search type.
+     */
+    public Collection<IRoom> findRoomsInParallel(Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType) {
+        boolean[] typesWithRoomLeft = findTypesWithRoomLeft(checkInDate, checkOutDate);
+        return rooms.findAvailable(checkInDate, checkOutDate, room -> matchesSearchType(room, roomSearchType)
+                && !isHeldByOther(room.getRoomNumber(), checkInDate, checkOutDate, null)
+                && leavesRoomForTypeBookings(room, typesWithRoomLeft), searchPool);
+    }
+
+    /**
+     * Finds available rooms like findRooms that also have every one of the given attributes, e.g. floor=3 and
+     * view=sea. The attribute bitmaps are intersected first; only the rooms that have all the attributes are
+     * checked for free or paid and for availability. The index and the room store are only read together
+     * while no room change is being published; a search that overlaps one filters the rooms of findRooms
+     * instead, so it sees either the old or the new inventory and never a mix.
+     * @param checkInDate The check-in date.
+     * @param checkOutDate The check-out date.
+     * @param roomSearchType The type of rooms to search for (FREE_ROOMS, PAID_ROOMS, or BOTH).
+     * @param requiredAttributes The attributes every room must have; none to search all rooms.
+     * @return A collection of available rooms with the attributes, ordered by room number.
+     */
+    public Collection<IRoom> findRooms(Date checkInDate, Date checkOutDate, RoomSearchType roomSearchType,
+                                       Collection<RoomAttribute> requiredAttributes) {
+        if (requiredAttributes.isEmpty()) {
+            return findRooms(checkInDate, checkOutDate, roomSearchType);
+        }
+        List<IRoom> availableRooms = new ArrayList<>();
+        long version = inventoryVersion;
+        if ((version & 1) == 0) {
+            boolean[] typesWithRoomLeft = findTypesWithRoomLeft(checkInDate, checkOutDate);
+            for (IRoom room : attributeIndex.findRooms(requiredAttributes)) {
+                if (matchesSearchType(room, roomSearchType)
+                        && !isHeldByOther(room.getRoomNumber(), checkInDate, checkOutDate, null)
+                        && reservations.isAvailable(room.getRoomNumber(), checkInDate, checkOutDate)
+                        && leavesRoomForTypeBookings(room, typesWithRoomLeft)) {
+                    availableRooms.add(room);
+                }
+            }
         }
+        if (version != inventoryVersion || (version & 1) != 0) {
+            // A room change was published during the search; the room store alone is consistent
+            availableRooms.clear();
+            for (IRoom room : findRooms(checkInDate, checkOutDate, roomSearchType)) {
+                if (room.getAttributes().containsAll(requiredAttributes)) {
+                    availableRooms.add(room);
+                }
+            }
+        }
+        availableRooms.sort(Comparator.comparing((IRoom room) -> Integer.parseInt(room.getRoomNumber())));
         return availableRooms;
     }
 
+    /**
+     * Returns how many rooms of a type are free on every day of a stay, counting bookings of the type that have
+     * no room yet as taken. Takes O(log days) whatever the number of rooms. The answer is an upper bound: rooms
+     * that are free on different days do not add up to a room for the whole stay, and holds are not counted.
+     * @param roomType the room type
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @return the number of rooms of the type left on the busiest day of the stay; 0 or less if none
+     * @throws IllegalArgumentException if the stay is in the past or more than ten years ahead
+     */
+    public int getFreeRoomCount(RoomType roomType, Date checkInDate, Date checkOutDate) {
+        if (!typeInventory().covers(checkInDate, checkOutDate)) {
+            throw new IllegalArgumentException("Rooms can only be booked by type for stays between now and ten years ahead.");
+        }
+        return countFreeRooms(roomType, checkInDate, checkOutDate);
+    }
+
+    /**
+     * Books any room of a type without choosing it yet. The booking takes one room of the type on every day of
+     * the stay in the counts, so later bookings cannot take the last one; assignRoom picks the room. The counts
+     * only reject quickly: a free room on each day may still be a different room each day, so the booking is
+     * only accepted if some room of the type is free for the whole stay right now. Bookings by type are kept
+     * in memory until they are assigned, like holds, and are not stored or replicated.
+     * @param customer the customer making the booking
+     * @param roomType the room type
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @return the booking, without a room
+     * @throws IllegalArgumentException if no room of the type is left for some day of the stay, or no single
+     * room of the type is free for the whole stay
+     */
+    public synchronized RoomTypeBooking reserveRoomOfType(Customer customer, RoomType roomType, Date checkInDate,
+                                                          Date checkOutDate) {
+        RoomTypeBooking booking = new RoomTypeBooking(nextTypeBookingId, customer, roomType, checkInDate, checkOutDate);
+        if (getFreeRoomCount(roomType, checkInDate, checkOutDate) <= 0) {
+            throw new IllegalArgumentException("No " + roomType.name() + " room is available for the specified dates.");
+        }
+        if (findRoomToAssign(roomType, checkInDate, checkOutDate) == null) {
+            throw new IllegalArgumentException("No single " + roomType.name() + " room is free for the whole stay.");
+        }
+        nextTypeBookingId++;
+        typeBookings.put(booking.getId(), booking);
+        typeInventory.take(roomType, checkInDate, checkOutDate, 1);
+        return booking;
+    }
+
+    /**
+     * Turns a booking by room type into a reservation of a concrete room: the room of the type with the lowest
+     * number that is free for the whole stay. Reservations made after the booking may leave a free room on each
+     * day but no single room for every day; then nothing is assigned and the booking keeps waiting.
+     * @param booking the booking returned by reserveRoomOfType
+     * @return the reservation of the assigned room
+     * @throws IllegalArgumentException if the booking has a room already, or no single room is free for the stay
+     */
+    public synchronized Reservation assignRoom(RoomTypeBooking booking) {
+        RoomType roomType = booking.getRoomType();
+        Date checkInDate = booking.getCheckinDate();
+        Date checkOutDate = booking.getCheckoutDate();
+        if (!typeBookings.remove(booking.getId(), booking)) {
+            throw new IllegalArgumentException("The booking does not exist or already has a room.");
+        }
+        typeInventory.take(roomType, checkInDate, checkOutDate, -1);
+        IRoom assigned = findRoomToAssign(roomType, checkInDate, checkOutDate);
+        if (assigned == null) {
+            typeBookings.put(booking.getId(), booking);
+            typeInventory.take(roomType, checkInDate, checkOutDate, 1);
+            throw new IllegalArgumentException("No single " + roomType.name() + " room is free for the whole stay. "
+                    + "The booking keeps waiting; assign it after other bookings change, or split the stay.");
+        }
+        return reserveARoom(booking.getCustomer(), assigned, checkInDate, checkOutDate);
+    }
+
+    /**
+     * Returns the room of a type with the lowest number that is free for the whole stay and leaves a room for
+     * the other bookings by type, or null if there is none. The lowest number, rather than the first room the
+     * store happens to pass, keeps the choice the same on every storage backend.
+     */
+    private IRoom findRoomToAssign(RoomType roomType, Date checkInDate, Date checkOutDate) {
+        if (!typeBookings.isEmpty() && countFreeRooms(roomType, checkInDate, checkOutDate) <= 0) {
+            return null;
+        }
+        IRoom[] lowest = new IRoom[1];
+        rooms.scanAvailable(checkInDate, checkOutDate, room -> {
+            if (room.getRoomType() == roomType
+                    && !isHeldByOther(room.getRoomNumber(), checkInDate, checkOutDate, null)
+                    && (lowest[0] == null
+                    || Integer.parseInt(room.getRoomNumber()) < Integer.parseInt(lowest[0].getRoomNumber()))) {
+                lowest[0] = room;
+            }
+            return true;
+        });
+        return lowest[0];
+    }
+
+    /**
+     * Cancels a booking by room type that has no room yet.
+     * @param booking the booking to cancel
+     * @throws IllegalArgumentException if the booking does not exist or already has a room
+     */
+    public synchronized void cancelRoomTypeBooking(RoomTypeBooking booking) {
+        if (!typeBookings.remove(booking.getId(), booking)) {
+            throw new IllegalArgumentException("The booking does not exist or already has a room.");
+        }
+        typeInventory.take(booking.getRoomType(), booking.getCheckinDate(), booking.getCheckoutDate(), -1);
+        ChangeFeed.getInstance().publish(ChangeEvent.Type.ROOM_TYPE_BOOKING_CANCELLED, booking);
+    }
+
+    /**
+     * Returns the bookings by room type that have no room yet.
+     * @return the bookings, oldest first
+     */
+    public List<RoomTypeBooking> getRoomTypeBookings() {
+        return new ArrayList<>(typeBookings.values());
+    }
+
+    /**
+     * Returns every attribute at least one room has, for offering filters to guests.
+     * @return the attributes, sorted by name and value
+     */
+    public Set<RoomAttribute> getRoomAttributes() {
+        return attributeIndex.getAttributes();
+    }
+
+
+    /**
+     * Looks for a group of rooms free for the same stay, e.g. 8 double and 4 single rooms. Rooms are counted
+     * per type while the free rooms are scanned, and the scan stops as soon as every quota is filled. If the hotel
+     * has fewer rooms of a type than requested, booked or not, the answer is known without scanning.
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param roomsPerType the number of rooms wanted of each room type
+     * @param maxTotalPrice the highest acceptable total price of the stay per room, or null for no limit
+     * @return whether the mix fits, with the rooms found for each type
+     */
+    public GroupAvailability findRoomGroup(Date checkInDate, Date checkOutDate, Map<RoomType, Integer> roomsPerType,
+                                           Double maxTotalPrice) {
+        int[] remaining = new int[RoomType.values().length];
+        int unfilledTypes = 0;
+        Map<RoomType, List<IRoom>> found = new EnumMap<>(RoomType.class);
+        Map<RoomType, Integer> shortfall = new EnumMap<>(RoomType.class);
+        for (Map.Entry<RoomType, Integer> quota : roomsPerType.entrySet()) {
+            if (quota.getValue() < 0) {
+                throw new IllegalArgumentException("The number of rooms must be 0 or a positive value");
+            }
+            if (quota.getValue() == 0) {
+                continue;
+            }
+            found.put(quota.getKey(), new ArrayList<>(quota.getValue()));
+            int roomsOfType = rooms.countByType(quota.getKey());
+            if (roomsOfType < quota.getValue()) {
+                shortfall.put(quota.getKey(), quota.getValue() - roomsOfType);
+            }
+            remaining[quota.getKey().ordinal()] = quota.getValue();
+            unfilledTypes++;
+        }
+        if (!shortfall.isEmpty()) {
+            return new GroupAvailability(found, shortfall);
+        }
+
+        long maxTotalCents = maxTotalPrice == null ? Long.MAX_VALUE : Math.round(maxTotalPrice * 100);
+        PricingService pricingService = PricingService.getInstance();
+        // Types still short of rooms; an array so the scan callback can count down
+        int[] unfilled = {unfilledTypes};
+        if (unfilledTypes > 0) {
+            boolean[] typesWithRoomLeft = findTypesWithRoomLeft(checkInDate, checkOutDate);
+            rooms.scanAvailable(checkInDate, checkOutDate, room -> {
+                int type = room.getRoomType().ordinal();
+                if (remaining[type] == 0
+                        || isHeldByOther(room.getRoomNumber(), checkInDate, checkOutDate, null)
+                        || !leavesRoomForTypeBookings(room, typesWithRoomLeft)
+                        || pricingService.quoteCents(room, checkInDate, checkOutDate) > maxTotalCents) {
+                    return true;
+                }
+                found.get(room.getRoomType()).add(room);
+                if (--remaining[type] == 0) {
+                    unfilled[0]--;
+                }
+                return unfilled[0] > 0;
+            });
+        }
+        for (RoomType roomType : found.keySet()) {
+            if (remaining[roomType.ordinal()] > 0) {
+                shortfall.put(roomType, remaining[roomType.ordinal()]);
+            }
+        }
+        return new GroupAvailability(found, shortfall);
+    }
 
     /**
      * Checks if the given room matches the specified search type.
@@ -102,7 +839,7 @@ public class ReservationService {
      * @return True if the room matches the specified search type, false otherwise.
      * @throws IllegalArgumentException if an invalid room search type is provided.
      */
-    private boolean matchesSearchType(IRoom room, RoomSearchType roomSearchType) {
+    boolean matchesSearchType(IRoom room, RoomSearchType roomSearchType) {
         switch (roomSearchType) {
             case FREE_ROOMS:
                 return room.isFree();
@@ -118,7 +855,7 @@ public class ReservationService {
 
     /**
      * Checks if the given room is available between the specified check-in and check-out dates.
-     * A room is considered available if it's not already booked during the specified dates.
+     * A room is considered available if it's not already booked or held during the specified dates.
      *
      * @param room the room to check availability for
      * @param checkInDate the check-in date
@@ -126,16 +863,113 @@ public class ReservationService {
      * @return true if the room is available during the specified dates, false otherwise
      */
     boolean isRoomAvailable(IRoom room, Date checkInDate, Date checkOutDate) {
-        for (Reservation reservation : reservations) {
-            if (reservation.getRoom().equals(room)) {
-                // New reservation starts before an existing reservation ends and ends after the existing reservation starts.
-                if ((checkInDate.before(reservation.getCheckoutDate()) || checkInDate.equals(reservation.getCheckoutDate()))
-                        && (checkOutDate.after(reservation.getCheckinDate()) || checkOutDate.equals(reservation.getCheckinDate()))) {
-                    return false;
-                }
-            }
+        return isRoomAvailable(room, checkInDate, checkOutDate, null);
+    }
+
+    /**
+     * Checks if the given room is available for a holder. Reservations and holds placed by anyone else make
+     * the room unavailable; the holder's own holds do not.
+     *
+     * @param room the room to check availability for
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param holderId the ID of the caller's holds, or null if the caller holds nothing
+     * @return true if the room is available during the specified dates, false otherwise
+     */
+    boolean isRoomAvailable(IRoom room, Date checkInDate, Date checkOutDate, String holderId) {
+        return !isHeldByOther(room.getRoomNumber(), checkInDate, checkOutDate, holderId)
+                && reservations.isAvailable(room.getRoomNumber(), checkInDate, checkOutDate)
+                && leavesRoomForTypeBookings(room, checkInDate, checkOutDate);
+    }
+
+    /**
+     * Checks that taking the room for the stay still leaves a room of its type, on every day, for each booking
+     * of that type that has no room yet. While there are no such bookings every room passes without a look at
+     * the counts.
+     */
+    private boolean leavesRoomForTypeBookings(IRoom room, Date checkInDate, Date checkOutDate) {
+        return typeBookings.isEmpty() || countFreeRooms(room.getRoomType(), checkInDate, checkOutDate) > 0;
+    }
+
+    /**
+     * Checks each room type, once per search, for whether a room of it can be taken for the stay and still
+     * leave one for the bookings by type, so that the rooms of the search need no look at the counts.
+     * @return whether each type has a room left, by ordinal, or null while there are no bookings by type
+     */
+    private boolean[] findTypesWithRoomLeft(Date checkInDate, Date checkOutDate) {
+        if (typeBookings.isEmpty()) {
+            return null;
+        }
+        boolean[] typesWithRoomLeft = new boolean[RoomType.values().length];
+        for (RoomType roomType : RoomType.values()) {
+            typesWithRoomLeft[roomType.ordinal()] = countFreeRooms(roomType, checkInDate, checkOutDate) > 0;
+        }
+        return typesWithRoomLeft;
+    }
+
+    private static boolean leavesRoomForTypeBookings(IRoom room, boolean[] typesWithRoomLeft) {
+        return typesWithRoomLeft == null || typesWithRoomLeft[room.getRoomType().ordinal()];
+    }
+
+    private int countFreeRooms(RoomType roomType, Date checkInDate, Date checkOutDate) {
+        return rooms.countByType(roomType) - typeInventory().getMostTaken(roomType, checkInDate, checkOutDate);
+    }
+
+    /**
+     * Returns the counts of rooms taken per type and day, first moving their window if today has moved too
+     * far into it.
+     */
+    private RoomTypeInventory typeInventory() {
+        RoomTypeInventory inventory = typeInventory;
+        return inventory.isBehind(EpochDays.of(new Date())) ? moveTypeWindow() : inventory;
+    }
+
+    /**
+     * Recounts the rooms taken over a window that starts shortly before today. Readers keep using the old
+     * counts until the new ones are complete. Writers read the counts only while they match the stored
+     * reservations and bookings, so a recount in the middle of a write counts the same stays.
+     */
+    private synchronized RoomTypeInventory moveTypeWindow() {
+        long today = EpochDays.of(new Date());
+        if (typeInventory.isBehind(today)) {
+            typeInventory = countRoomsTaken(today);
+        }
+        return typeInventory;
+    }
+
+    /**
+     * Counts every reservation and every booking by type in a new window that starts shortly before today.
+     */
+    private RoomTypeInventory countRoomsTaken(long today) {
+        RoomTypeInventory inventory = new RoomTypeInventory(today - RoomTypeInventory.PAST_DAYS);
+        for (Reservation reservation : reservations.findAll()) {
+            inventory.take(roomTypeOf(reservation), reservation.getCheckinDate(), reservation.getCheckoutDate(), 1);
+        }
+        for (RoomTypeBooking booking : typeBookings.values()) {
+            inventory.take(booking.getRoomType(), booking.getCheckinDate(), booking.getCheckoutDate(), 1);
+        }
+        return inventory;
+    }
+
+    /**
+     * Returns the type of the stored room of a reservation; a room's type can change after it was booked.
+     */
+    private RoomType roomTypeOf(Reservation reservation) {
+        IRoom storedRoom = rooms.findByNumber(reservation.getRoom().getRoomNumber());
+        return (storedRoom == null ? reservation.getRoom() : storedRoom).getRoomType();
+    }
+
+    /**
+     * Moves the reservations of a room whose type changed to the counts of its new type.
+     */
+    private void moveReservations(IRoom room, RoomType previousType) {
+        if (previousType == room.getRoomType()) {
+            return;
+        }
+        for (Reservation reservation : reservations.findByRoom(room.getRoomNumber())) {
+            typeInventory.take(previousType, reservation.getCheckinDate(), reservation.getCheckoutDate(), -1);
+            typeInventory.take(room.getRoomType(), reservation.getCheckinDate(), reservation.getCheckoutDate(), 1);
         }
-        return true;
     }
 
 
@@ -145,33 +979,88 @@ public class ReservationService {
      * @return a collection of all reservations for the given customer
      */
     public Collection<Reservation> getCustomerReservations(Customer customer){
-        Collection<Reservation> customerReservations = new ArrayList<>();
+        return reservations.findByCustomer(customer.getEmail());
+    }
 
-        // Iterate through all reservations and add to customerReservations if they're for the given customer
-        for (Reservation reservation : reservations) {
-            if (reservation.getCustomer().equals(customer)) {
-                customerReservations.add(reservation);
-            }
+    /**
+     * Returns all reservations for the given room.
+     * @param room the room to retrieve reservations for
+     * @return a collection of all reservations for the given room
+     */
+    public Collection<Reservation> getRoomReservations(IRoom room){
+        return reservations.findByRoom(room.getRoomNumber());
+    }
+
+    /**
+     * Returns the reservations that check in on a day. The cost depends on the number of arrivals, not on the
+     * number of reservations.
+     * @param day any time on the day
+     * @return the reservations that check in that day, ordered by room number
+     */
+    public List<Reservation> findArrivals(Date day){
+        return dateIndex.findArrivals(day);
+    }
+
+    /**
+     * Returns the reservations that check out on a day. The cost depends on the number of departures, not on
+     * the number of reservations.
+     * @param day any time on the day
+     * @return the reservations that check out that day, ordered by room number
+     */
+    public List<Reservation> findDepartures(Date day){
+        return dateIndex.findDepartures(day);
+    }
+
+    /**
+     * Returns the reservations whose stay overlaps a date range by the inclusive overlap rule, i.e. every
+     * guest in the hotel at some point of the range. Only the stays that check out on or after the start of
+     * the range are looked at.
+     * @param from the first date of the range
+     * @param to the last date of the range, inclusive
+     * @return the overlapping reservations, ordered by check-in date
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    public List<Reservation> findOverlappingReservations(Date from, Date to){
+        if (to.before(from)) {
+            throw new IllegalArgumentException("The end of the range must not be before its start.");
         }
+        return dateIndex.findOverlapping(from, to);
+    }
 
-        return customerReservations;
+    /**
+     * Passes every reservation whose check-in date lies in a range to the visitor, one at a time, without
+     * collecting them first. Used for exports that may not fit in memory twice.
+     * @param fromCheckIn the earliest check-in date, inclusive, or null for no lower bound
+     * @param toCheckIn the latest check-in date, inclusive, or null for no upper bound
+     * @param visitor receives the reservations, in no particular order
+     */
+    public void forEachReservation(Date fromCheckIn, Date toCheckIn, Consumer<Reservation> visitor) {
+        reservations.scanByCheckIn(fromCheckIn, toCheckIn, visitor);
     }
 
     /**
-     * Prints a list of all existing reservations.
+     * Prints a list of all existing reservations, as of one point in time.
      */
     public void printAllReservations(){
-        for(Reservation reservation: reservations){
+        for(Reservation reservation: getAllReservations()){
             System.out.println(reservation);
         }
     }
 
     /**
-     * Returns a collection of all existing rooms.
+     * Returns a collection of all existing rooms, as of one point in time.
      * @return a collection of all existing rooms
      */
     public Collection<IRoom> getAllRooms(){
-        return new ArrayList<>(rooms);
+        return rooms.findAll();
+    }
+
+    /**
+     * Returns a collection of all existing reservations, as of one point in time.
+     * @return a collection of all existing reservations, in booking order
+     */
+    public Collection<Reservation> getAllReservations(){
+        return reservations.findAll();
     }
 
 
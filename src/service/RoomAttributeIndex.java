@@ -0,0 +1,151 @@
+package service;
+
+import model.IRoom;
+import model.RoomAttribute;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rooms by attribute, one compressed bitmap of room ordinals per attribute value (see RoomBitmap).
+ *
+ * A search for several attributes intersects their bitmaps, smallest first, and only the rooms left over are
+ * looked at, so filtering by floor=3 and view=sea does not touch the rooms on other floors at all.
+ *
+ * Changes come from one writer at a time (the ReservationService lock) and copy each bitmap they touch
+ * once; searches read the published bitmaps without locks. A room is checked against the requested attributes
+ * once more after it is found, so a search that overlaps a change never returns a room that does not match.
+ */
+final class RoomAttributeIndex {
+
+    // Ordinals by room number; only used by the writer. An ordinal stays with its room number for good,
+    // so a room that is removed and added again gets its old ordinal back
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    // Rooms by ordinal, null for a removed room; replaced by a larger array when it is full
+    private volatile AtomicReferenceArray<IRoom> rooms = new AtomicReferenceArray<>(64);
+
+    // Bitmaps by attribute; neither the map nor its bitmaps are modified once published
+    private volatile Map<RoomAttribute, RoomBitmap> bitmaps = Collections.emptyMap();
+
+    /**
+     * Indexes new or changed rooms and forgets removed ones, in one step for searches.
+     * @param upserts rooms that are new or replace the room with the same number
+     * @param removedRoomNumbers numbers of rooms that no longer exist
+     */
+    void update(Collection<IRoom> upserts, Collection<String> removedRoomNumbers) {
+        Map<RoomAttribute, RoomBitmap> updated = new HashMap<>(bitmaps);
+        Set<RoomAttribute> copied = new HashSet<>();
+        for (IRoom room : upserts) {
+            Integer ordinal = ordinals.get(room.getRoomNumber());
+            if (ordinal == null) {
+                ordinal = ordinals.size();
+                ordinals.put(room.getRoomNumber(), ordinal);
+            }
+            IRoom previous = ordinal < rooms.length() ? rooms.get(ordinal) : null;
+            Set<RoomAttribute> previousAttributes =
+                    previous == null ? Collections.<RoomAttribute>emptySet() : previous.getAttributes();
+            for (RoomAttribute attribute : previousAttributes) {
+                if (!room.getAttributes().contains(attribute)) {
+                    writable(updated, copied, attribute).remove(ordinal);
+                }
+            }
+            for (RoomAttribute attribute : room.getAttributes()) {
+                if (!previousAttributes.contains(attribute)) {
+                    writable(updated, copied, attribute).add(ordinal);
+                }
+            }
+            setRoom(ordinal, room);
+        }
+        for (String roomNumber : removedRoomNumbers) {
+            Integer ordinal = ordinals.get(roomNumber);
+            IRoom previous = ordinal == null || ordinal >= rooms.length() ? null : rooms.get(ordinal);
+            if (previous == null) {
+                continue;
+            }
+            for (RoomAttribute attribute : previous.getAttributes()) {
+                writable(updated, copied, attribute).remove(ordinal);
+            }
+            rooms.set(ordinal, null);
+        }
+        for (RoomAttribute attribute : copied) {
+            if (updated.get(attribute).cardinality() == 0) {
+                updated.remove(attribute);
+            }
+        }
+        bitmaps = Collections.unmodifiableMap(updated);
+    }
+
+    private static RoomBitmap writable(Map<RoomAttribute, RoomBitmap> bitmaps, Set<RoomAttribute> copied,
+                                       RoomAttribute attribute) {
+        RoomBitmap bitmap = bitmaps.get(attribute);
+        if (copied.add(attribute)) {
+            bitmap = bitmap == null ? new RoomBitmap() : bitmap.copy();
+            bitmaps.put(attribute, bitmap);
+        }
+        return bitmap;
+    }
+
+    private void setRoom(int ordinal, IRoom room) {
+        AtomicReferenceArray<IRoom> current = rooms;
+        if (ordinal >= current.length()) {
+            AtomicReferenceArray<IRoom> larger = new AtomicReferenceArray<>(Math.max(current.length() * 2, ordinal + 1));
+            for (int i = 0; i < current.length(); i++) {
+                larger.set(i, current.get(i));
+            }
+            current = larger;
+            rooms = larger;
+        }
+        current.set(ordinal, room);
+    }
+
+    /**
+     * Returns the rooms that have every one of the given attributes, in no particular order.
+     * @param required the attributes; must not be empty
+     * @return the matching rooms, booked or not
+     */
+    List<IRoom> findRooms(Collection<RoomAttribute> required) {
+        Map<RoomAttribute, RoomBitmap> current = bitmaps;
+        List<RoomBitmap> selected = new ArrayList<>(required.size());
+        for (RoomAttribute attribute : required) {
+            RoomBitmap bitmap = current.get(attribute);
+            if (bitmap == null) {
+                return new ArrayList<>();
+            }
+            selected.add(bitmap);
+        }
+        // Starting with the rarest attribute keeps every intermediate result as small as possible
+        selected.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        RoomBitmap matches = selected.get(0);
+        for (int i = 1; i < selected.size() && matches.cardinality() > 0; i++) {
+            matches = matches.and(selected.get(i));
+        }
+
+        AtomicReferenceArray<IRoom> roomsByOrdinal = rooms;
+        List<IRoom> found = new ArrayList<>(matches.cardinality());
+        matches.forEach(ordinal -> {
+            IRoom room = ordinal < roomsByOrdinal.length() ? roomsByOrdinal.get(ordinal) : null;
+            if (room != null && room.getAttributes().containsAll(required)) {
+                found.add(room);
+            }
+            return true;
+        });
+        return found;
+    }
+
+    /**
+     * Returns every attribute at least one room has.
+     * @return the attributes, sorted
+     */
+    Set<RoomAttribute> getAttributes() {
+        return new TreeSet<>(bitmaps.keySet());
+    }
+}
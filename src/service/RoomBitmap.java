@@ -0,0 +1,362 @@
+package service;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A compressed set of room ordinals, laid out like a Roaring bitmap.
+ *
+ * Ordinals are split into a high and a low 16-bit half. Each high half present in the set has one container
+ * holding the low halves: a sorted char array while it has at most 4096 values, a 1024-word bit set when
+ * it has more. A sparse attribute (the three accessible rooms) costs a few bytes, a dense one (every room
+ * without a sea view) one bit per room, and intersections run word by word or by merging sorted arrays
+ * instead of testing rooms one at a time.
+ *
+ * A bitmap is changed only while it is being built; one that is visible to searches is never modified,
+ * writers change a copy instead.
+ */
+final class RoomBitmap {
+
+    // Largest number of values kept in an array container; beyond it a bit set is smaller
+    private static final int ARRAY_MAX = 4096;
+
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    // High halves of the ordinals, sorted; containers[i] holds the low halves that belong to keys[i]
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int containerCount;
+
+    /**
+     * Adds an ordinal.
+     * @return true if it was not in the set
+     */
+    boolean add(int ordinal) {
+        char high = (char) (ordinal >>> 16);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -index - 1;
+            if (containerCount == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                containers = Arrays.copyOf(containers, containers.length * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+            System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+            keys[index] = high;
+            containers[index] = new ArrayContainer(new char[4], 0);
+            containerCount++;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) ordinal);
+        return containers[index].cardinality() > before;
+    }
+
+    /**
+     * Removes an ordinal.
+     * @return true if it was in the set
+     */
+    boolean remove(int ordinal) {
+        int index = indexOf((char) (ordinal >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        Container updated = container.remove((char) ordinal);
+        if (updated.cardinality() == 0) {
+            System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+            containers[--containerCount] = null;
+        } else {
+            containers[index] = updated;
+        }
+        return updated.cardinality() < before;
+    }
+
+    boolean contains(int ordinal) {
+        int index = indexOf((char) (ordinal >>> 16));
+        return index >= 0 && containers[index].contains((char) ordinal);
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < containerCount; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns a copy that can be changed without affecting this bitmap.
+     */
+    RoomBitmap copy() {
+        RoomBitmap copy = new RoomBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(containerCount, 4));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < containerCount; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.containerCount = containerCount;
+        return copy;
+    }
+
+    /**
+     * Returns the ordinals that are in both this bitmap and the other one. Neither bitmap is changed.
+     */
+    RoomBitmap and(RoomBitmap other) {
+        RoomBitmap result = new RoomBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container intersection = containers[i].and(other.containers[j]);
+                if (intersection.cardinality() > 0) {
+                    result.append(keys[i], intersection);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes the ordinals to the visitor in ascending order until it returns false.
+     */
+    void forEach(IntPredicate visitor) {
+        for (int i = 0; i < containerCount; i++) {
+            if (!containers[i].forEach(keys[i] << 16, visitor)) {
+                return;
+            }
+        }
+    }
+
+    private void append(char high, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            containers = Arrays.copyOf(containers, containers.length * 2);
+        }
+        keys[containerCount] = high;
+        containers[containerCount++] = container;
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, containerCount, high);
+    }
+
+    /**
+     * The low halves of the ordinals that share one high half. Changes return the container to use from then
+     * on, which is a different kind of container when the array limit is crossed.
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        abstract Container and(Container other);
+
+        abstract boolean forEach(int base, IntPredicate visitor);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_MAX));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 4)), size);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            if (other instanceof BitmapContainer) {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        boolean forEach(int base, IntPredicate visitor) {
+            for (int i = 0; i < size; i++) {
+                if (!visitor.test(base | values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private BitmapContainer toBitmap() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, size);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX) {
+                    return toArray(words, cardinality);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return count <= ARRAY_MAX ? toArray(result, count) : new BitmapContainer(result, count);
+        }
+
+        @Override
+        boolean forEach(int base, IntPredicate visitor) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    if (!visitor.test(base | (i << 6) | Long.numberOfTrailingZeros(word))) {
+                        return false;
+                    }
+                    word &= word - 1;
+                }
+            }
+            return true;
+        }
+
+        private static ArrayContainer toArray(long[] words, int cardinality) {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package service;
+
+import model.IRoom;
+
+import java.util.Date;
+
+/**
+ * A temporary claim on a room for a date range, which other callers see as occupied until it is released,
+ * consumed by a booking of its holder, or expires.
+ */
+final class RoomHold {
+    final String holderId;
+    final IRoom room;
+    final Date checkinDate;
+    final Date checkoutDate;
+
+    // Set by the writer that places the hold, before the hold is published
+    HierarchicalTimingWheel.Timeout expiry;
+
+    RoomHold(String holderId, IRoom room, Date checkinDate, Date checkoutDate) {
+        this.holderId = holderId;
+        this.room = room;
+        this.checkinDate = checkinDate;
+        this.checkoutDate = checkoutDate;
+    }
+}
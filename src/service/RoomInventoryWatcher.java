@@ -0,0 +1,174 @@
+package service;
+
+import model.FreeRoom;
+import model.IRoom;
+import model.InventoryDiff;
+import model.Room;
+import model.RoomAttribute;
+import model.RoomType;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the hotel's rooms in sync with an inventory CSV file. The file is loaded when the watcher starts and
+ * again every time it is written; each reload applies only the difference to the current rooms through
+ * ReservationService.reloadInventory, so searches and bookings continue while the inventory changes.
+ *
+ * The file has one room per line: room number, price, type (SINGLE or DOUBLE) and optionally the room's
+ * attributes separated by semicolons (e.g. floor=3;view=sea), separated by commas. A file that cannot be
+ * parsed is ignored as a whole and the current inventory stays in place.
+ */
+public class RoomInventoryWatcher implements Closeable {
+
+    // Editors often write a file in several steps; wait this long after the last change before reloading
+    private static final long SETTLE_MILLIS = 250;
+
+    private final Path file;
+    private final ReservationService reservationService;
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    /**
+     * Loads the inventory file and starts watching it.
+     * @param file the inventory CSV file
+     * @param reservationService the service whose rooms follow the file
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public RoomInventoryWatcher(Path file, ReservationService reservationService) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.reservationService = reservationService;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        // A directory is watched rather than the file, so a file replaced by a rename is seen as well
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        reload();
+        this.watcher = new Thread(this::watch, "room-inventory-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * Reads rooms from an inventory CSV file.
+     * @param file the file
+     * @return the rooms in file order
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line is invalid or a room number appears twice
+     */
+    public static List<IRoom> readRooms(Path file) throws IOException {
+        List<IRoom> rooms = new ArrayList<>();
+        Set<String> roomNumbers = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                if (values.length < 3) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": each line must have 3 values"
+                            + " separated by commas: roomNumber, price, roomType, and optionally attributes");
+                }
+                String roomNumber = values[0].trim();
+                double roomPrice;
+                RoomType roomType;
+                try {
+                    roomPrice = Double.parseDouble(values[1].trim());
+                    roomType = RoomType.valueOf(values[2].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": invalid price or room type");
+                }
+                Set<RoomAttribute> attributes;
+                try {
+                    attributes = values.length > 3 ? RoomAttribute.parseAll(values[3]) : Collections.emptySet();
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+                }
+                if (!roomNumbers.add(roomNumber)) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": room " + roomNumber
+                            + " appears more than once");
+                }
+                rooms.add(roomPrice == 0.0 ? new FreeRoom(roomNumber, roomType, attributes)
+                        : new Room(roomNumber, roomPrice, roomType, attributes));
+            }
+        }
+        return rooms;
+    }
+
+    /**
+     * Reloads the file now and applies the difference to the current rooms.
+     * @return what changed, or null if the file could not be read
+     */
+    public InventoryDiff reload() {
+        List<IRoom> rooms;
+        try {
+            rooms = readRooms(file);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Inventory: ignoring " + file + ": " + e.getMessage());
+            return null;
+        }
+        InventoryDiff diff = reservationService.reloadInventory(rooms);
+        if (!diff.isEmpty() || !diff.getRetained().isEmpty()) {
+            System.out.println("Inventory: reloaded " + file.getFileName() + ": " + diff);
+        }
+        return diff;
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = pollForFile(key);
+                // Let the writer finish, collecting the events of the remaining steps
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= pollForFile(key);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed; stop watching
+        }
+    }
+
+    /**
+     * Consumes the events of a key and re-arms it.
+     * @return true if one of the events was for the inventory file
+     */
+    private boolean pollForFile(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
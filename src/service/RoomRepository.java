@@ -0,0 +1,88 @@
+package service;
+
+import model.IRoom;
+import model.RoomType;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+/**
+ * Storage for rooms. ReservationService serializes all writes; implementations must allow reads to run
+ * concurrently with a write.
+ */
+public interface RoomRepository {
+
+    /**
+     * Stores a new room.
+     * @param room the room to store
+     * @return true if the room was stored, false if a room with the same number already exists
+     */
+    boolean add(IRoom room);
+
+    /**
+     * Stores several new rooms at once, skipping room numbers that already exist.
+     * @param rooms the rooms to store
+     * @return the rooms that were stored
+     */
+    Collection<IRoom> addAll(Collection<IRoom> rooms);
+
+    /**
+     * Removes a room together with all of its reservations.
+     * @param roomNumber the number of the room to remove
+     * @return true if the room existed, false otherwise
+     */
+    boolean remove(String roomNumber);
+
+    /**
+     * Applies several changes as one atomic step: readers see either none or all of them.
+     * @param upserts rooms to add, or to replace the stored room of the same number; a replaced room keeps
+     *                its reservations
+     * @param removedRoomNumbers the numbers of rooms to remove together with their reservations
+     */
+    void applyChanges(Collection<IRoom> upserts, Collection<String> removedRoomNumbers);
+
+    /**
+     * Returns the room with the given number.
+     * @param roomNumber the room number
+     * @return the room, or null if there is no such room
+     */
+    IRoom findByNumber(String roomNumber);
+
+    /**
+     * Returns all rooms, as of one point in time.
+     * @return a collection of all rooms that the caller may modify
+     */
+    Collection<IRoom> findAll();
+
+    /**
+     * Returns the number of rooms of a type, booked or not.
+     * @param roomType the room type
+     * @return the number of rooms of that type
+     */
+    int countByType(RoomType roomType);
+
+    /**
+     * Passes every room without a reservation that collides with the stay to the visitor, until the visitor
+     * returns false. Collisions follow the inclusive rule of ReservationService: a stay that starts on the day
+     * another one ends collides with it.
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param visitor receives the free rooms; returns false to stop the scan
+     */
+    void scanAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> visitor);
+
+    /**
+     * Returns every room without a reservation that collides with the stay and that passes a filter, in the
+     * order scanAvailable passes them. A store that can split its rooms checks them on the threads of the pool
+     * when it has enough rooms for that to pay off, so the filter must be safe to call from several threads.
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param filter selects the free rooms to return
+     * @param pool the pool to check the rooms on
+     * @return the free rooms that pass the filter
+     */
+    List<IRoom> findAvailable(Date checkInDate, Date checkOutDate, Predicate<IRoom> filter, ForkJoinPool pool);
+}
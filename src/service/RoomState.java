@@ -0,0 +1,101 @@
+package service;
+
+import model.IRoom;
+import model.Reservation;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * One immutable version of a room with its reservations. A change builds a new RoomState and leaves the old
+ * one untouched, so snapshots that still refer to it stay consistent.
+ */
+final class RoomState {
+
+    private static final Booking[] NO_BOOKINGS = new Booking[0];
+
+    /**
+     * A reservation with its position in the global booking order.
+     */
+    static final class Booking {
+        final long sequence;
+        final Reservation reservation;
+
+        Booking(long sequence, Reservation reservation) {
+            this.sequence = sequence;
+            this.reservation = reservation;
+        }
+    }
+
+    final IRoom room;
+    final Booking[] bookings;
+
+    private RoomState(IRoom room, Booking[] bookings) {
+        this.room = room;
+        this.bookings = bookings;
+    }
+
+    /**
+     * Returns the state of a room that has no reservations.
+     */
+    static RoomState of(IRoom room) {
+        return new RoomState(room, NO_BOOKINGS);
+    }
+
+    /**
+     * Checks whether no reservation of the room collides with a stay.
+     */
+    boolean isAvailable(Date checkInDate, Date checkOutDate) {
+        for (Booking booking : bookings) {
+            Reservation reservation = booking.reservation;
+            if (overlaps(checkInDate, checkOutDate, reservation.getCheckinDate(), reservation.getCheckoutDate())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the state of the same room, e.g. with a new price, keeping its reservations.
+     */
+    RoomState withRoom(IRoom updatedRoom) {
+        return new RoomState(updatedRoom, bookings);
+    }
+
+    RoomState withBooking(Booking booking) {
+        Booking[] updated = Arrays.copyOf(bookings, bookings.length + 1);
+        updated[bookings.length] = booking;
+        return new RoomState(room, updated);
+    }
+
+    /**
+     * Returns the state without the given reservation, or null if the room has no such reservation. A
+     * reservation is matched by its customer and dates, which identify it because stays in a room never overlap.
+     */
+    RoomState withoutReservation(Reservation reservation) {
+        for (int i = 0; i < bookings.length; i++) {
+            Reservation booked = bookings[i].reservation;
+            if (booked == reservation || (booked.getCustomer().equals(reservation.getCustomer())
+                    && booked.getCheckinDate().equals(reservation.getCheckinDate())
+                    && booked.getCheckoutDate().equals(reservation.getCheckoutDate()))) {
+                if (bookings.length == 1) {
+                    return new RoomState(room, NO_BOOKINGS);
+                }
+                Booking[] updated = Arrays.copyOf(bookings, bookings.length - 1);
+                System.arraycopy(bookings, i + 1, updated, i, bookings.length - i - 1);
+                return new RoomState(room, updated);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a new stay collides with an existing one. The check is inclusive: a stay that starts on
+     * the day another one ends counts as a collision.
+     */
+    static boolean overlaps(Date checkInDate, Date checkOutDate, Date existingCheckin, Date existingCheckout) {
+        // New reservation starts before an existing reservation ends and ends after the existing reservation starts.
+        return (checkInDate.before(existingCheckout) || checkInDate.equals(existingCheckout))
+                && (checkOutDate.after(existingCheckin) || checkOutDate.equals(existingCheckin));
+    }
+}
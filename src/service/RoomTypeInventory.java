@@ -0,0 +1,139 @@
+package service;
+
+import model.RoomType;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Counts, per room type and day, how many rooms are taken, for answering "is any DOUBLE room free for these
+ * nights?" without looking at the rooms.
+ *
+ * Each type has a segment tree over a window of DAYS days that holds minus the number of rooms taken on
+ * each day, by reservations and by bookings that are not assigned a room yet. Adding a stay adds -1 to each of
+ * its days and the tree minimum over a stay is minus the busiest day, both in O(log DAYS): the rooms of a type
+ * free on every day of a stay are at most the number of rooms of the type plus that minimum. A node keeps the
+ * amount added to its whole range apart from the minimum of its children, so updates never push anything down.
+ *
+ * Days follow the inclusive rule of ReservationService: a stay takes its check-in day, its check-out day and
+ * every day between. Days outside the window are not counted. The window starts PAST_DAYS before the day it
+ * was made; once today is MOVE_AFTER_DAYS further on, ReservationService counts everything again in a new
+ * window, so that the window always reaches ten years ahead.
+ *
+ * Writers are serialized by the ReservationService lock; each tree locks itself, so readers need no other lock.
+ */
+final class RoomTypeInventory {
+
+    // Days covered, starting at firstDay; a power of two, about eleven years
+    static final int DAYS = 1 << 12;
+
+    // Days before today a new window starts at, so that stays in progress are counted
+    static final int PAST_DAYS = 30;
+
+    // Days today may move past the start of a new window before the window is moved
+    static final int MOVE_AFTER_DAYS = 365;
+
+    private final long firstDay;
+    private final Map<RoomType, Tree> trees = new EnumMap<>(RoomType.class);
+
+    /**
+     * A segment tree over the days of the window with range add and range minimum.
+     */
+    private static final class Tree {
+        // Node 1 covers every day, node n has children 2n and 2n + 1
+        private final int[] minimum = new int[2 * DAYS];
+        // Added to every day of the node's range and already part of its minimum
+        private final int[] added = new int[2 * DAYS];
+
+        synchronized void add(int from, int to, int amount) {
+            add(1, 0, DAYS - 1, from, to, amount);
+        }
+
+        synchronized int minimum(int from, int to) {
+            return minimum(1, 0, DAYS - 1, from, to);
+        }
+
+        private void add(int node, int first, int last, int from, int to, int amount) {
+            if (from <= first && last <= to) {
+                added[node] += amount;
+                minimum[node] += amount;
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            if (from <= middle) {
+                add(2 * node, first, middle, from, to, amount);
+            }
+            if (to > middle) {
+                add(2 * node + 1, middle + 1, last, from, to, amount);
+            }
+            minimum[node] = Math.min(minimum[2 * node], minimum[2 * node + 1]) + added[node];
+        }
+
+        private int minimum(int node, int first, int last, int from, int to) {
+            if (from <= first && last <= to) {
+                return minimum[node];
+            }
+            int middle = (first + last) >>> 1;
+            int result = Integer.MAX_VALUE;
+            if (from <= middle) {
+                result = minimum(2 * node, first, middle, from, to);
+            }
+            if (to > middle) {
+                result = Math.min(result, minimum(2 * node + 1, middle + 1, last, from, to));
+            }
+            return result + added[node];
+        }
+    }
+
+    /**
+     * Creates empty counts.
+     * @param firstDay the epoch day the window starts at
+     */
+    RoomTypeInventory(long firstDay) {
+        this.firstDay = firstDay;
+        for (RoomType roomType : RoomType.values()) {
+            trees.put(roomType, new Tree());
+        }
+    }
+
+    /**
+     * Checks whether today has moved far enough into the window that the window should start later.
+     * @param today the epoch day of today
+     */
+    boolean isBehind(long today) {
+        return today - PAST_DAYS - firstDay >= MOVE_AFTER_DAYS;
+    }
+
+    /**
+     * Checks whether every day of a stay lies within the window.
+     */
+    boolean covers(Date checkInDate, Date checkOutDate) {
+        return EpochDays.of(checkInDate) >= firstDay && EpochDays.of(checkOutDate) < firstDay + DAYS;
+    }
+
+    /**
+     * Counts a stay as taking one room of a type on each of its days, or stops counting it.
+     * @param roomType the room type
+     * @param checkInDate the check-in date
+     * @param checkOutDate the check-out date
+     * @param rooms 1 to count the stay, -1 to stop counting it
+     */
+    void take(RoomType roomType, Date checkInDate, Date checkOutDate, int rooms) {
+        long from = Math.max(EpochDays.of(checkInDate), firstDay);
+        long to = Math.min(EpochDays.of(checkOutDate), firstDay + DAYS - 1);
+        if (from <= to) {
+            trees.get(roomType).add((int) (from - firstDay), (int) (to - firstDay), -rooms);
+        }
+    }
+
+    /**
+     * Returns the number of rooms of a type taken on the busiest day of a stay; days outside the window count
+     * as empty.
+     */
+    int getMostTaken(RoomType roomType, Date checkInDate, Date checkOutDate) {
+        long from = Math.max(EpochDays.of(checkInDate), firstDay);
+        long to = Math.min(EpochDays.of(checkOutDate), firstDay + DAYS - 1);
+        return from > to ? 0 : -trees.get(roomType).minimum((int) (from - firstDay), (int) (to - firstDay));
+    }
+}
@@ -0,0 +1,30 @@
+package service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes the rows of one exported table. Rows are buffered and written out in fixed-size batches, so a
+ * writer holds at most one batch in memory however large the table is.
+ */
+interface TableWriter extends Closeable {
+
+    /**
+     * The type of a column. DATE values are day numbers (see EpochDays).
+     */
+    enum ColumnType {
+        STRING, INT64, FLOAT64, DATE
+    }
+
+    /**
+     * Appends a row.
+     * @param values one value per column: a String, or a Number for the numeric and date columns
+     * @throws IOException if a full batch cannot be written
+     */
+    void writeRow(Object... values) throws IOException;
+
+    /**
+     * Returns the number of rows written so far.
+     */
+    long getRowCount();
+}
@@ -0,0 +1,247 @@
+package service;
+
+import model.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service class that keeps guests on a waitlist and books them automatically when capacity appears,
+ * either through a new room, a cancelled reservation or a cancelled booking by room type.
+ *
+ * Entries are indexed by check-in day and by check-out day. The entries that overlap a released interval are
+ * found by seeking the check-outs on or after its start, instead of a scan of the whole waitlist.
+ * Matching runs on a background thread fed by the change feed, so the booking or room change that freed
+ * the capacity does not wait for it. Candidates are served in the order they joined the waitlist.
+ */
+public class WaitlistService {
+
+    // Largest number of change events handled per matching round
+    private static final int BATCH_SIZE = 256;
+
+    // Waitlist entries grouped by the epoch day of their check-in date
+    private final TreeMap<Long, List<WaitlistEntry>> entriesByCheckinDay = new TreeMap<>();
+
+    // The same entries grouped by the epoch day of their check-out date, for overlap queries
+    private final TreeMap<Long, List<WaitlistEntry>> entriesByCheckoutDay = new TreeMap<>();
+
+    private long nextPosition;
+
+    private final ReservationService reservationService;
+    private final ChangeFeedSubscription subscription;
+
+    // The singleton instance of the WaitlistService class
+    private static WaitlistService instance;
+
+    /**
+     * Private constructor prevents external instantiation.
+     * @param reservationService the singleton object of ReservationService class
+     */
+    private WaitlistService(ReservationService reservationService) {
+        this.reservationService = reservationService;
+        this.subscription = ChangeFeed.getInstance().subscribe();
+        Thread matcher = new Thread(this::matchContinuously, "waitlist-matcher");
+        matcher.setDaemon(true);
+        matcher.start();
+    }
+
+    /**
+     * Returns the singleton instance of the WaitlistService class: new one, if instance does not exist,
+     * otherwise existing one
+     * @return the singleton instance
+     */
+    public static synchronized WaitlistService getInstance() {
+        if (instance == null) {
+            instance = new WaitlistService(ReservationService.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Adds a customer to the waitlist.
+     * @param customer the waiting customer
+     * @param checkinDate the requested check-in date
+     * @param checkoutDate the requested check-out date
+     * @param roomSearchType free rooms, paid rooms or both
+     * @param roomType the requested room type, or null for any type
+     * @param maxPrice the highest acceptable room price, or null for no limit
+     * @return the new waitlist entry
+     */
+    public synchronized WaitlistEntry addToWaitlist(Customer customer, Date checkinDate, Date checkoutDate,
+                                                    RoomSearchType roomSearchType, RoomType roomType, Double maxPrice) {
+        WaitlistEntry entry = new WaitlistEntry(nextPosition++, customer, checkinDate, checkoutDate,
+                roomSearchType, roomType, maxPrice);
+        index(entry);
+        return entry;
+    }
+
+    /**
+     * Removes an entry from the waitlist.
+     * @param entry the entry to remove
+     * @return true if the entry was waiting, false otherwise
+     */
+    public synchronized boolean removeFromWaitlist(WaitlistEntry entry) {
+        long checkinDay = EpochDays.of(entry.getCheckinDate());
+        List<WaitlistEntry> entries = entriesByCheckinDay.get(checkinDay);
+        if (entries == null || !entries.remove(entry)) {
+            return false;
+        }
+        if (entries.isEmpty()) {
+            entriesByCheckinDay.remove(checkinDay);
+        }
+        long checkoutDay = EpochDays.of(entry.getCheckoutDate());
+        entries = entriesByCheckoutDay.get(checkoutDay);
+        entries.remove(entry);
+        if (entries.isEmpty()) {
+            entriesByCheckoutDay.remove(checkoutDay);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the waiting entries of the given customer.
+     * @param customer the customer
+     * @return the customer's entries in waitlist order
+     */
+    public synchronized Collection<WaitlistEntry> getCustomerWaitlist(Customer customer) {
+        List<WaitlistEntry> customerEntries = new ArrayList<>();
+        for (List<WaitlistEntry> entries : entriesByCheckinDay.values()) {
+            for (WaitlistEntry entry : entries) {
+                if (entry.getCustomer().equals(customer)) {
+                    customerEntries.add(entry);
+                }
+            }
+        }
+        customerEntries.sort(Comparator.comparingLong(WaitlistEntry::getPosition));
+        return customerEntries;
+    }
+
+    private void matchContinuously() {
+        while (true) {
+            long missedBefore = subscription.getMissedEvents();
+            List<ChangeEvent> events = subscription.poll(BATCH_SIZE, 1, TimeUnit.SECONDS);
+            for (ChangeEvent event : events) {
+                switch (event.getType()) {
+                    case ROOM_ADDED:
+                    case ROOM_UPDATED:
+                        // A new room, or a cheaper one, may now suit entries that it did not suit before
+                        offerRoom((IRoom) event.getPayload(), allCandidates());
+                        break;
+                    case RESERVATION_CANCELLED: {
+                        Reservation released = (Reservation) event.getPayload();
+                        offerRoom(released.getRoom(),
+                                overlappingCandidates(released.getCheckinDate(), released.getCheckoutDate()));
+                        break;
+                    }
+                    case ROOM_TYPE_BOOKING_CANCELLED: {
+                        // Rooms of the type that were kept for the booking can be booked again
+                        RoomTypeBooking released = (RoomTypeBooking) event.getPayload();
+                        List<WaitlistEntry> candidates = new ArrayList<>();
+                        for (WaitlistEntry entry : overlappingCandidates(released.getCheckinDate(),
+                                released.getCheckoutDate())) {
+                            if (entry.getRoomType() == null || entry.getRoomType() == released.getRoomType()) {
+                                candidates.add(entry);
+                            }
+                        }
+                        matchEntries(candidates);
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+            if (subscription.getMissedEvents() > missedBefore) {
+                // Some releases were overwritten before we saw them; fall back to a full search once
+                matchAllEntries();
+            }
+        }
+    }
+
+    /**
+     * Returns waiting entries whose stay overlaps the given interval, in waitlist order. Overlap follows the
+     * same inclusive rule as ReservationService.isRoomAvailable.
+     */
+    private synchronized List<WaitlistEntry> overlappingCandidates(Date checkinDate, Date checkoutDate) {
+        long fromDay = EpochDays.of(checkinDate);
+        long toDay = EpochDays.of(checkoutDate);
+        List<WaitlistEntry> candidates = new ArrayList<>();
+        for (List<WaitlistEntry> entries : entriesByCheckoutDay.tailMap(fromDay, true).values()) {
+            for (WaitlistEntry entry : entries) {
+                if (EpochDays.of(entry.getCheckinDate()) <= toDay) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(WaitlistEntry::getPosition));
+        return candidates;
+    }
+
+    private synchronized List<WaitlistEntry> allCandidates() {
+        List<WaitlistEntry> candidates = new ArrayList<>();
+        for (List<WaitlistEntry> entries : entriesByCheckinDay.values()) {
+            candidates.addAll(entries);
+        }
+        candidates.sort(Comparator.comparingLong(WaitlistEntry::getPosition));
+        return candidates;
+    }
+
+    /**
+     * Books the room for every candidate it suits, first come first served. An entry is removed from the
+     * waitlist before its booking is attempted, so a concurrent matching round cannot book it twice.
+     * The room of an event may have changed since, e.g. the room of a cancelled reservation can have a new
+     * price or type, or be gone; candidates are matched against the room as it is now.
+     */
+    private void offerRoom(IRoom eventRoom, List<WaitlistEntry> candidates) {
+        IRoom room = reservationService.getARoom(eventRoom.getRoomNumber());
+        if (room == null) {
+            return;
+        }
+        for (WaitlistEntry entry : candidates) {
+            if (!accepts(entry, room)
+                    || !reservationService.isRoomAvailable(room, entry.getCheckinDate(), entry.getCheckoutDate())
+                    || !removeFromWaitlist(entry)) {
+                continue;
+            }
+            try {
+                reservationService.reserveARoom(entry.getCustomer(), room, entry.getCheckinDate(), entry.getCheckoutDate());
+            } catch (IllegalArgumentException e) {
+                // Someone booked the room in the meantime; put the entry back at its original position
+                restore(entry);
+            }
+        }
+    }
+
+    private void matchAllEntries() {
+        matchEntries(allCandidates());
+    }
+
+    /**
+     * Searches a room for each of the entries, in the given order, and books the first one the entry accepts.
+     */
+    private void matchEntries(List<WaitlistEntry> entries) {
+        for (WaitlistEntry entry : entries) {
+            for (IRoom room : reservationService.findRooms(entry.getCheckinDate(), entry.getCheckoutDate(),
+                    entry.getRoomSearchType())) {
+                if (accepts(entry, room)) {
+                    offerRoom(room, Collections.singletonList(entry));
+                    break;
+                }
+            }
+        }
+    }
+
+    private synchronized void restore(WaitlistEntry entry) {
+        index(entry);
+    }
+
+    private void index(WaitlistEntry entry) {
+        entriesByCheckinDay.computeIfAbsent(EpochDays.of(entry.getCheckinDate()), day -> new ArrayList<>()).add(entry);
+        entriesByCheckoutDay.computeIfAbsent(EpochDays.of(entry.getCheckoutDate()), day -> new ArrayList<>()).add(entry);
+    }
+
+    private boolean accepts(WaitlistEntry entry, IRoom room) {
+        return reservationService.matchesSearchType(room, entry.getRoomSearchType())
+                && (entry.getRoomType() == null || entry.getRoomType() == room.getRoomType())
+                && (entry.getMaxPrice() == null || room.getRoomPrice() <= entry.getMaxPrice());
+    }
+}
@@ -0,0 +1,461 @@
+package test;
+
+import api.AdminResource;
+import api.HotelResource;
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomSearchType;
+import model.RoomType;
+import service.BookingSequencer;
+import service.CustomerService;
+import service.EpochDays;
+import service.PricingService;
+import service.ReservationService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A randomized multi-threaded stress test of the booking invariants. Many threads book, hold and book,
+ * cancel, search and create customers at once against a few rooms and a short date window, so nearly every operation competes
+ * with another one. Afterwards, and for searches during the run, it checks that:
+ * <ul>
+ *     <li>the lazy singletons hand every thread the same instance, even when first called concurrently;</li>
+ *     <li>no room-night is booked twice (by the inclusive overlap rule);</li>
+ *     <li>no reservation is lost: the service holds exactly the successful bookings minus the successful
+ *     cancellations;</li>
+ *     <li>no email belongs to two customers, and every email was accepted exactly once;</li>
+ *     <li>a search never returns a room with a reservation for its dates that was committed before the search
+ *     started and not cancelled before it ended;</li>
+ *     <li>listing reservations, which a separate reader does throughout every round, never fails while they
+ *     are booked and cancelled.</li>
+ * </ul>
+ * The storage backend is the one selected by the hotel.storage property, so every backend can be checked.
+ * For the JDBC backend, put a driver such as H2 on the classpath and run with -Dhotel.jdbc.poolSize=1 as
+ * well: holds then fail to finish if any store callback waits for a second connection.
+ * With -Dhotel.writes=sequencer, bookings and new customers go through the BookingSequencer instead.
+ *
+ * Usage: java test.ConcurrencyStressTest [--threads=N] [--rounds=N] [--operations=N] [--rooms=N] [--seed=N]
+ * The exit code is 0 when every invariant held and 1 otherwise.
+ */
+public class ConcurrencyStressTest {
+
+    // Days of the date window every round competes for
+    private static final int WINDOW_DAYS = 30;
+
+    // Longest stay booked or searched for
+    private static final int MAX_NIGHTS = 4;
+
+    // Orders completed bookings, cancellations and searches across threads
+    private final AtomicLong clock = new AtomicLong();
+
+    private final ReservationService reservationService;
+    private final CustomerService customerService;
+
+    // Every booking that succeeded, by room number
+    private final Map<String, List<Booked>> bookedByRoom = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> acceptedEmails = new ConcurrentHashMap<>();
+    private final List<Search> searches = new ArrayList<>();
+    private final List<String> violations = new ArrayList<>();
+
+    private final int threads;
+    private final int rounds;
+    private final int operations;
+    private final int roomCount;
+    private final long seed;
+
+    /**
+     * A successful booking with the clock values of its commit and, if it was cancelled, of the start of the
+     * cancellation.
+     */
+    private static final class Booked {
+        final Reservation reservation;
+        final long committedAt;
+        volatile long cancelStartedAt = Long.MAX_VALUE;
+        volatile boolean cancelled;
+
+        Booked(Reservation reservation, long committedAt) {
+            this.reservation = reservation;
+            this.committedAt = committedAt;
+        }
+    }
+
+    /**
+     * A finished search and the clock values around it.
+     */
+    private static final class Search {
+        final long startedAt;
+        final long endedAt;
+        final long checkInDay;
+        final long checkOutDay;
+        final Collection<IRoom> rooms;
+
+        Search(long startedAt, long endedAt, long checkInDay, long checkOutDay, Collection<IRoom> rooms) {
+            this.startedAt = startedAt;
+            this.endedAt = endedAt;
+            this.checkInDay = checkInDay;
+            this.checkOutDay = checkOutDay;
+            this.rooms = rooms;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Invalid option: " + arg + ". Options have the form --name=value");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+
+        // Must run first: the singletons are only racy while they are created
+        List<String> singletonViolations = new ArrayList<>();
+        checkSingleton("CustomerService", CustomerService::getInstance, threads, singletonViolations);
+        checkSingleton("ReservationService", ReservationService::getInstance, threads, singletonViolations);
+        checkSingleton("PricingService", PricingService::getInstance, threads, singletonViolations);
+        checkSingleton("HotelResource", () -> HotelResource.getInstance(CustomerService.getInstance(),
+                ReservationService.getInstance()), threads, singletonViolations);
+        checkSingleton("AdminResource", () -> AdminResource.getInstance(CustomerService.getInstance(),
+                ReservationService.getInstance()), threads, singletonViolations);
+
+        ConcurrencyStressTest test = new ConcurrencyStressTest(threads,
+                Integer.parseInt(options.getOrDefault("rounds", "20")),
+                Integer.parseInt(options.getOrDefault("operations", "2000")),
+                Integer.parseInt(options.getOrDefault("rooms", "16")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+        test.violations.addAll(singletonViolations);
+        System.exit(test.run() ? 0 : 1);
+    }
+
+    ConcurrencyStressTest(int threads, int rounds, int operations, int roomCount, long seed) {
+        this.threads = threads;
+        this.rounds = rounds;
+        this.operations = operations;
+        this.roomCount = roomCount;
+        this.seed = seed;
+        this.reservationService = ReservationService.getInstance();
+        this.customerService = CustomerService.getInstance();
+    }
+
+    /**
+     * Calls a lazy getInstance from many threads released at the same moment and checks they all got one object.
+     */
+    private static void checkSingleton(String name, Supplier<Object> getInstance, int threads, List<String> violations)
+            throws Exception {
+        Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    return;
+                }
+                Object instance = getInstance.get();
+                synchronized (instances) {
+                    instances.add(instance);
+                }
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (instances.size() != 1) {
+            violations.add(name + ".getInstance returned " + instances.size() + " different instances");
+        }
+    }
+
+    private boolean run() throws Exception {
+        System.out.println("Stress test: " + threads + " threads, " + rounds + " rounds of " + operations
+                + " operations per thread, " + roomCount + " rooms, storage "
+                + System.getProperty("hotel.storage", "memory") + ", writes "
+                + System.getProperty("hotel.writes", "direct"));
+        List<IRoom> rooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++) {
+            IRoom room = new Room(String.valueOf(9001 + i), 80.0 + i, i % 2 == 0 ? RoomType.SINGLE : RoomType.DOUBLE);
+            reservationService.addRoom(room);
+            rooms.add(room);
+        }
+        List<Customer> guests = new ArrayList<>();
+        for (int i = 0; i < threads * 4; i++) {
+            customerService.addCustomer("stress" + i + "@guest.test", "Stress", "Guest" + i);
+            acceptedEmails.computeIfAbsent("stress" + i + "@guest.test", key -> new AtomicInteger()).incrementAndGet();
+            guests.add(customerService.getCustomer("stress" + i + "@guest.test"));
+        }
+
+        long start = System.nanoTime();
+        long firstDay = EpochDays.of(new Date()) + 1;
+        for (int round = 0; round < rounds; round++) {
+            runRound(round, firstDay + round * (WINDOW_DAYS + 10L), rooms, guests);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        checkNoDoubleBooking(rooms);
+        checkNoLostReservation();
+        checkUniqueEmails();
+        checkSearches();
+
+        long bookings = 0;
+        long cancelled = 0;
+        for (List<Booked> booked : bookedByRoom.values()) {
+            bookings += booked.size();
+            for (Booked b : booked) {
+                cancelled += b.cancelled ? 1 : 0;
+            }
+        }
+        System.out.println("Ran " + (long) threads * rounds * operations + " operations in " + elapsedMillis + " ms: "
+                + bookings + " bookings, " + cancelled + " cancellations, " + searches.size() + " searches checked, "
+                + (acceptedEmails.size() - threads * 4) + " customers created");
+        if (violations.isEmpty()) {
+            System.out.println("All invariants held.");
+            return true;
+        }
+        System.out.println(violations.size() + " violations:");
+        for (String violation : violations.subList(0, Math.min(20, violations.size()))) {
+            System.out.println("  " + violation);
+        }
+        return false;
+    }
+
+    private void runRound(int round, long firstDay, List<IRoom> rooms, List<Customer> guests) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        List<List<Search>> perThreadSearches = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed * 31 + round * 1009L + t);
+            List<Search> threadSearches = new ArrayList<>();
+            perThreadSearches.add(threadSearches);
+            List<Booked> ownBookings = new ArrayList<>();
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < operations; i++) {
+                    long checkInDay = firstDay + random.nextInt(WINDOW_DAYS);
+                    long checkOutDay = checkInDay + 1 + random.nextInt(MAX_NIGHTS);
+                    int roll = random.nextInt(100);
+                    if (roll < 35) {
+                        book(rooms.get(random.nextInt(rooms.size())), guests.get(random.nextInt(guests.size())),
+                                checkInDay, checkOutDay, null, ownBookings);
+                    } else if (roll < 40) {
+                        holdAndBook(guests.get(random.nextInt(guests.size())), checkInDay, checkOutDay,
+                                "stress-" + round + "-" + Thread.currentThread().getName() + "-" + i, ownBookings);
+                    } else if (roll < 50 && !ownBookings.isEmpty()) {
+                        cancel(ownBookings.remove(random.nextInt(ownBookings.size())));
+                    } else if (roll < 90) {
+                        long startedAt = clock.get();
+                        Collection<IRoom> found = reservationService.findRooms(EpochDays.toDate(checkInDay),
+                                EpochDays.toDate(checkOutDay), RoomSearchType.BOTH);
+                        threadSearches.add(new Search(startedAt, clock.incrementAndGet(), checkInDay, checkOutDay,
+                                found));
+                    } else {
+                        // A small pool of emails, so many threads try to create the same customer
+                        String email = "r" + round + "-" + random.nextInt(50) + "@new.test";
+                        try {
+                            if (BookingSequencer.isEnabled()) {
+                                BookingSequencer.await(BookingSequencer.getInstance().addCustomer(email, "New",
+                                        "Customer"));
+                            } else {
+                                customerService.addCustomer(email, "New", "Customer");
+                            }
+                            acceptedEmails.computeIfAbsent(email, key -> new AtomicInteger()).incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            // Someone else created it first
+                        }
+                    }
+                }
+            }, "stress-worker-" + t);
+            workers[t].start();
+        }
+        // Lists reservations while the workers book and cancel them
+        AtomicInteger running = new AtomicInteger(threads);
+        Thread reader = new Thread(() -> {
+            Random random = new Random(seed * 37 + round);
+            while (running.get() > 0) {
+                try {
+                    reservationService.getAllReservations();
+                    reservationService.getCustomerReservations(guests.get(random.nextInt(guests.size())));
+                    reservationService.getRoomReservations(rooms.get(random.nextInt(rooms.size())));
+                } catch (RuntimeException e) {
+                    violation("Listing reservations during bookings and cancellations failed: " + e);
+                    return;
+                }
+            }
+        }, "stress-reader");
+        reader.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+            running.decrementAndGet();
+        }
+        reader.join();
+        for (List<Search> threadSearches : perThreadSearches) {
+            searches.addAll(threadSearches);
+        }
+    }
+
+    /**
+     * Holds one free room for the stay and books it like a guest who searched first. The availability check of
+     * the hold runs inside the store's scan, so this also covers a store that must not block it.
+     */
+    private void holdAndBook(Customer customer, long checkInDay, long checkOutDay, String holderId,
+                             List<Booked> ownBookings) {
+        Collection<IRoom> held = reservationService.findAndHoldRooms(EpochDays.toDate(checkInDay),
+                EpochDays.toDate(checkOutDay), RoomSearchType.BOTH, holderId, 60_000, 1);
+        for (IRoom room : held) {
+            book(room, customer, checkInDay, checkOutDay, holderId, ownBookings);
+        }
+        reservationService.releaseHolds(holderId);
+    }
+
+    private void book(IRoom room, Customer customer, long checkInDay, long checkOutDay, String holderId,
+                      List<Booked> ownBookings) {
+        Reservation reservation;
+        try {
+            reservation = BookingSequencer.isEnabled()
+                    ? BookingSequencer.await(BookingSequencer.getInstance().reserveARoom(customer, room,
+                    EpochDays.toDate(checkInDay), EpochDays.toDate(checkOutDay), holderId, null))
+                    : reservationService.reserveARoom(customer, room, EpochDays.toDate(checkInDay),
+                    EpochDays.toDate(checkOutDay), holderId);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        Booked booked = new Booked(reservation, clock.incrementAndGet());
+        bookedByRoom.computeIfAbsent(room.getRoomNumber(), key -> new CopyOnWriteArrayList<>())
+                .add(booked);
+        ownBookings.add(booked);
+    }
+
+    private void cancel(Booked booked) {
+        booked.cancelStartedAt = clock.incrementAndGet();
+        try {
+            reservationService.cancelReservation(booked.reservation);
+            booked.cancelled = true;
+        } catch (IllegalArgumentException e) {
+            violation("Cancelling a committed reservation failed: " + booked.reservation);
+        }
+    }
+
+    private void checkNoDoubleBooking(List<IRoom> rooms) {
+        for (IRoom room : rooms) {
+            List<Reservation> reservations = new ArrayList<>(reservationService.getRoomReservations(room));
+            reservations.sort(Comparator.comparing(Reservation::getCheckinDate));
+            for (int i = 1; i < reservations.size(); i++) {
+                Reservation previous = reservations.get(i - 1);
+                Reservation next = reservations.get(i);
+                if (!next.getCheckinDate().after(previous.getCheckoutDate())) {
+                    violation("Room " + room.getRoomNumber() + " is double-booked: " + previous + " and " + next);
+                }
+            }
+        }
+    }
+
+    private void checkNoLostReservation() {
+        Map<String, Integer> expected = new HashMap<>();
+        for (List<Booked> booked : bookedByRoom.values()) {
+            for (Booked b : booked) {
+                if (!b.cancelled) {
+                    expected.merge(key(b.reservation), 1, Integer::sum);
+                }
+            }
+        }
+        Map<String, Integer> actual = new HashMap<>();
+        for (Reservation reservation : reservationService.getAllReservations()) {
+            actual.merge(key(reservation), 1, Integer::sum);
+        }
+        Set<String> keys = new HashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+        for (String key : keys) {
+            int expectedCount = expected.getOrDefault(key, 0);
+            int actualCount = actual.getOrDefault(key, 0);
+            if (expectedCount != actualCount) {
+                violation("Reservation " + key + ": expected " + expectedCount + ", stored " + actualCount);
+            }
+        }
+    }
+
+    private void checkUniqueEmails() {
+        for (Map.Entry<String, AtomicInteger> accepted : acceptedEmails.entrySet()) {
+            if (accepted.getValue().get() != 1) {
+                violation("Email " + accepted.getKey() + " was accepted " + accepted.getValue().get() + " times");
+            }
+        }
+        Set<String> emails = new HashSet<>();
+        Collection<Customer> customers = customerService.getAllCustomers();
+        for (Customer customer : customers) {
+            if (!emails.add(customer.getEmail())) {
+                violation("Two customers have the email " + customer.getEmail());
+            }
+        }
+        if (customers.size() != acceptedEmails.size()) {
+            violation(acceptedEmails.size() + " customers were accepted but " + customers.size() + " are stored");
+        }
+    }
+
+    /**
+     * A search may miss a booking committed while it ran, but never one that was in place for its whole run.
+     */
+    private void checkSearches() {
+        // Bookings by room and check-in day, so each returned room is checked against nearby stays only
+        Map<String, Map<Long, List<Booked>>> byRoomAndDay = new HashMap<>();
+        for (Map.Entry<String, List<Booked>> room : bookedByRoom.entrySet()) {
+            Map<Long, List<Booked>> byDay = new HashMap<>();
+            for (Booked booked : room.getValue()) {
+                byDay.computeIfAbsent(EpochDays.of(booked.reservation.getCheckinDate()), key -> new ArrayList<>())
+                        .add(booked);
+            }
+            byRoomAndDay.put(room.getKey(), byDay);
+        }
+        for (Search search : searches) {
+            for (IRoom room : search.rooms) {
+                Map<Long, List<Booked>> byDay = byRoomAndDay.getOrDefault(room.getRoomNumber(), new HashMap<>());
+                for (long day = search.checkInDay - MAX_NIGHTS; day <= search.checkOutDay; day++) {
+                    for (Booked booked : byDay.getOrDefault(day, new ArrayList<>())) {
+                        long bookedOut = EpochDays.of(booked.reservation.getCheckoutDate());
+                        if (booked.committedAt <= search.startedAt && booked.cancelStartedAt > search.endedAt
+                                && search.checkInDay <= bookedOut) {
+                            violation("Search for days " + search.checkInDay + "-" + search.checkOutDay
+                                    + " returned booked room " + room.getRoomNumber());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static String key(Reservation reservation) {
+        return reservation.getRoom().getRoomNumber() + "/" + reservation.getCustomer().getEmail() + "/"
+                + EpochDays.of(reservation.getCheckinDate()) + "-" + EpochDays.of(reservation.getCheckoutDate());
+    }
+
+    private void violation(String violation) {
+        synchronized (violations) {
+            violations.add(violation);
+        }
+    }
+}
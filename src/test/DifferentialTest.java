@@ -0,0 +1,1119 @@
+package test;
+
+import model.Customer;
+import model.FreeRoom;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomAttribute;
+import model.RoomSearchType;
+import model.RoomType;
+import model.RoomTypeBooking;
+import service.CustomerService;
+import service.EpochDays;
+import service.ReservationService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A differential, property-based test of the availability engine. It generates random room inventories and
+ * random sequences of operations (add and remove rooms, book, cancel, search with and without attributes,
+ * arrivals, departures, overlapping stays, room reservations, and booking by room type: book, assign, cancel
+ * and count free rooms), runs every sequence on a reference implementation and on the engine under test, and
+ * compares the outcome of every operation.
+ *
+ * The reference is the original linear-scan ReservationService: one list of all reservations, scanned for
+ * every check, with the inclusive overlap rule (a check-in on an existing check-out day is a conflict) and
+ * the free / paid filter of RoomSearchType. Bookings by room type are a second list; the rooms taken per
+ * type on a day are counted by scanning both lists, and a room is only available while its type has a room
+ * left on every day of the stay. It checks the same things in the same order as the service, so the error
+ * of a failing booking must match as well. Results that are collections are compared as sets.
+ *
+ * When the outcomes differ, the sequence is shrunk to a minimal reproducer: operations that are not needed
+ * for the difference are dropped and the remaining ones are simplified, and the result is printed step by
+ * step. Both engines are timed per kind of operation, so the output doubles as a speedup report; a second,
+ * larger run with many rooms and a long history shows the difference the indexes make.
+ *
+ * The engine under test is ReservationService on the storage backend selected by the hotel.storage property,
+ * or any subclass of DifferentialTest.Engine named with --engine. During the cases of the first phase a
+ * separate thread keeps listing reservations of the service while they are booked and cancelled, and any
+ * exception it gets fails the test. Each run uses fresh room numbers and
+ * customers and removes its rooms afterwards, so runs do not see each other even though the services are
+ * singletons.
+ *
+ * Usage: java test.DifferentialTest [--cases=N] [--operations=N] [--rooms=N] [--seed=N]
+ *        [--bench-rooms=N] [--bench-operations=N] [--engine=CLASS]
+ * The exit code is 0 when both engines agreed on every operation and 1 otherwise.
+ */
+public class DifferentialTest {
+
+    // Days of the date window a case books in; short, so that stays collide and touch often
+    private static final int WINDOW_DAYS = 21;
+
+    // Customers per case
+    private static final int CUSTOMERS = 4;
+
+    private static final RoomAttribute[] ATTRIBUTES = {
+            RoomAttribute.parse("floor=1"), RoomAttribute.parse("floor=2"), RoomAttribute.parse("floor=3"),
+            RoomAttribute.parse("view=sea"), RoomAttribute.parse("view=city"), RoomAttribute.parse("accessible=yes")};
+
+    // First day of the date window, far enough ahead that no date is in the past
+    private static final long FIRST_DAY = EpochDays.of(new Date()) + 400;
+
+    /**
+     * The operations a sequence is made of.
+     */
+    enum Kind {
+        ADD_ROOM, REMOVE_ROOM, BOOK, CANCEL, SEARCH, SEARCH_ATTRIBUTES, ARRIVALS, DEPARTURES, OVERLAPPING,
+        ROOM_RESERVATIONS, BOOK_TYPE, ASSIGN, CANCEL_TYPE, FREE_ROOM_COUNT
+    }
+
+    /**
+     * One generated operation. Rooms and customers are referred to by their index in the case, days by their
+     * offset from the start of the date window, and room types by a room of that type; which fields are used
+     * depends on the kind.
+     */
+    static final class Operation {
+        final Kind kind;
+        final int room;
+        final int customer;
+        final int day;
+        final int length;
+        final RoomSearchType searchType;
+        final List<RoomAttribute> attributes;
+
+        Operation(Kind kind, int room, int customer, int day, int length, RoomSearchType searchType,
+                  List<RoomAttribute> attributes) {
+            this.kind = kind;
+            this.room = room;
+            this.customer = customer;
+            this.day = day;
+            this.length = length;
+            this.searchType = searchType;
+            this.attributes = attributes;
+        }
+
+        Operation with(int room, int customer, int day, int length, RoomSearchType searchType,
+                       List<RoomAttribute> attributes) {
+            return new Operation(kind, room, customer, day, length, searchType, attributes);
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case ADD_ROOM:
+                    return "add room" + room;
+                case REMOVE_ROOM:
+                    return "remove room" + room;
+                case BOOK:
+                    return "book room" + room + " for c" + customer + " from day " + day + " to day " + (day + length);
+                case CANCEL:
+                    return "cancel booking #" + room;
+                case SEARCH:
+                    return "search " + searchType + " from day " + day + " to day " + (day + length);
+                case SEARCH_ATTRIBUTES:
+                    return "search " + searchType + " " + attributes + " from day " + day + " to day " + (day + length);
+                case ARRIVALS:
+                    return "arrivals on day " + day;
+                case DEPARTURES:
+                    return "departures on day " + day;
+                case OVERLAPPING:
+                    return "stays overlapping day " + day + " to day " + (day + length);
+                case ROOM_RESERVATIONS:
+                    return "reservations of room" + room;
+                case BOOK_TYPE:
+                    return "book the type of room" + room + " for c" + customer + " from day " + day + " to day "
+                            + (day + length);
+                case ASSIGN:
+                    return "assign booking by type #" + room;
+                case CANCEL_TYPE:
+                    return "cancel booking by type #" + room;
+                case FREE_ROOM_COUNT:
+                    return "count free rooms of the type of room" + room + " from day " + day + " to day "
+                            + (day + length);
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * A room inventory and a sequence of operations on it.
+     */
+    static final class Case {
+        final double[] prices;
+        final RoomType[] types;
+        final List<List<RoomAttribute>> attributes;
+        final List<Operation> operations;
+
+        Case(double[] prices, RoomType[] types, List<List<RoomAttribute>> attributes, List<Operation> operations) {
+            this.prices = prices;
+            this.types = types;
+            this.attributes = attributes;
+            this.operations = operations;
+        }
+
+        Case withOperations(List<Operation> operations) {
+            return new Case(prices, types, attributes, operations);
+        }
+
+        String describeRoom(int room) {
+            return "room" + room + ": " + (prices[room] == 0.0 ? "free" : "$" + prices[room]) + " " + types[room].name()
+                    + (attributes.get(room).isEmpty() ? "" : " " + attributes.get(room));
+        }
+    }
+
+    /**
+     * An availability engine the test can drive. Implementations must start empty of the rooms and customers
+     * the test uses; begin and end bracket one run of a case.
+     */
+    public abstract static class Engine {
+
+        public abstract String getName();
+
+        /**
+         * Prepares a run; the customers of the run are passed before any booking.
+         */
+        public void begin(Collection<Customer> customers) {
+        }
+
+        /**
+         * Removes what a run left behind.
+         */
+        public void end(Collection<IRoom> rooms) {
+        }
+
+        /**
+         * Turns a reader that runs alongside the operations on or off; timed runs turn it off.
+         */
+        public void setConcurrentReader(boolean enabled) {
+        }
+
+        /**
+         * Returns what went wrong outside the compared operations during the last run, e.g. in a concurrent
+         * reader, or null if nothing did.
+         */
+        public String getFailure() {
+            return null;
+        }
+
+        public abstract boolean addRoom(IRoom room);
+
+        public abstract Collection<Reservation> removeRoom(IRoom room);
+
+        public abstract Reservation book(Customer customer, IRoom room, Date checkIn, Date checkOut);
+
+        public abstract void cancel(Reservation reservation);
+
+        public abstract Collection<IRoom> findRooms(Date checkIn, Date checkOut, RoomSearchType searchType,
+                                                    Collection<RoomAttribute> attributes);
+
+        public abstract Collection<Reservation> arrivals(Date day);
+
+        public abstract Collection<Reservation> departures(Date day);
+
+        public abstract Collection<Reservation> overlapping(Date from, Date to);
+
+        public abstract Collection<Reservation> roomReservations(IRoom room);
+
+        public abstract RoomTypeBooking bookType(Customer customer, RoomType roomType, Date checkIn, Date checkOut);
+
+        public abstract Reservation assign(RoomTypeBooking booking);
+
+        public abstract void cancelType(RoomTypeBooking booking);
+
+        public abstract int freeRoomCount(RoomType roomType, Date checkIn, Date checkOut);
+    }
+
+    /**
+     * The original implementation: every check scans the list of all reservations.
+     */
+    static final class ReferenceEngine extends Engine {
+        private final Set<IRoom> rooms = new LinkedHashSet<>();
+        private final List<Reservation> reservations = new ArrayList<>();
+        private final List<RoomTypeBooking> typeBookings = new ArrayList<>();
+        private long typeBookingCount;
+
+        @Override
+        public String getName() {
+            return "linear-scan reference";
+        }
+
+        @Override
+        public void begin(Collection<Customer> customers) {
+            rooms.clear();
+            reservations.clear();
+            typeBookings.clear();
+        }
+
+        @Override
+        public boolean addRoom(IRoom room) {
+            return rooms.add(room);
+        }
+
+        @Override
+        public Collection<Reservation> removeRoom(IRoom room) {
+            List<Reservation> removed = new ArrayList<>();
+            if (!rooms.remove(room)) {
+                return removed;
+            }
+            for (Reservation reservation : reservations) {
+                if (reservation.getRoom().equals(room)) {
+                    removed.add(reservation);
+                }
+            }
+            reservations.removeAll(removed);
+            return removed;
+        }
+
+        @Override
+        public Reservation book(Customer customer, IRoom room, Date checkIn, Date checkOut) {
+            if (!rooms.contains(room)) {
+                throw new IllegalArgumentException("The room does not exist.");
+            }
+            if (!isRoomAvailable(room, checkIn, checkOut)) {
+                throw new IllegalArgumentException("The room is not available for the specified dates.");
+            }
+            Reservation reservation = new Reservation(customer, room, checkIn, checkOut);
+            reservations.add(reservation);
+            return reservation;
+        }
+
+        @Override
+        public void cancel(Reservation reservation) {
+            // The stores identify a reservation by its room, customer and dates, not by the object
+            for (Iterator<Reservation> iterator = reservations.iterator(); iterator.hasNext(); ) {
+                Reservation existing = iterator.next();
+                if (existing.getRoom().getRoomNumber().equals(reservation.getRoom().getRoomNumber())
+                        && existing.getCustomer().getEmail().equals(reservation.getCustomer().getEmail())
+                        && existing.getCheckinDate().equals(reservation.getCheckinDate())
+                        && existing.getCheckoutDate().equals(reservation.getCheckoutDate())) {
+                    iterator.remove();
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("The reservation does not exist.");
+        }
+
+        @Override
+        public Collection<IRoom> findRooms(Date checkIn, Date checkOut, RoomSearchType searchType,
+                                           Collection<RoomAttribute> attributes) {
+            Collection<IRoom> availableRooms = new ArrayList<>();
+            // Whether each type has a room left for the stay; the same for every room of the type
+            Map<RoomType, Boolean> roomLeft = new EnumMap<>(RoomType.class);
+            for (IRoom room : rooms) {
+                if (isRoomFree(room, checkIn, checkOut) && matchesSearchType(room, searchType)
+                        && room.getAttributes().containsAll(attributes)
+                        && roomLeft.computeIfAbsent(room.getRoomType(),
+                        roomType -> hasRoomLeft(roomType, checkIn, checkOut))) {
+                    availableRooms.add(room);
+                }
+            }
+            return availableRooms;
+        }
+
+        private boolean matchesSearchType(IRoom room, RoomSearchType searchType) {
+            switch (searchType) {
+                case FREE_ROOMS:
+                    return room.isFree();
+                case PAID_ROOMS:
+                    return !room.isFree();
+                case BOTH:
+                    return true;
+                default:
+                    throw new IllegalArgumentException("Invalid room search type: " + searchType);
+            }
+        }
+
+        private boolean isRoomAvailable(IRoom room, Date checkIn, Date checkOut) {
+            return isRoomFree(room, checkIn, checkOut) && hasRoomLeft(room.getRoomType(), checkIn, checkOut);
+        }
+
+        private boolean isRoomFree(IRoom room, Date checkIn, Date checkOut) {
+            for (Reservation reservation : reservations) {
+                if (reservation.getRoom().equals(room)) {
+                    // New reservation starts before an existing reservation ends and ends after the existing reservation starts.
+                    if ((checkIn.before(reservation.getCheckoutDate()) || checkIn.equals(reservation.getCheckoutDate()))
+                            && (checkOut.after(reservation.getCheckinDate()) || checkOut.equals(reservation.getCheckinDate()))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Collection<Reservation> arrivals(Date day) {
+            Collection<Reservation> arrivals = new ArrayList<>();
+            for (Reservation reservation : reservations) {
+                if (EpochDays.of(reservation.getCheckinDate()) == EpochDays.of(day)) {
+                    arrivals.add(reservation);
+                }
+            }
+            return arrivals;
+        }
+
+        @Override
+        public Collection<Reservation> departures(Date day) {
+            Collection<Reservation> departures = new ArrayList<>();
+            for (Reservation reservation : reservations) {
+                if (EpochDays.of(reservation.getCheckoutDate()) == EpochDays.of(day)) {
+                    departures.add(reservation);
+                }
+            }
+            return departures;
+        }
+
+        @Override
+        public Collection<Reservation> overlapping(Date from, Date to) {
+            if (to.before(from)) {
+                throw new IllegalArgumentException("The end of the range must not be before its start.");
+            }
+            Collection<Reservation> overlapping = new ArrayList<>();
+            for (Reservation reservation : reservations) {
+                if (!reservation.getCheckinDate().after(to) && !reservation.getCheckoutDate().before(from)) {
+                    overlapping.add(reservation);
+                }
+            }
+            return overlapping;
+        }
+
+        @Override
+        public Collection<Reservation> roomReservations(IRoom room) {
+            Collection<Reservation> roomReservations = new ArrayList<>();
+            for (Reservation reservation : reservations) {
+                if (reservation.getRoom().equals(room)) {
+                    roomReservations.add(reservation);
+                }
+            }
+            return roomReservations;
+        }
+
+        @Override
+        public RoomTypeBooking bookType(Customer customer, RoomType roomType, Date checkIn, Date checkOut) {
+            RoomTypeBooking booking = new RoomTypeBooking(typeBookingCount + 1, customer, roomType, checkIn, checkOut);
+            if (!hasRoomLeft(roomType, checkIn, checkOut)) {
+                throw new IllegalArgumentException("No " + roomType.name() + " room is available for the specified dates.");
+            }
+            if (findLowestFreeRoom(roomType, checkIn, checkOut) == null) {
+                throw new IllegalArgumentException("No single " + roomType.name() + " room is free for the whole stay.");
+            }
+            typeBookingCount++;
+            typeBookings.add(booking);
+            return booking;
+        }
+
+        @Override
+        public Reservation assign(RoomTypeBooking booking) {
+            if (!typeBookings.remove(booking)) {
+                throw new IllegalArgumentException("The booking does not exist or already has a room.");
+            }
+            IRoom room = findLowestFreeRoom(booking.getRoomType(), booking.getCheckinDate(), booking.getCheckoutDate());
+            if (room == null) {
+                typeBookings.add(booking);
+                throw new IllegalArgumentException("No single " + booking.getRoomType().name()
+                        + " room is free for the whole stay. "
+                        + "The booking keeps waiting; assign it after other bookings change, or split the stay.");
+            }
+            return book(booking.getCustomer(), room, booking.getCheckinDate(), booking.getCheckoutDate());
+        }
+
+        @Override
+        public void cancelType(RoomTypeBooking booking) {
+            if (!typeBookings.remove(booking)) {
+                throw new IllegalArgumentException("The booking does not exist or already has a room.");
+            }
+        }
+
+        @Override
+        public int freeRoomCount(RoomType roomType, Date checkIn, Date checkOut) {
+            int roomsOfType = 0;
+            for (IRoom room : rooms) {
+                if (room.getRoomType() == roomType) {
+                    roomsOfType++;
+                }
+            }
+            int mostTaken = 0;
+            for (long day = EpochDays.of(checkIn); day <= EpochDays.of(checkOut); day++) {
+                int taken = 0;
+                for (Reservation reservation : reservations) {
+                    if (reservation.getRoom().getRoomType() == roomType
+                            && isDayOfStay(day, reservation.getCheckinDate(), reservation.getCheckoutDate())) {
+                        taken++;
+                    }
+                }
+                for (RoomTypeBooking booking : typeBookings) {
+                    if (booking.getRoomType() == roomType
+                            && isDayOfStay(day, booking.getCheckinDate(), booking.getCheckoutDate())) {
+                        taken++;
+                    }
+                }
+                mostTaken = Math.max(mostTaken, taken);
+            }
+            return roomsOfType - mostTaken;
+        }
+
+        /**
+         * Checks that every day of the stay leaves a room of the type for the bookings by type.
+         */
+        private boolean hasRoomLeft(RoomType roomType, Date checkIn, Date checkOut) {
+            return freeRoomCount(roomType, checkIn, checkOut) > 0;
+        }
+
+        private IRoom findLowestFreeRoom(RoomType roomType, Date checkIn, Date checkOut) {
+            if (!hasRoomLeft(roomType, checkIn, checkOut)) {
+                return null;
+            }
+            IRoom lowest = null;
+            for (IRoom room : rooms) {
+                if (room.getRoomType() == roomType && isRoomFree(room, checkIn, checkOut)
+                        && (lowest == null
+                        || Integer.parseInt(room.getRoomNumber()) < Integer.parseInt(lowest.getRoomNumber()))) {
+                    lowest = room;
+                }
+            }
+            return lowest;
+        }
+
+        // A stay takes its check-in day, its check-out day and every day between
+        private static boolean isDayOfStay(long day, Date checkIn, Date checkOut) {
+            return EpochDays.of(checkIn) <= day && day <= EpochDays.of(checkOut);
+        }
+    }
+
+    /**
+     * ReservationService on the configured storage backend, with its snapshots and indexes. While a run books
+     * and cancels, a reader thread lists the reservations of the run's customers, as guests do concurrently.
+     */
+    static final class ServiceEngine extends Engine {
+        private final ReservationService reservationService = ReservationService.getInstance();
+        private final CustomerService customerService = CustomerService.getInstance();
+        private boolean concurrentReader = true;
+        private final Set<String> emails = new HashSet<>();
+        private Thread reader;
+        private volatile boolean reading;
+        private volatile String failure;
+
+        @Override
+        public String getName() {
+            return "ReservationService on " + System.getProperty("hotel.storage", "memory") + " storage";
+        }
+
+        @Override
+        public void begin(Collection<Customer> customers) {
+            // The JDBC backend only returns reservations of stored customers
+            emails.clear();
+            for (Customer customer : customers) {
+                customerService.addCustomer(customer.getEmail(), customer.getFirstName(), customer.getLastName());
+                emails.add(customer.getEmail());
+            }
+            failure = null;
+            if (!concurrentReader) {
+                return;
+            }
+            reading = true;
+            reader = new Thread(() -> {
+                while (reading) {
+                    try {
+                        for (Customer customer : customers) {
+                            reservationService.getCustomerReservations(customer);
+                        }
+                        reservationService.getAllReservations();
+                    } catch (RuntimeException e) {
+                        failure = "Listing reservations during the run failed: " + e;
+                        return;
+                    }
+                }
+            }, "differential-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        @Override
+        public void end(Collection<IRoom> rooms) {
+            if (reader != null) {
+                reading = false;
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                reader = null;
+            }
+            // Bookings by type left waiting would keep counting against rooms of later runs
+            for (RoomTypeBooking booking : reservationService.getRoomTypeBookings()) {
+                if (emails.contains(booking.getCustomer().getEmail())) {
+                    reservationService.cancelRoomTypeBooking(booking);
+                }
+            }
+            for (IRoom room : rooms) {
+                reservationService.removeRoom(room);
+            }
+        }
+
+        @Override
+        public void setConcurrentReader(boolean enabled) {
+            concurrentReader = enabled;
+        }
+
+        @Override
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public boolean addRoom(IRoom room) {
+            return !reservationService.addRooms(Collections.singletonList(room)).isEmpty();
+        }
+
+        @Override
+        public Collection<Reservation> removeRoom(IRoom room) {
+            return reservationService.removeRoom(room);
+        }
+
+        @Override
+        public Reservation book(Customer customer, IRoom room, Date checkIn, Date checkOut) {
+            return reservationService.reserveARoom(customer, room, checkIn, checkOut);
+        }
+
+        @Override
+        public void cancel(Reservation reservation) {
+            reservationService.cancelReservation(reservation);
+        }
+
+        @Override
+        public Collection<IRoom> findRooms(Date checkIn, Date checkOut, RoomSearchType searchType,
+                                           Collection<RoomAttribute> attributes) {
+            return attributes.isEmpty() ? reservationService.findRooms(checkIn, checkOut, searchType)
+                    : reservationService.findRooms(checkIn, checkOut, searchType, attributes);
+        }
+
+        @Override
+        public Collection<Reservation> arrivals(Date day) {
+            return reservationService.findArrivals(day);
+        }
+
+        @Override
+        public Collection<Reservation> departures(Date day) {
+            return reservationService.findDepartures(day);
+        }
+
+        @Override
+        public Collection<Reservation> overlapping(Date from, Date to) {
+            return reservationService.findOverlappingReservations(from, to);
+        }
+
+        @Override
+        public Collection<Reservation> roomReservations(IRoom room) {
+            return reservationService.getRoomReservations(room);
+        }
+
+        @Override
+        public RoomTypeBooking bookType(Customer customer, RoomType roomType, Date checkIn, Date checkOut) {
+            return reservationService.reserveRoomOfType(customer, roomType, checkIn, checkOut);
+        }
+
+        @Override
+        public Reservation assign(RoomTypeBooking booking) {
+            return reservationService.assignRoom(booking);
+        }
+
+        @Override
+        public void cancelType(RoomTypeBooking booking) {
+            reservationService.cancelRoomTypeBooking(booking);
+        }
+
+        @Override
+        public int freeRoomCount(RoomType roomType, Date checkIn, Date checkOut) {
+            return reservationService.getFreeRoomCount(roomType, checkIn, checkOut);
+        }
+    }
+
+    /**
+     * Where two engines first disagreed in a case.
+     */
+    static final class Divergence {
+        final int index;
+        final List<String> expected;
+        final List<String> actual;
+
+        Divergence(int index, List<String> expected, List<String> actual) {
+            this.index = index;
+            this.expected = expected;
+            this.actual = actual;
+        }
+    }
+
+    private final Engine reference = new ReferenceEngine();
+    private final Engine engine;
+
+    // Time spent per kind of operation, in nanoseconds, by engine
+    private final Map<Kind, long[]> nanosByKind = new EnumMap<>(Kind.class);
+    private final Map<Kind, Integer> countByKind = new EnumMap<>(Kind.class);
+    private boolean timing;
+
+    // Every run gets room numbers and customers no earlier run used
+    private int runs;
+
+    DifferentialTest(Engine engine) {
+        this.engine = engine;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Invalid option: " + arg + ". Options have the form --name=value");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int cases = Integer.parseInt(options.getOrDefault("cases", "300"));
+        int operations = Integer.parseInt(options.getOrDefault("operations", "60"));
+        int rooms = Integer.parseInt(options.getOrDefault("rooms", "6"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int benchRooms = Integer.parseInt(options.getOrDefault("bench-rooms", "1000"));
+        int benchOperations = Integer.parseInt(options.getOrDefault("bench-operations", "10000"));
+        Engine engine = options.containsKey("engine")
+                ? (Engine) Class.forName(options.get("engine")).getDeclaredConstructor().newInstance()
+                : new ServiceEngine();
+
+        DifferentialTest test = new DifferentialTest(engine);
+        System.out.println("Differential test: " + engine.getName() + " against the " + test.reference.getName());
+        Random random = new Random(seed);
+
+        System.out.println("Phase 1: " + cases + " cases of " + operations + " operations on " + rooms + " rooms, seed "
+                + seed);
+        for (int i = 0; i < cases; i++) {
+            Case generated = generate(random, rooms, operations);
+            Divergence divergence = test.run(generated);
+            if (divergence != null) {
+                System.out.println("Case " + i + " diverged at operation " + divergence.index + "; shrinking...");
+                test.report(test.shrink(generated));
+                System.exit(1);
+            }
+            if (engine.getFailure() != null) {
+                System.out.println("Case " + i + ": " + engine.getFailure());
+                System.exit(1);
+            }
+        }
+        System.out.println("All " + cases + " cases agreed.");
+        test.printTimings();
+
+        if (benchOperations > 0) {
+            System.out.println("Phase 2: " + benchOperations + " operations on " + benchRooms + " rooms");
+            test.nanosByKind.clear();
+            test.countByKind.clear();
+            engine.setConcurrentReader(false);
+            Divergence divergence = test.run(generate(random, benchRooms, benchOperations), true);
+            if (divergence != null) {
+                System.out.println("The large case diverged at operation " + divergence.index
+                        + "; rerun phase 1 with more rooms or operations to get a small reproducer.");
+                System.out.println("  expected: " + divergence.expected);
+                System.out.println("  actual:   " + divergence.actual);
+                System.exit(1);
+            }
+            System.out.println("The large case agreed.");
+            test.printTimings();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Generates a room inventory and a sequence that starts by adding most of the rooms.
+     */
+    static Case generate(Random random, int roomCount, int operationCount) {
+        double[] prices = new double[roomCount];
+        RoomType[] types = new RoomType[roomCount];
+        List<List<RoomAttribute>> attributes = new ArrayList<>(roomCount);
+        List<Operation> operations = new ArrayList<>(operationCount + roomCount);
+        for (int room = 0; room < roomCount; room++) {
+            prices[room] = random.nextInt(4) == 0 ? 0.0 : 50.0 + random.nextInt(200);
+            types[room] = random.nextBoolean() ? RoomType.SINGLE : RoomType.DOUBLE;
+            attributes.add(randomAttributes(random, random.nextInt(3)));
+            if (random.nextInt(8) != 0) {
+                operations.add(new Operation(Kind.ADD_ROOM, room, 0, 0, 0, RoomSearchType.BOTH,
+                        Collections.<RoomAttribute>emptyList()));
+            }
+        }
+        // Long cases spread over a longer window, so that the history grows instead of the window filling up
+        int window = Math.max(WINDOW_DAYS, operationCount / 50);
+        Kind[] kinds = Kind.values();
+        for (int i = 0; i < operationCount; i++) {
+            Kind kind;
+            int draw = random.nextInt(100);
+            if (draw < 30) {
+                kind = Kind.BOOK;
+            } else if (draw < 37) {
+                kind = Kind.BOOK_TYPE;
+            } else if (draw < 40) {
+                kind = Kind.ASSIGN;
+            } else if (draw < 47) {
+                kind = Kind.CANCEL;
+            } else if (draw < 65) {
+                kind = Kind.SEARCH;
+            } else if (draw < 75) {
+                kind = Kind.SEARCH_ATTRIBUTES;
+            } else {
+                kind = kinds[random.nextInt(kinds.length)];
+            }
+            // Mostly valid stays, sometimes empty or reversed ones
+            int length = random.nextInt(10) == 0 ? -1 + random.nextInt(2) : 1 + random.nextInt(4);
+            operations.add(new Operation(kind,
+                    refersToBooking(kind) ? random.nextInt(Math.max(1, operations.size())) : random.nextInt(roomCount),
+                    random.nextInt(CUSTOMERS), random.nextInt(window), length,
+                    RoomSearchType.values()[random.nextInt(RoomSearchType.values().length)],
+                    randomAttributes(random, 1 + random.nextInt(2))));
+        }
+        return new Case(prices, types, attributes, operations);
+    }
+
+    /**
+     * Checks whether the room field of an operation picks an earlier booking rather than a room.
+     */
+    private static boolean refersToBooking(Kind kind) {
+        return kind == Kind.CANCEL || kind == Kind.ASSIGN || kind == Kind.CANCEL_TYPE;
+    }
+
+    private static List<RoomAttribute> randomAttributes(Random random, int count) {
+        Set<RoomAttribute> attributes = new TreeSet<>();
+        while (attributes.size() < count) {
+            attributes.add(ATTRIBUTES[random.nextInt(ATTRIBUTES.length)]);
+        }
+        return new ArrayList<>(attributes);
+    }
+
+    Divergence run(Case testCase) {
+        return run(testCase, false);
+    }
+
+    /**
+     * Runs a case on both engines, operation by operation.
+     * @param testCase the case
+     * @param timed whether to add the time spent to the timings
+     * @return the first operation whose outcomes differ, or null if they never do
+     */
+    Divergence run(Case testCase, boolean timed) {
+        timing = timed;
+        int run = ++runs;
+        int firstRoomNumber = 1_000_000 + run * 10_000;
+        List<IRoom> rooms = new ArrayList<>(testCase.prices.length);
+        for (int room = 0; room < testCase.prices.length; room++) {
+            String roomNumber = String.valueOf(firstRoomNumber + room);
+            rooms.add(testCase.prices[room] == 0.0
+                    ? new FreeRoom(roomNumber, testCase.types[room], testCase.attributes.get(room))
+                    : new Room(roomNumber, testCase.prices[room], testCase.types[room], testCase.attributes.get(room)));
+        }
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int customer = 0; customer < CUSTOMERS; customer++) {
+            customers.add(new Customer("Guest", "C" + customer, "c" + customer + ".run" + run + "@differential.test"));
+        }
+
+        Names names = new Names(firstRoomNumber, customers);
+        List<Reservation> referenceBookings = new ArrayList<>();
+        List<Reservation> engineBookings = new ArrayList<>();
+        List<RoomTypeBooking> referenceTypeBookings = new ArrayList<>();
+        List<RoomTypeBooking> engineTypeBookings = new ArrayList<>();
+        reference.begin(customers);
+        engine.begin(customers);
+        try {
+            for (int i = 0; i < testCase.operations.size(); i++) {
+                Operation operation = testCase.operations.get(i);
+                List<String> expected = execute(reference, 0, operation, rooms, customers, referenceBookings,
+                        referenceTypeBookings, names);
+                List<String> actual = execute(engine, 1, operation, rooms, customers, engineBookings,
+                        engineTypeBookings, names);
+                if (!expected.equals(actual)) {
+                    return new Divergence(i, expected, actual);
+                }
+            }
+            return null;
+        } finally {
+            reference.end(rooms);
+            engine.end(rooms);
+        }
+    }
+
+    /**
+     * Executes one operation and describes its outcome in terms that do not depend on the engine: room and
+     * customer indexes, day offsets, and sorted collections.
+     */
+    private List<String> execute(Engine target, int engineIndex, Operation operation, List<IRoom> rooms,
+                                 List<Customer> customers, List<Reservation> bookings,
+                                 List<RoomTypeBooking> typeBookings, Names names) {
+        IRoom room = rooms.get(Math.min(operation.room, rooms.size() - 1));
+        Date from = EpochDays.toDate(FIRST_DAY + operation.day);
+        Date to = EpochDays.toDate(FIRST_DAY + operation.day + operation.length);
+        long start = System.nanoTime();
+        List<String> outcome = new ArrayList<>();
+        try {
+            switch (operation.kind) {
+                case ADD_ROOM:
+                    outcome.add(target.addRoom(room) ? "added" : "skipped");
+                    break;
+                case REMOVE_ROOM:
+                    outcome.add("removed");
+                    outcome.addAll(names.reservations(target.removeRoom(room)));
+                    break;
+                case BOOK:
+                    Reservation reservation = target.book(customers.get(operation.customer), room, from, to);
+                    bookings.add(reservation);
+                    outcome.add("booked " + names.reservation(reservation));
+                    break;
+                case CANCEL:
+                    if (bookings.isEmpty()) {
+                        outcome.add("nothing to cancel");
+                        break;
+                    }
+                    target.cancel(bookings.get(operation.room % bookings.size()));
+                    outcome.add("cancelled");
+                    break;
+                case SEARCH:
+                    outcome.addAll(names.rooms(target.findRooms(from, to, operation.searchType,
+                            Collections.<RoomAttribute>emptyList())));
+                    break;
+                case SEARCH_ATTRIBUTES:
+                    outcome.addAll(names.rooms(target.findRooms(from, to, operation.searchType, operation.attributes)));
+                    break;
+                case ARRIVALS:
+                    outcome.addAll(names.reservations(target.arrivals(from)));
+                    break;
+                case DEPARTURES:
+                    outcome.addAll(names.reservations(target.departures(from)));
+                    break;
+                case OVERLAPPING:
+                    outcome.addAll(names.reservations(target.overlapping(from, to)));
+                    break;
+                case ROOM_RESERVATIONS:
+                    outcome.addAll(names.reservations(target.roomReservations(room)));
+                    break;
+                case BOOK_TYPE:
+                    RoomTypeBooking typeBooking = target.bookType(customers.get(operation.customer),
+                            room.getRoomType(), from, to);
+                    typeBookings.add(typeBooking);
+                    outcome.add("booked " + names.typeBooking(typeBooking));
+                    break;
+                case ASSIGN:
+                    if (typeBookings.isEmpty()) {
+                        outcome.add("nothing to assign");
+                        break;
+                    }
+                    Reservation assigned = target.assign(typeBookings.get(operation.room % typeBookings.size()));
+                    bookings.add(assigned);
+                    outcome.add("assigned " + names.reservation(assigned));
+                    break;
+                case CANCEL_TYPE:
+                    if (typeBookings.isEmpty()) {
+                        outcome.add("nothing to cancel");
+                        break;
+                    }
+                    target.cancelType(typeBookings.get(operation.room % typeBookings.size()));
+                    outcome.add("cancelled");
+                    break;
+                case FREE_ROOM_COUNT:
+                    outcome.add(String.valueOf(target.freeRoomCount(room.getRoomType(), from, to)));
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        } catch (IllegalArgumentException e) {
+            outcome.add("error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            outcome.add("exception: " + e);
+        }
+        if (timing) {
+            nanosByKind.computeIfAbsent(operation.kind, kind -> new long[2])[engineIndex] += System.nanoTime() - start;
+            if (engineIndex == 0) {
+                countByKind.merge(operation.kind, 1, Integer::sum);
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Maps the rooms, customers and dates of one run back to the indexes and day offsets of the case.
+     */
+    private static final class Names {
+        final int firstRoomNumber;
+        final Map<String, Integer> customerIndexes = new HashMap<>();
+
+        Names(int firstRoomNumber, List<Customer> customers) {
+            this.firstRoomNumber = firstRoomNumber;
+            for (int i = 0; i < customers.size(); i++) {
+                customerIndexes.put(customers.get(i).getEmail(), i);
+            }
+        }
+
+        String room(IRoom room) {
+            return "room" + (Integer.parseInt(room.getRoomNumber()) - firstRoomNumber);
+        }
+
+        List<String> rooms(Collection<IRoom> rooms) {
+            Set<String> names = new TreeSet<>();
+            for (IRoom room : rooms) {
+                names.add(room(room));
+            }
+            return new ArrayList<>(names);
+        }
+
+        String reservation(Reservation reservation) {
+            return room(reservation.getRoom()) + " c" + customerIndexes.get(reservation.getCustomer().getEmail())
+                    + " day " + (EpochDays.of(reservation.getCheckinDate()) - FIRST_DAY)
+                    + " to day " + (EpochDays.of(reservation.getCheckoutDate()) - FIRST_DAY);
+        }
+
+        String typeBooking(RoomTypeBooking booking) {
+            return booking.getRoomType().name() + " c" + customerIndexes.get(booking.getCustomer().getEmail())
+                    + " day " + (EpochDays.of(booking.getCheckinDate()) - FIRST_DAY)
+                    + " to day " + (EpochDays.of(booking.getCheckoutDate()) - FIRST_DAY);
+        }
+
+        List<String> reservations(Collection<Reservation> reservations) {
+            List<String> names = new ArrayList<>(reservations.size());
+            for (Reservation reservation : reservations) {
+                names.add(reservation(reservation));
+            }
+            Collections.sort(names);
+            return names;
+        }
+    }
+
+    /**
+     * Shrinks a diverging case: cuts it after the first divergence, drops chunks of operations, halving the
+     * chunk size down to single operations, while the engines still diverge, then simplifies the fields of the
+     * remaining operations. Every candidate is checked by running it again on both engines.
+     */
+    Case shrink(Case diverging) {
+        Case current = diverging.withOperations(new ArrayList<>(
+                diverging.operations.subList(0, run(diverging).index + 1)));
+        int attempts = 0;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int chunk = Math.max(1, current.operations.size() / 2); chunk >= 1; chunk /= 2) {
+                for (int start = 0; start + chunk <= current.operations.size(); ) {
+                    List<Operation> candidate = new ArrayList<>(current.operations);
+                    candidate.subList(start, start + chunk).clear();
+                    attempts++;
+                    Divergence divergence = candidate.isEmpty() ? null : run(current.withOperations(candidate));
+                    if (divergence != null) {
+                        current = current.withOperations(new ArrayList<>(candidate.subList(0, divergence.index + 1)));
+                        progress = true;
+                    } else {
+                        start++;
+                    }
+                }
+                if (chunk == 1) {
+                    break;
+                }
+            }
+            for (int i = 0; i < current.operations.size(); i++) {
+                for (Operation simpler : simplifications(current.operations.get(i))) {
+                    List<Operation> candidate = new ArrayList<>(current.operations);
+                    candidate.set(i, simpler);
+                    attempts++;
+                    if (run(current.withOperations(candidate)) != null) {
+                        current = current.withOperations(candidate);
+                        progress = true;
+                        break;
+                    }
+                }
+            }
+        }
+        System.out.println("Shrunk " + diverging.operations.size() + " operations to " + current.operations.size()
+                + " in " + attempts + " attempts.");
+        return current;
+    }
+
+    /**
+     * Returns variants of an operation with one field moved towards its simplest value.
+     */
+    private static List<Operation> simplifications(Operation operation) {
+        List<Operation> simpler = new ArrayList<>();
+        if (operation.room > 0) {
+            simpler.add(operation.with(0, operation.customer, operation.day, operation.length, operation.searchType,
+                    operation.attributes));
+        }
+        if (operation.customer > 0) {
+            simpler.add(operation.with(operation.room, 0, operation.day, operation.length, operation.searchType,
+                    operation.attributes));
+        }
+        if (operation.day > 0) {
+            simpler.add(operation.with(operation.room, operation.customer, 0, operation.length, operation.searchType,
+                    operation.attributes));
+            simpler.add(operation.with(operation.room, operation.customer, operation.day - 1, operation.length,
+                    operation.searchType, operation.attributes));
+        }
+        if (operation.length > 1) {
+            simpler.add(operation.with(operation.room, operation.customer, operation.day, 1, operation.searchType,
+                    operation.attributes));
+        }
+        if (operation.searchType != RoomSearchType.BOTH) {
+            simpler.add(operation.with(operation.room, operation.customer, operation.day, operation.length,
+                    RoomSearchType.BOTH, operation.attributes));
+        }
+        if (operation.attributes.size() > 1) {
+            simpler.add(operation.with(operation.room, operation.customer, operation.day, operation.length,
+                    operation.searchType, operation.attributes.subList(0, 1)));
+        }
+        return simpler;
+    }
+
+    /**
+     * Prints a shrunk case as a reproducer: the rooms it uses, every operation with its outcome, and the
+     * outcomes of the last one on both engines.
+     */
+    private void report(Case shrunk) {
+        Divergence divergence = run(shrunk);
+        Set<Integer> usedRooms = new TreeSet<>();
+        for (Operation operation : shrunk.operations) {
+            if (!refersToBooking(operation.kind)) {
+                usedRooms.add(Math.min(operation.room, shrunk.prices.length - 1));
+            }
+        }
+        System.out.println("Minimal reproducer (days are offsets from " + EpochDays.toDate(FIRST_DAY) + "):");
+        for (int room : usedRooms) {
+            System.out.println("  " + shrunk.describeRoom(room));
+        }
+        for (int i = 0; i < shrunk.operations.size(); i++) {
+            System.out.println("  " + (i + 1) + ". " + shrunk.operations.get(i));
+        }
+        System.out.println("Expected (" + reference.getName() + "): " + divergence.expected);
+        System.out.println("Actual   (" + engine.getName() + "): " + divergence.actual);
+    }
+
+    private void printTimings() {
+        if (nanosByKind.isEmpty()) {
+            return;
+        }
+        System.out.println(String.format("%-18s %9s %14s %14s %9s", "operation", "count", "reference ms", "engine ms",
+                "speedup"));
+        long[] total = new long[2];
+        for (Map.Entry<Kind, long[]> entry : nanosByKind.entrySet()) {
+            long[] nanos = entry.getValue();
+            total[0] += nanos[0];
+            total[1] += nanos[1];
+            System.out.println(String.format("%-18s %9d %14.1f %14.1f %8.1fx", entry.getKey(),
+                    countByKind.get(entry.getKey()), nanos[0] / 1e6, nanos[1] / 1e6, speedup(nanos)));
+        }
+        System.out.println(String.format("%-18s %9s %14.1f %14.1f %8.1fx", "total", "", total[0] / 1e6,
+                total[1] / 1e6, speedup(total)));
+    }
+
+    private static double speedup(long[] nanos) {
+        return nanos[1] == 0 ? 0 : (double) nanos[0] / nanos[1];
+    }
+}
@@ -0,0 +1,437 @@
+package test;
+
+import api.AdminResource;
+import api.HotelResource;
+import model.FreeRoom;
+import model.IRoom;
+import model.Room;
+import model.RoomSearchType;
+import model.RoomType;
+import service.CustomerService;
+import service.ReservationService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load generator that drives HotelResource and AdminResource from many threads.
+ *
+ * It either synthesizes a hotel workload (room count, seasonality, stay-length distribution and a
+ * search/book/lookup mix) or replays a recorded trace, and reports throughput, latency percentiles,
+ * the booking-conflict rate and GC statistics.
+ *
+ * Usage: java test.LoadGenerator [--rooms=N] [--customers=N] [--threads=N] [--operations=N]
+ * [--search=PERCENT] [--book=PERCENT] [--lookup=PERCENT] [--horizon-days=N] [--mean-stay=NIGHTS]
+ * [--seasonality=0..1] [--peak-day=N] [--free-ratio=0..1] [--seed=N] [--record=FILE] [--replay=FILE]
+ * [--jdbc-url=URL]
+ *
+ * With --jdbc-url the services store their data in that embedded database instead of on the heap, so both
+ * storage backends can be compared with the same workload; the JDBC driver must be on the classpath.
+ *
+ * Trace files are CSV, one operation per line:
+ * ROOM,number,price,type | CUSTOMER,email,first,last | SEARCH,checkIn,checkOut,searchType |
+ * BOOK,email,roomNumber,checkIn,checkOut | LOOKUP,email
+ */
+public class LoadGenerator {
+
+    private static final String SEARCH = "SEARCH";
+    private static final String BOOK = "BOOK";
+    private static final String LOOKUP = "LOOKUP";
+    private static final String[] OPERATIONS = {SEARCH, BOOK, LOOKUP};
+
+    private final Map<String, String> options;
+    private final HotelResource hotelResource = HotelResource.getInstance(
+            CustomerService.getInstance(), ReservationService.getInstance());
+    private final AdminResource adminResource = AdminResource.getInstance(
+            CustomerService.getInstance(), ReservationService.getInstance());
+
+    private final AtomicLong bookingAttempts = new AtomicLong();
+    private final AtomicLong bookingConflicts = new AtomicLong();
+    private final AtomicLong soldOut = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private final List<String> roomNumbers = new ArrayList<>();
+    private final List<String> customerEmails = new ArrayList<>();
+    private PrintWriter traceWriter;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Invalid option: " + arg + ". Options have the form --name=value");
+                return;
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        if (options.containsKey("jdbc-url")) {
+            // Must be set before the services are created, which happens with the first LoadGenerator
+            System.setProperty("hotel.storage", "jdbc");
+            System.setProperty("hotel.jdbc.url", options.get("jdbc-url"));
+        }
+        new LoadGenerator(options).run();
+    }
+
+    LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private void run() throws Exception {
+        int threads = intOption("threads", Runtime.getRuntime().availableProcessors());
+        List<List<String[]>> perThreadOperations;
+
+        if (options.containsKey("replay")) {
+            perThreadOperations = loadTrace(options.get("replay"), threads);
+        } else {
+            if (options.containsKey("record")) {
+                traceWriter = new PrintWriter(new BufferedWriter(new FileWriter(options.get("record"))));
+            }
+            setUpSynthetic();
+            perThreadOperations = synthesize(threads);
+        }
+        if (traceWriter != null) {
+            for (List<String[]> operations : perThreadOperations) {
+                for (String[] operation : operations) {
+                    traceWriter.println(String.join(",", operation));
+                }
+            }
+            traceWriter.close();
+        }
+
+        System.out.println("Running " + countOperations(perThreadOperations) + " operations on " + threads
+                + " threads against " + roomNumbers.size() + " rooms and " + customerEmails.size() + " customers");
+        long gcCountBefore = totalGcCount();
+        long gcTimeBefore = totalGcTimeMillis();
+
+        LatencyRecorder[] recorders = new LatencyRecorder[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders[i] = recorder;
+            List<String[]> operations = perThreadOperations.get(i);
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (String[] operation : operations) {
+                    long begin = System.nanoTime();
+                    execute(operation);
+                    recorder.record(operation[0], System.nanoTime() - begin);
+                }
+            }, "load-worker-" + i);
+            workers[i].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+
+        report(recorders, elapsedNanos, totalGcCount() - gcCountBefore, totalGcTimeMillis() - gcTimeBefore);
+    }
+
+    /**
+     * Creates rooms and customers. Setup is not measured, so rooms are added straight to the service rather
+     * than through AdminResource.addRooms, which prints a line per room.
+     */
+    private void setUpSynthetic() {
+        Random random = new Random(intOption("seed", 42));
+        int rooms = intOption("rooms", 1000);
+        int customers = intOption("customers", 10000);
+        double freeRatio = doubleOption("free-ratio", 0.05);
+        for (int i = 1; i <= rooms; i++) {
+            RoomType roomType = random.nextBoolean() ? RoomType.SINGLE : RoomType.DOUBLE;
+            double price = random.nextDouble() < freeRatio ? 0.0 : 60 + random.nextInt(240);
+            applySetup(new String[]{"ROOM", String.valueOf(i), String.valueOf(price), roomType.name()});
+        }
+        for (int i = 0; i < customers; i++) {
+            applySetup(new String[]{"CUSTOMER", "guest" + i + "@load.test", "Guest", "Number" + i});
+        }
+    }
+
+    private void applySetup(String[] operation) {
+        if (operation[0].equals("ROOM")) {
+            double price = Double.parseDouble(operation[2]);
+            RoomType roomType = RoomType.valueOf(operation[3]);
+            IRoom room = price == 0.0 ? new FreeRoom(operation[1], roomType) : new Room(operation[1], price, roomType);
+            ReservationService.getInstance().addRoom(room);
+            roomNumbers.add(operation[1]);
+        } else {
+            hotelResource.createACustomer(operation[1], operation[2], operation[3]);
+            customerEmails.add(operation[1]);
+        }
+        if (traceWriter != null) {
+            traceWriter.println(String.join(",", operation));
+        }
+    }
+
+    /**
+     * Generates the operations of every worker thread. Check-in days follow a yearly seasonal curve and
+     * stay lengths a log-normal distribution, which matches the long tail of real hotel stays.
+     */
+    private List<List<String[]>> synthesize(int threads) {
+        Random random = new Random(intOption("seed", 42) + 1);
+        int operations = intOption("operations", 100000);
+        int searchPercent = intOption("search", 80);
+        int bookPercent = intOption("book", 15);
+        int lookupPercent = intOption("lookup", 5);
+        int totalPercent = searchPercent + bookPercent + lookupPercent;
+        int horizonDays = intOption("horizon-days", 365);
+        double meanStay = doubleOption("mean-stay", 3.0);
+        double seasonality = doubleOption("seasonality", 0.5);
+        int peakDay = intOption("peak-day", 200);
+        // A log-normal with sigma 0.6 and this mu has the requested mean
+        double sigma = 0.6;
+        double mu = Math.log(meanStay) - sigma * sigma / 2;
+
+        List<List<String[]>> perThread = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            perThread.add(new ArrayList<>());
+        }
+        for (int i = 0; i < operations; i++) {
+            int roll = random.nextInt(totalPercent);
+            String[] operation;
+            if (roll < searchPercent || roll < searchPercent + bookPercent) {
+                int checkInDay = seasonalDay(random, horizonDays, seasonality, peakDay);
+                int nights = (int) Math.max(1, Math.min(30, Math.round(Math.exp(mu + sigma * random.nextGaussian()))));
+                String checkIn = formatDay(checkInDay);
+                String checkOut = formatDay(checkInDay + nights);
+                if (roll < searchPercent) {
+                    RoomSearchType searchType = RoomSearchType.values()[random.nextInt(RoomSearchType.values().length)];
+                    operation = new String[]{SEARCH, checkIn, checkOut, searchType.name()};
+                } else {
+                    // The room is chosen from a live search when the booking runs
+                    operation = new String[]{BOOK, randomCustomer(random), "", checkIn, checkOut};
+                }
+            } else {
+                operation = new String[]{LOOKUP, randomCustomer(random)};
+            }
+            perThread.get(i % threads).add(operation);
+        }
+        return perThread;
+    }
+
+    private int seasonalDay(Random random, int horizonDays, double seasonality, int peakDay) {
+        while (true) {
+            int day = random.nextInt(horizonDays);
+            double weight = (1 + seasonality * Math.cos(2 * Math.PI * (day - peakDay) / 365.0)) / (1 + seasonality);
+            if (random.nextDouble() < weight) {
+                return day;
+            }
+        }
+    }
+
+    private String randomCustomer(Random random) {
+        return customerEmails.get(random.nextInt(customerEmails.size()));
+    }
+
+    private List<List<String[]>> loadTrace(String path, int threads) throws IOException {
+        List<List<String[]>> perThread = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            perThread.add(new ArrayList<>());
+        }
+        int index = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] operation = line.split(",", -1);
+                if (operation[0].equals("ROOM") || operation[0].equals("CUSTOMER")) {
+                    applySetup(operation);
+                } else {
+                    perThread.get(index++ % threads).add(operation);
+                }
+            }
+        }
+        return perThread;
+    }
+
+    /**
+     * Executes one operation against the resources. A booking without a room number searches first and
+     * books a random available room, like a guest would; the room is then taken by a competing thread
+     * often enough to measure the conflict rate.
+     */
+    private void execute(String[] operation) {
+        try {
+            switch (operation[0]) {
+                case SEARCH:
+                    hotelResource.findARoom(parseDay(operation[1]), parseDay(operation[2]),
+                            RoomSearchType.valueOf(operation[3]));
+                    break;
+                case BOOK: {
+                    Date checkIn = parseDay(operation[3]);
+                    Date checkOut = parseDay(operation[4]);
+                    IRoom room;
+                    if (operation[2].isEmpty()) {
+                        List<IRoom> available = new ArrayList<>(hotelResource.findARoom(checkIn, checkOut, RoomSearchType.BOTH));
+                        if (available.isEmpty()) {
+                            soldOut.incrementAndGet();
+                            break;
+                        }
+                        room = available.get(Math.floorMod(Arrays.hashCode(operation) + (int) System.nanoTime(),
+                                available.size()));
+                    } else {
+                        room = hotelResource.getRoom(operation[2]);
+                    }
+                    bookingAttempts.incrementAndGet();
+                    try {
+                        hotelResource.bookARoom(operation[1], room, checkIn, checkOut);
+                    } catch (IllegalArgumentException e) {
+                        bookingConflicts.incrementAndGet();
+                    }
+                    break;
+                }
+                case LOOKUP:
+                    hotelResource.getCustomerReservations(operation[1]);
+                    adminResource.getCustomer(operation[1]);
+                    break;
+                default:
+                    errors.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private void report(LatencyRecorder[] recorders, long elapsedNanos, long gcCount, long gcTimeMillis) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.println("\n*** Load Test Results ***");
+        for (String operation : OPERATIONS) {
+            LatencyRecorder merged = new LatencyRecorder();
+            for (LatencyRecorder recorder : recorders) {
+                merged.addAll(operation, recorder);
+            }
+            long[] latencies = merged.sorted(operation);
+            total += latencies.length;
+            if (latencies.length == 0) {
+                continue;
+            }
+            System.out.printf("%-7s count=%d p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                    operation, latencies.length,
+                    percentile(latencies, 50) / 1e3, percentile(latencies, 90) / 1e3,
+                    percentile(latencies, 99) / 1e3, percentile(latencies, 99.9) / 1e3,
+                    latencies[latencies.length - 1] / 1e3);
+        }
+        System.out.printf("Throughput: %.0f ops/s over %.2f s%n", total / seconds, seconds);
+        long attempts = bookingAttempts.get();
+        System.out.printf("Bookings: %d attempted, %d conflicts (%.2f%%), %d found no room%n", attempts,
+                bookingConflicts.get(), attempts == 0 ? 0.0 : 100.0 * bookingConflicts.get() / attempts, soldOut.get());
+        System.out.println("Errors: " + errors.get());
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("GC: %d collections, %d ms total; heap used %d MB%n", gcCount, gcTimeMillis,
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long totalGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static int countOperations(List<List<String[]>> perThreadOperations) {
+        int count = 0;
+        for (List<String[]> operations : perThreadOperations) {
+            count += operations.size();
+        }
+        return count;
+    }
+
+    private static String formatDay(int dayFromTomorrow) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DATE, 1 + dayFromTomorrow);
+        return new SimpleDateFormat("yyyy-MM-dd").format(calendar.getTime());
+    }
+
+    private static Date parseDay(String day) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(day);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid date in trace: " + day);
+        }
+    }
+
+    /**
+     * Per-thread latency samples, kept as growable primitive arrays so that recording does not allocate
+     * per operation.
+     */
+    private static class LatencyRecorder {
+        private static class Samples {
+            long[] values = new long[1024];
+            int size;
+        }
+
+        private final Map<String, Samples> samples = new HashMap<>();
+
+        void record(String operation, long nanos) {
+            Samples operationSamples = samples.computeIfAbsent(operation, key -> new Samples());
+            if (operationSamples.size == operationSamples.values.length) {
+                operationSamples.values = Arrays.copyOf(operationSamples.values, operationSamples.size * 2);
+            }
+            operationSamples.values[operationSamples.size++] = nanos;
+        }
+
+        void addAll(String operation, LatencyRecorder other) {
+            Samples otherSamples = other.samples.get(operation);
+            if (otherSamples == null) {
+                return;
+            }
+            for (int i = 0; i < otherSamples.size; i++) {
+                record(operation, otherSamples.values[i]);
+            }
+        }
+
+        long[] sorted(String operation) {
+            Samples operationSamples = samples.get(operation);
+            if (operationSamples == null) {
+                return new long[0];
+            }
+            long[] copy = Arrays.copyOf(operationSamples.values, operationSamples.size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package test;
+
+import model.Customer;
+import model.IRoom;
+import model.Room;
+import model.RoomSearchType;
+import model.RoomType;
+import service.CustomerService;
+import service.EpochDays;
+import service.ReservationService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares ReservationService.findRooms, which checks the rooms on the calling thread, with findRoomsInParallel
+ * on a large inventory, and checks that both return the same rooms in the same order.
+ *
+ * The parallel search runs on the common ForkJoin pool, so its speedup for a number of threads is measured by
+ * setting the pool size, e.g. for 1, 2, 4 and 8 threads:
+ *   java -Djava.util.concurrent.ForkJoinPool.common.parallelism=4 test.ParallelSearchBenchmark
+ * The backend is chosen by hotel.storage as usual; -Dhotel.search.threads must not be set, or findRooms is
+ * parallel too.
+ *
+ * Usage: java test.ParallelSearchBenchmark [--rooms=N] [--reservations=N] [--searches=N] [--seed=N]
+ * Defaults are 50000 rooms with 200000 reservations over a year, and 200 searches.
+ * The exit code is 1 if the two searches ever return different rooms.
+ */
+public class ParallelSearchBenchmark {
+
+    private static final int DAYS = 365;
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Invalid option: " + arg + ". Options have the form --name=value");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int roomCount = Integer.parseInt(options.getOrDefault("rooms", "50000"));
+        int reservationCount = Integer.parseInt(options.getOrDefault("reservations", "200000"));
+        int searchCount = Integer.parseInt(options.getOrDefault("searches", "200"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        if (System.getProperty("hotel.search.threads") != null) {
+            System.out.println("Run without -Dhotel.search.threads, so that findRooms stays sequential.");
+            System.exit(2);
+        }
+
+        ReservationService reservationService = ReservationService.getInstance();
+        CustomerService.getInstance().addCustomer("benchmark@example.com", "Parallel", "Search");
+        Customer customer = CustomerService.getInstance().getCustomer("benchmark@example.com");
+        List<IRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(new Room(String.valueOf(100_000 + i), i % 5 == 0 ? 0.0 : 50.0 + i % 200,
+                    i % 2 == 0 ? RoomType.SINGLE : RoomType.DOUBLE));
+        }
+        reservationService.addRooms(rooms);
+        long firstDay = EpochDays.of(new Date()) + 30;
+        Random random = new Random(seed);
+        int booked = 0;
+        for (int i = 0; i < reservationCount; i++) {
+            long checkIn = firstDay + random.nextInt(DAYS);
+            try {
+                reservationService.reserveARoom(customer, rooms.get(random.nextInt(roomCount)),
+                        EpochDays.toDate(checkIn), EpochDays.toDate(checkIn + 1 + random.nextInt(7)));
+                booked++;
+            } catch (IllegalArgumentException e) {
+                // The room is taken for those dates; the history just gets one reservation fewer
+            }
+        }
+        System.out.println(roomCount + " rooms, " + booked + " reservations, "
+                + ForkJoinPool.commonPool().getParallelism() + " pool threads plus the caller, "
+                + System.getProperty("hotel.storage", "memory") + " storage");
+
+        long sequentialNanos = 0;
+        long parallelNanos = 0;
+        for (int i = 0; i < searchCount; i++) {
+            long checkIn = firstDay + random.nextInt(DAYS);
+            Date checkInDate = EpochDays.toDate(checkIn);
+            Date checkOutDate = EpochDays.toDate(checkIn + 1 + random.nextInt(7));
+            RoomSearchType searchType = RoomSearchType.values()[random.nextInt(RoomSearchType.values().length)];
+            // Alternate which search runs first, so that neither always finds the caches warm
+            Collection<IRoom> sequential;
+            Collection<IRoom> parallel;
+            long start = System.nanoTime();
+            if (i % 2 == 0) {
+                sequential = reservationService.findRooms(checkInDate, checkOutDate, searchType);
+                long middle = System.nanoTime();
+                parallel = reservationService.findRoomsInParallel(checkInDate, checkOutDate, searchType);
+                sequentialNanos += middle - start;
+                parallelNanos += System.nanoTime() - middle;
+            } else {
+                parallel = reservationService.findRoomsInParallel(checkInDate, checkOutDate, searchType);
+                long middle = System.nanoTime();
+                sequential = reservationService.findRooms(checkInDate, checkOutDate, searchType);
+                parallelNanos += middle - start;
+                sequentialNanos += System.nanoTime() - middle;
+            }
+            if (!new ArrayList<>(sequential).equals(new ArrayList<>(parallel))) {
+                System.out.println("The searches differ from " + checkInDate + " to " + checkOutDate + " for "
+                        + searchType + ": " + sequential.size() + " rooms sequentially, " + parallel.size()
+                        + " in parallel");
+                System.exit(1);
+            }
+        }
+        System.out.println(String.format("findRooms:           %8.2f ms per search", sequentialNanos / 1e6 / searchCount));
+        System.out.println(String.format("findRoomsInParallel: %8.2f ms per search (%.1fx)",
+                parallelNanos / 1e6 / searchCount, (double) sequentialNanos / parallelNanos));
+        System.exit(0);
+    }
+}
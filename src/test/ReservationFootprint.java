@@ -0,0 +1,163 @@
+package test;
+
+import model.Customer;
+import model.IRoom;
+import model.Reservation;
+import model.Room;
+import model.RoomType;
+import service.CompactReservationStore;
+import service.EpochDays;
+import service.ReservationRepository;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the heap footprint and GC cost of a long reservation history kept as an ArrayList of Reservation
+ * objects with the same history in a CompactReservationStore.
+ *
+ * For each store it builds the history, reports the retained heap after a full collection, then allocates
+ * short-lived garbage and reports how many collections that took and how long they paused, and finally times
+ * a full collection with the history live.
+ *
+ * Usage: java -Xmx4g test.ReservationFootprint [--reservations=N] [--rooms=N] [--customers=N] [--seed=N]
+ * Defaults are 10000000 reservations over 1000 rooms and 100000 customers.
+ */
+public class ReservationFootprint {
+
+    // Short-lived garbage allocated per store to provoke collections, in bytes
+    private static final long CHURN_BYTES = 4L << 30;
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Invalid option: " + arg + ". Options have the form --name=value");
+                return;
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int reservationCount = Integer.parseInt(options.getOrDefault("reservations", "10000000"));
+        int roomCount = Integer.parseInt(options.getOrDefault("rooms", "1000"));
+        int customerCount = Integer.parseInt(options.getOrDefault("customers", "100000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        List<IRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(new Room(String.valueOf(100 + i), 50.0 + i % 200, i % 2 == 0 ? RoomType.SINGLE : RoomType.DOUBLE));
+        }
+        List<Customer> customers = new ArrayList<>(customerCount);
+        for (int i = 0; i < customerCount; i++) {
+            customers.add(new Customer("Guest", "No" + i, "guest" + i + "@example.com"));
+        }
+        System.out.println("History of " + reservationCount + " reservations over " + roomCount + " rooms and "
+                + customerCount + " customers");
+
+        long baseline = usedHeapAfterGc();
+        List<Reservation> list = new ArrayList<>();
+        long start = System.nanoTime();
+        generate(reservationCount, rooms, customers, seed, list::add);
+        report("ArrayList<Reservation>", System.nanoTime() - start, usedHeapAfterGc() - baseline, reservationCount);
+        measureGc();
+        // Reading the history after the measurements keeps it live during them
+        System.out.println("  last reservation: " + list.get(list.size() - 1));
+        list = null;
+
+        baseline = usedHeapAfterGc();
+        CompactReservationStore store = new CompactReservationStore();
+        store.rooms().addAll(rooms);
+        ReservationRepository reservations = store.reservations();
+        start = System.nanoTime();
+        generate(reservationCount, rooms, customers, seed, reservations::add);
+        report("CompactReservationStore", System.nanoTime() - start, usedHeapAfterGc() - baseline, reservationCount);
+        System.out.println("  of which columns and row lists: " + megabytes(store.getReservationFootprintBytes()));
+        measureGc();
+        System.out.println("  reservations of room " + rooms.get(0).getRoomNumber() + ": "
+                + reservations.findByRoom(rooms.get(0).getRoomNumber()).size());
+    }
+
+    private interface Sink {
+        void add(Reservation reservation);
+    }
+
+    /**
+     * Creates back-to-back stays of 1 to 7 nights, round-robin over the rooms, so no two stays of a room overlap.
+     */
+    private static void generate(int count, List<IRoom> rooms, List<Customer> customers, long seed, Sink sink) {
+        Random random = new Random(seed);
+        long firstDay = EpochDays.of(new Date()) - 365L * 30;
+        long[] nextFreeDay = new long[rooms.size()];
+        Arrays.fill(nextFreeDay, firstDay);
+        for (int i = 0; i < count; i++) {
+            int room = i % rooms.size();
+            long checkIn = nextFreeDay[room] + random.nextInt(2);
+            long checkOut = checkIn + 1 + random.nextInt(7);
+            nextFreeDay[room] = checkOut + 1;
+            sink.add(new Reservation(customers.get(random.nextInt(customers.size())), rooms.get(room),
+                    EpochDays.toDate(checkIn), EpochDays.toDate(checkOut)));
+        }
+    }
+
+    private static void report(String name, long buildNanos, long retainedBytes, int reservationCount) {
+        System.out.println("\n*** " + name + " ***");
+        System.out.println("  built in " + buildNanos / 1_000_000 + " ms; retained heap " + megabytes(retainedBytes)
+                + " (" + retainedBytes / Math.max(1, reservationCount) + " bytes per reservation)");
+    }
+
+    /**
+     * Allocates short-lived garbage and times a full collection, with the current history live.
+     */
+    private static void measureGc() {
+        long countBefore = totalGcCount();
+        long timeBefore = totalGcTimeMillis();
+        // Objects stay in the ring briefly, so they cannot be optimized away and die young
+        Object[] ring = new Object[1024];
+        long allocated = 0;
+        for (int i = 0; allocated < CHURN_BYTES; i++) {
+            byte[] garbage = new byte[1024];
+            ring[i & (ring.length - 1)] = garbage;
+            allocated += garbage.length;
+        }
+        System.out.println("  " + megabytes(allocated) + " of short-lived garbage: " + (totalGcCount() - countBefore)
+                + " collections, " + (totalGcTimeMillis() - timeBefore) + " ms paused");
+
+        long fullStart = System.nanoTime();
+        System.gc();
+        System.out.println("  full collection: " + (System.nanoTime() - fullStart) / 1_000_000 + " ms");
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String megabytes(long bytes) {
+        return (bytes >> 20) + " MB";
+    }
+
+    private static long totalGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long totalGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}